@@ -0,0 +1,30 @@
+package bench;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+// Minimal blocking client: one request in flight per connection.
+public class BrokerClient implements AutoCloseable {
+  private final Socket socket;
+  private final DataInputStream in;
+  private final OutputStream out;
+  public BrokerClient(String host, int port) throws IOException {
+    this.socket = new Socket(host, port);
+    this.socket.setTcpNoDelay(true);
+    this.in = new DataInputStream(socket.getInputStream());
+    this.out = socket.getOutputStream();
+  }
+  // Sends one size-prefixed request frame and returns the response, without
+  // its size prefix.
+  public byte[] call(byte[] frame) throws IOException {
+    out.write(frame);
+    out.flush();
+    byte[] response = new byte[in.readInt()];
+    in.readFully(response);
+    return response;
+  }
+  @Override
+  public void close() throws IOException {
+    socket.close();
+  }
+}
@@ -0,0 +1,101 @@
+package bench;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import shared.CompactArray;
+import shared.CompactString;
+import shared.TagBuffer;
+import shared.VarInt;
+import shared.serializer.IntegerSerializer;
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+  // 1, 2, 3 and 5 byte encodings.
+  @Param({"1", "300", "70000", "-1"}) public int varIntValue;
+  @Param({"16", "249"}) public int topicNameLength;
+  @Param({"3", "64"}) public int arrayLength;
+  private VarInt varInt;
+  private ByteBuffer varIntBytes;
+  private CompactString compactString;
+  private ByteBuffer compactStringBytes;
+  private CompactArray<Integer> compactArray;
+  private ByteBuffer compactArrayBytes;
+  private TagBuffer emptyTagBuffer;
+  private TagBuffer tagBuffer;
+  private ByteBuffer emptyTagBufferBytes;
+  private ByteBuffer tagBufferBytes;
+  @Setup
+  public void setup() {
+    varInt = new VarInt(varIntValue);
+    varIntBytes = ByteBuffer.wrap(varInt.toBytes());
+    compactString = new CompactString("t".repeat(topicNameLength));
+    compactStringBytes = ByteBuffer.wrap(compactString.toBytes());
+    List<Integer> replicas = new ArrayList<>();
+    for (int i = 0; i < arrayLength; i++) {
+      replicas.add(i);
+    }
+    compactArray = CompactArray.withElements(replicas, new IntegerSerializer());
+    compactArrayBytes = ByteBuffer.wrap(compactArray.toBytes());
+    emptyTagBuffer = new TagBuffer();
+    tagBuffer = new TagBuffer(new byte[] {0, 4, 1, 2, 3, 4});
+    emptyTagBufferBytes = ByteBuffer.wrap(emptyTagBuffer.toBytes());
+    tagBufferBytes = ByteBuffer.wrap(tagBuffer.toBytes());
+  }
+  @Benchmark
+  public VarInt varIntFromByteBuffer() {
+    return VarInt.fromByteBuffer(varIntBytes.rewind());
+  }
+  @Benchmark
+  public byte[] varIntToBytes() {
+    return varInt.toBytes();
+  }
+  @Benchmark
+  public CompactString compactStringFromByteBuffer() {
+    return CompactString.fromByteBuffer(compactStringBytes.rewind());
+  }
+  @Benchmark
+  public byte[] compactStringToBytes() {
+    return compactString.toBytes();
+  }
+  @Benchmark
+  public CompactArray<Integer> compactArrayFromByteBuffer() {
+    return CompactArray.fromByteBuffer(compactArrayBytes.rewind(),
+                                       new IntegerSerializer());
+  }
+  @Benchmark
+  public byte[] compactArrayToBytes() {
+    return compactArray.toBytes();
+  }
+  @Benchmark
+  public TagBuffer emptyTagBufferFromByteBuffer() {
+    return TagBuffer.fromByteBuffer(emptyTagBufferBytes.rewind());
+  }
+  @Benchmark
+  public byte[] emptyTagBufferToBytes() {
+    return emptyTagBuffer.toBytes();
+  }
+  @Benchmark
+  public TagBuffer tagBufferFromByteBuffer() {
+    return TagBuffer.fromByteBuffer(tagBufferBytes.rewind());
+  }
+  @Benchmark
+  public byte[] tagBufferToBytes() {
+    return tagBuffer.toBytes();
+  }
+}
@@ -0,0 +1,245 @@
+package bench;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.HdrHistogram.Histogram;
+import server.Broker;
+import server.BrokerConfig;
+// Open-loop load generator. Each connection issues requests on a fixed
+// schedule and latency is measured from the time a request was *due*, not
+// from when it was actually sent, so a stalled broker shows up in the tail
+// instead of silently lowering the offered load (coordinated omission).
+//
+//   java -cp target/kafka-server.jar bench.LoadGenerator \
+//       --connections 8 --rate 20000 --duration 30 \
+//       --mix apiversions:1,describe:1,fetch:1
+//
+// Without --bootstrap a broker is started in-process on an ephemeral port
+// over a synthetic log.dir.
+public class LoadGenerator {
+  private static final long HIGHEST_TRACKABLE_NANOS =
+      TimeUnit.SECONDS.toNanos(60);
+  private static final int FRAME_VARIANTS = 64;
+  enum Operation { APIVERSIONS, DESCRIBE, FETCH }
+  private final Map<String, String> options;
+  private LoadGenerator(Map<String, String> options) {
+    this.options = options;
+  }
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = new HashMap<>();
+    for (int i = 0; i + 1 < args.length; i += 2) {
+      options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+    }
+    new LoadGenerator(options).run();
+  }
+  private String option(String key, String defaultValue) {
+    return options.getOrDefault(key, defaultValue);
+  }
+  private int intOption(String key, int defaultValue) {
+    return Integer.parseInt(option(key, Integer.toString(defaultValue)));
+  }
+  private void run() throws Exception {
+    int connections = intOption("connections", 8);
+    int rate = intOption("rate", 10_000);
+    int duration = intOption("duration", 30);
+    int warmup = intOption("warmup", 5);
+    int topics = intOption("topics", 100);
+    int partitions = intOption("partitions", 8);
+    int partitionBytes = intOption("partition-bytes", 64 * 1024);
+    int describeTopics = intOption("describe-topics", 10);
+    List<Operation> mix =
+        parseMix(option("mix", "apiversions:1,describe:1,fetch:1"));
+    List<SyntheticLogDir.TopicSpec> specs;
+    Broker broker = null;
+    String host;
+    int port;
+    if (options.containsKey("bootstrap")) {
+      String[] hostPort = option("bootstrap", "").split(":");
+      host = hostPort[0];
+      port = Integer.parseInt(hostPort[1]);
+      specs = SyntheticLogDir.specs(topics, partitions);
+    } else {
+      Path logDir = Files.createTempDirectory("kafka-bench");
+      System.err.printf("Writing %d topics x %d partitions to %s%n", topics,
+                        partitions, logDir);
+      specs = SyntheticLogDir.write(logDir, topics, partitions, partitionBytes);
+      // The broker serves each connection on its own pool thread, so the
+      // pool must be at least as large as the connection count.
+      String ioThreads = option(
+          "io-threads", Integer.toString(Math.max(
+                            BrokerConfig.DEFAULT_IO_THREADS, connections)));
+      Path properties = SyntheticLogDir.writeProperties(
+          logDir, Map.of("port", "0", "num.io.threads", ioThreads));
+      broker = new Broker(BrokerConfig.fromFile(properties));
+      broker.start();
+      host = "localhost";
+      port = broker.getPort();
+    }
+    Map<Operation, List<byte[]>> frames = buildFrames(specs, describeTopics);
+    long intervalNanos = TimeUnit.SECONDS.toNanos(1) * connections / rate;
+    long startNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+    long measureFromNanos = startNanos + TimeUnit.SECONDS.toNanos(warmup);
+    long endNanos = measureFromNanos + TimeUnit.SECONDS.toNanos(duration);
+    List<Worker> workers = new ArrayList<>();
+    for (int i = 0; i < connections; i++) {
+      Worker worker = new Worker(new BrokerClient(host, port), mix, frames,
+                                 startNanos + intervalNanos * i / connections,
+                                 intervalNanos, measureFromNanos, endNanos);
+      workers.add(worker);
+      worker.start();
+    }
+    for (Worker worker : workers) {
+      worker.join();
+    }
+    report(workers, measureFromNanos, rate);
+    if (broker != null) {
+      broker.close();
+    }
+  }
+  private static List<Operation> parseMix(String mix) {
+    List<Operation> schedule = new ArrayList<>();
+    for (String entry : mix.split(",")) {
+      String[] weighted = entry.split(":");
+      Operation operation = Operation.valueOf(weighted[0].trim().toUpperCase());
+      int weight = weighted.length > 1 ? Integer.parseInt(weighted[1]) : 1;
+      for (int i = 0; i < weight; i++) {
+        schedule.add(operation);
+      }
+    }
+    return schedule;
+  }
+  private static Map<Operation, List<byte[]>>
+  buildFrames(List<SyntheticLogDir.TopicSpec> specs, int describeTopics) {
+    Map<Operation, List<byte[]>> frames = new EnumMap<>(Operation.class);
+    for (Operation operation : Operation.values()) {
+      frames.put(operation, new ArrayList<>());
+    }
+    for (int i = 0; i < FRAME_VARIANTS; i++) {
+      frames.get(Operation.APIVERSIONS)
+          .add(RequestWriter.frame(RequestWriter.API_VERSIONS, (short)4, i,
+                                   "bench",
+                                   RequestWriter.apiVersions("bench", "1.0")));
+      List<String> names = new ArrayList<>();
+      for (int t = 0; t < describeTopics; t++) {
+        names.add(specs.get((i * describeTopics + t) % specs.size()).name());
+      }
+      frames.get(Operation.DESCRIBE)
+          .add(RequestWriter.frame(
+              RequestWriter.DESCRIBE_TOPIC_PARTITIONS, (short)0, i, "bench",
+              RequestWriter.describeTopicPartitions(names, 2000)));
+      SyntheticLogDir.TopicSpec spec = specs.get(i % specs.size());
+      Map<UUID, List<Integer>> fetched =
+          Map.of(spec.id(), List.of(i % spec.partitions()));
+      frames.get(Operation.FETCH)
+          .add(RequestWriter.frame(
+              RequestWriter.FETCH, (short)16, i, "bench",
+              RequestWriter.fetch(fetched, 0, 50 * 1024 * 1024, 1024 * 1024)));
+    }
+    return frames;
+  }
+  private static void report(List<Worker> workers, long measureFromNanos,
+                             int rate) {
+    Map<Operation, Histogram> merged = new EnumMap<>(Operation.class);
+    Histogram total = new Histogram(HIGHEST_TRACKABLE_NANOS, 3);
+    long errors = 0;
+    long lastCompletionNanos = measureFromNanos;
+    for (Worker worker : workers) {
+      lastCompletionNanos =
+          Math.max(lastCompletionNanos, worker.lastCompletionNanos);
+      worker.histograms.forEach((operation, histogram) -> {
+        merged.computeIfAbsent(operation,
+                               op -> new Histogram(HIGHEST_TRACKABLE_NANOS, 3))
+            .add(histogram);
+      });
+      errors += worker.errors;
+    }
+    merged.values().forEach(total::add);
+    // Requests due in the measurement window over the time it took to
+    // complete them, so a broker that falls behind reports its real rate.
+    double seconds = (lastCompletionNanos - measureFromNanos) / 1e9;
+    System.out.printf("target rate %d req/s, achieved %.1f req/s, errors %d%n",
+                      rate, total.getTotalCount() / seconds, errors);
+    System.out.printf("%-12s %10s %10s %10s %10s %10s%n", "operation",
+                      "count", "p50 us", "p99 us", "p99.9 us", "max us");
+    merged.forEach(
+        (operation, histogram) -> print(operation.name(), histogram));
+    print("ALL", total);
+  }
+  private static void print(String name, Histogram histogram) {
+    System.out.printf("%-12s %10d %10.1f %10.1f %10.1f %10.1f%n", name,
+                      histogram.getTotalCount(),
+                      histogram.getValueAtPercentile(50) / 1000.0,
+                      histogram.getValueAtPercentile(99) / 1000.0,
+                      histogram.getValueAtPercentile(99.9) / 1000.0,
+                      histogram.getMaxValue() / 1000.0);
+  }
+  private static class Worker extends Thread {
+    private final BrokerClient client;
+    private final List<Operation> mix;
+    private final Map<Operation, List<byte[]>> frames;
+    private final long startNanos;
+    private final long intervalNanos;
+    private final long measureFromNanos;
+    private final long endNanos;
+    private final Map<Operation, Histogram> histograms =
+        new EnumMap<>(Operation.class);
+    private long errors;
+    private long lastCompletionNanos;
+    Worker(BrokerClient client, List<Operation> mix,
+           Map<Operation, List<byte[]>> frames, long startNanos,
+           long intervalNanos, long measureFromNanos, long endNanos) {
+      this.client = client;
+      this.mix = mix;
+      this.frames = frames;
+      this.startNanos = startNanos;
+      this.intervalNanos = intervalNanos;
+      this.measureFromNanos = measureFromNanos;
+      this.endNanos = endNanos;
+      for (Operation operation : mix) {
+        histograms.put(operation, new Histogram(HIGHEST_TRACKABLE_NANOS, 3));
+      }
+    }
+    @Override
+    public void run() {
+      try (client) {
+        for (long i = 0;; i++) {
+          long dueNanos = startNanos + i * intervalNanos;
+          if (dueNanos >= endNanos) {
+            break;
+          }
+          long now;
+          while ((now = System.nanoTime()) < dueNanos) {
+            LockSupport.parkNanos(dueNanos - now);
+          }
+          Operation operation = mix.get((int)(i % mix.size()));
+          List<byte[]> variants = frames.get(operation);
+          byte[] frame = variants.get((int)(i % variants.size()));
+          byte[] response = client.call(frame);
+          long completedNanos = System.nanoTime();
+          long latency = completedNanos - dueNanos;
+          if (ByteBuffer.wrap(response).getInt() !=
+              ByteBuffer.wrap(frame).getInt(8)) {
+            errors++;
+          }
+          if (dueNanos >= measureFromNanos) {
+            histograms.get(operation).recordValue(
+                Math.min(latency, HIGHEST_TRACKABLE_NANOS));
+            lastCompletionNanos = completedNanos;
+          }
+        }
+      } catch (IOException e) {
+        errors++;
+        System.err.println(getName() + ": " + e);
+      }
+    }
+  }
+}
@@ -0,0 +1,124 @@
+package bench;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+// Writes a valid __cluster_metadata partition for an arbitrarily large
+// cluster: FeatureLevelRecords first, then each TopicRecord followed by its
+// PartitionRecords, packed into batches of a fixed record count and rolled
+// into base-offset-named segments. Output is streamed, so 1M partitions do
+// not need to fit in memory.
+//
+//   java -cp target/kafka-server.jar bench.MetadataLogGenerator \
+//       --dir /tmp/big --topics 100000 --partitions 10
+public class MetadataLogGenerator {
+  public static final int DEFAULT_RECORDS_PER_BATCH = 1000;
+  public static final long DEFAULT_SEGMENT_BYTES = 1024L * 1024 * 1024;
+  private static final UUID DIRECTORY = new UUID(0xD1D1L, 0);
+  private final int recordsPerBatch;
+  private final long segmentBytes;
+  private final int replicationFactor;
+  private final int extraFeatureLevels;
+  private Path partitionDir;
+  private OutputStream segment;
+  private long segmentSize;
+  private long nextOffset;
+  private final List<byte[]> pending = new ArrayList<>();
+  public MetadataLogGenerator(int recordsPerBatch, long segmentBytes,
+                              int replicationFactor, int extraFeatureLevels) {
+    this.recordsPerBatch = recordsPerBatch;
+    this.segmentBytes = segmentBytes;
+    this.replicationFactor = replicationFactor;
+    this.extraFeatureLevels = extraFeatureLevels;
+  }
+  public static MetadataLogGenerator withDefaults() {
+    return new MetadataLogGenerator(DEFAULT_RECORDS_PER_BATCH,
+                                    DEFAULT_SEGMENT_BYTES, 3, 0);
+  }
+  public static void main(String[] args) throws IOException {
+    Map<String, String> options = new HashMap<>();
+    for (int i = 0; i + 1 < args.length; i += 2) {
+      options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+    }
+    Path root = Path.of(options.get("dir"));
+    int topics = Integer.parseInt(options.getOrDefault("topics", "1000"));
+    int partitions = Integer.parseInt(options.getOrDefault("partitions", "10"));
+    MetadataLogGenerator generator = new MetadataLogGenerator(
+        Integer.parseInt(options.getOrDefault(
+            "records-per-batch", Integer.toString(DEFAULT_RECORDS_PER_BATCH))),
+        Long.parseLong(options.getOrDefault(
+            "segment-bytes", Long.toString(DEFAULT_SEGMENT_BYTES))),
+        Integer.parseInt(options.getOrDefault("replicas", "3")),
+        Integer.parseInt(options.getOrDefault("feature-levels", "0")));
+    long records =
+        generator.write(root, SyntheticLogDir.specs(topics, partitions));
+    System.err.printf("Wrote %d records for %d topics x %d partitions to %s%n",
+                      records, topics, partitions, root);
+  }
+  // Returns the number of records written.
+  public long write(Path root, List<SyntheticLogDir.TopicSpec> specs)
+      throws IOException {
+    partitionDir =
+        Files.createDirectories(root.resolve("__cluster_metadata-0"));
+    nextOffset = 0;
+    try {
+      add(RecordBatchWriter.featureLevelRecord("metadata.version", (short)20));
+      for (int i = 0; i < extraFeatureLevels; i++) {
+        add(RecordBatchWriter.featureLevelRecord("feature." + i, (short)1));
+      }
+      int[] replicas = new int[replicationFactor];
+      for (SyntheticLogDir.TopicSpec spec : specs) {
+        add(RecordBatchWriter.topicRecord(spec.name(), spec.id()));
+        for (int p = 0; p < spec.partitions(); p++) {
+          for (int r = 0; r < replicationFactor; r++) {
+            replicas[r] = 1 + (p + r) % Math.max(replicationFactor, 3);
+          }
+          add(RecordBatchWriter.partitionRecord(spec.id(), p, replicas,
+                                                replicas[0], DIRECTORY));
+        }
+      }
+      flushBatch();
+    } finally {
+      if (segment != null) {
+        segment.close();
+        segment = null;
+      }
+    }
+    return nextOffset;
+  }
+  private void add(byte[] value) throws IOException {
+    pending.add(value);
+    if (pending.size() == recordsPerBatch) {
+      flushBatch();
+    }
+  }
+  private void flushBatch() throws IOException {
+    if (pending.isEmpty()) {
+      return;
+    }
+    byte[] batch =
+        RecordBatchWriter.batch(nextOffset, SyntheticLogDir.TIMESTAMP, pending);
+    if (segment == null || segmentSize + batch.length > segmentBytes) {
+      rollSegment();
+    }
+    segment.write(batch);
+    segmentSize += batch.length;
+    nextOffset += pending.size();
+    pending.clear();
+  }
+  private void rollSegment() throws IOException {
+    if (segment != null) {
+      segment.close();
+    }
+    String name = String.format("%020d.log", nextOffset);
+    segment = new BufferedOutputStream(
+        Files.newOutputStream(partitionDir.resolve(name)), 1 << 16);
+    segmentSize = 0;
+  }
+}
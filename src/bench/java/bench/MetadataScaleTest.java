@@ -0,0 +1,109 @@
+package bench;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.HdrHistogram.Histogram;
+import server.Broker;
+import server.BrokerConfig;
+// Boots the broker on generated __cluster_metadata logs of increasing size
+// and records how startup time, retained heap and DescribeTopicPartitions
+// latency scale. Give it plenty of heap for the larger runs:
+//
+//   java -Xmx16g -cp target/kafka-server.jar bench.MetadataScaleTest \
+//       --topics 1000,10000,100000 --partitions 10
+public class MetadataScaleTest {
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = new HashMap<>();
+    for (int i = 0; i + 1 < args.length; i += 2) {
+      options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+    }
+    int partitions = Integer.parseInt(options.getOrDefault("partitions", "10"));
+    int requests = Integer.parseInt(options.getOrDefault("requests", "2000"));
+    int describeTopics =
+        Integer.parseInt(options.getOrDefault("describe-topics", "1"));
+    System.out.printf("%10s %10s %12s %10s %12s %10s %10s %10s%n", "topics",
+                      "partitions", "metadata MB", "load ms", "retained MB",
+                      "p50 us", "p99 us", "max us");
+    for (String scale :
+         options.getOrDefault("topics", "1000,10000,100000").split(",")) {
+      run(Integer.parseInt(scale.trim()), partitions, requests, describeTopics);
+    }
+  }
+  private static void run(int topics, int partitions, int requests,
+                          int describeTopics) throws Exception {
+    Path logDir = Files.createTempDirectory("kafka-scale");
+    try {
+      List<SyntheticLogDir.TopicSpec> specs =
+          SyntheticLogDir.specs(topics, partitions);
+      MetadataLogGenerator.withDefaults().write(logDir, specs);
+      long metadataBytes;
+      try (Stream<Path> files = Files.walk(logDir)) {
+        metadataBytes = files.filter(Files::isRegularFile)
+                            .mapToLong(path -> path.toFile().length())
+                            .sum();
+      }
+      Path properties =
+          SyntheticLogDir.writeProperties(logDir, Map.of("port", "0"));
+      long heapBefore = usedHeapAfterGc();
+      long loadStart = System.nanoTime();
+      Broker broker = new Broker(BrokerConfig.fromFile(properties));
+      broker.start();
+      long loadNanos = System.nanoTime() - loadStart;
+      long retained = usedHeapAfterGc() - heapBefore;
+      Histogram latencies = new Histogram(TimeUnit.SECONDS.toNanos(60), 3);
+      SplittableRandom random = new SplittableRandom(42);
+      try (BrokerClient client =
+               new BrokerClient("localhost", broker.getPort())) {
+        for (int i = 0; i < requests * 2; i++) {
+          List<String> names = new ArrayList<>(describeTopics);
+          for (int t = 0; t < describeTopics; t++) {
+            names.add(specs.get(random.nextInt(specs.size())).name());
+          }
+          byte[] frame = RequestWriter.frame(
+              RequestWriter.DESCRIBE_TOPIC_PARTITIONS, (short)0, i, "scale",
+              RequestWriter.describeTopicPartitions(names, 2000));
+          long start = System.nanoTime();
+          client.call(frame);
+          // The first half warms up the handler.
+          if (i >= requests) {
+            latencies.recordValue(System.nanoTime() - start);
+          }
+        }
+      }
+      broker.close();
+      System.out.printf("%10d %10d %12.1f %10d %12.1f %10.1f %10.1f %10.1f%n",
+                        topics, (long)topics * partitions,
+                        metadataBytes / 1048576.0,
+                        TimeUnit.NANOSECONDS.toMillis(loadNanos),
+                        retained / 1048576.0,
+                        latencies.getValueAtPercentile(50) / 1000.0,
+                        latencies.getValueAtPercentile(99) / 1000.0,
+                        latencies.getMaxValue() / 1000.0);
+    } finally {
+      deleteRecursively(logDir);
+    }
+  }
+  private static long usedHeapAfterGc() throws InterruptedException {
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+      Thread.sleep(100);
+    }
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+  private static void deleteRecursively(Path root) throws IOException {
+    try (Stream<Path> paths = Files.walk(root)) {
+      for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+        Files.delete(path);
+      }
+    }
+  }
+}
@@ -0,0 +1,63 @@
+package bench;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import log.RecordBatch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+// Data batches are not covered here: RecordBatch.fromByteBuffer decodes
+// every value as a metadata record, so arbitrary payloads fall through to
+// UnimplementedRecord and its stdout hex dump. Served data batches are
+// measured through ResponseBenchmark instead.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecordBatchBenchmark {
+  // Partition records per TopicRecord in the batch.
+  @Param({"1", "16", "256"}) public int partitions;
+  private ByteBuffer metadataBatch;
+  private ByteBuffer featureLevelBatch;
+  @Setup
+  public void setup() {
+    UUID topicId = UUID.randomUUID();
+    UUID directory = UUID.randomUUID();
+    List<byte[]> values = new ArrayList<>();
+    values.add(RecordBatchWriter.topicRecord("orders.v1", topicId));
+    for (int i = 0; i < partitions; i++) {
+      values.add(RecordBatchWriter.partitionRecord(
+          topicId, i, new int[] {1, 2, 3}, 1 + i % 3, directory));
+    }
+    metadataBatch =
+        ByteBuffer.wrap(RecordBatchWriter.batch(0, 1_700_000_000_000L, values));
+    featureLevelBatch = ByteBuffer.wrap(RecordBatchWriter.batch(
+        0, 1_700_000_000_000L,
+        List.of(RecordBatchWriter.featureLevelRecord("metadata.version",
+                                                     (short)20))));
+  }
+  @Benchmark
+  public RecordBatch topicAndPartitions() {
+    return RecordBatch.fromByteBuffer(metadataBatch.rewind());
+  }
+  @Benchmark
+  public RecordBatch featureLevel() {
+    return RecordBatch.fromByteBuffer(featureLevelBatch.rewind());
+  }
+  @Benchmark
+  public long nextOffset() {
+    return RecordBatch.nextOffset(metadataBatch.rewind());
+  }
+}
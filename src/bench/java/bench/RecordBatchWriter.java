@@ -0,0 +1,130 @@
+package bench;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32C;
+import shared.VarInt;
+import util.StreamUtils;
+public class RecordBatchWriter {
+  private static final byte MAGIC = 2;
+  public static byte[] batch(long baseOffset, long timestamp,
+                             List<byte[]> values) {
+    byte[] records = StreamUtils.toBytes(dos -> {
+      for (int i = 0; i < values.size(); i++) {
+        dos.write(record(i, values.get(i)));
+      }
+    });
+    byte[] afterCrc = StreamUtils.toBytes(dos -> {
+      dos.writeShort(0);
+      dos.writeInt(values.size() - 1);
+      dos.writeLong(timestamp);
+      dos.writeLong(timestamp);
+      dos.writeLong(-1);
+      dos.writeShort(-1);
+      dos.writeInt(-1);
+      dos.writeInt(values.size());
+      dos.write(records);
+    });
+    CRC32C crc = new CRC32C();
+    crc.update(afterCrc);
+    return StreamUtils.toBytes(dos -> {
+      dos.writeLong(baseOffset);
+      dos.writeInt(4 + 1 + 4 + afterCrc.length);
+      dos.writeInt(0);
+      dos.write(MAGIC);
+      dos.writeInt((int)crc.getValue());
+      dos.write(afterCrc);
+    });
+  }
+  public static byte[] dataBatch(long baseOffset, long timestamp,
+                                 int recordCount, int valueSize) {
+    List<byte[]> values = new ArrayList<>(recordCount);
+    for (int i = 0; i < recordCount; i++) {
+      byte[] value = new byte[valueSize];
+      Arrays.fill(value, (byte)('a' + i % 26));
+      values.add(value);
+    }
+    return batch(baseOffset, timestamp, values);
+  }
+  public static byte[] featureLevelRecord(String name, short level) {
+    return StreamUtils.toBytes(dos -> {
+      dos.write(header(12, 0));
+      dos.write(compactString(name));
+      dos.writeShort(level);
+      dos.write(unsigned(0));
+    });
+  }
+  public static byte[] topicRecord(String name, UUID topicId) {
+    return StreamUtils.toBytes(dos -> {
+      dos.write(header(2, 0));
+      dos.write(compactString(name));
+      dos.writeLong(topicId.getMostSignificantBits());
+      dos.writeLong(topicId.getLeastSignificantBits());
+      dos.write(unsigned(0));
+    });
+  }
+  public static byte[] partitionRecord(UUID topicId, int partitionId,
+                                       int[] replicas, int leader,
+                                       UUID directory) {
+    return StreamUtils.toBytes(dos -> {
+      dos.write(header(3, 1));
+      dos.writeInt(partitionId);
+      dos.writeLong(topicId.getMostSignificantBits());
+      dos.writeLong(topicId.getLeastSignificantBits());
+      dos.write(intArray(replicas));
+      dos.write(intArray(replicas));
+      dos.write(intArray(new int[0]));
+      dos.write(intArray(new int[0]));
+      dos.writeInt(leader);
+      dos.writeInt(0);
+      dos.writeInt(0);
+      dos.write(unsigned(replicas.length + 1));
+      for (int i = 0; i < replicas.length; i++) {
+        dos.writeLong(directory.getMostSignificantBits());
+        dos.writeLong(directory.getLeastSignificantBits());
+      }
+      dos.write(unsigned(0));
+    });
+  }
+  private static byte[] record(int offsetDelta, byte[] value) {
+    byte[] body = StreamUtils.toBytes(dos -> {
+      dos.write(0);
+      dos.write(signed(0));
+      dos.write(signed(offsetDelta));
+      dos.write(signed(-1));
+      dos.write(signed(value.length));
+      dos.write(value);
+      dos.write(unsigned(0));
+    });
+    return StreamUtils.toBytes(dos -> {
+      dos.write(signed(body.length));
+      dos.write(body);
+    });
+  }
+  private static byte[] header(int type, int version) {
+    return new byte[] {1, (byte)type, (byte)version};
+  }
+  private static byte[] intArray(int[] values) {
+    return StreamUtils.toBytes(dos -> {
+      dos.write(unsigned(values.length + 1));
+      for (int value : values) {
+        dos.writeInt(value);
+      }
+    });
+  }
+  static byte[] compactString(String value) {
+    byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+    return StreamUtils.toBytes(dos -> {
+      dos.write(unsigned(utf8.length + 1));
+      dos.write(utf8);
+    });
+  }
+  static byte[] unsigned(int value) { return new VarInt(value).toBytes(); }
+  static byte[] signed(int value) {
+    VarInt varInt = new VarInt(0);
+    varInt.setValue(value);
+    return varInt.toBytes();
+  }
+}
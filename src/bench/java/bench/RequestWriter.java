@@ -0,0 +1,80 @@
+package bench;
+import static bench.RecordBatchWriter.compactString;
+import static bench.RecordBatchWriter.unsigned;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import util.StreamUtils;
+public class RequestWriter {
+  public static final short FETCH = 1;
+  public static final short API_VERSIONS = 18;
+  public static final short DESCRIBE_TOPIC_PARTITIONS = 75;
+  // Size-prefixed frame, exactly as it goes over the wire.
+  public static byte[] frame(short apiKey, short apiVersion,
+                             int correlationId, String clientId,
+                             byte[] body) {
+    byte[] clientIdBytes = clientId.getBytes(StandardCharsets.UTF_8);
+    return StreamUtils.toBytes(dos -> {
+      dos.writeInt(2 + 2 + 4 + 2 + clientIdBytes.length + 1 + body.length);
+      dos.writeShort(apiKey);
+      dos.writeShort(apiVersion);
+      dos.writeInt(correlationId);
+      dos.writeShort(clientIdBytes.length);
+      dos.write(clientIdBytes);
+      dos.write(unsigned(0));
+      dos.write(body);
+    });
+  }
+  public static byte[] apiVersions(String clientId, String softwareVersion) {
+    return StreamUtils.toBytes(dos -> {
+      dos.write(compactString(clientId));
+      dos.write(compactString(softwareVersion));
+      dos.write(unsigned(0));
+    });
+  }
+  public static byte[] describeTopicPartitions(List<String> topics,
+                                               int responsePartitionLimit) {
+    return StreamUtils.toBytes(dos -> {
+      dos.write(unsigned(topics.size() + 1));
+      for (String topic : topics) {
+        dos.write(compactString(topic));
+        dos.write(unsigned(0));
+      }
+      dos.writeInt(responsePartitionLimit);
+      dos.write(-1);
+      dos.write(unsigned(0));
+    });
+  }
+  public static byte[] fetch(Map<UUID, List<Integer>> partitions,
+                             long fetchOffset, int maxBytes,
+                             int partitionMaxBytes) {
+    return StreamUtils.toBytes(dos -> {
+      dos.writeInt(500);
+      dos.writeInt(1);
+      dos.writeInt(maxBytes);
+      dos.write(0);
+      dos.writeInt(0);
+      dos.writeInt(-1);
+      dos.write(unsigned(partitions.size() + 1));
+      for (Map.Entry<UUID, List<Integer>> topic : partitions.entrySet()) {
+        dos.writeLong(topic.getKey().getMostSignificantBits());
+        dos.writeLong(topic.getKey().getLeastSignificantBits());
+        dos.write(unsigned(topic.getValue().size() + 1));
+        for (int partition : topic.getValue()) {
+          dos.writeInt(partition);
+          dos.writeInt(-1);
+          dos.writeLong(fetchOffset);
+          dos.writeInt(-1);
+          dos.writeLong(-1);
+          dos.writeInt(partitionMaxBytes);
+          dos.write(unsigned(0));
+        }
+        dos.write(unsigned(0));
+      }
+      dos.write(unsigned(1));
+      dos.write(compactString(""));
+      dos.write(unsigned(0));
+    });
+  }
+}
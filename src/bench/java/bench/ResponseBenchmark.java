@@ -0,0 +1,134 @@
+package bench;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import log.LogManager;
+import log.RecordBatch;
+import metadata.MetadataDelta;
+import metadata.MetadataImage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import requests.Request;
+import responses.Response;
+import responses.ResponseCache;
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseBenchmark {
+  private static final int PARTITIONS_PER_TOPIC = 8;
+  private static final int DESCRIBED_TOPICS = 10;
+  @Param({"100", "1000"}) public int topics;
+  // Size of each partition's log, built from 16 KiB data batches.
+  @Param({"16384", "1048576"}) public int partitionBytes;
+  private MetadataImage image;
+  private Path logDir;
+  private LogManager logManager;
+  private ResponseCache responseCache;
+  private Request<?> describeRequest;
+  private Request<?> fetchRequest;
+  private Response describeResponse;
+  private Response fetchResponse;
+  @Setup
+  public void setup() throws IOException {
+    UUID directory = UUID.randomUUID();
+    MetadataDelta delta = new MetadataDelta(MetadataImage.EMPTY);
+    logDir = Files.createTempDirectory("kafka-bench");
+    List<String> describedTopics = new ArrayList<>();
+    UUID fetchedTopic = null;
+    long offset = 0;
+    for (int t = 0; t < topics; t++) {
+      String name = "topic-" + t;
+      UUID topicId = UUID.randomUUID();
+      List<byte[]> values = new ArrayList<>();
+      values.add(RecordBatchWriter.topicRecord(name, topicId));
+      for (int p = 0; p < PARTITIONS_PER_TOPIC; p++) {
+        values.add(RecordBatchWriter.partitionRecord(
+            topicId, p, new int[] {1, 2, 3}, 1, directory));
+      }
+      byte[] batch =
+          RecordBatchWriter.batch(offset, SyntheticLogDir.TIMESTAMP, values);
+      delta.replay(RecordBatch.fromByteBuffer(ByteBuffer.wrap(batch)));
+      offset += values.size();
+      if (t % (topics / DESCRIBED_TOPICS) == 0) {
+        describedTopics.add(name);
+      }
+      if (t == topics / 2) {
+        fetchedTopic = topicId;
+        Path partitionDir =
+            Files.createDirectories(logDir.resolve(name + "-0"));
+        Files.write(partitionDir.resolve(SyntheticLogDir.SEGMENT_NAME),
+                    SyntheticLogDir.partitionLog(partitionBytes));
+      }
+    }
+    image = delta.apply();
+    responseCache = new ResponseCache(1, "localhost", 9092);
+    logManager = LogManager.load(List.of(logDir), ForkJoinPool.commonPool());
+    describeRequest = Request.fromByteBuffer(ByteBuffer.wrap(
+        unframe(RequestWriter.frame(
+            RequestWriter.DESCRIBE_TOPIC_PARTITIONS, (short)0, 1, "bench",
+            RequestWriter.describeTopicPartitions(describedTopics, 2000)))));
+    fetchRequest = Request.fromByteBuffer(ByteBuffer.wrap(
+        unframe(RequestWriter.frame(
+            RequestWriter.FETCH, (short)16, 2, "bench",
+            RequestWriter.fetch(Map.of(fetchedTopic, List.of(0)), 0,
+                                50 * 1024 * 1024, 1024 * 1024)))));
+    describeResponse = handle(describeRequest);
+    fetchResponse = handle(fetchRequest);
+  }
+  @TearDown
+  public void tearDown() throws IOException {
+    logManager.close();
+    try (Stream<Path> paths = Files.walk(logDir)) {
+      for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+        Files.delete(path);
+      }
+    }
+  }
+  private static byte[] unframe(byte[] frame) {
+    byte[] request = new byte[frame.length - 4];
+    System.arraycopy(frame, 4, request, 0, request.length);
+    return request;
+  }
+  private Response handle(Request<?> request) {
+    return Response.fromRequest(request, image, logManager, responseCache)
+        .join();
+  }
+  @Benchmark
+  public byte[] describeTopicPartitionsToBytes() {
+    return describeResponse.toBytes();
+  }
+  @Benchmark
+  public byte[] describeTopicPartitionsHandleAndEncode() {
+    return handle(describeRequest).toBytes();
+  }
+  @Benchmark
+  public byte[] fetchToBytes() {
+    return fetchResponse.toBytes();
+  }
+  @Benchmark
+  public byte[] fetchHandleAndEncode() {
+    return handle(fetchRequest).toBytes();
+  }
+}
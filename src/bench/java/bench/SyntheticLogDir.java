@@ -0,0 +1,69 @@
+package bench;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+// Writes a log.dir the broker can boot from: one __cluster_metadata
+// partition describing every topic, plus a data log per partition.
+public class SyntheticLogDir {
+  public static final long TIMESTAMP = 1_700_000_000_000L;
+  public static final String SEGMENT_NAME = "00000000000000000000.log";
+  public record TopicSpec(String name, UUID id, int partitions) {}
+  public static List<TopicSpec> write(Path root, int topics,
+                                      int partitionsPerTopic,
+                                      int partitionBytes) throws IOException {
+    List<TopicSpec> specs = specs(topics, partitionsPerTopic);
+    writeMetadata(root, specs);
+    byte[] partitionLog = partitionLog(partitionBytes);
+    for (TopicSpec spec : specs) {
+      for (int p = 0; p < spec.partitions(); p++) {
+        Path dir = Files.createDirectories(root.resolve(spec.name() + "-" + p));
+        Files.write(dir.resolve(SEGMENT_NAME), partitionLog);
+      }
+    }
+    return specs;
+  }
+  // Deterministic names and ids, so a client can address a log.dir written
+  // by another process.
+  public static List<TopicSpec> specs(int topics, int partitionsPerTopic) {
+    List<TopicSpec> specs = new ArrayList<>(topics);
+    for (int t = 0; t < topics; t++) {
+      specs.add(new TopicSpec("topic-" + t, new UUID(0xBE7C4L, t),
+                              partitionsPerTopic));
+    }
+    return specs;
+  }
+  public static void writeMetadata(Path root, List<TopicSpec> specs)
+      throws IOException {
+    MetadataLogGenerator.withDefaults().write(root, specs);
+  }
+  // Data batches of 16 records x 1000 bytes, at least `size` bytes in total.
+  public static byte[] partitionLog(int size) {
+    List<byte[]> log = new ArrayList<>();
+    int written = 0;
+    long offset = 0;
+    while (written < size) {
+      byte[] batch = RecordBatchWriter.dataBatch(offset, TIMESTAMP, 16, 1000);
+      log.add(batch);
+      written += batch.length;
+      offset += 16;
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(written);
+    log.forEach(buffer::put);
+    return buffer.array();
+  }
+  public static Path writeProperties(Path root, Map<String, String> overrides)
+      throws IOException {
+    StringBuilder properties = new StringBuilder();
+    properties.append("log.dir=").append(root).append('\n');
+    overrides.forEach((key, value) -> properties.append(key)
+                                          .append('=')
+                                          .append(value)
+                                          .append('\n'));
+    return Files.writeString(root.resolve("server.properties"), properties);
+  }
+}
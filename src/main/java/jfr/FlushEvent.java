@@ -0,0 +1,17 @@
+package jfr;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+@Name("kafka.Flush")
+@Label("Flush")
+@Category({"Kafka", "Log"})
+@Description("Forcing a log segment's pending writes to disk.")
+public class FlushEvent extends Event {
+  @Label("Topic") public String topic;
+  @Label("Partition") public int partition;
+  @Label("Segment") public String segment;
+  @Label("Size") @DataAmount public long bytes;
+}
@@ -0,0 +1,18 @@
+package jfr;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+@Name("kafka.IndexLookup")
+@Label("Index Lookup")
+@Category({"Kafka", "Log"})
+@Description("Resolving an offset or timestamp to a position through a segment index.")
+public class IndexLookupEvent extends Event {
+  @Label("Topic") public String topic;
+  @Label("Partition") public int partition;
+  @Label("Index") public String index;
+  @Label("Target") public long target;
+  @Label("Result Offset") public long resultOffset;
+  @Label("Result Position") public long resultPosition;
+}
@@ -0,0 +1,16 @@
+package jfr;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+@Name("kafka.RequestHandled")
+@Label("Request Handled")
+@Category({"Kafka", "Request"})
+@Description("Building the response for one request.")
+public class RequestHandledEvent extends Event {
+  @Label("API Key") public short apiKey;
+  @Label("API Version") public short apiVersion;
+  @Label("Correlation ID") public int correlationId;
+  @Label("Client ID") public String clientId;
+}
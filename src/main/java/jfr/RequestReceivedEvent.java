@@ -0,0 +1,18 @@
+package jfr;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+@Name("kafka.RequestReceived")
+@Label("Request Received")
+@Category({"Kafka", "Network"})
+@Description("Reading and decoding one request from a client connection.")
+public class RequestReceivedEvent extends Event {
+  @Label("API Key") public short apiKey;
+  @Label("API Version") public short apiVersion;
+  @Label("Correlation ID") public int correlationId;
+  @Label("Client ID") public String clientId;
+  @Label("Size") @DataAmount public int bytes;
+}
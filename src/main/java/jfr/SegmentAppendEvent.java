@@ -0,0 +1,18 @@
+package jfr;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+@Name("kafka.SegmentAppend")
+@Label("Segment Append")
+@Category({"Kafka", "Log"})
+@Description("Appending a record batch to the active log segment.")
+public class SegmentAppendEvent extends Event {
+  @Label("Topic") public String topic;
+  @Label("Partition") public int partition;
+  @Label("Segment") public String segment;
+  @Label("Base Offset") public long baseOffset;
+  @Label("Size") @DataAmount public long bytes;
+}
@@ -0,0 +1,18 @@
+package jfr;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+@Name("kafka.SegmentRead")
+@Label("Segment Read")
+@Category({"Kafka", "Log"})
+@Description("Reading bytes from a log segment.")
+public class SegmentReadEvent extends Event {
+  @Label("Topic") public String topic;
+  @Label("Partition") public int partition;
+  @Label("Segment") public String segment;
+  @Label("Position") public long position;
+  @Label("Size") @DataAmount public long bytes;
+}
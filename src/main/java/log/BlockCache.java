@@ -0,0 +1,236 @@
+package log;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+// Broker-wide cache of segment file contents in fixed-size blocks, keyed by
+// segment and block index and held in direct buffers, so heap use does not
+// grow with the logs. Only blocks that lie entirely below a segment's
+// readable size are cached: those bytes never change.
+//
+// Eviction is segmented LRU. A block enters on probation and moves to the
+// protected segment when a later read covers bytes that were already read
+// from it; protected blocks pushed out of their segment go back to
+// probation, and victims always come from the probation end. A consumer
+// catching up through old data reads each byte once, so it only churns
+// probation, even when one fetch ends mid-block and the next carries on
+// from there. The blocks tail consumers keep re-reading stay protected.
+// Batch header probes are served from cached blocks but never load,
+// promote or refresh one.
+public class BlockCache {
+  public static final BlockCache DISABLED = new BlockCache(0, 0);
+  // Share of the blocks the protected segment may hold.
+  private static final double PROTECTED_RATIO = 0.8;
+  private record BlockKey(LogSegment segment, long index) {}
+  // A cached block and, while on probation, the span of it read so far.
+  private static final class Block {
+    final ByteBuffer data;
+    int readStart;
+    int readEnd;
+    Block(ByteBuffer data, int offset, int length) {
+      this.data = data;
+      this.readStart = offset;
+      this.readEnd = offset + length;
+    }
+    // Whether the read covers bytes read before; widens the span either
+    // way.
+    boolean reread(int offset, int length) {
+      boolean overlaps = offset < readEnd && offset + length > readStart;
+      readStart = Math.min(readStart, offset);
+      readEnd = Math.max(readEnd, offset + length);
+      return overlaps;
+    }
+  }
+  private final int blockBytes;
+  private final int maxBlocks;
+  private final int maxProtected;
+  // Both in least recently used first order.
+  private final LinkedHashMap<BlockKey, Block> probation =
+      new LinkedHashMap<>();
+  private final LinkedHashMap<BlockKey, Block> protectedBlocks =
+      new LinkedHashMap<>();
+  // Blocks allocated so far and not in use; memory is taken as the cache
+  // fills and then reused.
+  private final ArrayDeque<ByteBuffer> free = new ArrayDeque<>();
+  private int allocatedBlocks;
+  // Bumped by every invalidation, so a load that raced one is not inserted
+  // for a segment that is already closed.
+  private long generation;
+  // Written under the lock, read without it.
+  private volatile long usedBytes;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  public BlockCache(long maxBytes, int blockBytes) {
+    this.blockBytes = blockBytes;
+    this.maxBlocks = blockBytes > 0 ? (int)Math.min(Integer.MAX_VALUE,
+                                                    maxBytes / blockBytes)
+                                    : 0;
+    this.maxProtected = (int)(maxBlocks * PROTECTED_RATIO);
+  }
+  public boolean isEnabled() { return maxBlocks > 0; }
+  int getBlockBytes() { return blockBytes; }
+  // Copies the bytes at position on into buffer, as far as the block
+  // holding position goes, and returns how many were copied. The caller
+  // only asks for blocks that end at or below the segment's readable size.
+  // A probe, such as a batch header read to find where a batch ends, is
+  // copied from the block if it is cached and read from the file if not.
+  int read(LogSegment segment, FileChannel channel, long position,
+           ByteBuffer buffer, boolean probe) throws IOException {
+    BlockKey key = new BlockKey(segment, position / blockBytes);
+    int offset = (int)(position % blockBytes);
+    int length = Math.min(buffer.remaining(), blockBytes - offset);
+    long loadGeneration;
+    ByteBuffer block;
+    synchronized (this) {
+      Block cached = probe ? peek(key) : lookup(key, offset, length);
+      if (cached != null) {
+        hits.increment();
+        buffer.put(cached.data.slice(offset, length));
+        return length;
+      }
+      if (probe) {
+        block = null;
+        loadGeneration = generation;
+      } else {
+        misses.increment();
+        loadGeneration = generation;
+        block = take();
+      }
+    }
+    if (block == null) {
+      // A probe, or every block is being loaded by some other reader; read
+      // around the cache rather than wait for one.
+      int limit = buffer.limit();
+      buffer.limit(buffer.position() + length);
+      try {
+        return channel.read(buffer, position);
+      } finally {
+        buffer.limit(limit);
+      }
+    }
+    // Load without holding the lock; the block is not reachable by anyone
+    // else until it is inserted. Two readers missing on the same block
+    // both load it and the second copy is returned to the free list.
+    block.clear();
+    long start = key.index() * blockBytes;
+    try {
+      while (block.hasRemaining()) {
+        if (channel.read(block, start + block.position()) < 0) {
+          throw new IOException("Segment " + segment.getFile() +
+                                " ended inside cached block " + key.index());
+        }
+      }
+    } catch (IOException e) {
+      release(block);
+      throw e;
+    }
+    buffer.put(block.slice(offset, length));
+    insert(key, new Block(block, offset, length), loadGeneration);
+    return length;
+  }
+  // Must hold the lock. Leaves the block where it is in either segment.
+  private Block peek(BlockKey key) {
+    Block block = protectedBlocks.get(key);
+    return block != null ? block : probation.get(key);
+  }
+  // Must hold the lock. Makes the block the most recently used of its
+  // segment, promoting a probation block the read has been over before.
+  private Block lookup(BlockKey key, int offset, int length) {
+    Block block = protectedBlocks.remove(key);
+    if (block != null) {
+      protectedBlocks.put(key, block);
+      return block;
+    }
+    block = probation.remove(key);
+    if (block == null) {
+      return null;
+    }
+    if (!block.reread(offset, length)) {
+      probation.put(key, block);
+      return block;
+    }
+    protectedBlocks.put(key, block);
+    if (protectedBlocks.size() > maxProtected) {
+      Iterator<Map.Entry<BlockKey, Block>> eldest =
+          protectedBlocks.entrySet().iterator();
+      Map.Entry<BlockKey, Block> demoted = eldest.next();
+      eldest.remove();
+      // Back on probation, it needs to be read over again to return.
+      Block value = demoted.getValue();
+      value.readStart = blockBytes;
+      value.readEnd = 0;
+      probation.put(demoted.getKey(), value);
+    }
+    return block;
+  }
+  private synchronized void insert(BlockKey key, Block block,
+                                   long loadGeneration) {
+    if (loadGeneration != generation || probation.containsKey(key) ||
+        protectedBlocks.containsKey(key)) {
+      free.push(block.data);
+      return;
+    }
+    probation.put(key, block);
+    updateUsedBytes();
+  }
+  private synchronized void release(ByteBuffer block) { free.push(block); }
+  // A block to load into: a free one, a new one while under the budget, or
+  // the probation segment's least recently used one. Null if every block is
+  // out being loaded. Must hold the lock.
+  private ByteBuffer take() {
+    if (!free.isEmpty()) {
+      return free.pop();
+    }
+    if (allocatedBlocks < maxBlocks) {
+      allocatedBlocks++;
+      return ByteBuffer.allocateDirect(blockBytes);
+    }
+    LinkedHashMap<BlockKey, Block> victims =
+        probation.isEmpty() ? protectedBlocks : probation;
+    if (victims.isEmpty()) {
+      return null;
+    }
+    Iterator<Block> eldest = victims.values().iterator();
+    ByteBuffer block = eldest.next().data;
+    eldest.remove();
+    evictions.increment();
+    updateUsedBytes();
+    return block;
+  }
+  // Drops a closed segment's blocks so their memory goes to other segments
+  // before anything that is still readable.
+  synchronized void invalidate(LogSegment segment) {
+    if (!isEnabled()) {
+      return;
+    }
+    generation++;
+    for (LinkedHashMap<BlockKey, Block> blocks :
+         List.of(probation, protectedBlocks)) {
+      Iterator<Map.Entry<BlockKey, Block>> entries =
+          blocks.entrySet().iterator();
+      while (entries.hasNext()) {
+        Map.Entry<BlockKey, Block> entry = entries.next();
+        if (entry.getKey().segment() == segment) {
+          free.push(entry.getValue().data);
+          entries.remove();
+        }
+      }
+    }
+    updateUsedBytes();
+  }
+  // Must hold the lock.
+  private void updateUsedBytes() {
+    usedBytes = (long)(probation.size() + protectedBlocks.size()) * blockBytes;
+  }
+  public long getHits() { return hits.sum(); }
+  public long getMisses() { return misses.sum(); }
+  public long getEvictions() { return evictions.sum(); }
+  public long getUsedBytes() { return usedBytes; }
+  public long getCapacityBytes() { return (long)maxBlocks * blockBytes; }
+}
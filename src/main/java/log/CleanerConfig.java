@@ -0,0 +1,11 @@
+package log;
+import java.util.concurrent.TimeUnit;
+// Settings for the background log cleaner. dedupeBufferBytes sizes the
+// off-heap offset map, which bounds how many distinct keys one pass can
+// compact; a non-positive ioMaxBytesPerSecond leaves the cleaner unthrottled.
+public record CleanerConfig(int dedupeBufferBytes, double ioMaxBytesPerSecond,
+                            long backoffMs, double minCleanableRatio) {
+  public static final CleanerConfig DEFAULT =
+      new CleanerConfig(128 * 1024 * 1024, -1, TimeUnit.SECONDS.toMillis(15),
+                        0.5);
+}
@@ -0,0 +1,376 @@
+package log;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+import shared.VarInt;
+// Compacts data partitions down to the latest record per key. Each pass
+// picks the partitions whose dirty share, the inactive segments past the
+// cleaner checkpoint, is at least minCleanableRatio, dirtiest first. The
+// dirty segments' keys go into the offset map, and then every inactive
+// segment up to the last one that fit is rewritten without the records a
+// later offset supersedes. Tombstones are kept on their first pass and on
+// later ones until deleteRetentionMs has gone by, so consumers get a chance
+// to see them.
+//
+// Batches are filtered record by record with their offsets and timestamps
+// untouched. Compressed, transactional and control batches are copied
+// whole, and their keys are not tracked.
+class LogCleaner implements Closeable {
+  static final String CLEANED_SUFFIX = ".cleaned";
+  // Offset below which the partition is already clean, persisted in the
+  // partition directory so a restart does not redo the work.
+  static final String CHECKPOINT_FILE = "cleaner-offset-checkpoint";
+  private static final int WRITE_BUFFER_BYTES = 1024 * 1024;
+  private final LogManager manager;
+  private final LogConfig logConfig;
+  private final CleanerConfig config;
+  private final OffsetMap offsetMap;
+  private final Throttler throttler;
+  private final ByteBuffer writeBuffer =
+      ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES);
+  private final Map<TopicPartition, Long> firstDirtyOffsets = new HashMap<>();
+  private final ScheduledExecutorService executor;
+  LogCleaner(LogManager manager, LogConfig logConfig, CleanerConfig config) {
+    this.manager = manager;
+    this.logConfig = logConfig;
+    this.config = config;
+    this.offsetMap = new OffsetMap(config.dedupeBufferBytes());
+    this.throttler = new Throttler(config.ioMaxBytesPerSecond());
+    this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "log-cleaner");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+  void start() {
+    executor.scheduleWithFixedDelay(this::cleanDirtiest, config.backoffMs(),
+                                    config.backoffMs(), TimeUnit.MILLISECONDS);
+  }
+  void cleanDirtiest() {
+    List<PartitionLog> candidates = new ArrayList<>();
+    Map<PartitionLog, Double> ratios = new HashMap<>();
+    for (PartitionLog log : manager.getLogs()) {
+      if (log.getTopicPartition().topic().equals(LogManager.METADATA_TOPIC)) {
+        continue;
+      }
+      double ratio = dirtyRatio(log);
+      if (ratio > 0 && ratio >= config.minCleanableRatio()) {
+        candidates.add(log);
+        ratios.put(log, ratio);
+      }
+    }
+    candidates.sort(Comparator.comparing(ratios::get).reversed());
+    for (PartitionLog log : candidates) {
+      try {
+        clean(log);
+      } catch (IOException e) {
+        System.err.println("Failed to clean " + log.getTopicPartition() +
+                           ": " + e);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+  private double dirtyRatio(PartitionLog log) {
+    long firstDirty = firstDirtyOffset(log);
+    List<LogSegment> segments = List.copyOf(log.getSegments());
+    long clean = 0;
+    long dirty = 0;
+    for (int i = 0; i < segments.size() - 1; i++) {
+      LogSegment segment = segments.get(i);
+      if (segment.getNextOffset() <= firstDirty) {
+        clean += segment.getSize();
+      } else {
+        dirty += segment.getSize();
+      }
+    }
+    return dirty == 0 ? 0 : (double)dirty / (clean + dirty);
+  }
+  void clean(PartitionLog log) throws IOException, InterruptedException {
+    long firstDirty = firstDirtyOffset(log);
+    List<LogSegment> segments = List.copyOf(log.getSegments());
+    if (segments.size() < 2) {
+      return;
+    }
+    List<LogSegment> inactive = segments.subList(0, segments.size() - 1);
+    offsetMap.clear();
+    long endOffset = firstDirty;
+    for (LogSegment segment : inactive) {
+      if (segment.getNextOffset() <= firstDirty) {
+        continue;
+      }
+      if (!buildOffsetMap(segment)) {
+        break;
+      }
+      endOffset = segment.getNextOffset();
+    }
+    if (endOffset == firstDirty) {
+      System.err.println("Dedupe buffer too small to clean a segment of " +
+                         log.getTopicPartition());
+      return;
+    }
+    long deleteHorizon =
+        System.currentTimeMillis() - logConfig.deleteRetentionMs();
+    for (LogSegment segment : inactive) {
+      if (segment.getBaseOffset() >= endOffset) {
+        break;
+      }
+      boolean retainTombstones = segment.getNextOffset() > firstDirty ||
+                                 segment.getLargestTimestamp() > deleteHorizon;
+      cleanSegment(log, segment, retainTombstones);
+    }
+    firstDirtyOffsets.put(log.getTopicPartition(), endOffset);
+    writeCheckpoint(log.getDir(), endOffset);
+  }
+  // Records the latest offset of every key in the segment. Returns false if
+  // the map filled up before the whole segment was read.
+  private boolean buildOffsetMap(LogSegment segment)
+      throws IOException, InterruptedException {
+    long position = 0;
+    ByteBuffer batch;
+    while ((batch = readBatch(segment, position)) != null) {
+      throttler.maybeThrottle(batch.remaining());
+      if (isFilterable(batch)) {
+        RecordCursor records = new RecordCursor(batch);
+        while (records.next()) {
+          if (records.key != null) {
+            if (offsetMap.isFull()) {
+              return false;
+            }
+            offsetMap.put(records.key, records.offset);
+          }
+        }
+      }
+      position += batch.remaining();
+    }
+    return true;
+  }
+  private void cleanSegment(PartitionLog log, LogSegment segment,
+                            boolean retainTombstones)
+      throws IOException, InterruptedException {
+    Path cleaned = segment.getFile().resolveSibling(
+        segment.getFile().getFileName() + CLEANED_SUFFIX);
+    long written;
+    try (FileChannel out =
+             FileChannel.open(cleaned, StandardOpenOption.CREATE,
+                              StandardOpenOption.TRUNCATE_EXISTING,
+                              StandardOpenOption.WRITE)) {
+      writeBuffer.clear();
+      long position = 0;
+      ByteBuffer batch;
+      while ((batch = readBatch(segment, position)) != null) {
+        position += batch.remaining();
+        ByteBuffer retained = filterBatch(batch, retainTombstones);
+        if (retained != null) {
+          throttler.maybeThrottle(retained.remaining());
+          write(out, retained);
+        }
+      }
+      flush(out);
+      out.force(true);
+      written = out.size();
+    } catch (IOException | InterruptedException e) {
+      Files.deleteIfExists(cleaned);
+      throw e;
+    }
+    if (written == 0) {
+      Files.delete(cleaned);
+      if (log.removeSegment(segment)) {
+        retire(segment::delete);
+      }
+    } else if (log.replaceSegment(segment, cleaned)) {
+      retire(segment::close);
+    }
+  }
+  private interface SegmentAction {
+    void run() throws IOException;
+  }
+  // Fetches that already picked the old segment up can finish reading it
+  // first.
+  private void retire(SegmentAction action) {
+    executor.schedule(() -> {
+      try {
+        action.run();
+      } catch (IOException e) {
+        System.err.println("Failed to retire cleaned segment: " + e);
+      }
+    }, logConfig.fileDeleteDelayMs(), TimeUnit.MILLISECONDS);
+  }
+  // The batch at position, or null past the last complete one.
+  private static ByteBuffer readBatch(LogSegment segment, long position)
+      throws IOException {
+    if (position + RecordBatch.HEADER_SIZE > segment.getSize()) {
+      return null;
+    }
+    int batchSize = segment.batchSize(position);
+    if (position + batchSize > segment.getSize()) {
+      return null;
+    }
+    return segment.read(position, batchSize);
+  }
+  private static boolean isFilterable(ByteBuffer batch) {
+    short attributes = batch.getShort(RecordBatch.ATTRIBUTES_OFFSET);
+    return (attributes & (RecordBatch.COMPRESSION_CODEC_MASK |
+                          RecordBatch.TRANSACTIONAL_MASK |
+                          RecordBatch.CONTROL_MASK)) == 0;
+  }
+  // The batch itself if every record survives, null if none does, or else a
+  // copy holding only the survivors with its header rewritten. The base
+  // offset, base timestamp and last offset delta are kept, so the records'
+  // deltas stay valid and the segment's next offset does not move.
+  private ByteBuffer filterBatch(ByteBuffer batch, boolean retainTombstones) {
+    if (!isFilterable(batch)) {
+      return batch;
+    }
+    RecordCursor records = new RecordCursor(batch);
+    ByteBuffer retained = null;
+    int count = 0;
+    int total = 0;
+    long maxTimestamp = RecordBatch.NO_TIMESTAMP;
+    while (records.next()) {
+      total++;
+      boolean keep = records.key == null ||
+                     (records.offset >= offsetMap.get(records.key) &&
+                      (retainTombstones || !records.tombstone));
+      if (keep) {
+        if (retained == null) {
+          retained = ByteBuffer.allocate(batch.remaining());
+          retained.put(batch.duplicate().limit(RecordBatch.HEADER_SIZE));
+        }
+        retained.put(batch.duplicate()
+                         .limit(records.end)
+                         .position(records.start));
+        maxTimestamp = Math.max(maxTimestamp, records.timestamp);
+        count++;
+      }
+    }
+    if (count == total) {
+      return batch;
+    }
+    if (retained == null) {
+      return null;
+    }
+    retained.flip();
+    retained.putInt(RecordBatch.LENGTH_OFFSET,
+                    retained.limit() - RecordBatch.LOG_OVERHEAD);
+    if ((batch.getShort(RecordBatch.ATTRIBUTES_OFFSET) &
+         RecordBatch.TIMESTAMP_TYPE_MASK) == 0) {
+      retained.putLong(RecordBatch.MAX_TIMESTAMP_OFFSET, maxTimestamp);
+    }
+    retained.putInt(RecordBatch.RECORDS_COUNT_OFFSET, count);
+    CRC32C crc = new CRC32C();
+    crc.update(retained.duplicate().position(RecordBatch.ATTRIBUTES_OFFSET));
+    retained.putInt(RecordBatch.CRC_OFFSET, (int)crc.getValue());
+    return retained;
+  }
+  private void write(FileChannel out, ByteBuffer data) throws IOException {
+    if (data.remaining() > writeBuffer.remaining()) {
+      flush(out);
+    }
+    if (data.remaining() > writeBuffer.capacity()) {
+      while (data.hasRemaining()) {
+        out.write(data);
+      }
+    } else {
+      writeBuffer.put(data);
+    }
+  }
+  private void flush(FileChannel out) throws IOException {
+    writeBuffer.flip();
+    while (writeBuffer.hasRemaining()) {
+      out.write(writeBuffer);
+    }
+    writeBuffer.clear();
+  }
+  private long firstDirtyOffset(PartitionLog log) {
+    long checkpoint = firstDirtyOffsets.computeIfAbsent(
+        log.getTopicPartition(), tp -> readCheckpoint(log.getDir()));
+    return Math.max(checkpoint, log.getLogStartOffset());
+  }
+  private static long readCheckpoint(Path dir) {
+    try {
+      return Long.parseLong(
+          Files.readString(dir.resolve(CHECKPOINT_FILE)).trim());
+    } catch (NoSuchFileException e) {
+      return 0;
+    } catch (IOException | NumberFormatException e) {
+      System.err.println("Ignoring unreadable cleaner checkpoint in " + dir +
+                         ": " + e);
+      return 0;
+    }
+  }
+  private static void writeCheckpoint(Path dir, long offset)
+      throws IOException {
+    Path file = dir.resolve(CHECKPOINT_FILE);
+    Path tmp = file.resolveSibling(CHECKPOINT_FILE + ".tmp");
+    Files.writeString(tmp, Long.toString(offset), StandardCharsets.UTF_8);
+    Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE,
+               StandardCopyOption.REPLACE_EXISTING);
+  }
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+  // Walks the records of an uncompressed batch, exposing each one's bytes,
+  // absolute offset and timestamp, key and whether it is a tombstone.
+  private static final class RecordCursor {
+    private final ByteBuffer data;
+    private final long baseOffset;
+    private final long baseTimestamp;
+    private int remaining;
+    int start;
+    int end;
+    long offset;
+    long timestamp;
+    ByteBuffer key;
+    boolean tombstone;
+    RecordCursor(ByteBuffer batch) {
+      this.data = batch.duplicate();
+      this.baseOffset = batch.getLong(batch.position());
+      this.baseTimestamp =
+          batch.getLong(batch.position() + RecordBatch.BASE_TIMESTAMP_OFFSET);
+      this.remaining =
+          batch.getInt(batch.position() + RecordBatch.RECORDS_COUNT_OFFSET);
+      data.position(batch.position() + RecordBatch.HEADER_SIZE);
+    }
+    boolean next() {
+      if (remaining == 0) {
+        return false;
+      }
+      remaining--;
+      start = data.position();
+      int length = VarInt.fromByteBuffer(data).getValue();
+      end = data.position() + length;
+      data.get();
+      timestamp = baseTimestamp + RecordBatch.readVarlong(data);
+      offset = baseOffset + VarInt.fromByteBuffer(data).getValue();
+      int keyLength = VarInt.fromByteBuffer(data).getValue();
+      if (keyLength < 0) {
+        key = null;
+      } else {
+        key = data.slice(data.position(), keyLength);
+        data.position(data.position() + keyLength);
+      }
+      tombstone = VarInt.fromByteBuffer(data).getValue() < 0;
+      data.position(end);
+      return true;
+    }
+  }
+}
@@ -0,0 +1,18 @@
+package log;
+import java.util.concurrent.TimeUnit;
+// Segment rolling, retention and cleanup settings shared by every partition
+// log. A negative retention limit disables that limit. With delete, old
+// segments are dropped by retention; with compact, the cleaner keeps only
+// the latest record per key and tombstones survive deleteRetentionMs.
+//
+// These are broker-wide, cleanup policy included: per-topic overrides
+// would come from ConfigRecords, which the metadata image does not keep.
+public record LogConfig(int segmentBytes, long segmentMs, long retentionBytes,
+                        long retentionMs, long fileDeleteDelayMs,
+                        boolean delete, boolean compact,
+                        long deleteRetentionMs) {
+  public static final LogConfig DEFAULT =
+      new LogConfig(1024 * 1024 * 1024, TimeUnit.DAYS.toMillis(7), -1,
+                    TimeUnit.DAYS.toMillis(7), TimeUnit.MINUTES.toMillis(1),
+                    true, false, TimeUnit.DAYS.toMillis(1));
+}
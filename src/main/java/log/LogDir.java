@@ -0,0 +1,104 @@
+package log;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+// One data directory, usually one disk, with the partitions stored in it
+// and threads of its own: readers for fetches and a flusher. A slow disk
+// then only holds up work on its own partitions.
+public final class LogDir implements Closeable {
+  private final Path path;
+  private final int index;
+  private final Set<PartitionLog> logs = ConcurrentHashMap.newKeySet();
+  private volatile ExecutorService reader;
+  private ScheduledExecutorService flusher;
+  private final LongAdder bytesRead = new LongAdder();
+  private final LongAdder bytesWritten = new LongAdder();
+  private final LongAdder flushes = new LongAdder();
+  private final LongAdder flushTimeNs = new LongAdder();
+  LogDir(Path path, int index) {
+    this.path = path;
+    this.index = index;
+  }
+  public Path getPath() { return path; }
+  void add(PartitionLog log) { logs.add(log); }
+  public Collection<PartitionLog> getLogs() {
+    return Collections.unmodifiableSet(logs);
+  }
+  public int getPartitionCount() { return logs.size(); }
+  public long getSizeBytes() {
+    long size = 0;
+    for (PartitionLog log : logs) {
+      size += log.getSize();
+    }
+    return size;
+  }
+  void startReader(int threads) {
+    AtomicInteger count = new AtomicInteger();
+    reader = Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(
+          runnable, "log-dir-" + index + "-reader-" + count.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+  // Forces what was appended to the dir's partitions to disk every
+  // intervalMs.
+  void startFlusher(long intervalMs) {
+    flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "log-dir-" + index + "-flusher");
+      thread.setDaemon(true);
+      return thread;
+    });
+    flusher.scheduleWithFixedDelay(() -> {
+      for (PartitionLog log : logs) {
+        try {
+          long start = System.nanoTime();
+          if (log.flush() > 0) {
+            flushes.increment();
+            flushTimeNs.add(System.nanoTime() - start);
+          }
+        } catch (IOException e) {
+          System.err.println("Failed to flush " + log.getTopicPartition() +
+                             ": " + e);
+        }
+      }
+    }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+  }
+  // Where reads from the dir run: its reader threads, or the calling thread
+  // before they are started.
+  Executor reader() {
+    ExecutorService reader = this.reader;
+    return reader != null ? reader : Runnable::run;
+  }
+  void recordRead(long bytes) { bytesRead.add(bytes); }
+  public long getBytesRead() { return bytesRead.sum(); }
+  void recordWrite(long bytes) { bytesWritten.add(bytes); }
+  public long getBytesWritten() { return bytesWritten.sum(); }
+  public long getFlushes() { return flushes.sum(); }
+  public long getFlushTimeMs() {
+    return TimeUnit.NANOSECONDS.toMillis(flushTimeNs.sum());
+  }
+  // Reads already queued still run, so every fetch waiting on them
+  // completes: those that reach a segment after it is closed fail with
+  // ClosedChannelException instead of hanging. Later ones are rejected.
+  @Override
+  public void close() {
+    if (reader != null) {
+      reader.shutdown();
+    }
+    if (flusher != null) {
+      flusher.shutdownNow();
+    }
+  }
+}
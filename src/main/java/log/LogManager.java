@@ -0,0 +1,299 @@
+package log;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+public class LogManager implements Closeable {
+  public static final String METADATA_TOPIC = "__cluster_metadata";
+  private final List<Path> logDirs;
+  private final LogConfig config;
+  private final TailCache tailCache;
+  private final BlockCache blockCache;
+  private final Map<TopicPartition, PartitionLog> logs =
+      new ConcurrentHashMap<>();
+  private ScheduledExecutorService retention;
+  private LogCleaner cleaner;
+  private ReadAhead readAhead = ReadAhead.DISABLED;
+  private final Map<Path, LogDir> dirs = new LinkedHashMap<>();
+  public LogManager() { this(List.of(), LogConfig.DEFAULT); }
+  public LogManager(List<Path> logDirs, LogConfig config) {
+    this(logDirs, config, TailCache.DISABLED, BlockCache.DISABLED);
+  }
+  public LogManager(List<Path> logDirs, LogConfig config, TailCache tailCache,
+                    BlockCache blockCache) {
+    this.logDirs = logDirs;
+    this.config = config;
+    this.tailCache = tailCache;
+    this.blockCache = blockCache;
+    for (Path logDir : logDirs) {
+      dirs.putIfAbsent(logDir, new LogDir(logDir, dirs.size()));
+    }
+  }
+  public static LogManager load(List<Path> logDirs, ForkJoinPool pool)
+      throws IOException {
+    return load(logDirs, LogConfig.DEFAULT, pool);
+  }
+  public static LogManager load(List<Path> logDirs, LogConfig config,
+                                ForkJoinPool pool) throws IOException {
+    return load(logDirs, config, TailCache.DISABLED, BlockCache.DISABLED,
+                pool);
+  }
+  // Recovers every partition directory under the given log dirs. Partitions
+  // are independent, so each one is a separate task on the pool.
+  public static LogManager load(List<Path> logDirs, LogConfig config,
+                                TailCache tailCache, BlockCache blockCache,
+                                ForkJoinPool pool) throws IOException {
+    LogManager manager =
+        new LogManager(logDirs, config, tailCache, blockCache);
+    List<Callable<PartitionLog>> tasks = new ArrayList<>();
+    for (Path logDir : logDirs) {
+      try (Stream<Path> listing = Files.list(logDir)) {
+        listing.filter(Files::isDirectory)
+            .forEach(dir -> tasks.add(() -> PartitionLog.load(
+                                          dir, config, tailCache, blockCache)));
+      }
+    }
+    for (Future<PartitionLog> future : pool.invokeAll(tasks)) {
+      try {
+        PartitionLog log = future.get();
+        PartitionLog existing =
+            manager.logs.putIfAbsent(log.getTopicPartition(), log);
+        if (existing != null) {
+          System.err.println("Partition " + log.getTopicPartition() +
+                             " found in both " + existing.getDir() + " and " +
+                             log.getDir() + ", ignoring the latter");
+          log.close();
+        } else {
+          manager.dirOf(log).add(log);
+        }
+      } catch (ExecutionException e) {
+        System.err.println("Failed to load partition: " + e.getCause());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException(e);
+      }
+    }
+    return manager;
+  }
+  public Optional<PartitionLog> getLog(TopicPartition topicPartition) {
+    return Optional.ofNullable(logs.get(topicPartition));
+  }
+  // Also picks up partition directories created after startup.
+  public Optional<PartitionLog> getOrLoadLog(TopicPartition topicPartition) {
+    PartitionLog log = logs.get(topicPartition);
+    if (log != null) {
+      return Optional.of(log);
+    }
+    for (Path logDir : logDirs) {
+      Path dir = logDir.resolve(topicPartition.toString());
+      if (Files.isDirectory(dir)) {
+        try {
+          return Optional.of(logs.computeIfAbsent(topicPartition, key -> {
+            try {
+              PartitionLog loaded =
+                  PartitionLog.load(dir, config, tailCache, blockCache);
+              dirs.get(logDir).add(loaded);
+              return loaded;
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          }));
+        } catch (UncheckedIOException e) {
+          System.err.println("Failed to load partition " + topicPartition +
+                             ": " + e.getCause());
+          return Optional.empty();
+        }
+      }
+    }
+    return Optional.empty();
+  }
+  // Gives each partition that has no log yet an empty one, in the log dir
+  // least loaded at the time: the one with the smallest sum of its shares
+  // of the broker's partitions and of its bytes. Partitions whose directory
+  // exists but was not loaded yet are only loaded.
+  public synchronized void createLogs(Collection<TopicPartition> partitions) {
+    if (dirs.isEmpty()) {
+      return;
+    }
+    List<LogDir> candidates = new ArrayList<>(dirs.values());
+    int[] counts = new int[candidates.size()];
+    long[] bytes = new long[candidates.size()];
+    for (int i = 0; i < candidates.size(); i++) {
+      counts[i] = candidates.get(i).getPartitionCount();
+      bytes[i] = candidates.get(i).getSizeBytes();
+    }
+    long totalCount = Arrays.stream(counts).sum();
+    long totalBytes = Arrays.stream(bytes).sum();
+    for (TopicPartition topicPartition : partitions) {
+      if (getOrLoadLog(topicPartition).isPresent()) {
+        continue;
+      }
+      int target = 0;
+      double lowest = Double.MAX_VALUE;
+      for (int i = 0; i < candidates.size(); i++) {
+        double load = (double)counts[i] / Math.max(totalCount, 1) +
+                      (double)bytes[i] / Math.max(totalBytes, 1);
+        if (load < lowest) {
+          lowest = load;
+          target = i;
+        }
+      }
+      LogDir logDir = candidates.get(target);
+      Path dir = logDir.getPath().resolve(topicPartition.toString());
+      try {
+        // A fetch may load the directory as soon as it exists.
+        logs.computeIfAbsent(topicPartition, key -> {
+          try {
+            Files.createDirectories(dir);
+            PartitionLog created =
+                PartitionLog.load(dir, config, tailCache, blockCache);
+            logDir.add(created);
+            return created;
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+        counts[target]++;
+        totalCount++;
+      } catch (UncheckedIOException e) {
+        System.err.println("Failed to create partition " + topicPartition +
+                           " in " + logDir.getPath() + ": " + e.getCause());
+      }
+    }
+  }
+  // Appends to the log and counts the bytes against its log dir.
+  public long append(PartitionLog log, ByteBuffer batches)
+      throws IOException {
+    int bytes = batches.remaining();
+    long baseOffset = log.append(batches);
+    dirOf(log).recordWrite(bytes);
+    return baseOffset;
+  }
+  public Optional<PartitionLog> getMetadataLog() {
+    return getLog(new TopicPartition(METADATA_TOPIC, 0));
+  }
+  public Collection<PartitionLog> getLogs() { return logs.values(); }
+  public BlockCache getBlockCache() { return blockCache; }
+  public ReadAhead getReadAhead() { return readAhead; }
+  // Checks every data partition against the retention limits on a
+  // background thread. The metadata log is never trimmed here, and nothing
+  // is when the cleanup policy leaves out delete.
+  public void startRetention(long checkIntervalMs) {
+    if (!config.delete()) {
+      return;
+    }
+    retention = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "log-retention");
+      thread.setDaemon(true);
+      return thread;
+    });
+    retention.scheduleWithFixedDelay(this::enforceRetention, checkIntervalMs,
+                                     checkIntervalMs, TimeUnit.MILLISECONDS);
+  }
+  private void enforceRetention() {
+    long now = System.currentTimeMillis();
+    for (PartitionLog log : logs.values()) {
+      if (log.getTopicPartition().topic().equals(METADATA_TOPIC)) {
+        continue;
+      }
+      try {
+        for (LogSegment segment : log.removeExpiredSegments(now)) {
+          segment.markDeleted();
+          // Fetches that already picked the segment up can finish reading
+          // it before the file goes away.
+          retention.schedule(() -> deleteSegment(segment),
+                             config.fileDeleteDelayMs(),
+                             TimeUnit.MILLISECONDS);
+        }
+      } catch (IOException e) {
+        System.err.println("Failed to enforce retention on " +
+                           log.getTopicPartition() + ": " + e);
+      }
+    }
+  }
+  // Compacts data partitions on a background thread when the cleanup policy
+  // includes compact.
+  public void startCleaner(CleanerConfig cleanerConfig) {
+    if (config.compact()) {
+      cleaner = new LogCleaner(this, config, cleanerConfig);
+      cleaner.start();
+    }
+  }
+  public Collection<LogDir> getLogDirs() { return dirs.values(); }
+  public LogDir dirOf(PartitionLog log) {
+    return dirs.get(log.getDir().getParent());
+  }
+  // Gives every log dir its own threads for fetch reads, so a slow disk only
+  // holds up the fetches that read from it.
+  public void startReaders(int threadsPerDir) {
+    for (LogDir dir : dirs.values()) {
+      dir.startReader(threadsPerDir);
+    }
+  }
+  // Flushes each log dir's partitions from a thread of its own every
+  // intervalMs; with none given, flushing is left to the OS.
+  public void startFlushers(long intervalMs) {
+    if (intervalMs <= 0 || intervalMs == Long.MAX_VALUE) {
+      return;
+    }
+    for (LogDir dir : dirs.values()) {
+      dir.startFlusher(intervalMs);
+    }
+  }
+  // Where reads from the log run: its dir's reader threads, or the calling
+  // thread before they are started.
+  public Executor readerFor(PartitionLog log) {
+    return dirOf(log).reader();
+  }
+  // Prefetches segment data ahead of consumers reading sequentially, in
+  // windows of windowBytes with at most maxInFlight at once.
+  public void startReadAhead(int windowBytes, int maxInFlight) {
+    readAhead = new ReadAhead(windowBytes, maxInFlight);
+  }
+  static void deleteSegment(LogSegment segment) {
+    try {
+      segment.delete();
+    } catch (IOException e) {
+      System.err.println("Failed to delete " + segment.getFile() + ": " + e);
+    }
+  }
+  @Override
+  public void close() throws IOException {
+    if (retention != null) {
+      retention.shutdownNow();
+    }
+    if (cleaner != null) {
+      cleaner.close();
+    }
+    readAhead.close();
+    for (LogDir dir : dirs.values()) {
+      dir.close();
+    }
+    for (PartitionLog log : logs.values()) {
+      try {
+        log.close();
+      } catch (IOException e) {
+        System.err.println("IOException: " + Arrays.toString(e.getStackTrace()));
+      }
+    }
+  }
+}
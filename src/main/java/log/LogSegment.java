@@ -0,0 +1,387 @@
+package log;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import jfr.FlushEvent;
+import jfr.IndexLookupEvent;
+import jfr.SegmentAppendEvent;
+import jfr.SegmentReadEvent;
+public class LogSegment implements Closeable {
+  public static final String LOG_SUFFIX = ".log";
+  public static final String DELETED_SUFFIX = ".deleted";
+  // Recovery reads the batch headers through a buffer of this size.
+  private static final int RECOVERY_CHUNK_BYTES = 64 * 1024;
+  private record Recovered(long size, long nextOffset) {}
+  private final TopicPartition topicPartition;
+  private final long baseOffset;
+  private volatile Path file;
+  private final FileChannel channel;
+  // Opened on the first append.
+  private volatile FileChannel writer;
+  private final SegmentIndex index;
+  private final BlockCache blockCache;
+  private volatile long size;
+  private volatile long nextOffset;
+  // Appended since the last flush.
+  private final AtomicLong unflushedBytes = new AtomicLong();
+  private LogSegment(TopicPartition topicPartition, long baseOffset, Path file,
+                     FileChannel channel, SegmentIndex index,
+                     BlockCache blockCache, long size, long nextOffset) {
+    this.topicPartition = topicPartition;
+    this.baseOffset = baseOffset;
+    this.file = file;
+    this.channel = channel;
+    this.index = index;
+    this.blockCache = blockCache;
+    this.size = size;
+    this.nextOffset = nextOffset;
+  }
+  // Recovers the segment by walking its batch headers: a torn batch at the
+  // tail is excluded from the readable size, and the index is rebuilt from
+  // the rest.
+  public static LogSegment open(TopicPartition topicPartition, Path file)
+      throws IOException {
+    return open(topicPartition, file, BlockCache.DISABLED);
+  }
+  public static LogSegment open(TopicPartition topicPartition, Path file,
+                                BlockCache blockCache) throws IOException {
+    long baseOffset = baseOffset(file);
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+    try {
+      SegmentIndex index = new SegmentIndex();
+      Recovered recovered = recover(channel, index);
+      return new LogSegment(topicPartition, baseOffset, file, channel, index,
+                            blockCache, recovered.size(),
+                            Math.max(baseOffset, recovered.nextOffset()));
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+  // Walks the headers a chunk at a time through the channel, skipping over
+  // batch bodies, so the heap used does not grow with the segment and no
+  // mapping is left behind for the GC to unmap.
+  private static Recovered recover(FileChannel channel, SegmentIndex index)
+      throws IOException {
+    long nextOffset = 0;
+    long fileSize = channel.size();
+    ByteBuffer chunk = ByteBuffer.allocate(RECOVERY_CHUNK_BYTES).limit(0);
+    long chunkStart = 0;
+    long position = 0;
+    while (position + RecordBatch.HEADER_SIZE <= fileSize) {
+      int offset = (int)(position - chunkStart);
+      if (offset + RecordBatch.HEADER_SIZE > chunk.limit()) {
+        chunkStart = position;
+        offset = 0;
+        chunk.clear().limit(
+            (int)Math.min(chunk.capacity(), fileSize - position));
+        while (chunk.hasRemaining()) {
+          if (channel.read(chunk, position + chunk.position()) < 0) {
+            throw new EOFException("Segment shrank while being recovered");
+          }
+        }
+      }
+      int batchSize = RecordBatch.LOG_OVERHEAD +
+                      chunk.getInt(offset + RecordBatch.LENGTH_OFFSET);
+      if (batchSize < RecordBatch.HEADER_SIZE ||
+          position + batchSize > fileSize) {
+        break;
+      }
+      index.appendBatch(chunk, offset, (int)position);
+      nextOffset =
+          chunk.getLong(offset) +
+          chunk.getInt(offset + RecordBatch.LAST_OFFSET_DELTA_OFFSET) + 1;
+      position += batchSize;
+    }
+    return new Recovered(position, nextOffset);
+  }
+  // An empty segment for appends, named after the offset it starts at.
+  public static LogSegment create(TopicPartition topicPartition, Path dir,
+                                  long baseOffset, BlockCache blockCache)
+      throws IOException {
+    Path file = dir.resolve(String.format("%020d", baseOffset) + LOG_SUFFIX);
+    FileChannel channel =
+        FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                         StandardOpenOption.READ, StandardOpenOption.WRITE);
+    LogSegment segment = new LogSegment(topicPartition, baseOffset, file,
+                                        channel, new SegmentIndex(),
+                                        blockCache, 0, baseOffset);
+    segment.writer = channel;
+    return segment;
+  }
+  public static long baseOffset(Path file) {
+    String name = file.getFileName().toString();
+    return Long.parseLong(
+        name.substring(0, name.length() - LOG_SUFFIX.length()));
+  }
+  public long getBaseOffset() { return baseOffset; }
+  public Path getFile() { return file; }
+  public long getSize() { return size; }
+  public long getNextOffset() { return nextOffset; }
+  // Picks up complete batches appended to the file since it was opened or
+  // last refreshed, and returns them.
+  public synchronized ByteBuffer refresh() throws IOException {
+    long fileSize = channel.size();
+    if (fileSize <= size) {
+      return ByteBuffer.allocate(0);
+    }
+    // Read onto the heap: the batches are handed on to the tail cache.
+    ByteBuffer tail = ByteBuffer.allocate((int)(fileSize - size));
+    while (tail.hasRemaining()) {
+      if (channel.read(tail, size + tail.position()) < 0) {
+        break;
+      }
+    }
+    tail.flip();
+    int valid = RecordBatch.validBytes(tail);
+    if (valid > 0) {
+      SegmentAppendEvent event = new SegmentAppendEvent();
+      event.begin();
+      index.append(tail.limit(valid), (int)size);
+      nextOffset = RecordBatch.nextOffset(tail);
+      if (event.shouldCommit()) {
+        event.topic = topicPartition.topic();
+        event.partition = topicPartition.partition();
+        event.segment = file.getFileName().toString();
+        event.baseOffset = tail.getLong(0);
+        event.bytes = valid;
+        event.commit();
+      }
+      size += valid;
+    }
+    return tail.limit(valid);
+  }
+  // Writes whole batches, whose offsets the caller has already assigned, to
+  // the end of the segment.
+  public synchronized void append(ByteBuffer batches) throws IOException {
+    SegmentAppendEvent event = new SegmentAppendEvent();
+    event.begin();
+    if (writer == null) {
+      writer = FileChannel.open(file, StandardOpenOption.WRITE);
+      // Drop any torn batch that recovery left past the readable size.
+      writer.truncate(size);
+    }
+    ByteBuffer data = batches.duplicate();
+    int bytes = data.remaining();
+    long position = size;
+    while (data.hasRemaining()) {
+      position += writer.write(data, position);
+    }
+    index.append(batches.duplicate(), (int)size);
+    nextOffset = RecordBatch.nextOffset(batches);
+    size += bytes;
+    unflushedBytes.addAndGet(bytes);
+    if (event.shouldCommit()) {
+      event.topic = topicPartition.topic();
+      event.partition = topicPartition.partition();
+      event.segment = file.getFileName().toString();
+      event.baseOffset = batches.getLong(batches.position());
+      event.bytes = bytes;
+      event.commit();
+    }
+  }
+  // Forces appended data to disk and returns how many bytes that was, 0 if
+  // there were none. Appends go on while the data is forced.
+  public long flush() throws IOException {
+    long bytes = unflushedBytes.getAndSet(0);
+    if (bytes == 0) {
+      return 0;
+    }
+    FlushEvent event = new FlushEvent();
+    event.begin();
+    try {
+      writer.force(false);
+    } catch (IOException e) {
+      // Still unflushed, so the next flush tries again.
+      unflushedBytes.addAndGet(bytes);
+      throw e;
+    }
+    if (event.shouldCommit()) {
+      event.topic = topicPartition.topic();
+      event.partition = topicPartition.partition();
+      event.segment = file.getFileName().toString();
+      event.bytes = bytes;
+      event.commit();
+    }
+    return bytes;
+  }
+  public long getMaxTimestamp() { return index.getMaxTimestamp().timestamp(); }
+  // The first batch's max timestamp, which segment.ms rolling counts from.
+  public long getFirstBatchTimestamp() { return index.getFirstTimestamp(); }
+  // What retention.ms is measured against: the largest record timestamp, or
+  // the file's modification time when the batches carry none.
+  public long getLargestTimestamp() throws IOException {
+    long max = getMaxTimestamp();
+    return max >= 0 ? max : Files.getLastModifiedTime(file).toMillis();
+  }
+  // The first record with a timestamp >= target, or null if the segment has
+  // none.
+  public TimestampAndOffset findOffsetByTimestamp(long target)
+      throws IOException {
+    IndexLookupEvent event = new IndexLookupEvent();
+    event.begin();
+    int position = index.lookupTimestamp(target);
+    TimestampAndOffset result = null;
+    ByteBuffer header = ByteBuffer.allocate(RecordBatch.HEADER_SIZE);
+    while (position >= 0 && position + RecordBatch.HEADER_SIZE <= size) {
+      readFully(header.clear(), position);
+      int batchSize = RecordBatch.LOG_OVERHEAD +
+                      header.getInt(RecordBatch.LENGTH_OFFSET);
+      if (header.getLong(RecordBatch.MAX_TIMESTAMP_OFFSET) >= target) {
+        result = RecordBatch.findTimestamp(read(position, batchSize), target);
+        break;
+      }
+      position += batchSize;
+    }
+    if (event.shouldCommit()) {
+      event.topic = topicPartition.topic();
+      event.partition = topicPartition.partition();
+      event.index = "time";
+      event.target = target;
+      event.resultOffset = result != null ? result.offset() : -1;
+      event.resultPosition = result != null ? position : -1;
+      event.commit();
+    }
+    return result;
+  }
+  // Position of the batch holding startOffset, or -1 if the segment holds
+  // nothing at or past it.
+  long findBatch(long startOffset) throws IOException {
+    IndexLookupEvent event = new IndexLookupEvent();
+    event.begin();
+    long end = size;
+    long position = index.lookupOffset(startOffset);
+    ByteBuffer header = ByteBuffer.allocate(RecordBatch.HEADER_SIZE);
+    long found = -1;
+    while (position + RecordBatch.HEADER_SIZE <= end) {
+      readFully(header.clear(), position);
+      if (header.getLong(0) +
+              header.getInt(RecordBatch.LAST_OFFSET_DELTA_OFFSET) >=
+          startOffset) {
+        found = position;
+        break;
+      }
+      position += RecordBatch.LOG_OVERHEAD +
+                  header.getInt(RecordBatch.LENGTH_OFFSET);
+    }
+    if (event.shouldCommit()) {
+      event.topic = topicPartition.topic();
+      event.partition = topicPartition.partition();
+      event.index = "offset";
+      event.target = startOffset;
+      event.resultOffset = found >= 0 ? header.getLong(0) : -1;
+      event.resultPosition = found;
+      event.commit();
+    }
+    return found;
+  }
+  // The first record carrying the segment's largest timestamp, or null for
+  // an empty segment.
+  public TimestampAndOffset findMaxTimestamp() throws IOException {
+    SegmentIndex.MaxTimestamp max = index.getMaxTimestamp();
+    if (max.position() < 0) {
+      return null;
+    }
+    ByteBuffer header = ByteBuffer.allocate(RecordBatch.HEADER_SIZE);
+    readFully(header, max.position());
+    int batchSize =
+        RecordBatch.LOG_OVERHEAD + header.getInt(RecordBatch.LENGTH_OFFSET);
+    return RecordBatch.findTimestamp(read(max.position(), batchSize),
+                                     max.timestamp());
+  }
+  // Size of the batch at position, header included.
+  int batchSize(long position) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(RecordBatch.LOG_OVERHEAD);
+    readFully(header, position);
+    return RecordBatch.LOG_OVERHEAD + header.getInt(RecordBatch.LENGTH_OFFSET);
+  }
+  // Reads a batch header. It goes through the cache as a probe, so walking
+  // the headers to find a batch does not count as reading its block.
+  private void readFully(ByteBuffer buffer, long position) throws IOException {
+    if (readAt(buffer, position, true) < 0) {
+      throw new EOFException("Unexpected end of segment " + file);
+    }
+  }
+  // Fills the buffer from position on, through the block cache for whole
+  // blocks below the readable size and from the file for the rest. Returns
+  // -1 if the file ended first.
+  private int readAt(ByteBuffer buffer, long position, boolean probe)
+      throws IOException {
+    int start = buffer.position();
+    while (buffer.hasRemaining()) {
+      long at = position + buffer.position() - start;
+      int blockBytes = blockCache.getBlockBytes();
+      int read =
+          blockCache.isEnabled() && (at / blockBytes + 1) * blockBytes <= size
+              ? blockCache.read(this, channel, at, buffer, probe)
+              : channel.read(buffer, at);
+      if (read < 0) {
+        return -1;
+      }
+    }
+    return buffer.position() - start;
+  }
+  public ByteBuffer read(long position, int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    read(buffer, position);
+    return buffer.flip();
+  }
+  // Fills the buffer from position on, stopping early only at end of file.
+  void read(ByteBuffer buffer, long position) throws IOException {
+    SegmentReadEvent event = new SegmentReadEvent();
+    event.begin();
+    int start = buffer.position();
+    readAt(buffer, position, false);
+    if (event.shouldCommit()) {
+      event.topic = topicPartition.topic();
+      event.partition = topicPartition.partition();
+      event.segment = file.getFileName().toString();
+      event.position = position;
+      event.bytes = buffer.position() - start;
+      event.commit();
+    }
+  }
+  // Reads up to length bytes from position on into scratch, a chunk at a
+  // time, and drops them: the point is to have them in the page cache.
+  // Returns how many bytes were read.
+  long prefetch(long position, long length, ByteBuffer scratch)
+      throws IOException {
+    long start = position;
+    long end = Math.min(position + length, size);
+    while (position < end) {
+      scratch.clear().limit((int)Math.min(scratch.capacity(), end - position));
+      int read = channel.read(scratch, position);
+      if (read < 0) {
+        break;
+      }
+      position += read;
+    }
+    return position - start;
+  }
+  public ByteBuffer readAll() throws IOException { return read(0, (int)size); }
+  @Override
+  public void close() throws IOException {
+    blockCache.invalidate(this);
+    channel.close();
+    if (writer != null && writer != channel) {
+      writer.close();
+    }
+  }
+  // Renames the file out of the way so a restart does not load it again;
+  // reads through the open channel keep working until delete().
+  public void markDeleted() throws IOException {
+    Path deleted = file.resolveSibling(file.getFileName() + DELETED_SUFFIX);
+    Files.move(file, deleted);
+    file = deleted;
+  }
+  public void delete() throws IOException {
+    close();
+    Files.deleteIfExists(file);
+  }
+}
@@ -0,0 +1,77 @@
+package log;
+import java.nio.ByteBuffer;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+// Fixed-size open-addressing map from a key's MD5 to the latest offset seen
+// for it, kept off-heap so a large dedupe buffer costs no GC work. Each slot
+// is the 16-byte digest followed by offset + 1, so an all-zero slot is
+// empty. Keys are never removed; the map is cleared between passes.
+//
+// The table is a direct ByteBuffer rather than a MemorySegment: its size is
+// an int like log.cleaner.dedupe.buffer.size, so ByteBuffer's 2 GiB limit
+// never binds, and it stays on the same API as the log's other off-heap
+// buffers.
+class OffsetMap {
+  private static final int HASH_SIZE = 16;
+  private static final int SLOT_SIZE = HASH_SIZE + 8;
+  private static final double MAX_LOAD_FACTOR = 0.9;
+  private final ByteBuffer slots;
+  private final int slotCount;
+  private final int maxEntries;
+  private final MessageDigest digest;
+  private final byte[] hash = new byte[HASH_SIZE];
+  private final ByteBuffer hashBuffer = ByteBuffer.wrap(hash);
+  private int entries;
+  OffsetMap(int memoryBytes) {
+    this.slotCount = Math.max(1, memoryBytes / SLOT_SIZE);
+    this.slots = ByteBuffer.allocateDirect(slotCount * SLOT_SIZE);
+    this.maxEntries = (int)(slotCount * MAX_LOAD_FACTOR);
+    try {
+      this.digest = MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+  boolean isFull() { return entries >= maxEntries; }
+  void put(ByteBuffer key, long offset) {
+    int slot = find(key);
+    int base = slot * SLOT_SIZE;
+    if (slots.getLong(base + HASH_SIZE) == 0) {
+      slots.put(base, hash);
+      entries++;
+    }
+    slots.putLong(base + HASH_SIZE, offset + 1);
+  }
+  // The latest offset for the key, or -1 if it was never put.
+  long get(ByteBuffer key) {
+    return slots.getLong(find(key) * SLOT_SIZE + HASH_SIZE) - 1;
+  }
+  void clear() {
+    for (int i = 0; i < slotCount * SLOT_SIZE; i += 8) {
+      slots.putLong(i, 0);
+    }
+    entries = 0;
+  }
+  // Hashes the key into `hash` and returns the slot that holds it, or the
+  // empty slot where it belongs. The map is never full, so probing ends.
+  private int find(ByteBuffer key) {
+    digest.update(key.duplicate());
+    try {
+      digest.digest(hash, 0, HASH_SIZE);
+    } catch (DigestException e) {
+      throw new IllegalStateException(e);
+    }
+    long high = hashBuffer.getLong(0);
+    long low = hashBuffer.getLong(8);
+    int slot = (int)Long.remainderUnsigned(high, slotCount);
+    while (true) {
+      int base = slot * SLOT_SIZE;
+      if (slots.getLong(base + HASH_SIZE) == 0 ||
+          (slots.getLong(base) == high && slots.getLong(base + 8) == low)) {
+        return slot;
+      }
+      slot = slot + 1 == slotCount ? 0 : slot + 1;
+    }
+  }
+}
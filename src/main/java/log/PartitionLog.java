@@ -0,0 +1,316 @@
+package log;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+public class PartitionLog implements Closeable {
+  private final TopicPartition topicPartition;
+  private final Path dir;
+  private final LogConfig config;
+  private final List<LogSegment> segments;
+  private final TailCache tailCache;
+  private final BlockCache blockCache;
+  private PartitionLog(TopicPartition topicPartition, Path dir,
+                       LogConfig config, List<LogSegment> segments,
+                       TailCache tailCache, BlockCache blockCache) {
+    this.topicPartition = topicPartition;
+    this.dir = dir;
+    this.config = config;
+    this.segments = segments;
+    this.tailCache = tailCache;
+    this.blockCache = blockCache;
+  }
+  public static PartitionLog load(Path dir, LogConfig config)
+      throws IOException {
+    return load(dir, config, TailCache.DISABLED, BlockCache.DISABLED);
+  }
+  public static PartitionLog load(Path dir, LogConfig config,
+                                  TailCache tailCache, BlockCache blockCache)
+      throws IOException {
+    TopicPartition topicPartition =
+        TopicPartition.fromDirectoryName(dir.getFileName().toString());
+    deleteLeftovers(dir);
+    List<Path> files = listSegmentFiles(dir);
+    List<LogSegment> segments = new ArrayList<>(files.size());
+    try {
+      for (Path file : files) {
+        segments.add(LogSegment.open(topicPartition, file, blockCache));
+      }
+    } catch (IOException | RuntimeException e) {
+      for (LogSegment segment : segments) {
+        segment.close();
+      }
+      throw e;
+    }
+    segments.sort(Comparator.comparingLong(LogSegment::getBaseOffset));
+    return new PartitionLog(topicPartition, dir, config,
+                            new CopyOnWriteArrayList<>(segments), tailCache,
+                            blockCache);
+  }
+  // Segments retention had renamed but not yet deleted, and cleaner output
+  // not yet swapped in, when the broker stopped.
+  private static void deleteLeftovers(Path dir) throws IOException {
+    try (Stream<Path> listing = Files.list(dir)) {
+      for (Path path : listing
+                           .filter(file -> {
+                             String name = file.getFileName().toString();
+                             return name.endsWith(LogSegment.DELETED_SUFFIX) ||
+                                 name.endsWith(LogCleaner.CLEANED_SUFFIX);
+                           })
+                           .toList()) {
+        Files.deleteIfExists(path);
+      }
+    }
+  }
+  private static List<Path> listSegmentFiles(Path dir) throws IOException {
+    try (Stream<Path> listing = Files.list(dir)) {
+      return listing.filter(Files::isRegularFile)
+          .filter(path
+                  -> path.getFileName().toString().endsWith(
+                      LogSegment.LOG_SUFFIX))
+          .toList();
+    }
+  }
+  // Picks up batches appended to the active segment and segments rolled by
+  // another writer since the log was loaded.
+  public synchronized void refresh() throws IOException {
+    long lastBaseOffset = -1;
+    if (!segments.isEmpty()) {
+      LogSegment active = segments.get(segments.size() - 1);
+      tailCache.append(topicPartition, active.refresh());
+      lastBaseOffset = active.getBaseOffset();
+    }
+    List<LogSegment> rolled = new ArrayList<>();
+    try {
+      for (Path file : listSegmentFiles(dir)) {
+        if (LogSegment.baseOffset(file) > lastBaseOffset) {
+          rolled.add(LogSegment.open(topicPartition, file, blockCache));
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      for (LogSegment segment : rolled) {
+        segment.close();
+      }
+      throw e;
+    }
+    rolled.sort(Comparator.comparingLong(LogSegment::getBaseOffset));
+    segments.addAll(rolled);
+  }
+  // Appends whole batches, rewriting their base offsets to continue from the
+  // log end offset, and returns the first offset assigned. A new segment is
+  // rolled first when the active one would outgrow segmentBytes or its first
+  // batch is older than segmentMs.
+  public synchronized long append(ByteBuffer batches) throws IOException {
+    if (!batches.hasRemaining()) {
+      throw new IllegalArgumentException("No record batches");
+    }
+    long firstOffset = getLogEndOffset();
+    long offset = firstOffset;
+    int pos = batches.position();
+    while (pos < batches.limit()) {
+      if (pos + RecordBatch.HEADER_SIZE > batches.limit()) {
+        throw new IllegalArgumentException("Truncated record batch header");
+      }
+      int batchSize = RecordBatch.LOG_OVERHEAD +
+                      batches.getInt(pos + RecordBatch.LENGTH_OFFSET);
+      if (batchSize < RecordBatch.HEADER_SIZE ||
+          pos + batchSize > batches.limit()) {
+        throw new IllegalArgumentException("Truncated record batch");
+      }
+      if (batches.get(pos + RecordBatch.MAGIC_OFFSET) != RecordBatch.MAGIC) {
+        throw new IllegalArgumentException("Unsupported record batch magic");
+      }
+      batches.putLong(pos, offset);
+      offset += batches.getInt(pos + RecordBatch.LAST_OFFSET_DELTA_OFFSET) + 1;
+      pos += batchSize;
+    }
+    LogSegment active =
+        segments.isEmpty() ? null : segments.get(segments.size() - 1);
+    if (active == null || shouldRoll(active, batches.remaining())) {
+      active =
+          LogSegment.create(topicPartition, dir, firstOffset, blockCache);
+      segments.add(active);
+    }
+    active.append(batches);
+    tailCache.append(topicPartition, batches);
+    return firstOffset;
+  }
+  private boolean shouldRoll(LogSegment active, int bytes) {
+    if (active.getSize() == 0) {
+      return false;
+    }
+    long first = active.getFirstBatchTimestamp();
+    return active.getSize() + bytes > config.segmentBytes() ||
+        (first >= 0 &&
+         System.currentTimeMillis() - first >= config.segmentMs());
+  }
+  // Drops the oldest segments that are past retentionMs or that retentionBytes
+  // no longer has room for, which advances the log start offset, and returns
+  // them for the caller to delete. The active segment is always kept.
+  public synchronized List<LogSegment> removeExpiredSegments(long now)
+      throws IOException {
+    List<LogSegment> removed = new ArrayList<>();
+    long size = getSize();
+    for (int i = 0; i < segments.size() - 1; i++) {
+      LogSegment segment = segments.get(i);
+      boolean expired =
+          config.retentionMs() >= 0 &&
+          now - segment.getLargestTimestamp() > config.retentionMs();
+      boolean oversized = config.retentionBytes() >= 0 &&
+                          size - segment.getSize() >= config.retentionBytes();
+      if (!expired && !oversized) {
+        break;
+      }
+      removed.add(segment);
+      size -= segment.getSize();
+    }
+    segments.removeAll(removed);
+    return removed;
+  }
+  // Swaps the cleaner's rewrite of an inactive segment in under the same
+  // name. The rename is atomic, so a crash leaves either the old or the new
+  // file, and the old segment's channel keeps reading the replaced file
+  // until the caller closes it. Returns false, discarding the rewrite, if
+  // retention removed the segment in the meantime.
+  synchronized boolean replaceSegment(LogSegment segment, Path cleaned)
+      throws IOException {
+    int index = segments.indexOf(segment);
+    if (index < 0 || index == segments.size() - 1) {
+      Files.deleteIfExists(cleaned);
+      return false;
+    }
+    Files.move(cleaned, segment.getFile(), StandardCopyOption.ATOMIC_MOVE,
+               StandardCopyOption.REPLACE_EXISTING);
+    segments.set(index,
+                 LogSegment.open(topicPartition, segment.getFile(), blockCache));
+    tailCache.invalidate(topicPartition);
+    return true;
+  }
+  // Drops an inactive segment the cleaner left nothing of and renames its
+  // file out of the way; the caller deletes it once reads are done.
+  synchronized boolean removeSegment(LogSegment segment) throws IOException {
+    int index = segments.indexOf(segment);
+    if (index < 0 || index == segments.size() - 1) {
+      return false;
+    }
+    segment.markDeleted();
+    segments.remove(index);
+    tailCache.invalidate(topicPartition);
+    return true;
+  }
+  // Batches from the one holding fetchOffset on, served from the tail cache,
+  // or null if its window does not cover fetchOffset.
+  ByteBuffer readTail(long fetchOffset, int maxBytes, boolean minOneBatch) {
+    return tailCache.read(topicPartition, fetchOffset, maxBytes, minOneBatch);
+  }
+  // Offers batches read from a segment to the tail cache, which takes them
+  // if they run up to the log end offset.
+  void offerTail(ByteBuffer batches) {
+    if (batches.hasRemaining() &&
+        RecordBatch.nextOffset(batches) == getLogEndOffset()) {
+      tailCache.append(topicPartition, batches);
+    }
+  }
+  // The segment a read from fetchOffset starts in: the last one starting at
+  // or before it, or a later one if that holds nothing at or after it, as
+  // when compaction emptied its tail. Null at the log end.
+  LogSegment segmentFor(long fetchOffset) {
+    LogSegment[] all = segments.toArray(new LogSegment[0]);
+    int low = 0;
+    int high = all.length - 1;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (all[mid].getBaseOffset() <= fetchOffset) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    for (int i = low; i < all.length; i++) {
+      if (all[i].getNextOffset() > fetchOffset) {
+        return all[i];
+      }
+    }
+    return null;
+  }
+  // The segment following the given one, or null if it is the active one.
+  public LogSegment nextSegment(LogSegment segment) {
+    int index = segments.indexOf(segment);
+    return index >= 0 && index + 1 < segments.size() ? segments.get(index + 1)
+                                                     : null;
+  }
+  // The first record with a timestamp >= target, or null. Segments are
+  // rolled in time order, so their largest timestamps are searched as if
+  // sorted; a segment that turns out to hold nothing that late falls
+  // through to the next.
+  public TimestampAndOffset findOffsetByTimestamp(long target)
+      throws IOException {
+    LogSegment[] all = segments.toArray(new LogSegment[0]);
+    int low = 0;
+    int high = all.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (all[mid].getMaxTimestamp() < target) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    for (int i = low; i < all.length; i++) {
+      TimestampAndOffset result = all[i].findOffsetByTimestamp(target);
+      if (result != null) {
+        return result;
+      }
+    }
+    return null;
+  }
+  // The first record carrying the partition's largest timestamp, or null.
+  public TimestampAndOffset findMaxTimestamp() throws IOException {
+    LogSegment latest = null;
+    for (LogSegment segment : segments) {
+      if (latest == null ||
+          segment.getMaxTimestamp() > latest.getMaxTimestamp()) {
+        latest = segment;
+      }
+    }
+    return latest == null ? null : latest.findMaxTimestamp();
+  }
+  public TopicPartition getTopicPartition() { return topicPartition; }
+  public Path getDir() { return dir; }
+  public List<LogSegment> getSegments() { return segments; }
+  public long getLogStartOffset() {
+    return segments.isEmpty() ? 0 : segments.get(0).getBaseOffset();
+  }
+  public long getLogEndOffset() {
+    return segments.isEmpty() ? 0
+                              : segments.get(segments.size() - 1).getNextOffset();
+  }
+  public long getSize() {
+    long size = 0;
+    for (LogSegment segment : segments) {
+      size += segment.getSize();
+    }
+    return size;
+  }
+  // Forces appended data to disk and returns how many bytes that was.
+  public long flush() throws IOException {
+    long bytes = 0;
+    for (LogSegment segment : segments) {
+      bytes += segment.flush();
+    }
+    return bytes;
+  }
+  @Override
+  public void close() throws IOException {
+    for (LogSegment segment : segments) {
+      segment.close();
+    }
+  }
+}
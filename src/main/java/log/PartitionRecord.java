@@ -8,7 +8,8 @@ import shared.serializer.UUIDSerializer;
 import util.StreamUtils;
 public class PartitionRecord extends ValueRecord {
   private int partitionID;
-  private UUID topicUUID;
+  private long topicIdMsb;
+  private long topicIdLsb;
   private CompactArray<Integer> replicaArray;
   private CompactArray<Integer> inSyncReplicaArray;
   private CompactArray<Integer> removingReplicasArray;
@@ -19,7 +20,9 @@ public class PartitionRecord extends ValueRecord {
   private CompactArray<UUID> directoriesArray;
   protected PartitionRecord() {}
   public int getPartitionID() { return partitionID; }
-  public UUID getTopicUUID() { return topicUUID; }
+  public UUID getTopicUUID() { return new UUID(topicIdMsb, topicIdLsb); }
+  public long getTopicIdMostSignificantBits() { return topicIdMsb; }
+  public long getTopicIdLeastSignificantBits() { return topicIdLsb; }
   public CompactArray<Integer> getReplicaArray() { return replicaArray; }
   public CompactArray<Integer> getInSyncReplicaArray() {
     return inSyncReplicaArray;
@@ -42,7 +45,8 @@ public class PartitionRecord extends ValueRecord {
     this.type = data.get();
     this.version = data.get();
     this.partitionID = data.getInt();
-    this.topicUUID = new UUID(data.getLong(), data.getLong());
+    this.topicIdMsb = data.getLong();
+    this.topicIdLsb = data.getLong();
     this.replicaArray = CompactArray.fromByteBuffer(data, integerSerializer);
     this.inSyncReplicaArray =
         CompactArray.fromByteBuffer(data, integerSerializer);
@@ -65,8 +69,8 @@ public class PartitionRecord extends ValueRecord {
       dos.write(this.type);
       dos.write(this.version);
       dos.writeInt(this.partitionID);
-      dos.writeLong(this.topicUUID.getMostSignificantBits());
-      dos.writeLong(this.topicUUID.getLeastSignificantBits());
+      dos.writeLong(this.topicIdMsb);
+      dos.writeLong(this.topicIdLsb);
       dos.write(this.replicaArray.toBytes());
       dos.write(this.inSyncReplicaArray.toBytes());
       dos.write(this.removingReplicasArray.toBytes());
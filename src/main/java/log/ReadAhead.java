@@ -0,0 +1,203 @@
+package log;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+// Warms the page cache ahead of consumers reading a partition sequentially.
+// Fetches are tracked per client and partition; once a stream has asked
+// for the offset its previous fetch ended at SEQUENTIAL_FETCHES times in a
+// row, the segment data after what it just got is read on a background
+// thread, across segment boundaries, until windowBytes are ready ahead of
+// it. The next prefetch starts when less than half a window is left, from
+// where the last one stopped. The frontier only moves past bytes that were
+// actually read. A stream has at most one prefetch running, and at most
+// maxInFlight run at once across the broker; a stream that would exceed
+// that just goes without. Streams are locked one at a time, so fetches for
+// different streams do not wait on each other.
+public class ReadAhead implements Closeable {
+  public static final ReadAhead DISABLED = new ReadAhead(0, 0);
+  private static final int SEQUENTIAL_FETCHES = 2;
+  // Streams tracked at once; past it, the least recently fetching quarter
+  // is forgotten.
+  private static final int MAX_STREAMS = 4096;
+  private static final int SCRATCH_BYTES = 64 * 1024;
+  private record Stream(String clientId, TopicPartition topicPartition) {}
+  // Guarded by its own monitor, apart from lastFetch.
+  private static final class State {
+    volatile long lastFetch = System.nanoTime();
+    long nextOffset = -1;
+    int sequential;
+    boolean prefetching;
+    // Where the data prefetched for the stream ends.
+    LogSegment frontier;
+    long frontierPosition;
+  }
+  private record Fetched(Stream stream, long lastFetch) {}
+  private record Range(LogSegment segment, long position, long length) {}
+  private final int windowBytes;
+  private final Semaphore inFlight;
+  private final ExecutorService executor;
+  private final Map<Stream, State> streams = new ConcurrentHashMap<>();
+  // Prefetched bytes are read into this and dropped.
+  private final ThreadLocal<ByteBuffer> scratch =
+      ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(SCRATCH_BYTES));
+  public ReadAhead(int windowBytes, int maxInFlight) {
+    this.windowBytes = windowBytes;
+    this.inFlight = new Semaphore(maxInFlight);
+    AtomicInteger threads = new AtomicInteger();
+    this.executor =
+        windowBytes > 0 && maxInFlight > 0
+            ? Executors.newFixedThreadPool(maxInFlight, runnable -> {
+                Thread thread = new Thread(
+                    runnable, "log-read-ahead-" + threads.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+              })
+            : null;
+  }
+  // Notes a fetch from fetchOffset that the plan has executed, and starts a
+  // prefetch if the stream is sequential and running out of window.
+  public void record(String clientId, TopicPartition topicPartition,
+                     long fetchOffset, ReadPlan.Read read) {
+    LogSegment segment = read.segment();
+    ByteBuffer batches = read.batches();
+    if (executor == null || segment == null || !batches.hasRemaining()) {
+      return;
+    }
+    PartitionLog log = read.log();
+    long readEnd = read.position() + batches.remaining();
+    State state = streams.computeIfAbsent(
+        new Stream(clientId, topicPartition), stream -> new State());
+    if (streams.size() > MAX_STREAMS) {
+      forgetStreams();
+    }
+    List<Range> ranges;
+    synchronized (state) {
+      state.lastFetch = System.nanoTime();
+      state.sequential =
+          fetchOffset == state.nextOffset ? state.sequential + 1 : 0;
+      state.nextOffset = RecordBatch.nextOffset(batches);
+      if (state.sequential < SEQUENTIAL_FETCHES || state.prefetching) {
+        return;
+      }
+      long ahead = bytesAhead(log, segment, readEnd, state);
+      if (ahead >= windowBytes / 2 || !inFlight.tryAcquire()) {
+        return;
+      }
+      LogSegment from = ahead > 0 ? state.frontier : segment;
+      long position = ahead > 0 ? state.frontierPosition : readEnd;
+      ranges = ranges(log, from, position, windowBytes - ahead);
+      if (ranges.isEmpty()) {
+        inFlight.release();
+        return;
+      }
+      state.prefetching = true;
+    }
+    try {
+      executor.execute(() -> prefetch(state, ranges));
+    } catch (RejectedExecutionException e) {
+      finish(state);
+    }
+  }
+  // Drops the least recently fetching quarter of the streams. Rare enough
+  // that sorting a snapshot is fine; a stream evicted while it fetches
+  // just starts over as a new one.
+  private synchronized void forgetStreams() {
+    if (streams.size() <= MAX_STREAMS) {
+      return;
+    }
+    List<Fetched> fetched = new ArrayList<>();
+    for (Map.Entry<Stream, State> entry : streams.entrySet()) {
+      fetched.add(new Fetched(entry.getKey(), entry.getValue().lastFetch));
+    }
+    fetched.sort(Comparator.comparingLong(Fetched::lastFetch));
+    for (Fetched stream : fetched.subList(0, fetched.size() / 4)) {
+      streams.remove(stream.stream());
+    }
+  }
+  // Prefetched bytes between readEnd and the stream's frontier, or 0 if
+  // the frontier is not ahead of it. Counting stops at a window.
+  private long bytesAhead(PartitionLog log, LogSegment segment, long readEnd,
+                          State state) {
+    if (state.frontier == null) {
+      return 0;
+    }
+    long ahead = -readEnd;
+    LogSegment current = segment;
+    while (current != state.frontier) {
+      ahead += current.getSize();
+      if (ahead >= windowBytes) {
+        return ahead;
+      }
+      LogSegment next = log.segmentFor(current.getNextOffset());
+      if (next == null || next == current) {
+        return 0;
+      }
+      current = next;
+    }
+    return Math.max(ahead + state.frontierPosition, 0);
+  }
+  // Up to length bytes of segment data from position in segment on.
+  private static List<Range> ranges(PartitionLog log, LogSegment segment,
+                                    long position, long length) {
+    List<Range> ranges = new ArrayList<>();
+    LogSegment current = segment;
+    while (length > 0) {
+      long bytes = Math.min(length, current.getSize() - position);
+      if (bytes > 0) {
+        ranges.add(new Range(current, position, bytes));
+        length -= bytes;
+      }
+      LogSegment next = log.segmentFor(current.getNextOffset());
+      if (length == 0 || next == null || next == current) {
+        break;
+      }
+      current = next;
+      position = 0;
+    }
+    return ranges;
+  }
+  // Moves the stream's frontier as each range is read, by what was read:
+  // a segment that turns out shorter or closed stops the prefetch there.
+  private void prefetch(State state, List<Range> ranges) {
+    try {
+      for (Range range : ranges) {
+        long read = range.segment().prefetch(range.position(),
+                                             range.length(), scratch.get());
+        synchronized (state) {
+          state.frontier = range.segment();
+          state.frontierPosition = range.position() + read;
+        }
+        if (read < range.length()) {
+          break;
+        }
+      }
+    } catch (IOException e) {
+      // Retention or the cleaner closed the segment; the fetch that would
+      // have used the data will not find it there either.
+    } finally {
+      finish(state);
+    }
+  }
+  private void finish(State state) {
+    synchronized (state) {
+      state.prefetching = false;
+    }
+    inFlight.release();
+  }
+  @Override
+  public void close() {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,172 @@
+package log;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+// Collects the log reads one response needs and performs them together.
+// Planning only locates each read's first batch; execute() then groups the
+// ranges by segment file, reads each file's ranges in position order with
+// touching ranges merged into one positional read, and lands everything in
+// a single buffer sized for the whole plan. A range is read up to its byte
+// limit and then trimmed to its last complete batch, so no batch header
+// past the first has to be read on its own.
+public class ReadPlan {
+  public static final class Read {
+    private final PartitionLog log;
+    private final LogSegment segment;
+    private final long position;
+    private final int length;
+    private final boolean minOneBatch;
+    private final boolean hasData;
+    private ByteBuffer batches = ByteBuffer.allocate(0);
+    private boolean filled;
+    private Read(PartitionLog log, LogSegment segment, long position,
+                 int length, boolean minOneBatch) {
+      this.log = log;
+      this.segment = segment;
+      this.position = position;
+      this.length = length;
+      this.minOneBatch = minOneBatch;
+      this.hasData = segment != null;
+    }
+    // Already served from the tail cache.
+    private Read(ByteBuffer cached) {
+      this.log = null;
+      this.segment = null;
+      this.position = 0;
+      this.length = cached.remaining();
+      this.minOneBatch = false;
+      this.hasData = true;
+      this.batches = cached;
+      this.filled = true;
+    }
+    // Bytes the read may return, which is what a response budget is
+    // charged before the plan runs.
+    public int plannedBytes() { return length; }
+    // Whether the log holds anything at or after the fetch offset.
+    public boolean hasData() { return hasData; }
+    // Whole batches, available once the plan has executed.
+    public ByteBuffer batches() { return batches; }
+    // Whether the batches were read; false for a read whose run failed or
+    // never ran.
+    public boolean isFilled() { return filled; }
+    PartitionLog log() { return log; }
+    // Where the batches were read from; null for a cached or empty read.
+    LogSegment segment() { return segment; }
+    long position() { return position; }
+  }
+  private final List<Read> reads = new ArrayList<>();
+  // Plans a read of whole batches from the one holding fetchOffset on, at
+  // most maxBytes of them unless minOneBatch lets a single larger batch
+  // through. A read the partition's tail cache covers is served right away;
+  // any other stays within one segment.
+  public Read add(PartitionLog log, long fetchOffset, int maxBytes,
+                  boolean minOneBatch) throws IOException {
+    ByteBuffer cached = log.readTail(fetchOffset, maxBytes, minOneBatch);
+    if (cached != null) {
+      Read read = new Read(cached);
+      reads.add(read);
+      return read;
+    }
+    LogSegment segment = log.segmentFor(fetchOffset);
+    long position = segment != null ? segment.findBatch(fetchOffset) : -1;
+    Read read =
+        position < 0
+            ? new Read(log, null, 0, 0, false)
+            : new Read(log, segment, position,
+                       (int)Math.min(maxBytes, segment.getSize() - position),
+                       minOneBatch);
+    reads.add(read);
+    return read;
+  }
+  // Reads that touch or overlap within one segment, read as one.
+  private record Run(LogSegment segment, long start, long end,
+                     List<Read> reads) {}
+  // Performs the planned reads, each run on the reader threads of the log
+  // dir it belongs to, and completes once all of them are done. A run that
+  // fails, with its IOException wrapped in an UncheckedIOException, or
+  // that its dir no longer accepts, leaves its reads unfilled and fails
+  // the result, which still waits for the other runs.
+  public CompletableFuture<Void>
+  execute(Function<PartitionLog, LogDir> logDirs) {
+    Map<LogSegment, List<Read>> bySegment = new LinkedHashMap<>();
+    for (Read read : reads) {
+      if (read.segment != null) {
+        bySegment.computeIfAbsent(read.segment, segment -> new ArrayList<>())
+            .add(read);
+      }
+    }
+    List<Run> runs = new ArrayList<>();
+    long total = 0;
+    for (Map.Entry<LogSegment, List<Read>> entry : bySegment.entrySet()) {
+      List<Read> segmentReads = entry.getValue();
+      segmentReads.sort(Comparator.comparingLong(read -> read.position));
+      int first = 0;
+      while (first < segmentReads.size()) {
+        long start = segmentReads.get(first).position;
+        long end = start;
+        int next = first;
+        while (next < segmentReads.size() &&
+               segmentReads.get(next).position <= end) {
+          Read read = segmentReads.get(next++);
+          end = Math.max(end, read.position + read.length);
+        }
+        runs.add(new Run(entry.getKey(), start, end,
+                         segmentReads.subList(first, next)));
+        total += end - start;
+        first = next;
+      }
+    }
+    ByteBuffer buffer = ByteBuffer.allocate((int)total);
+    List<CompletableFuture<Void>> pending = new ArrayList<>(runs.size());
+    int offset = 0;
+    for (Run run : runs) {
+      int length = (int)(run.end() - run.start());
+      ByteBuffer target = buffer.slice(offset, length);
+      LogDir logDir = logDirs.apply(run.reads().get(0).log);
+      try {
+        pending.add(CompletableFuture.runAsync(() -> {
+          try {
+            read(run, target);
+            logDir.recordRead(target.position());
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        }, logDir.reader()));
+      } catch (RejectedExecutionException e) {
+        pending.add(CompletableFuture.failedFuture(e));
+      }
+      offset += length;
+    }
+    return CompletableFuture.allOf(
+        pending.toArray(new CompletableFuture<?>[0]));
+  }
+  private static void read(Run run, ByteBuffer target) throws IOException {
+    run.segment().read(target, run.start());
+    int filled = target.position();
+    for (Read read : run.reads()) {
+      int start = (int)(read.position - run.start());
+      ByteBuffer batches = target.slice(
+          start, Math.max(0, Math.min(read.length, filled - start)));
+      read.batches = batches.limit(RecordBatch.validBytes(batches));
+      if (read.minOneBatch && !read.batches.hasRemaining()) {
+        read.batches = firstBatch(read.segment, read.position);
+      }
+      read.log.offerTail(read.batches);
+      read.filled = true;
+    }
+  }
+  // The whole batch at position, for a minOneBatch read whose limit cut it.
+  private static ByteBuffer firstBatch(LogSegment segment, long position)
+      throws IOException {
+    int batchSize = segment.batchSize(position);
+    return segment.read(position, batchSize);
+  }
+}
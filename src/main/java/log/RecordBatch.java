@@ -2,7 +2,26 @@ package log;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import shared.VarInt;
 public class RecordBatch {
+  // Header layout, relative to the start of a batch.
+  public static final int LOG_OVERHEAD = 12;
+  public static final int LENGTH_OFFSET = 8;
+  public static final int CRC_OFFSET = 17;
+  public static final int PARTITION_LEADER_EPOCH_OFFSET = 12;
+  public static final int MAGIC_OFFSET = 16;
+  public static final int ATTRIBUTES_OFFSET = 21;
+  public static final int LAST_OFFSET_DELTA_OFFSET = 23;
+  public static final int BASE_TIMESTAMP_OFFSET = 27;
+  public static final int MAX_TIMESTAMP_OFFSET = 35;
+  public static final int RECORDS_COUNT_OFFSET = 57;
+  public static final int HEADER_SIZE = 61;
+  public static final long NO_TIMESTAMP = -1;
+  public static final byte MAGIC = 2;
+  static final int COMPRESSION_CODEC_MASK = 0x07;
+  static final int TIMESTAMP_TYPE_MASK = 0x08;
+  static final int TRANSACTIONAL_MASK = 0x10;
+  static final int CONTROL_MASK = 0x20;
   private long baseOffset;
   private int batchLength;
   private int partitionLeaderEpoch;
@@ -62,6 +81,80 @@ public class RecordBatch {
   public int getBaseSequence() { return baseSequence; }
   public List<Record> getRecords() { return records; }
   public int getRecordsLength() { return recordsLength; }
+  // Walks batch headers only, without decoding records or moving the buffer's
+  // position. Returns 0 for an empty log; a truncated trailing batch is
+  // ignored.
+  public static long nextOffset(ByteBuffer data) {
+    long nextOffset = 0;
+    int pos = data.position();
+    while (pos + LAST_OFFSET_DELTA_OFFSET + 4 <= data.limit()) {
+      int batchSize = LOG_OVERHEAD + data.getInt(pos + LENGTH_OFFSET);
+      if (pos + batchSize > data.limit()) {
+        break;
+      }
+      nextOffset = data.getLong(pos) +
+                   data.getInt(pos + LAST_OFFSET_DELTA_OFFSET) + 1;
+      pos += batchSize;
+    }
+    return nextOffset;
+  }
+  // Bytes from the buffer's position up to the end of the last complete
+  // batch.
+  public static int validBytes(ByteBuffer data) {
+    int pos = data.position();
+    while (pos + LOG_OVERHEAD <= data.limit()) {
+      int batchSize = LOG_OVERHEAD + data.getInt(pos + LENGTH_OFFSET);
+      if (pos + batchSize > data.limit()) {
+        break;
+      }
+      pos += batchSize;
+    }
+    return pos - data.position();
+  }
+  // The first record at or after target in the batch at the buffer's
+  // position, read from the record headers alone. The batch's max timestamp
+  // must be >= target. Log-append-time batches stamp every record with the
+  // max timestamp, and compressed records are not inflated, so both resolve
+  // to the batch's first offset.
+  public static TimestampAndOffset findTimestamp(ByteBuffer data,
+                                                 long target) {
+    int start = data.position();
+    long baseOffset = data.getLong(start);
+    int leaderEpoch = data.getInt(start + PARTITION_LEADER_EPOCH_OFFSET);
+    short attributes = data.getShort(start + ATTRIBUTES_OFFSET);
+    long maxTimestamp = data.getLong(start + MAX_TIMESTAMP_OFFSET);
+    if ((attributes & (TIMESTAMP_TYPE_MASK | COMPRESSION_CODEC_MASK)) != 0) {
+      return new TimestampAndOffset(maxTimestamp, baseOffset, leaderEpoch);
+    }
+    long baseTimestamp = data.getLong(start + BASE_TIMESTAMP_OFFSET);
+    int count = data.getInt(start + RECORDS_COUNT_OFFSET);
+    ByteBuffer records = data.duplicate();
+    records.position(start + HEADER_SIZE);
+    for (int i = 0; i < count; i++) {
+      int length = VarInt.fromByteBuffer(records).getValue();
+      int recordStart = records.position();
+      records.get();
+      long timestamp = baseTimestamp + readVarlong(records);
+      int offsetDelta = VarInt.fromByteBuffer(records).getValue();
+      if (timestamp >= target) {
+        return new TimestampAndOffset(timestamp, baseOffset + offsetDelta,
+                                      leaderEpoch);
+      }
+      records.position(recordStart + length);
+    }
+    return new TimestampAndOffset(maxTimestamp, baseOffset, leaderEpoch);
+  }
+  static long readVarlong(ByteBuffer data) {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      byte b = data.get();
+      value |= (long)(b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return (value >>> 1) ^ -(value & 1);
+      }
+    }
+    throw new IllegalArgumentException("Malformed VARLONG");
+  }
   public static RecordBatch fromByteBuffer(ByteBuffer data) {
     RecordBatch recordBatch = new RecordBatch();
     recordBatch.setBaseOffset(data.getLong());
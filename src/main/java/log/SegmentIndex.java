@@ -0,0 +1,114 @@
+package log;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+// Sparse in-memory offset and time index over one segment's batches, built
+// from the batch headers when the segment is opened and extended as batches
+// are appended. An entry is taken for the first batch and then once
+// INTERVAL_BYTES have gone by since the previous entry, so a lookup only has
+// to walk the headers between two entries.
+//
+// Appends are serialized by the segment; lookups run concurrently and only
+// read entries below the published count.
+class SegmentIndex {
+  static final int INTERVAL_BYTES = 4096;
+  private static final int INITIAL_CAPACITY = 16;
+  // The batch with the segment's largest timestamp.
+  record MaxTimestamp(long timestamp, int position) {}
+  private int[] positions = new int[INITIAL_CAPACITY];
+  private long[] baseOffsets = new long[INITIAL_CAPACITY];
+  // Largest batch timestamp in the segment before each entry's batch, so the
+  // column never decreases even when batch timestamps do.
+  private long[] timestampsBefore = new long[INITIAL_CAPACITY];
+  private volatile int entries;
+  private volatile MaxTimestamp maxTimestamp =
+      new MaxTimestamp(RecordBatch.NO_TIMESTAMP, -1);
+  private int lastEntryPosition;
+  private volatile long firstTimestamp = RecordBatch.NO_TIMESTAMP;
+  // Indexes the complete batches between the buffer's position and limit,
+  // which sit at filePosition in the segment.
+  void append(ByteBuffer data, int filePosition) {
+    int pos = data.position();
+    while (pos + RecordBatch.HEADER_SIZE <= data.limit()) {
+      int batchSize = RecordBatch.LOG_OVERHEAD +
+                      data.getInt(pos + RecordBatch.LENGTH_OFFSET);
+      if (pos + batchSize > data.limit()) {
+        break;
+      }
+      appendBatch(data, pos, filePosition + pos - data.position());
+      pos += batchSize;
+    }
+  }
+  // Indexes one batch from its header, at offset in the buffer and at
+  // position in the segment.
+  void appendBatch(ByteBuffer header, int offset, int position) {
+    long batchMax = header.getLong(offset + RecordBatch.MAX_TIMESTAMP_OFFSET);
+    if (entries == 0) {
+      firstTimestamp = batchMax;
+    }
+    MaxTimestamp max = maxTimestamp;
+    if (entries == 0 || position - lastEntryPosition >= INTERVAL_BYTES) {
+      add(position, header.getLong(offset), max.timestamp());
+    }
+    if (batchMax > max.timestamp()) {
+      maxTimestamp = new MaxTimestamp(batchMax, position);
+    }
+  }
+  private void add(int position, long baseOffset, long timestampBefore) {
+    int count = entries;
+    if (count == positions.length) {
+      int capacity = count * 2;
+      positions = Arrays.copyOf(positions, capacity);
+      baseOffsets = Arrays.copyOf(baseOffsets, capacity);
+      timestampsBefore = Arrays.copyOf(timestampsBefore, capacity);
+    }
+    positions[count] = position;
+    baseOffsets[count] = baseOffset;
+    timestampsBefore[count] = timestampBefore;
+    lastEntryPosition = position;
+    entries = count + 1;
+  }
+  MaxTimestamp getMaxTimestamp() { return maxTimestamp; }
+  long getFirstTimestamp() { return firstTimestamp; }
+  // Position of the last indexed batch starting at or before target, from
+  // which a scan for the batch holding target has to start.
+  int lookupOffset(long target) {
+    int count = entries;
+    long[] offsets = baseOffsets;
+    int low = 0;
+    int high = count - 1;
+    if (count == 0 || offsets[0] > target) {
+      return 0;
+    }
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (offsets[mid] <= target) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return positions[low];
+  }
+  // Position of the indexed batch from which a scan for the first batch
+  // with a max timestamp >= target has to start, or -1 if the segment holds
+  // no such batch.
+  int lookupTimestamp(long target) {
+    int count = entries;
+    if (count == 0 || maxTimestamp.timestamp() < target) {
+      return -1;
+    }
+    long[] timestamps = timestampsBefore;
+    // Last entry whose preceding batches are all older than target.
+    int low = 0;
+    int high = count - 1;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (timestamps[mid] < target) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return positions[low];
+  }
+}
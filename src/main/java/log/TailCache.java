@@ -0,0 +1,77 @@
+package log;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+// Broker-wide cache of each partition's most recently appended batches, so
+// consumers that have caught up are served from memory. A partition gets an
+// off-heap ring of partitionBytes on the first batches offered for it; when
+// the rings would outgrow maxBytes in total, the least recently used ones
+// are dropped. Lookups only touch the partition's own ring; the LRU scan
+// runs when a ring is allocated.
+public class TailCache {
+  public static final TailCache DISABLED = new TailCache(0, 0);
+  private final long maxBytes;
+  private final int partitionBytes;
+  private final Map<TopicPartition, TailRing> rings =
+      new ConcurrentHashMap<>();
+  private volatile long allocatedBytes;
+  public TailCache(long maxBytes, int partitionBytes) {
+    this.maxBytes = maxBytes;
+    this.partitionBytes = partitionBytes;
+  }
+  private boolean enabled() {
+    return partitionBytes > 0 && partitionBytes <= maxBytes;
+  }
+  // Whole batches just appended to, or read from the end of, the partition.
+  void append(TopicPartition topicPartition, ByteBuffer batches) {
+    if (!enabled()) {
+      return;
+    }
+    TailRing ring = rings.get(topicPartition);
+    if (ring == null) {
+      ring = allocate(topicPartition);
+    }
+    ring.append(batches);
+  }
+  // Batches from the one holding offset on, or null if the partition's
+  // window does not cover it.
+  ByteBuffer read(TopicPartition topicPartition, long offset, int maxBytes,
+                  boolean minOneBatch) {
+    TailRing ring = rings.get(topicPartition);
+    return ring == null ? null : ring.read(offset, maxBytes, minOneBatch);
+  }
+  // Forgets the partition's window, when its log no longer continues it.
+  void invalidate(TopicPartition topicPartition) {
+    TailRing ring = rings.get(topicPartition);
+    if (ring != null) {
+      ring.clear();
+    }
+  }
+  public long getAllocatedBytes() { return allocatedBytes; }
+  private synchronized TailRing allocate(TopicPartition topicPartition) {
+    TailRing ring = rings.get(topicPartition);
+    if (ring != null) {
+      return ring;
+    }
+    while (allocatedBytes + partitionBytes > maxBytes) {
+      evictLeastRecentlyUsed();
+    }
+    ring = new TailRing(partitionBytes);
+    rings.put(topicPartition, ring);
+    allocatedBytes += partitionBytes;
+    return ring;
+  }
+  // The dropped ring's memory is released once the last read holding it is
+  // done with it and it is collected.
+  private void evictLeastRecentlyUsed() {
+    Map.Entry<TopicPartition, TailRing> oldest = null;
+    for (Map.Entry<TopicPartition, TailRing> entry : rings.entrySet()) {
+      if (oldest == null ||
+          entry.getValue().lastAccess() < oldest.getValue().lastAccess()) {
+        oldest = entry;
+      }
+    }
+    rings.remove(oldest.getKey());
+    allocatedBytes -= oldest.getValue().capacity();
+  }
+}
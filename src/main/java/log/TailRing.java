@@ -0,0 +1,114 @@
+package log;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+// The latest whole batches of one partition in a direct buffer used as a
+// ring. A batch is never split: one that does not fit before the end of the
+// buffer starts over at 0, and whatever it overwrites leaves the window from
+// the oldest end. The window always covers a contiguous offset range.
+final class TailRing {
+  private record Entry(long baseOffset, long nextOffset, int position,
+                       int size) {}
+  private final ByteBuffer buffer;
+  private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+  private int writePosition;
+  private volatile long lastAccess;
+  TailRing(int capacity) { this.buffer = ByteBuffer.allocateDirect(capacity); }
+  int capacity() { return buffer.capacity(); }
+  long lastAccess() { return lastAccess; }
+  // Adds whole batches with assigned offsets. Batches the window already
+  // covers are skipped; ones that do not continue it replace it.
+  synchronized void append(ByteBuffer batches) {
+    lastAccess = System.nanoTime();
+    int pos = batches.position();
+    while (pos + RecordBatch.HEADER_SIZE <= batches.limit()) {
+      int size = RecordBatch.LOG_OVERHEAD +
+                 batches.getInt(pos + RecordBatch.LENGTH_OFFSET);
+      if (pos + size > batches.limit()) {
+        break;
+      }
+      long baseOffset = batches.getLong(pos);
+      long nextOffset =
+          baseOffset +
+          batches.getInt(pos + RecordBatch.LAST_OFFSET_DELTA_OFFSET) + 1;
+      Entry last = entries.peekLast();
+      if (last != null && nextOffset <= last.nextOffset()) {
+        pos += size;
+        continue;
+      }
+      if ((last != null && baseOffset != last.nextOffset()) ||
+          size > buffer.capacity()) {
+        clear();
+      }
+      if (size <= buffer.capacity()) {
+        put(batches, pos, size, baseOffset, nextOffset);
+      }
+      pos += size;
+    }
+  }
+  private void put(ByteBuffer batches, int pos, int size, long baseOffset,
+                   long nextOffset) {
+    int position = writePosition;
+    if (position + size > buffer.capacity()) {
+      // The unused end counts as overwritten, so older batches stored
+      // there leave before the ones at the start are overwritten.
+      evict(position, buffer.capacity());
+      position = 0;
+    }
+    evict(position, position + size);
+    buffer.put(position, batches, pos, size);
+    entries.addLast(new Entry(baseOffset, nextOffset, position, size));
+    writePosition = position + size;
+  }
+  // Drops the oldest entries while they overlap [start, end).
+  private void evict(int start, int end) {
+    Entry head;
+    while ((head = entries.peekFirst()) != null &&
+           head.position() < end && head.position() + head.size() > start) {
+      entries.pollFirst();
+    }
+  }
+  synchronized void clear() {
+    entries.clear();
+    writePosition = 0;
+  }
+  // A copy of the whole batches from the one holding offset on, at most
+  // maxBytes of them unless minOneBatch lets a single larger one through,
+  // or null if offset is outside the window.
+  synchronized ByteBuffer read(long offset, int maxBytes,
+                               boolean minOneBatch) {
+    Entry first = entries.peekFirst();
+    Entry last = entries.peekLast();
+    if (first == null || offset < first.baseOffset() ||
+        offset >= last.nextOffset()) {
+      return null;
+    }
+    lastAccess = System.nanoTime();
+    // Caught-up consumers ask for the newest batches, so search backwards.
+    ArrayDeque<Entry> selected = new ArrayDeque<>();
+    Iterator<Entry> newestFirst = entries.descendingIterator();
+    while (newestFirst.hasNext()) {
+      Entry entry = newestFirst.next();
+      selected.addFirst(entry);
+      if (entry.baseOffset() <= offset) {
+        break;
+      }
+    }
+    int total = 0;
+    int count = 0;
+    for (Entry entry : selected) {
+      if (total + entry.size() > maxBytes && !(count == 0 && minOneBatch)) {
+        break;
+      }
+      total += entry.size();
+      count++;
+    }
+    ByteBuffer result = ByteBuffer.allocate(total);
+    Iterator<Entry> oldestFirst = selected.iterator();
+    for (int i = 0; i < count; i++) {
+      Entry entry = oldestFirst.next();
+      result.put(buffer.slice(entry.position(), entry.size()));
+    }
+    return result.flip();
+  }
+}
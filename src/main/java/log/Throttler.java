@@ -0,0 +1,29 @@
+package log;
+import java.util.concurrent.TimeUnit;
+// Holds a background job to a byte rate: the bytes reported over each check
+// window are compared with the rate, and the caller sleeps off whatever it
+// got ahead by.
+class Throttler {
+  private static final long CHECK_INTERVAL_NANOS =
+      TimeUnit.MILLISECONDS.toNanos(300);
+  private final double bytesPerSecond;
+  private long windowStart = System.nanoTime();
+  private long windowBytes;
+  Throttler(double bytesPerSecond) { this.bytesPerSecond = bytesPerSecond; }
+  void maybeThrottle(long bytes) throws InterruptedException {
+    if (bytesPerSecond <= 0) {
+      return;
+    }
+    windowBytes += bytes;
+    long elapsed = System.nanoTime() - windowStart;
+    if (elapsed < CHECK_INTERVAL_NANOS) {
+      return;
+    }
+    long allowedNanos = (long)(windowBytes * 1e9 / bytesPerSecond);
+    if (allowedNanos > elapsed) {
+      TimeUnit.NANOSECONDS.sleep(allowedNanos - elapsed);
+    }
+    windowStart = System.nanoTime();
+    windowBytes = 0;
+  }
+}
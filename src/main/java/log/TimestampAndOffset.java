@@ -0,0 +1,4 @@
+package log;
+// A ListOffsets answer: the record found and the leader epoch of its batch.
+public record TimestampAndOffset(long timestamp, long offset,
+                                 int leaderEpoch) {}
@@ -0,0 +1,16 @@
+package log;
+public record TopicPartition(String topic, int partition) {
+  public static TopicPartition fromDirectoryName(String directoryName) {
+    int dash = directoryName.lastIndexOf('-');
+    if (dash < 0) {
+      return new TopicPartition(directoryName, 0);
+    }
+    return new TopicPartition(
+        directoryName.substring(0, dash),
+        Integer.parseInt(directoryName.substring(dash + 1)));
+  }
+  @Override
+  public String toString() {
+    return topic + "-" + partition;
+  }
+}
@@ -0,0 +1,122 @@
+package metadata;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import log.FeatureLevelRecord;
+import log.PartitionRecord;
+import log.Record;
+import log.RecordBatch;
+import log.TopicRecord;
+import log.ValueRecord;
+import util.PersistentTreeMap;
+// Accumulates metadata records on top of a base image. Only the topics that
+// records touch are copied, and apply() puts them into the base image's
+// persistent and copy-on-write maps, so it costs O(changed topics * log n).
+// apply() ends the delta's use.
+public class MetadataDelta {
+  private final MetadataImage base;
+  private final Map<UUID, TopicChange> changedTopics = new LinkedHashMap<>();
+  private final Map<String, Short> changedFeatures = new HashMap<>();
+  private TopicChange lastChange;
+  private long lastOffset;
+  public MetadataDelta(MetadataImage base) {
+    this.base = base;
+    this.lastOffset = base.getLastOffset();
+  }
+  public boolean isEmpty() { return lastOffset == base.getLastOffset(); }
+  public long getLastOffset() { return lastOffset; }
+  public void replay(RecordBatch batch) {
+    for (Record record : batch.getRecords()) {
+      replay(record.getValue());
+    }
+    lastOffset = batch.getBaseOffset() + batch.getLastOffsetDelta();
+  }
+  public void replay(ValueRecord value) {
+    if (value instanceof TopicRecord topicRecord) {
+      TopicChange change = topicChange(topicRecord.getTopicUUID());
+      if (change == null) {
+        change = new TopicChange(topicRecord.getTopicUUID(), null,
+                                 new TreeMap<>());
+        changedTopics.put(topicRecord.getTopicUUID(), change);
+      }
+      change.name = topicRecord.getName().toString();
+      lastChange = change;
+    } else if (value instanceof PartitionRecord partitionRecord) {
+      // A topic's partition records follow its topic record, so the last
+      // touched topic usually matches without materializing the id.
+      TopicChange change = lastChange;
+      if (change == null ||
+          change.id.getMostSignificantBits() !=
+              partitionRecord.getTopicIdMostSignificantBits() ||
+          change.id.getLeastSignificantBits() !=
+              partitionRecord.getTopicIdLeastSignificantBits()) {
+        change = topicChange(partitionRecord.getTopicUUID());
+      }
+      if (change == null) {
+        System.err.println("Partition record for unknown topic id: " +
+                           partitionRecord.getTopicUUID());
+        return;
+      }
+      change.partitions.put(partitionRecord.getPartitionID(),
+                            PartitionImage.fromRecord(partitionRecord));
+      lastChange = change;
+    } else if (value instanceof FeatureLevelRecord featureRecord) {
+      changedFeatures.put(featureRecord.getName().toString(),
+                          featureRecord.getFeatureLevel());
+    }
+  }
+  private TopicChange topicChange(UUID id) {
+    TopicChange change = changedTopics.get(id);
+    if (change == null) {
+      TopicImage topic = base.getTopic(id).orElse(null);
+      if (topic == null) {
+        return null;
+      }
+      SortedMap<Integer, PartitionImage> partitions = new TreeMap<>();
+      for (int i = 0; i < topic.partitions().size(); i++) {
+        partitions.put(topic.partitions().partitionId(i),
+                       topic.partitions().get(i));
+      }
+      change = new TopicChange(topic.id(), topic.name(), partitions);
+      changedTopics.put(id, change);
+    }
+    return change;
+  }
+  public MetadataImage apply() {
+    PersistentTreeMap<String, TopicImage> topicsByName = base.topicsByName();
+    TopicIdMap.Updater<TopicImage> topicsById = base.topicsById().updater();
+    for (Map.Entry<UUID, TopicChange> entry : changedTopics.entrySet()) {
+      UUID id = entry.getKey();
+      TopicChange change = entry.getValue();
+      TopicImage previous = base.getTopic(id).orElse(null);
+      if (previous != null && !previous.name().equals(change.name)) {
+        topicsByName = topicsByName.remove(previous.name());
+      }
+      TopicImage topic = new TopicImage(
+          change.name, id, PartitionTable.of(change.partitions.values()));
+      topicsByName = topicsByName.put(topic.name(), topic);
+      topicsById.put(id, topic);
+    }
+    Map<String, Short> features = base.getFeatures();
+    if (!changedFeatures.isEmpty()) {
+      features = new HashMap<>(features);
+      features.putAll(changedFeatures);
+    }
+    return new MetadataImage(topicsByName, topicsById.build(), features,
+                             lastOffset, base.getEpoch() + 1);
+  }
+  private static class TopicChange {
+    private final UUID id;
+    private String name;
+    private final SortedMap<Integer, PartitionImage> partitions;
+    TopicChange(UUID id, String name,
+                SortedMap<Integer, PartitionImage> partitions) {
+      this.id = id;
+      this.name = name;
+      this.partitions = partitions;
+    }
+  }
+}
@@ -0,0 +1,55 @@
+package metadata;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import util.PersistentTreeMap;
+// Immutable view of the cluster metadata derived from __cluster_metadata, as
+// of lastOffset (-1 when nothing has been applied). Topic maps are
+// persistent or copy-on-write, so the next image shares everything a delta
+// did not touch. The epoch increases with every published image and can key
+// caches.
+public class MetadataImage {
+  public static final MetadataImage EMPTY =
+      new MetadataImage(PersistentTreeMap.empty(), TopicIdMap.empty(),
+                        new HashMap<>(), -1, 0);
+  private final PersistentTreeMap<String, TopicImage> topicsByName;
+  private final TopicIdMap<TopicImage> topicsById;
+  private final Map<String, Short> features;
+  private final long lastOffset;
+  private final long epoch;
+  MetadataImage(PersistentTreeMap<String, TopicImage> topicsByName,
+                TopicIdMap<TopicImage> topicsById,
+                Map<String, Short> features, long lastOffset, long epoch) {
+    this.topicsByName = topicsByName;
+    this.topicsById = topicsById;
+    this.features = Collections.unmodifiableMap(features);
+    this.lastOffset = lastOffset;
+    this.epoch = epoch;
+  }
+  public Optional<TopicImage> getTopic(String name) {
+    return Optional.ofNullable(topicsByName.get(name));
+  }
+  public Optional<TopicImage> getTopic(UUID id) {
+    return Optional.ofNullable(topicsById.get(id));
+  }
+  // Looks a topic id up from its raw halves, or returns null.
+  public TopicImage getTopic(long idMsb, long idLsb) {
+    return topicsById.get(idMsb, idLsb);
+  }
+  // In name order.
+  public Collection<TopicImage> getTopics() { return topicsByName.values(); }
+  // In name order, starting at the first topic named >= from.
+  public Iterator<TopicImage> getTopicsFrom(String from) {
+    return topicsByName.valuesFrom(from);
+  }
+  public int getTopicCount() { return topicsByName.size(); }
+  public Map<String, Short> getFeatures() { return features; }
+  public long getLastOffset() { return lastOffset; }
+  public long getEpoch() { return epoch; }
+  PersistentTreeMap<String, TopicImage> topicsByName() { return topicsByName; }
+  TopicIdMap<TopicImage> topicsById() { return topicsById; }
+}
@@ -0,0 +1,152 @@
+package metadata;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import log.LogSegment;
+import log.PartitionLog;
+import log.RecordBatch;
+// Builds the MetadataImage from the latest snapshot plus the log tail after
+// it, and writes a new snapshot once enough of the log has been replayed
+// since the last one.
+public class MetadataLoader implements Closeable {
+  private final PartitionLog metadataLog;
+  private final long bytesBetweenSnapshots;
+  private final ExecutorService snapshotExecutor =
+      Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "metadata-snapshot");
+        thread.setDaemon(true);
+        return thread;
+      });
+  private long bytesSinceSnapshot;
+  private int lastBatchCrc;
+  public MetadataLoader(PartitionLog metadataLog, long bytesBetweenSnapshots) {
+    this.metadataLog = metadataLog;
+    this.bytesBetweenSnapshots = bytesBetweenSnapshots;
+  }
+  public MetadataImage load(ForkJoinPool pool) throws IOException {
+    MetadataSnapshot snapshot =
+        MetadataSnapshot.readLatest(metadataLog.getDir()).orElse(null);
+    if (snapshot != null &&
+        snapshot.getImage().getLastOffset() >= metadataLog.getLogEndOffset()) {
+      System.err.println("Metadata snapshot is ahead of the log, ignoring it");
+      snapshot = null;
+    }
+    if (snapshot != null) {
+      MetadataImage image = replay(snapshot, pool);
+      if (image != null) {
+        System.err.println("Loaded metadata snapshot at offset " +
+                           snapshot.getImage().getLastOffset() +
+                           ", replayed the log up to " + image.getLastOffset());
+        return image;
+      }
+      System.err.println("Metadata snapshot does not match the log, " +
+                         "replaying from the start");
+    }
+    return replay(null, pool);
+  }
+  // Returns null when the snapshot's last batch is not found in the log. A
+  // segment that cannot be read fails the load: an image without its
+  // records would be published as if it were complete.
+  private MetadataImage replay(MetadataSnapshot snapshot, ForkJoinPool pool)
+      throws IOException {
+    MetadataImage base =
+        snapshot == null ? MetadataImage.EMPTY : snapshot.getImage();
+    long skipThrough = base.getLastOffset();
+    // Segments are parsed concurrently and replayed in base offset order.
+    List<Callable<Tail>> tasks = new ArrayList<>();
+    for (LogSegment segment : metadataLog.getSegments()) {
+      if (segment.getNextOffset() > skipThrough) {
+        tasks.add(() -> readTail(segment, skipThrough, snapshot));
+      }
+    }
+    boolean verified = snapshot == null;
+    MetadataDelta delta = new MetadataDelta(base);
+    bytesSinceSnapshot = 0;
+    for (Future<Tail> future : pool.invokeAll(tasks)) {
+      try {
+        Tail tail = future.get();
+        verified |= tail.verified;
+        for (RecordBatch batch : tail.batches) {
+          delta.replay(batch);
+          replayed(batch);
+        }
+      } catch (ExecutionException e) {
+        throw new IOException("Failed to read metadata segment",
+                              e.getCause());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException(
+            "Interrupted while loading the metadata log");
+      }
+    }
+    if (!verified) {
+      return null;
+    }
+    if (snapshot != null && delta.isEmpty()) {
+      lastBatchCrc = snapshot.getLastBatchCrc();
+    }
+    return delta.apply();
+  }
+  private static Tail readTail(LogSegment segment, long skipThrough,
+                               MetadataSnapshot snapshot) throws IOException {
+    ByteBuffer data = segment.readAll();
+    Tail tail = new Tail();
+    while (data.hasRemaining()) {
+      int pos = data.position();
+      long lastOffset = data.getLong(pos) +
+                        data.getInt(pos + RecordBatch.LAST_OFFSET_DELTA_OFFSET);
+      if (lastOffset > skipThrough) {
+        tail.batches.add(RecordBatch.fromByteBuffer(data));
+        continue;
+      }
+      if (snapshot != null && lastOffset == skipThrough &&
+          data.getInt(pos + RecordBatch.CRC_OFFSET) ==
+              snapshot.getLastBatchCrc()) {
+        tail.verified = true;
+      }
+      data.position(pos + RecordBatch.LOG_OVERHEAD +
+                    data.getInt(pos + RecordBatch.LENGTH_OFFSET));
+    }
+    return tail;
+  }
+  // Tracks how much of the log the next snapshot would save replaying.
+  void replayed(RecordBatch batch) {
+    bytesSinceSnapshot += RecordBatch.LOG_OVERHEAD + batch.getBatchLength();
+    lastBatchCrc = batch.getCrc();
+  }
+  // Called after each image built from the log; the snapshot is written in
+  // the background.
+  public void maybeSnapshot(MetadataImage image) {
+    if (bytesSinceSnapshot < bytesBetweenSnapshots ||
+        image.getLastOffset() < 0) {
+      return;
+    }
+    bytesSinceSnapshot = 0;
+    MetadataSnapshot snapshot = new MetadataSnapshot(image, lastBatchCrc);
+    snapshotExecutor.submit(() -> {
+      try {
+        System.err.println("Wrote metadata snapshot " +
+                           snapshot.write(metadataLog.getDir()));
+      } catch (IOException e) {
+        System.err.println("Failed to write metadata snapshot: " + e);
+      }
+    });
+  }
+  @Override
+  public void close() {
+    snapshotExecutor.shutdown();
+  }
+  private static class Tail {
+    private final List<RecordBatch> batches = new ArrayList<>();
+    private boolean verified;
+  }
+}
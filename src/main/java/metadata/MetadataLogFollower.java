@@ -0,0 +1,134 @@
+package metadata;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import log.LogSegment;
+import log.PartitionLog;
+import log.RecordBatch;
+// Tails the metadata log for batches appended after startup. Each poll
+// applies the new records as one delta and publishes the resulting image
+// with a single reference swap, so handlers never lock and never observe a
+// partially applied batch. A batch that cannot be read is retried on the
+// next poll; one that cannot be parsed or replayed stops the follower.
+public class MetadataLogFollower implements Closeable {
+  private final PartitionLog metadataLog;
+  private final MetadataLoader loader;
+  private final AtomicReference<MetadataImage> image;
+  private final Consumer<MetadataImage> onPublish;
+  private final ScheduledExecutorService executor =
+      Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "metadata-follower");
+        thread.setDaemon(true);
+        return thread;
+      });
+  // Read position: everything before it has been applied.
+  private LogSegment segment;
+  private long position;
+  // onPublish is called on the follower thread with each new image.
+  public MetadataLogFollower(PartitionLog metadataLog, MetadataLoader loader,
+                             AtomicReference<MetadataImage> image,
+                             Consumer<MetadataImage> onPublish) {
+    this.metadataLog = metadataLog;
+    this.loader = loader;
+    this.image = image;
+    this.onPublish = onPublish;
+    List<LogSegment> segments = metadataLog.getSegments();
+    if (!segments.isEmpty()) {
+      this.segment = segments.get(segments.size() - 1);
+      this.position = segment.getSize();
+    }
+  }
+  public void start(long pollIntervalMs) {
+    executor.scheduleWithFixedDelay(() -> {
+      try {
+        poll();
+      } catch (IOException | RuntimeException e) {
+        System.err.println("Failed to follow the metadata log: " + e);
+      }
+    }, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+  }
+  private void poll() throws IOException {
+    metadataLog.refresh();
+    if (segment == null) {
+      List<LogSegment> segments = metadataLog.getSegments();
+      if (segments.isEmpty()) {
+        return;
+      }
+      segment = segments.get(0);
+      position = 0;
+    }
+    MetadataImage base = image.get();
+    MetadataDelta delta = new MetadataDelta(base);
+    List<RecordBatch> applied = new ArrayList<>();
+    IOException readFailure = null;
+    try {
+      readAppended(delta, applied);
+    } catch (IOException e) {
+      readFailure = e;
+    } catch (RuntimeException e) {
+      // The batch at the read position does not parse or replay, and never
+      // will: stop here rather than fail on it every poll. What came before
+      // it is still published, from a fresh delta since the failed replay
+      // may have applied part of the batch.
+      System.err.println("Stopped following the metadata log at " +
+                         segment.getFile() + " position " + position +
+                         ": " + e);
+      executor.shutdown();
+      delta = new MetadataDelta(base);
+      for (RecordBatch batch : applied) {
+        delta.replay(batch);
+      }
+    }
+    for (RecordBatch batch : applied) {
+      loader.replayed(batch);
+    }
+    if (!delta.isEmpty()) {
+      MetadataImage next = delta.apply();
+      image.set(next);
+      loader.maybeSnapshot(next);
+      onPublish.accept(next);
+    }
+    if (readFailure != null) {
+      throw readFailure;
+    }
+  }
+  // Replays the batches appended since the read position into delta,
+  // moving the position past each one once it is in. Batches the delta
+  // already covers are skipped.
+  private void readAppended(MetadataDelta delta, List<RecordBatch> applied)
+      throws IOException {
+    while (true) {
+      long end = segment.getSize();
+      if (position < end) {
+        ByteBuffer data = segment.read(position, (int)(end - position));
+        while (data.hasRemaining()) {
+          int start = data.position();
+          RecordBatch batch = RecordBatch.fromByteBuffer(data);
+          if (batch.getBaseOffset() + batch.getLastOffsetDelta() >
+              delta.getLastOffset()) {
+            delta.replay(batch);
+            applied.add(batch);
+          }
+          position += data.position() - start;
+        }
+      }
+      LogSegment next = metadataLog.nextSegment(segment);
+      if (next == null) {
+        return;
+      }
+      segment = next;
+      position = 0;
+    }
+  }
+  @Override
+  public void close() {
+    executor.shutdown();
+  }
+}
@@ -0,0 +1,171 @@
+package metadata;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import util.PersistentTreeMap;
+import util.StreamUtils;
+// Binary checkpoint of a MetadataImage, stored next to the metadata log as
+// <next offset>.broker-image. The controller keeps its own KRaft snapshots
+// in the same directory as <offset>-<epoch>.checkpoint, so only files that
+// match this class's naming exactly are read or pruned. lastBatchCrc is the
+// CRC of the log batch that ended at the image's lastOffset, so a snapshot
+// taken from a different log is detected instead of silently trusted.
+public class MetadataSnapshot {
+  public static final String SUFFIX = ".broker-image";
+  private static final Pattern FILE_NAME =
+      Pattern.compile("\\d{20}" + Pattern.quote(SUFFIX));
+  private static final int MAGIC = 0x4B4D4953;
+  private static final short VERSION = 0;
+  private final MetadataImage image;
+  private final int lastBatchCrc;
+  public MetadataSnapshot(MetadataImage image, int lastBatchCrc) {
+    this.image = image;
+    this.lastBatchCrc = lastBatchCrc;
+  }
+  public MetadataImage getImage() { return image; }
+  public int getLastBatchCrc() { return lastBatchCrc; }
+  // Writes atomically and then removes older snapshots of this broker's.
+  public Path write(Path dir) throws IOException {
+    byte[] payload = encode();
+    Path file = dir.resolve(
+        String.format("%020d%s", image.getLastOffset() + 1, SUFFIX));
+    Path tmp = dir.resolve(file.getFileName() + ".tmp");
+    Files.write(tmp, payload);
+    Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE,
+               StandardCopyOption.REPLACE_EXISTING);
+    for (Path old : list(dir)) {
+      if (!old.equals(file)) {
+        Files.deleteIfExists(old);
+      }
+    }
+    return file;
+  }
+  // Newest valid checkpoint in the directory; corrupt ones are skipped.
+  public static Optional<MetadataSnapshot> readLatest(Path dir)
+      throws IOException {
+    List<Path> files = list(dir);
+    for (int i = files.size() - 1; i >= 0; i--) {
+      try {
+        return Optional.of(decode(Files.readAllBytes(files.get(i))));
+      } catch (IOException e) {
+        System.err.println("Ignoring unreadable metadata snapshot " +
+                           files.get(i) + ": " + e.getMessage());
+      }
+    }
+    return Optional.empty();
+  }
+  private static List<Path> list(Path dir) throws IOException {
+    try (Stream<Path> listing = Files.list(dir)) {
+      return listing
+          .filter(path -> FILE_NAME.matcher(path.getFileName().toString())
+                              .matches())
+          .sorted(Comparator.comparing(path -> path.getFileName().toString()))
+          .toList();
+    }
+  }
+  private byte[] encode() {
+    byte[] body = StreamUtils.toBytes(dos -> {
+      dos.writeInt(MAGIC);
+      dos.writeShort(VERSION);
+      dos.writeLong(image.getLastOffset());
+      dos.writeInt(lastBatchCrc);
+      dos.writeInt(image.getFeatures().size());
+      for (Map.Entry<String, Short> feature : image.getFeatures().entrySet()) {
+        dos.writeUTF(feature.getKey());
+        dos.writeShort(feature.getValue());
+      }
+      dos.writeInt(image.getTopics().size());
+      for (TopicImage topic : image.getTopics()) {
+        dos.writeUTF(topic.name());
+        dos.writeLong(topic.id().getMostSignificantBits());
+        dos.writeLong(topic.id().getLeastSignificantBits());
+        dos.writeInt(topic.partitions().size());
+        PartitionTable partitions = topic.partitions();
+        for (int i = 0; i < partitions.size(); i++) {
+          dos.writeInt(partitions.partitionId(i));
+          dos.writeInt(partitions.leader(i));
+          dos.writeInt(partitions.leaderEpoch(i));
+          dos.writeInt(partitions.partitionEpoch(i));
+          dos.writeInt(partitions.replicaCount(i));
+          for (int r = 0; r < partitions.replicaCount(i); r++) {
+            dos.writeInt(partitions.replica(i, r));
+          }
+          dos.writeInt(partitions.isrCount(i));
+          for (int r = 0; r < partitions.isrCount(i); r++) {
+            dos.writeInt(partitions.isr(i, r));
+          }
+        }
+      }
+    });
+    CRC32C crc = new CRC32C();
+    crc.update(body);
+    return ByteBuffer.allocate(body.length + 4)
+        .put(body)
+        .putInt((int)crc.getValue())
+        .array();
+  }
+  private static MetadataSnapshot decode(byte[] data) throws IOException {
+    if (data.length < 4) {
+      throw new IOException("truncated");
+    }
+    CRC32C crc = new CRC32C();
+    crc.update(data, 0, data.length - 4);
+    if ((int)crc.getValue() != ByteBuffer.wrap(data).getInt(data.length - 4)) {
+      throw new IOException("checksum mismatch");
+    }
+    DataInputStream in = new DataInputStream(
+        new ByteArrayInputStream(data, 0, data.length - 4));
+    if (in.readInt() != MAGIC || in.readShort() != VERSION) {
+      throw new IOException("unsupported format");
+    }
+    long lastOffset = in.readLong();
+    int lastBatchCrc = in.readInt();
+    Map<String, Short> features = new HashMap<>();
+    for (int i = in.readInt(); i > 0; i--) {
+      features.put(in.readUTF(), in.readShort());
+    }
+    PersistentTreeMap<String, TopicImage> topicsByName =
+        PersistentTreeMap.empty();
+    TopicIdMap.Updater<TopicImage> topicsById =
+        TopicIdMap.<TopicImage>empty().updater();
+    for (int t = in.readInt(); t > 0; t--) {
+      String name = in.readUTF();
+      UUID id = new UUID(in.readLong(), in.readLong());
+      List<PartitionImage> partitions = new ArrayList<>();
+      for (int p = in.readInt(); p > 0; p--) {
+        partitions.add(new PartitionImage(in.readInt(), in.readInt(),
+                                          in.readInt(), in.readInt(),
+                                          readInts(in), readInts(in)));
+      }
+      TopicImage topic =
+          new TopicImage(name, id, PartitionTable.of(partitions));
+      topicsByName = topicsByName.put(name, topic);
+      topicsById.put(id, topic);
+    }
+    return new MetadataSnapshot(
+        new MetadataImage(topicsByName, topicsById.build(), features,
+                          lastOffset, 0),
+        lastBatchCrc);
+  }
+  private static int[] readInts(DataInputStream in) throws IOException {
+    int[] values = new int[in.readInt()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = in.readInt();
+    }
+    return values;
+  }
+}
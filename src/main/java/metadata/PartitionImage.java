@@ -0,0 +1,22 @@
+package metadata;
+import java.util.List;
+import log.PartitionRecord;
+import shared.CompactArray;
+public record PartitionImage(int partitionId, int leader, int leaderEpoch,
+                             int partitionEpoch, int[] replicas, int[] isr) {
+  public static PartitionImage fromRecord(PartitionRecord record) {
+    return new PartitionImage(record.getPartitionID(), record.getLeader(),
+                              record.getLeaderEpoch(),
+                              record.getPartitionEpoch(),
+                              toIntArray(record.getReplicaArray()),
+                              toIntArray(record.getInSyncReplicaArray()));
+  }
+  private static int[] toIntArray(CompactArray<Integer> array) {
+    List<Integer> elements = array.getElements();
+    int[] result = new int[elements.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = elements.get(i);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,100 @@
+package metadata;
+import java.util.Arrays;
+import java.util.Collection;
+// Immutable struct-of-arrays store for one topic's partitions, ordered by
+// partition id. Row i's replicas are pool[listOffsets[2i], listOffsets[2i+1])
+// and its ISR runs on to listOffsets[2i+2], so a partition costs a handful of
+// ints instead of a graph of boxed lists.
+public final class PartitionTable {
+  public static final PartitionTable EMPTY = new PartitionTable(
+      new int[0], new int[0], new int[0], new int[0], new int[] {0}, new int[0]);
+  private final int[] partitionIds;
+  private final int[] leaders;
+  private final int[] leaderEpochs;
+  private final int[] partitionEpochs;
+  private final int[] listOffsets;
+  private final int[] pool;
+  private PartitionTable(int[] partitionIds, int[] leaders, int[] leaderEpochs,
+                         int[] partitionEpochs, int[] listOffsets,
+                         int[] pool) {
+    this.partitionIds = partitionIds;
+    this.leaders = leaders;
+    this.leaderEpochs = leaderEpochs;
+    this.partitionEpochs = partitionEpochs;
+    this.listOffsets = listOffsets;
+    this.pool = pool;
+  }
+  // Partitions must be in partition id order.
+  public static PartitionTable of(Collection<PartitionImage> partitions) {
+    int size = partitions.size();
+    if (size == 0) {
+      return EMPTY;
+    }
+    int[] partitionIds = new int[size];
+    int[] leaders = new int[size];
+    int[] leaderEpochs = new int[size];
+    int[] partitionEpochs = new int[size];
+    int[] listOffsets = new int[2 * size + 1];
+    int poolSize = 0;
+    for (PartitionImage partition : partitions) {
+      poolSize += partition.replicas().length + partition.isr().length;
+    }
+    int[] pool = new int[poolSize];
+    int row = 0;
+    int end = 0;
+    for (PartitionImage partition : partitions) {
+      partitionIds[row] = partition.partitionId();
+      leaders[row] = partition.leader();
+      leaderEpochs[row] = partition.leaderEpoch();
+      partitionEpochs[row] = partition.partitionEpoch();
+      System.arraycopy(partition.replicas(), 0, pool, end,
+                       partition.replicas().length);
+      end += partition.replicas().length;
+      listOffsets[2 * row + 1] = end;
+      System.arraycopy(partition.isr(), 0, pool, end, partition.isr().length);
+      end += partition.isr().length;
+      listOffsets[2 * row + 2] = end;
+      row++;
+    }
+    return new PartitionTable(partitionIds, leaders, leaderEpochs,
+                              partitionEpochs, listOffsets, pool);
+  }
+  public int size() { return partitionIds.length; }
+  public boolean isEmpty() { return partitionIds.length == 0; }
+  // Row holding the partition, or -1.
+  public int indexOf(int partitionId) {
+    int index = Arrays.binarySearch(partitionIds, partitionId);
+    return index >= 0 ? index : -1;
+  }
+  // Index of the first row whose partition id is >= partitionId; size() if
+  // there is none.
+  public int ceilingIndex(int partitionId) {
+    int index = Arrays.binarySearch(partitionIds, partitionId);
+    return index >= 0 ? index : -index - 1;
+  }
+  public int partitionId(int index) { return partitionIds[index]; }
+  public int leader(int index) { return leaders[index]; }
+  public int leaderEpoch(int index) { return leaderEpochs[index]; }
+  public int partitionEpoch(int index) { return partitionEpochs[index]; }
+  public int replicaCount(int index) {
+    return listOffsets[2 * index + 1] - listOffsets[2 * index];
+  }
+  public int replica(int index, int i) {
+    return pool[listOffsets[2 * index] + i];
+  }
+  public int isrCount(int index) {
+    return listOffsets[2 * index + 2] - listOffsets[2 * index + 1];
+  }
+  public int isr(int index, int i) {
+    return pool[listOffsets[2 * index + 1] + i];
+  }
+  public PartitionImage get(int index) {
+    return new PartitionImage(
+        partitionIds[index], leaders[index], leaderEpochs[index],
+        partitionEpochs[index],
+        Arrays.copyOfRange(pool, listOffsets[2 * index],
+                           listOffsets[2 * index + 1]),
+        Arrays.copyOfRange(pool, listOffsets[2 * index + 1],
+                           listOffsets[2 * index + 2]));
+  }
+}
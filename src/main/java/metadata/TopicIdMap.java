@@ -0,0 +1,209 @@
+package metadata;
+import java.util.Arrays;
+import java.util.UUID;
+// Immutable topic id -> value map keyed by the two raw longs of the id, so a
+// decoder can look a topic up straight from the wire without allocating a
+// UUID. Entries live in open-addressing segments chosen by the high hash
+// bits; an Updater copies only the segments it writes to, and the segment
+// count doubles as the map grows so each stays small.
+public final class TopicIdMap<V> {
+  private static final int TARGET_SEGMENT_SIZE = 1024;
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  private static final TopicIdMap<?> EMPTY =
+      new TopicIdMap<Object>(new Segment[] {new Segment<>(16)}, 0);
+  private final Segment<V>[] segments;
+  private final int size;
+  private TopicIdMap(Segment<V>[] segments, int size) {
+    this.segments = segments;
+    this.size = size;
+  }
+  @SuppressWarnings("unchecked")
+  public static <V> TopicIdMap<V> empty() {
+    return (TopicIdMap<V>)EMPTY;
+  }
+  public int size() { return size; }
+  public V get(long msb, long lsb) {
+    long hash = hash(msb, lsb);
+    return segments[segmentIndex(hash, segments.length)].get(msb, lsb, hash);
+  }
+  public V get(UUID id) {
+    return get(id.getMostSignificantBits(), id.getLeastSignificantBits());
+  }
+  public Updater<V> updater() { return new Updater<>(this); }
+  private static long hash(long msb, long lsb) {
+    long h = msb * 0x9E3779B97F4A7C15L ^ lsb;
+    h ^= h >>> 33;
+    h *= 0xFF51AFD7ED558CCDL;
+    h ^= h >>> 33;
+    return h;
+  }
+  private static int segmentIndex(long hash, int segmentCount) {
+    return (int)(hash >>> 40) & (segmentCount - 1);
+  }
+  // Builds the next version of a map. Not thread-safe; the source map is
+  // never modified.
+  public static final class Updater<V> {
+    private Segment<V>[] segments;
+    private boolean[] owned;
+    private int size;
+    private Updater(TopicIdMap<V> base) {
+      this.segments = base.segments.clone();
+      this.owned = new boolean[segments.length];
+      this.size = base.size;
+    }
+    public Updater<V> put(long msb, long lsb, V value) {
+      if (value == null) {
+        throw new NullPointerException("value");
+      }
+      long hash = hash(msb, lsb);
+      if (writable(hash).put(msb, lsb, hash, value)) {
+        size++;
+        if (size > segments.length * TARGET_SEGMENT_SIZE * 2) {
+          split();
+        }
+      }
+      return this;
+    }
+    public Updater<V> put(UUID id, V value) {
+      return put(id.getMostSignificantBits(), id.getLeastSignificantBits(),
+                 value);
+    }
+    public Updater<V> remove(long msb, long lsb) {
+      long hash = hash(msb, lsb);
+      if (segments[segmentIndex(hash, segments.length)].get(msb, lsb, hash) !=
+          null) {
+        writable(hash).remove(msb, lsb, hash);
+        size--;
+      }
+      return this;
+    }
+    public TopicIdMap<V> build() {
+      owned = new boolean[segments.length];
+      return new TopicIdMap<>(segments.clone(), size);
+    }
+    private Segment<V> writable(long hash) {
+      int index = segmentIndex(hash, segments.length);
+      if (!owned[index]) {
+        segments[index] = segments[index].copy();
+        owned[index] = true;
+      }
+      return segments[index];
+    }
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private void split() {
+      Segment<V>[] split = new Segment[segments.length * 2];
+      for (int i = 0; i < split.length; i++) {
+        split[i] = new Segment<>(TARGET_SEGMENT_SIZE * 2);
+      }
+      for (Segment<V> segment : segments) {
+        segment.forEach((msb, lsb, value) -> {
+          long hash = hash(msb, lsb);
+          split[segmentIndex(hash, split.length)].put(msb, lsb, hash, value);
+        });
+      }
+      segments = split;
+      owned = new boolean[split.length];
+      Arrays.fill(owned, true);
+    }
+  }
+  private interface EntryConsumer<V> {
+    void accept(long msb, long lsb, V value);
+  }
+  // Linear probing over interleaved msb/lsb keys; a null value marks a free
+  // slot, so every id including all-zero is a valid key.
+  private static final class Segment<V> {
+    private long[] keys;
+    private Object[] values;
+    private int size;
+    Segment(int capacity) {
+      this.keys = new long[capacity * 2];
+      this.values = new Object[capacity];
+    }
+    private Segment(long[] keys, Object[] values, int size) {
+      this.keys = keys;
+      this.values = values;
+      this.size = size;
+    }
+    Segment<V> copy() {
+      return new Segment<>(keys.clone(), values.clone(), size);
+    }
+    @SuppressWarnings("unchecked")
+    V get(long msb, long lsb, long hash) {
+      int mask = values.length - 1;
+      for (int slot = (int)hash & mask;; slot = (slot + 1) & mask) {
+        Object value = values[slot];
+        if (value == null) {
+          return null;
+        }
+        if (keys[2 * slot] == msb && keys[2 * slot + 1] == lsb) {
+          return (V)value;
+        }
+      }
+    }
+    // Returns true when the key was not present before.
+    boolean put(long msb, long lsb, long hash, V value) {
+      if ((size + 1) * 2 > values.length) {
+        grow();
+      }
+      int mask = values.length - 1;
+      for (int slot = (int)hash & mask;; slot = (slot + 1) & mask) {
+        if (values[slot] == null) {
+          keys[2 * slot] = msb;
+          keys[2 * slot + 1] = lsb;
+          values[slot] = value;
+          size++;
+          return true;
+        }
+        if (keys[2 * slot] == msb && keys[2 * slot + 1] == lsb) {
+          values[slot] = value;
+          return false;
+        }
+      }
+    }
+    // Backward-shift deletion keeps probe chains intact without tombstones.
+    void remove(long msb, long lsb, long hash) {
+      int mask = values.length - 1;
+      int slot = (int)hash & mask;
+      while (keys[2 * slot] != msb || keys[2 * slot + 1] != lsb) {
+        slot = (slot + 1) & mask;
+      }
+      int hole = slot;
+      for (int next = (hole + 1) & mask; values[next] != null;
+           next = (next + 1) & mask) {
+        int home = (int)hash(keys[2 * next], keys[2 * next + 1]) & mask;
+        // Move the entry back if the hole lies on its probe path.
+        if (((next - home) & mask) >= ((next - hole) & mask)) {
+          keys[2 * hole] = keys[2 * next];
+          keys[2 * hole + 1] = keys[2 * next + 1];
+          values[hole] = values[next];
+          hole = next;
+        }
+      }
+      values[hole] = null;
+      size--;
+    }
+    @SuppressWarnings("unchecked")
+    void forEach(EntryConsumer<V> consumer) {
+      for (int slot = 0; slot < values.length; slot++) {
+        if (values[slot] != null) {
+          consumer.accept(keys[2 * slot], keys[2 * slot + 1], (V)values[slot]);
+        }
+      }
+    }
+    @SuppressWarnings("unchecked")
+    private void grow() {
+      long[] oldKeys = keys;
+      Object[] oldValues = values;
+      keys = new long[oldKeys.length * 2];
+      values = new Object[oldValues.length * 2];
+      size = 0;
+      for (int slot = 0; slot < oldValues.length; slot++) {
+        if (oldValues[slot] != null) {
+          long msb = oldKeys[2 * slot];
+          long lsb = oldKeys[2 * slot + 1];
+          put(msb, lsb, hash(msb, lsb), (V)oldValues[slot]);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,3 @@
+package metadata;
+import java.util.UUID;
+public record TopicImage(String name, UUID id, PartitionTable partitions) {}
@@ -0,0 +1,63 @@
+package metrics;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import log.BlockCache;
+import log.LogDir;
+public class BrokerMetrics {
+  public static final int MAX_API_KEY = 128;
+  private static final BrokerMetrics INSTANCE = new BrokerMetrics();
+  private final LongAdder activeConnections = new LongAdder();
+  private final LongAdder acceptedConnections = new LongAdder();
+  private final LongAdder[] requestsByApiKey = new LongAdder[MAX_API_KEY];
+  private final Map<String, PartitionMetrics> partitions =
+      new ConcurrentHashMap<>();
+  private volatile BlockCache blockCache = BlockCache.DISABLED;
+  private volatile Collection<LogDir> logDirs = List.of();
+  private BrokerMetrics() {
+    for (int i = 0; i < MAX_API_KEY; i++) {
+      requestsByApiKey[i] = new LongAdder();
+    }
+  }
+  public static BrokerMetrics get() { return INSTANCE; }
+  public void connectionOpened() {
+    acceptedConnections.increment();
+    activeConnections.increment();
+  }
+  public void connectionClosed() { activeConnections.decrement(); }
+  public void recordRequest(short apiKey) {
+    if (apiKey >= 0 && apiKey < MAX_API_KEY) {
+      requestsByApiKey[apiKey].increment();
+    }
+  }
+  public PartitionMetrics partition(String topicPartition) {
+    PartitionMetrics metrics = partitions.get(topicPartition);
+    if (metrics != null) {
+      return metrics;
+    }
+    return partitions.computeIfAbsent(topicPartition, PartitionMetrics::new);
+  }
+  // The cache's own counters are exported as they are.
+  public void setBlockCache(BlockCache blockCache) {
+    this.blockCache = blockCache;
+  }
+  public BlockCache getBlockCache() { return blockCache; }
+  // Per-dir counters are kept by the dirs themselves.
+  public void setLogDirs(Collection<LogDir> logDirs) {
+    this.logDirs = logDirs;
+  }
+  public Collection<LogDir> getLogDirs() { return logDirs; }
+  public long getActiveConnections() { return activeConnections.sum(); }
+  public long getAcceptedConnections() { return acceptedConnections.sum(); }
+  public long getRequestCount(int apiKey) {
+    return requestsByApiKey[apiKey].sum();
+  }
+  // Weakly consistent copy of the registry; values are read lazily by the
+  // caller, so no lock is ever taken against the request path.
+  public List<PartitionMetrics> partitionsSnapshot() {
+    return new ArrayList<>(partitions.values());
+  }
+}
@@ -0,0 +1,197 @@
+package metrics;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.ToLongFunction;
+import log.BlockCache;
+import log.LogDir;
+import log.PartitionLog;
+import log.TopicPartition;
+public class MetricsHttpServer {
+  private static final String CONTENT_TYPE =
+      "text/plain; version=0.0.4; charset=utf-8";
+  private final BrokerMetrics metrics;
+  private final HttpServer server;
+  private final ExecutorService executor =
+      Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "metrics-http");
+        thread.setDaemon(true);
+        return thread;
+      });
+  public MetricsHttpServer(int port, BrokerMetrics metrics) throws IOException {
+    this.metrics = metrics;
+    this.server = HttpServer.create(new InetSocketAddress(port), 0);
+    this.server.createContext("/metrics", this::handle);
+    this.server.setExecutor(executor);
+  }
+  public void start() { server.start(); }
+  public int getPort() { return server.getAddress().getPort(); }
+  public void stop() {
+    server.stop(0);
+    executor.shutdown();
+  }
+  private void handle(HttpExchange exchange) throws IOException {
+    try (exchange) {
+      if (!"GET".equals(exchange.getRequestMethod())) {
+        exchange.sendResponseHeaders(405, -1);
+        return;
+      }
+      exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+      // Length 0 selects chunked encoding, so the body is streamed out as it
+      // is rendered instead of being buffered whole.
+      exchange.sendResponseHeaders(200, 0);
+      try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+               exchange.getResponseBody(), StandardCharsets.UTF_8))) {
+        render(writer);
+      }
+    }
+  }
+  private void render(Writer out) throws IOException {
+    header(out, "kafka_server_connections_active", "gauge",
+           "Currently open client connections.");
+    sample(out, "kafka_server_connections_active", "",
+           metrics.getActiveConnections());
+    header(out, "kafka_server_connections_accepted_total", "counter",
+           "Client connections accepted since startup.");
+    sample(out, "kafka_server_connections_accepted_total", "",
+           metrics.getAcceptedConnections());
+    header(out, "kafka_server_requests_total", "counter",
+           "Requests received, by API key.");
+    for (int apiKey = 0; apiKey < BrokerMetrics.MAX_API_KEY; apiKey++) {
+      long count = metrics.getRequestCount(apiKey);
+      if (count > 0) {
+        sample(out, "kafka_server_requests_total",
+               "{api_key=\"" + apiKey + "\"}", count);
+      }
+    }
+    BlockCache blockCache = metrics.getBlockCache();
+    header(out, "kafka_log_block_cache_hits_total", "counter",
+           "Segment reads served from the block cache, in blocks.");
+    sample(out, "kafka_log_block_cache_hits_total", "", blockCache.getHits());
+    header(out, "kafka_log_block_cache_misses_total", "counter",
+           "Blocks loaded from segment files into the block cache.");
+    sample(out, "kafka_log_block_cache_misses_total", "",
+           blockCache.getMisses());
+    header(out, "kafka_log_block_cache_evictions_total", "counter",
+           "Blocks evicted to make room for others.");
+    sample(out, "kafka_log_block_cache_evictions_total", "",
+           blockCache.getEvictions());
+    header(out, "kafka_log_block_cache_used_bytes", "gauge",
+           "Off-heap bytes holding cached blocks.");
+    sample(out, "kafka_log_block_cache_used_bytes", "",
+           blockCache.getUsedBytes());
+    header(out, "kafka_log_block_cache_capacity_bytes", "gauge",
+           "Off-heap budget of the block cache.");
+    sample(out, "kafka_log_block_cache_capacity_bytes", "",
+           blockCache.getCapacityBytes());
+    Collection<LogDir> logDirs = metrics.getLogDirs();
+    logDirFamily(out, logDirs, "kafka_log_dir_read_bytes_total", "counter",
+                 "Segment bytes read from the log dir for fetches.",
+                 LogDir::getBytesRead);
+    logDirFamily(out, logDirs, "kafka_log_dir_write_bytes_total", "counter",
+                 "Record bytes appended to the log dir's partitions.",
+                 LogDir::getBytesWritten);
+    logDirFamily(out, logDirs, "kafka_log_dir_flushes_total", "counter",
+                 "Partition flushes run by the log dir's flusher.",
+                 LogDir::getFlushes);
+    logDirFamily(out, logDirs, "kafka_log_dir_flush_time_ms_total", "counter",
+                 "Time the log dir's flusher spent forcing data to disk.",
+                 LogDir::getFlushTimeMs);
+    logDirFamily(out, logDirs, "kafka_log_dir_partitions", "gauge",
+                 "Partitions stored in the log dir.",
+                 LogDir::getPartitionCount);
+    logDirFamily(out, logDirs, "kafka_log_dir_size_bytes", "gauge",
+                 "Total size of the log dir's segment files.",
+                 LogDir::getSizeBytes);
+    List<PartitionMetrics> partitions = metrics.partitionsSnapshot();
+    partitionFamily(out, partitions, "kafka_log_bytes_in_total", "counter",
+                    "Record bytes appended to the partition.",
+                    PartitionMetrics::getBytesIn);
+    partitionFamily(out, partitions, "kafka_log_bytes_out_total", "counter",
+                    "Record bytes returned to fetchers.",
+                    PartitionMetrics::getBytesOut);
+    List<PartitionLog> logs = new ArrayList<>();
+    for (LogDir logDir : logDirs) {
+      logs.addAll(logDir.getLogs());
+    }
+    logFamily(out, logs, "kafka_log_log_end_offset", "gauge",
+              "Offset of the next record to be appended.",
+              PartitionLog::getLogEndOffset);
+    logFamily(out, logs, "kafka_log_segments", "gauge",
+              "Number of segment files.",
+              log -> log.getSegments().size());
+    logFamily(out, logs, "kafka_log_size_bytes", "gauge",
+              "Total size of the partition's segment files.",
+              PartitionLog::getSize);
+  }
+  private static void partitionFamily(Writer out,
+                                      List<PartitionMetrics> partitions,
+                                      String name, String type, String help,
+                                      ToLongFunction<PartitionMetrics> value)
+      throws IOException {
+    header(out, name, type, help);
+    for (PartitionMetrics partition : partitions) {
+      sample(out, name,
+             partitionLabels(partition.getTopic(), partition.getPartition()),
+             value.applyAsLong(partition));
+    }
+  }
+  // Read from the logs as they are now, so partitions created since startup
+  // are included.
+  private static void logFamily(Writer out, List<PartitionLog> logs,
+                                String name, String type, String help,
+                                ToLongFunction<PartitionLog> value)
+      throws IOException {
+    header(out, name, type, help);
+    for (PartitionLog log : logs) {
+      TopicPartition topicPartition = log.getTopicPartition();
+      sample(out, name,
+             partitionLabels(topicPartition.topic(),
+                             topicPartition.partition()),
+             value.applyAsLong(log));
+    }
+  }
+  private static void logDirFamily(Writer out, Collection<LogDir> logDirs,
+                                   String name, String type, String help,
+                                   ToLongFunction<LogDir> value)
+      throws IOException {
+    header(out, name, type, help);
+    for (LogDir logDir : logDirs) {
+      sample(out, name,
+             "{dir=\"" + escape(logDir.getPath().toString()) + "\"}",
+             value.applyAsLong(logDir));
+    }
+  }
+  private static void header(Writer out, String name, String type,
+                             String help) throws IOException {
+    out.write("# HELP " + name + " " + help + "\n");
+    out.write("# TYPE " + name + " " + type + "\n");
+  }
+  private static void sample(Writer out, String name, String labels,
+                             long value) throws IOException {
+    out.write(name);
+    out.write(labels);
+    out.write(' ');
+    out.write(Long.toString(value));
+    out.write('\n');
+  }
+  private static String partitionLabels(String topic, int partition) {
+    return "{topic=\"" + escape(topic) + "\",partition=\"" + partition +
+        "\"}";
+  }
+  private static String escape(String labelValue) {
+    return labelValue.replace("\\", "\\\\")
+        .replace("\"", "\\\"")
+        .replace("\n", "\\n");
+  }
+}
@@ -0,0 +1,22 @@
+package metrics;
+import java.util.concurrent.atomic.LongAdder;
+import log.TopicPartition;
+// Traffic counters for one partition. Gauges of the log itself are read
+// from the live PartitionLog when the metrics are scraped.
+public class PartitionMetrics {
+  private final String topic;
+  private final int partition;
+  private final LongAdder bytesIn = new LongAdder();
+  private final LongAdder bytesOut = new LongAdder();
+  public PartitionMetrics(String topicPartition) {
+    TopicPartition parsed = TopicPartition.fromDirectoryName(topicPartition);
+    this.topic = parsed.topic();
+    this.partition = parsed.partition();
+  }
+  public String getTopic() { return topic; }
+  public int getPartition() { return partition; }
+  public long getBytesIn() { return bytesIn.sum(); }
+  public long getBytesOut() { return bytesOut.sum(); }
+  public void recordBytesIn(long bytes) { bytesIn.add(bytes); }
+  public void recordBytesOut(long bytes) { bytesOut.add(bytes); }
+}
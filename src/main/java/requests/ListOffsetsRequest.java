@@ -0,0 +1,46 @@
+package requests;
+import java.nio.ByteBuffer;
+import shared.CompactArray;
+import shared.ListOffsetsTopic;
+import shared.TagBuffer;
+import shared.serializer.ListOffsetsTopicSerializer;
+import util.StreamUtils;
+// Flexible versions 6 through 9 only.
+public class ListOffsetsRequest extends RequestBody<ListOffsetsRequest> {
+  public static final short MIN_VERSION = 6;
+  public static final short MAX_VERSION = 9;
+  public static final long LATEST_TIMESTAMP = -1;
+  public static final long EARLIEST_TIMESTAMP = -2;
+  public static final long MAX_TIMESTAMP = -3;
+  public static final long EARLIEST_LOCAL_TIMESTAMP = -4;
+  public static final long LATEST_TIERED_TIMESTAMP = -5;
+  private int replicaId;
+  private byte isolationLevel;
+  private CompactArray<ListOffsetsTopic> topics;
+  private TagBuffer tagBuffer;
+  public static boolean isSupported(short version) {
+    return version >= MIN_VERSION && version <= MAX_VERSION;
+  }
+  public int getReplicaId() { return replicaId; }
+  public byte getIsolationLevel() { return isolationLevel; }
+  public CompactArray<ListOffsetsTopic> getTopics() { return topics; }
+  public TagBuffer getTagBuffer() { return tagBuffer; }
+  @Override
+  public ListOffsetsRequest fromByteBuffer(ByteBuffer data) {
+    this.replicaId = data.getInt();
+    this.isolationLevel = data.get();
+    this.topics =
+        CompactArray.fromByteBuffer(data, new ListOffsetsTopicSerializer());
+    this.tagBuffer = TagBuffer.fromByteBuffer(data);
+    return this;
+  }
+  @Override
+  public byte[] toBytes() {
+    return StreamUtils.toBytes(dos -> {
+      dos.writeInt(replicaId);
+      dos.write(isolationLevel);
+      dos.write(topics.toBytes());
+      dos.write(tagBuffer.toBytes());
+    });
+  }
+}
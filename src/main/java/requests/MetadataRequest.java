@@ -0,0 +1,70 @@
+package requests;
+import java.nio.ByteBuffer;
+import shared.CompactArray;
+import shared.MetadataRequestTopic;
+import shared.TagBuffer;
+import shared.VarInt;
+import shared.serializer.MetadataRequestTopicSerializer;
+import util.StreamUtils;
+// Flexible versions 9 through 12 only.
+public class MetadataRequest extends RequestBody<MetadataRequest> {
+  public static final short MIN_VERSION = 9;
+  public static final short MAX_VERSION = 12;
+  private final short version;
+  // Null asks for every topic; an empty array for none.
+  private CompactArray<MetadataRequestTopic> topics;
+  private boolean allowAutoTopicCreation;
+  private boolean includeClusterAuthorizedOperations;
+  private boolean includeTopicAuthorizedOperations;
+  private TagBuffer tagBuffer;
+  public MetadataRequest(short version) { this.version = version; }
+  public static boolean isSupported(short version) {
+    return version >= MIN_VERSION && version <= MAX_VERSION;
+  }
+  public short getVersion() { return version; }
+  public CompactArray<MetadataRequestTopic> getTopics() { return topics; }
+  public boolean isAllTopics() { return topics == null; }
+  public boolean isAllowAutoTopicCreation() { return allowAutoTopicCreation; }
+  public boolean isIncludeClusterAuthorizedOperations() {
+    return includeClusterAuthorizedOperations;
+  }
+  public boolean isIncludeTopicAuthorizedOperations() {
+    return includeTopicAuthorizedOperations;
+  }
+  public TagBuffer getTagBuffer() { return tagBuffer; }
+  @Override
+  public MetadataRequest fromByteBuffer(ByteBuffer data) {
+    int pos = data.position();
+    if (VarInt.fromByteBuffer(data).getUnsignedValue() == 0) {
+      this.topics = null;
+    } else {
+      data.position(pos);
+      this.topics = CompactArray.fromByteBuffer(
+          data, new MetadataRequestTopicSerializer(version));
+    }
+    this.allowAutoTopicCreation = data.get() != 0;
+    // Dropped from the request in version 11.
+    if (version <= 10) {
+      this.includeClusterAuthorizedOperations = data.get() != 0;
+    }
+    this.includeTopicAuthorizedOperations = data.get() != 0;
+    this.tagBuffer = TagBuffer.fromByteBuffer(data);
+    return this;
+  }
+  @Override
+  public byte[] toBytes() {
+    return StreamUtils.toBytes(dos -> {
+      if (topics == null) {
+        dos.write(new VarInt(0).toBytes());
+      } else {
+        dos.write(topics.toBytes());
+      }
+      dos.writeBoolean(allowAutoTopicCreation);
+      if (version <= 10) {
+        dos.writeBoolean(includeClusterAuthorizedOperations);
+      }
+      dos.writeBoolean(includeTopicAuthorizedOperations);
+      dos.write(tagBuffer.toBytes());
+    });
+  }
+}
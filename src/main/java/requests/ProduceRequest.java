@@ -0,0 +1,63 @@
+package requests;
+import java.nio.ByteBuffer;
+import shared.CompactArray;
+import shared.CompactString;
+import shared.ProduceTopic;
+import shared.TagBuffer;
+import shared.VarInt;
+import shared.serializer.ProduceTopicSerializer;
+import util.StreamUtils;
+// Flexible versions 9 through 11, which name topics rather than give their
+// ids.
+public class ProduceRequest extends RequestBody<ProduceRequest> {
+  public static final short MIN_VERSION = 9;
+  public static final short MAX_VERSION = 11;
+  private String transactionalId;
+  private short acks;
+  private int timeoutMs;
+  private CompactArray<ProduceTopic> topics;
+  private TagBuffer tagBuffer;
+  public ProduceRequest() {}
+  public ProduceRequest(String transactionalId, short acks, int timeoutMs,
+                        CompactArray<ProduceTopic> topics,
+                        TagBuffer tagBuffer) {
+    this.transactionalId = transactionalId;
+    this.acks = acks;
+    this.timeoutMs = timeoutMs;
+    this.topics = topics;
+    this.tagBuffer = tagBuffer;
+  }
+  public static boolean isSupported(short version) {
+    return version >= MIN_VERSION && version <= MAX_VERSION;
+  }
+  public String getTransactionalId() { return transactionalId; }
+  public short getAcks() { return acks; }
+  public int getTimeoutMs() { return timeoutMs; }
+  public CompactArray<ProduceTopic> getTopics() { return topics; }
+  public TagBuffer getTagBuffer() { return tagBuffer; }
+  @Override
+  public ProduceRequest fromByteBuffer(ByteBuffer data) {
+    // A COMPACT_NULLABLE_STRING: a zero length prefix is null.
+    int length = VarInt.fromByteBuffer(data).getUnsignedValue();
+    this.transactionalId =
+        length == 0 ? null : CompactString.read(data, length - 1).toString();
+    this.acks = data.getShort();
+    this.timeoutMs = data.getInt();
+    this.topics =
+        CompactArray.fromByteBuffer(data, new ProduceTopicSerializer());
+    this.tagBuffer = TagBuffer.fromByteBuffer(data);
+    return this;
+  }
+  @Override
+  public byte[] toBytes() {
+    return StreamUtils.toBytes(dos -> {
+      dos.write(transactionalId == null
+                    ? new VarInt(0).toBytes()
+                    : new CompactString(transactionalId).toBytes());
+      dos.writeShort(acks);
+      dos.writeInt(timeoutMs);
+      dos.write(topics.toBytes());
+      dos.write(tagBuffer.toBytes());
+    });
+  }
+}
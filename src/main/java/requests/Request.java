@@ -13,6 +13,30 @@ public record Request<T>(RequestHeader header, T body) {
             case 1 -> {
                 return new Request<>(requestHeader, new FetchRequest().fromByteBuffer(data));
             }
+            case 0 -> {
+                short version = requestHeader.getRequestAPIVersion();
+                if (!ProduceRequest.isSupported(version)) {
+                    System.err.println("Unsupported Produce version: " + version);
+                    return new Request<>(requestHeader, null);
+                }
+                return new Request<>(requestHeader, new ProduceRequest().fromByteBuffer(data));
+            }
+            case 2 -> {
+                short version = requestHeader.getRequestAPIVersion();
+                if (!ListOffsetsRequest.isSupported(version)) {
+                    System.err.println("Unsupported ListOffsets version: " + version);
+                    return new Request<>(requestHeader, null);
+                }
+                return new Request<>(requestHeader, new ListOffsetsRequest().fromByteBuffer(data));
+            }
+            case 3 -> {
+                short version = requestHeader.getRequestAPIVersion();
+                if (!MetadataRequest.isSupported(version)) {
+                    System.err.println("Unsupported Metadata version: " + version);
+                    return new Request<>(requestHeader, null);
+                }
+                return new Request<>(requestHeader, new MetadataRequest(version).fromByteBuffer(data));
+            }
             default -> {
                 System.err.println("Unimplemented API Key: " + requestHeader.getRequestAPIKey());
                 return new Request<>(requestHeader, null);
@@ -1,6 +1,7 @@
 package requests;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import shared.CompactString;
 import shared.TagBuffer;
 import util.StreamUtils;
 public class RequestHeader {
@@ -43,9 +44,8 @@ public class RequestHeader {
     short clientIdLen = data.getShort();
     String clientId = "";
     if (clientIdLen != -1) {
-      byte[] buf = new byte[clientIdLen];
-      data.get(buf);
-      clientId = new String(buf, StandardCharsets.UTF_8);
+      // Interned, so a connection's repeated client id decodes only once.
+      clientId = CompactString.read(data, clientIdLen).toString();
     }
     TagBuffer tagBuffer = TagBuffer.fromByteBuffer(data);
     return new RequestHeader(requestAPIKey, requestAPIVersion, correlationId,
@@ -1,8 +1,9 @@
 package responses;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
+import requests.ListOffsetsRequest;
+import requests.MetadataRequest;
+import requests.ProduceRequest;
 import requests.Request;
 import shared.APIVersions;
 import shared.CompactArray;
@@ -10,36 +11,46 @@ import shared.TagBuffer;
 import shared.serializer.APIVersionsSerializer;
 import util.StreamUtils;
 public class APIVersionsResponse extends ResponseBody {
-  private short errorCode = 0;
-  private CompactArray<APIVersions> apiVersionsArray;
-  private int throttleTime = 0;
-  private TagBuffer tagBuffer = new TagBuffer();
+  static final short MAX_VERSION = 4;
+  private static final List<APIVersions> SUPPORTED_APIS = List.of(
+      new APIVersions((short)18, (short)0, MAX_VERSION, new TagBuffer()),
+      new APIVersions((short)75, (short)0, (short)0, new TagBuffer()),
+      new APIVersions((short)1, (short)0, (short)16, new TagBuffer()),
+      new APIVersions((short)2, ListOffsetsRequest.MIN_VERSION,
+                      ListOffsetsRequest.MAX_VERSION, new TagBuffer()),
+      new APIVersions((short)3, MetadataRequest.MIN_VERSION,
+                      MetadataRequest.MAX_VERSION, new TagBuffer()),
+      new APIVersions((short)0, ProduceRequest.MIN_VERSION,
+                      ProduceRequest.MAX_VERSION, new TagBuffer()));
+  // The body only depends on whether the request version is supported, so
+  // both variants are encoded once and shared by every response.
+  private static final byte[] SUPPORTED_BODY = encode((short)0);
+  private static final byte[] UNSUPPORTED_BODY = encode((short)35);
+  private final byte[] body;
   protected APIVersionsResponse(Request<?> request) {
-    if (request.header().getRequestAPIVersion() != 4) {
-      this.errorCode = 35;
-    }
-    List<APIVersions> apiVersionsList = new ArrayList<>(Arrays.asList(
-        new APIVersions((short)18, (short)0, (short)4, new TagBuffer()),
-        new APIVersions((short)75, (short)0, (short)0, new TagBuffer()),
-        new APIVersions((short)1, (short)0, (short)16, new TagBuffer())
-            ));
-    this.apiVersionsArray =
-        CompactArray.withElements(apiVersionsList, new APIVersionsSerializer());
+    this.body = request.header().getRequestAPIVersion() == MAX_VERSION
+                    ? SUPPORTED_BODY
+                    : UNSUPPORTED_BODY;
   }
   public static APIVersionsResponse fromRequest(Request<?> request) {
     return new APIVersionsResponse(request);
   }
+  private static byte[] encode(short errorCode) {
+    CompactArray<APIVersions> apiVersionsArray =
+        CompactArray.withElements(SUPPORTED_APIS, new APIVersionsSerializer());
+    return StreamUtils.toBytes(dos -> {
+      dos.writeShort(errorCode);
+      dos.write(apiVersionsArray.toBytes());
+      dos.writeInt(0);
+      dos.write(new TagBuffer().toBytes());
+    });
+  }
   @Override
   public APIVersionsResponse fromBytebuffer(ByteBuffer data) {
     return null;
   }
   @Override
   public byte[] toBytes() {
-    return StreamUtils.toBytes(dos -> {
-      dos.writeShort(errorCode);
-      dos.write(apiVersionsArray.toBytes());
-      dos.writeInt(throttleTime);
-      dos.write(tagBuffer.toBytes());
-    });
+    return body;
   }
-}
\ No newline at end of file
+}
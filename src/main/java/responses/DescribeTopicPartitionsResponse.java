@@ -1,96 +1,154 @@
 package responses;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Optional;
-import java.util.UUID;
-import log.PartitionRecord;
-import log.Record;
-import log.RecordBatch;
-import log.TopicRecord;
+import java.util.TreeMap;
+import metadata.MetadataImage;
+import metadata.PartitionTable;
+import metadata.TopicImage;
 import requests.DescribeTopicPartitionsRequest;
 import requests.Request;
 import shared.*;
+import shared.serializer.ByteArraySerializer;
 import shared.serializer.CursorSerializer;
 import shared.serializer.PartitionSerializer;
 import shared.serializer.ResponseTopicSerializer;
 import util.StreamUtils;
 public class DescribeTopicPartitionsResponse extends ResponseBody {
   private int throttleTime = 0;
-  private CompactArray<ResponseTopic> topicsArray;
+  // Each element is an already encoded ResponseTopic.
+  private CompactArray<byte[]> topicsArray;
   private Cursor nextCursor;
   private TagBuffer tagBuffer = new TagBuffer();
+  // Upper bound on partitions per response, whatever the client asks for;
+  // matches Kafka's max.request.partition.size.limit default.
+  static final int MAX_PARTITION_LIMIT = 2000;
   private DescribeTopicPartitionsResponse(DescribeTopicPartitionsRequest req,
-                                          List<RecordBatch> batches) {
-    List<ResponseTopic> respTopics = new ArrayList<>();
-    for (RequestTopic reqTopic : req.getTopicsArray().getElements()) {
-      respTopics.add(responseForRequestTopic(reqTopic, batches));
+                                          MetadataImage image,
+                                          ResponseCache cache) {
+    int limit = req.getResponsePartitionLimit();
+    int budget = limit > 0 ? Math.min(limit, MAX_PARTITION_LIMIT)
+                           : MAX_PARTITION_LIMIT;
+    Cursor cursor = req.getCursor();
+    String cursorTopic =
+        cursor.getTopicName().map(CompactString::toString).orElse(null);
+    int cursorPartition = cursor.getPartitionIndex().orElse(0);
+    List<byte[]> respTopics = new ArrayList<>();
+    this.nextCursor = Cursor.nullCursor();
+    // Topics are answered in name order so a cursor names a stable position;
+    // an empty request lists every topic, walked from the cursor in the
+    // image's sorted index.
+    Iterator<CompactString> names = null;
+    Iterator<TopicImage> allTopics = null;
+    List<RequestTopic> requested = req.getTopicsArray().getElements();
+    if (requested.isEmpty()) {
+      allTopics = image.getTopicsFrom(cursorTopic);
+    } else {
+      TreeMap<String, CompactString> sorted = new TreeMap<>();
+      for (RequestTopic reqTopic : requested) {
+        sorted.put(reqTopic.getTopicName().toString(),
+                   reqTopic.getTopicName());
+      }
+      names = (cursorTopic == null ? sorted : sorted.tailMap(cursorTopic, true))
+                  .values()
+                  .iterator();
+    }
+    while (allTopics != null ? allTopics.hasNext() : names.hasNext()) {
+      TopicImage topic;
+      CompactString topicName;
+      String name;
+      if (allTopics != null) {
+        topic = allTopics.next();
+        name = topic.name();
+        topicName = null;
+      } else {
+        topicName = names.next();
+        name = topicName.toString();
+        topic = image.getTopic(name).orElse(null);
+      }
+      PartitionTable table = topic == null ? PartitionTable.EMPTY
+                                           : topic.partitions();
+      int from = name.equals(cursorTopic) ? table.ceilingIndex(cursorPartition)
+                                          : 0;
+      if (budget == 0) {
+        this.nextCursor = new Cursor(
+            compact(topicName, name),
+            from < table.size() ? table.partitionId(from) : cursorPartition);
+        break;
+      }
+      if (topic == null) {
+        respTopics.add(encode(unknownTopic(topicName)));
+        continue;
+      }
+      int to = Math.min(table.size(), from + budget);
+      budget -= to - from;
+      if (from == 0 && to == table.size()) {
+        respTopics.add(cache.topic(
+            image, ResponseCache.Fragment.DESCRIBE_TOPIC, name,
+            key -> encode(responseTopic(compact(topicName, key), topic, 0,
+                                        table.size()))));
+      } else {
+        respTopics.add(
+            encode(responseTopic(compact(topicName, name), topic, from, to)));
+      }
+      if (to < table.size()) {
+        this.nextCursor =
+            new Cursor(compact(topicName, name), table.partitionId(to));
+        break;
+      }
     }
     this.topicsArray =
-        CompactArray.withElements(respTopics, new ResponseTopicSerializer());
-    this.nextCursor = Cursor.nullCursor();
+        CompactArray.withElements(respTopics, new ByteArraySerializer());
   }
   public static DescribeTopicPartitionsResponse
-  fromRequest(Request<?> req, List<RecordBatch> batches) {
+  fromRequest(Request<?> req, MetadataImage image, ResponseCache cache) {
     return new DescribeTopicPartitionsResponse(
-        (DescribeTopicPartitionsRequest)req.body(), batches);
+        (DescribeTopicPartitionsRequest)req.body(), image, cache);
+  }
+  private static CompactString compact(CompactString requested, String name) {
+    return requested != null ? requested : new CompactString(name);
+  }
+  private static byte[] encode(ResponseTopic responseTopic) {
+    return new ResponseTopicSerializer().toBytes(responseTopic);
   }
-  private ResponseTopic responseForRequestTopic(RequestTopic requestTopic,
-                                                List<RecordBatch> batches) {
+  private static ResponseTopic unknownTopic(CompactString name) {
+    System.err.println("Failed to find UUID for topic: " + name +
+                       " in metadata image.");
     ResponseTopic responseTopic = new ResponseTopic();
-    responseTopic.setTopicName(requestTopic.getTopicName());
-    getTopicUUID(requestTopic, batches)
-        .ifPresentOrElse(
-            topicUUID
-            -> {
-              responseTopic.setTopicID(topicUUID);
-              responseTopic.setPartitionCompactArray(
-                  buildPartitionsArrayForTopic(topicUUID, batches));
-            },
-            () -> {
-              System.err.println("Failed to find UUID for topic: " +
-                                 requestTopic.getTopicName() +
-                                 " in record batches.");
-              responseTopic.setErrorCode((short)3);
-            });
+    responseTopic.setTopicName(name);
+    responseTopic.setErrorCode((short)3);
     return responseTopic;
   }
-  private static Optional<UUID> getTopicUUID(RequestTopic requestTopic,
-                                             List<RecordBatch> batches) {
-    return batches.stream()
-        .flatMap(batch -> batch.getRecords().stream())
-        .map(Record::getValue)
-        .filter(val -> val instanceof TopicRecord)
-        .map(val -> (TopicRecord)val)
-        .filter(topicRecord
-                -> topicRecord.getName().equals(requestTopic.getTopicName()))
-        .map(TopicRecord::getTopicUUID)
-        .findFirst();
-  }
-  private CompactArray<Partition>
-  buildPartitionsArrayForTopic(UUID topicUUID, List<RecordBatch> batches) {
-    List<Partition> partitions =
-        batches.stream()
-            .flatMap(batch -> batch.getRecords().stream())
-            .map(Record::getValue)
-            .filter(val -> val instanceof PartitionRecord)
-            .map(val -> (PartitionRecord)val)
-            .filter(partitionRecord
-                    -> partitionRecord.getTopicUUID().equals(topicUUID))
-            .map(partitionRecord -> {
-              Partition partition = new Partition();
-              partition.setLeaderID(partitionRecord.getLeader());
-              partition.setPartitionIndex(partitionRecord.getPartitionID());
-              return partition;
-            })
-            .toList();
-    return CompactArray.withElements(partitions, new PartitionSerializer());
+  private static ResponseTopic responseTopic(CompactString name,
+                                             TopicImage topic, int from,
+                                             int to) {
+    ResponseTopic responseTopic = new ResponseTopic();
+    responseTopic.setTopicName(name);
+    responseTopic.setTopicID(topic.id());
+    PartitionTable table = topic.partitions();
+    List<Partition> partitions = new ArrayList<>(to - from);
+    for (int i = from; i < to; i++) {
+      Partition partition = new Partition();
+      partition.setLeaderID(table.leader(i));
+      partition.setPartitionIndex(table.partitionId(i));
+      partitions.add(partition);
+    }
+    responseTopic.setPartitionCompactArray(
+        CompactArray.withElements(partitions, new PartitionSerializer()));
+    return responseTopic;
   }
   @Override
   public DescribeTopicPartitionsResponse fromBytebuffer(ByteBuffer data) {
     this.throttleTime = data.getInt();
+    ResponseTopicSerializer serializer = new ResponseTopicSerializer();
+    List<byte[]> topics = new ArrayList<>();
+    for (ResponseTopic topic :
+         CompactArray.fromByteBuffer(data, serializer).getElements()) {
+      topics.add(serializer.toBytes(topic));
+    }
     this.topicsArray =
-        CompactArray.fromByteBuffer(data, new ResponseTopicSerializer());
+        CompactArray.withElements(topics, new ByteArraySerializer());
     this.nextCursor = Cursor.from(data, new CursorSerializer());
     this.tagBuffer = TagBuffer.fromByteBuffer(data);
     return this;
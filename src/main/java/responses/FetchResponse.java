@@ -1,18 +1,40 @@
 package responses;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
-import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import log.LogManager;
+import log.PartitionLog;
+import log.ReadPlan;
+import log.TopicPartition;
+import metadata.MetadataImage;
+import metadata.TopicImage;
+import metrics.BrokerMetrics;
 import requests.FetchRequest;
 import requests.Request;
 import shared.*;
-import shared.serializer.ByteArraySerializer;
+import shared.serializer.AbortedTransactionSerializer;
 import shared.serializer.PartitionResponseSerializer;
 import shared.serializer.TopicResponseSerializer;
 import util.StreamUtils;
+// Each requested partition is read from its fetch offset in whole batches,
+// cut at batch boundaries so the partition stays within its
+// partitionMaxBytes and the response within maxBytes. The first partition
+// that has data may exceed both by a single batch, so a consumer facing an
+// oversized batch still makes progress. All partitions' reads go through
+// one ReadPlan, and the record batches are written to the socket straight
+// from the buffers they were read into.
 public class FetchResponse extends ResponseBody {
+  private static final short OFFSET_OUT_OF_RANGE = 1;
+  private static final short UNKNOWN_TOPIC_OR_PARTITION = 3;
+  private static final short KAFKA_STORAGE_ERROR = 56;
+  private static final short UNKNOWN_TOPIC_ID = 100;
   private final int throttleTimeMs;
   private final short errorCode;
   private final int sessionId;
@@ -26,63 +48,143 @@ public class FetchResponse extends ResponseBody {
     this.responses = responses;
     this.tg = tg;
   }
-  protected static FetchResponse
-  fromRequest(Request<?> req, Map<Path, byte[]> messages,
-              Map<UUID, List<String>> topicToMessagePath) {
+  // A partition read planned for the response, filled in once the plan has
+  // executed.
+  private record PlannedRead(TopicPartition topicPartition, long fetchOffset,
+                             PartitionResponse response, ReadPlan.Read read) {}
+  // What is left of the response's maxBytes as partitions are planned.
+  private static final class Budget {
+    // Charged with each read's planned bytes, which trimming to whole
+    // batches can only lower.
+    int remainingBytes;
+    boolean minOneBatch = true;
+    // Partitions planned so far, in request order.
+    int plannedPartitions;
+    Budget(int maxBytes) { this.remainingBytes = Math.max(maxBytes, 0); }
+  }
+  // Completes once every partition has been read. Planning a partition
+  // locates its first batch, which may touch the disk, so it runs on the
+  // partition's log dir readers; partitions are planned one after another
+  // since each is charged against what the earlier ones left of maxBytes.
+  protected static CompletableFuture<FetchResponse>
+  fromRequest(Request<?> req, MetadataImage image, LogManager logManager) {
     FetchRequest fetchReq = (FetchRequest)req.body();
-    List<UUID> requestedIds = fetchReq.getTopics()
-                                  .getElements()
-                                  .stream()
-                                  .map(RequestTopicElement::getTopicID)
-                                  .toList();
-    if (requestedIds.isEmpty()) {
-      return new FetchResponse(
-          0, (short)0, 0, CompactArray.empty(new TopicResponseSerializer()),
-          new TagBuffer());
-    }
     List<TopicResponse> topicResponses = new ArrayList<>();
-    for (UUID uuid : requestedIds) {
-      if (topicToMessagePath.containsKey(uuid)) {
-        List<String> dirs = topicToMessagePath.get(uuid);
-        if (!dirs.isEmpty()) {
-          PartitionResponse partitionResponse =
-              PartitionResponse.EmptyTopicPartitionResponse();
-          List<byte[]> records = new ArrayList<>();
-          for (Path path : messages.keySet()) {
-            for (String dir : dirs) {
-              if (path.toString().contains(dir)) {
-                records.add(messages.get(path));
-              }
+    ReadPlan plan = new ReadPlan();
+    List<PlannedRead> planned = new ArrayList<>();
+    List<PartitionResponse> toPlan = new ArrayList<>();
+    Budget budget = new Budget(fetchReq.getMaxBytes());
+    CompletableFuture<Void> planning = CompletableFuture.completedFuture(null);
+    for (RequestTopicElement element : fetchReq.getTopics().getElements()) {
+      TopicImage topic =
+          image.getTopic(element.getTopicIdMostSignificantBits(),
+                         element.getTopicIdLeastSignificantBits());
+      // Known topics reuse the image's id; only unknown ones allocate.
+      UUID uuid = topic != null ? topic.id() : element.getTopicID();
+      if (topic == null) {
+        System.err.println("Unknown topic id: " + uuid);
+      }
+      List<PartitionResponse> partitionResponses = new ArrayList<>();
+      for (RequestPartition partition :
+           element.getPartitions().getElements()) {
+        int index = partition.getPartition();
+        if (topic == null) {
+          partitionResponses.add(
+              PartitionResponse.error(index, UNKNOWN_TOPIC_ID));
+          continue;
+        }
+        if (topic.partitions().indexOf(index) < 0) {
+          partitionResponses.add(
+              PartitionResponse.error(index, UNKNOWN_TOPIC_OR_PARTITION));
+          continue;
+        }
+        TopicPartition topicPartition = new TopicPartition(topic.name(), index);
+        PartitionLog log = logManager.getOrLoadLog(topicPartition).orElse(null);
+        PartitionResponse response = emptyResponse(log, partition);
+        partitionResponses.add(response);
+        if (log == null || response.getErrorCode() != 0) {
+          continue;
+        }
+        toPlan.add(response);
+        planning = planning.thenRunAsync(() -> {
+          try {
+            ReadPlan.Read read = plan.add(
+                log, partition.getFetchOffset(),
+                Math.min(partition.getPartitionMaxBytes(),
+                         budget.remainingBytes),
+                budget.minOneBatch);
+            if (read.hasData()) {
+              budget.remainingBytes =
+                  Math.max(budget.remainingBytes - read.plannedBytes(), 0);
+              budget.minOneBatch = false;
+              planned.add(new PlannedRead(topicPartition,
+                                          partition.getFetchOffset(), response,
+                                          read));
             }
+          } catch (IOException e) {
+            System.err.println("Failed to read " + topicPartition + ": " + e);
+            response.setErrorCode(KAFKA_STORAGE_ERROR);
           }
-          partitionResponse.setRecords(
-              CompactArray.withElements(records, new ByteArraySerializer()));
-          topicResponses.add(new TopicResponse(
-              uuid,
-              CompactArray.withElements(List.of(partitionResponse),
-                                        new PartitionResponseSerializer()),
-              new TagBuffer()));
-        } else {
-          System.err.println("Topic UUID: " + uuid + " has no partitions!");
-          topicResponses.add(new TopicResponse(
-              uuid, CompactArray.empty(new PartitionResponseSerializer()),
-              new TagBuffer()));
-        }
-      } else {
-        // Topic is unknown to us.
-        System.err.println("Unknown topic id: " + uuid);
-        topicResponses.add(new TopicResponse(
-            uuid,
-            CompactArray.withElements(
-                List.of(PartitionResponse.UnknownTopicPartitionResponse()),
-                new PartitionResponseSerializer()),
-            new TagBuffer()));
+          budget.plannedPartitions++;
+        }, logManager.readerFor(log));
       }
+      topicResponses.add(new TopicResponse(
+          uuid,
+          CompactArray.withElements(partitionResponses,
+                                    new PartitionResponseSerializer()),
+          new TagBuffer()));
     }
-    return new FetchResponse(0, (short)0, 0,
-                             CompactArray.withElements(
-                                 topicResponses, new TopicResponseSerializer()),
-                             new TagBuffer());
+    return planning.thenCompose(ignored -> plan.execute(logManager::dirOf))
+        .handle((done, failure) -> {
+          // Only the partitions whose planning or reads did not get done
+          // fail; the rest, tail cache hits included, are still served.
+          if (failure != null) {
+            Throwable cause = failure instanceof CompletionException &&
+                                      failure.getCause() != null
+                                  ? failure.getCause()
+                                  : failure;
+            System.err.println("Failed to read fetched partitions: " + cause);
+            for (PartitionResponse response :
+                 toPlan.subList(budget.plannedPartitions, toPlan.size())) {
+              response.setErrorCode(KAFKA_STORAGE_ERROR);
+            }
+          }
+          for (PlannedRead read : planned) {
+            if (!read.read().isFilled()) {
+              read.response().setErrorCode(KAFKA_STORAGE_ERROR);
+              continue;
+            }
+            ByteBuffer batches = read.read().batches();
+            read.response().setRecords(new CompactRecords(batches));
+            BrokerMetrics.get()
+                .partition(read.topicPartition().toString())
+                .recordBytesOut(batches.remaining());
+            logManager.getReadAhead().record(req.header().getClientId(),
+                                             read.topicPartition(),
+                                             read.fetchOffset(), read.read());
+          }
+          return new FetchResponse(
+              0, (short)0, 0,
+              CompactArray.withElements(topicResponses,
+                                        new TopicResponseSerializer()),
+              new TagBuffer());
+        });
+  }
+  // The partition's offsets, without records yet. A partition known to the
+  // image but without a log reads as empty.
+  private static PartitionResponse emptyResponse(PartitionLog log,
+                                                 RequestPartition partition) {
+    long logStartOffset = log != null ? log.getLogStartOffset() : 0;
+    long logEndOffset = log != null ? log.getLogEndOffset() : 0;
+    long fetchOffset = partition.getFetchOffset();
+    short errorCode = fetchOffset < logStartOffset || fetchOffset > logEndOffset
+                          ? OFFSET_OUT_OF_RANGE
+                          : 0;
+    // No transactions, so everything written is stable.
+    return new PartitionResponse(
+        partition.getPartition(), errorCode, logEndOffset, logEndOffset,
+        logStartOffset, CompactArray.empty(new AbortedTransactionSerializer()),
+        -1, CompactRecords.empty(), new TagBuffer());
   }
   @Override
   public ResponseBody fromBytebuffer(ByteBuffer data) {
@@ -101,4 +203,47 @@ public class FetchResponse extends ResponseBody {
       dos.write(this.tg.toBytes());
     });
   }
+  // Same layout as toBytes(), but each partition's record batches are
+  // passed through as their own buffer instead of being copied in.
+  @Override
+  public List<ByteBuffer> toBuffers() {
+    List<ByteBuffer> buffers = new ArrayList<>();
+    ByteArrayOutputStream fields = new ByteArrayOutputStream();
+    try (DataOutputStream dos = new DataOutputStream(fields)) {
+      dos.writeInt(this.throttleTimeMs);
+      dos.writeShort(this.errorCode);
+      dos.writeInt(this.sessionId);
+      List<TopicResponse> topics = this.responses.getElements();
+      dos.write(new VarInt(topics.size() + 1).toBytes());
+      for (TopicResponse topic : topics) {
+        dos.writeLong(topic.getTopicID().getMostSignificantBits());
+        dos.writeLong(topic.getTopicID().getLeastSignificantBits());
+        List<PartitionResponse> partitions = topic.getPartitions().getElements();
+        dos.write(new VarInt(partitions.size() + 1).toBytes());
+        for (PartitionResponse partition : partitions) {
+          dos.writeInt(partition.getPartitionIndex());
+          dos.writeShort(partition.getErrorCode());
+          dos.writeLong(partition.getHighWatermark());
+          dos.writeLong(partition.getLastStableOffset());
+          dos.writeLong(partition.getLogStartOffset());
+          dos.write(partition.getAbortedTransactions().toBytes());
+          dos.writeInt(partition.getPreferredReadReplica());
+          ByteBuffer batches = partition.getRecords().getBatches();
+          dos.write(new VarInt(batches.remaining() + 1).toBytes());
+          if (batches.hasRemaining()) {
+            buffers.add(ByteBuffer.wrap(fields.toByteArray()));
+            buffers.add(batches);
+            fields.reset();
+          }
+          dos.write(partition.getTg().toBytes());
+        }
+        dos.write(topic.getTg().toBytes());
+      }
+      dos.write(this.tg.toBytes());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    buffers.add(ByteBuffer.wrap(fields.toByteArray()));
+    return buffers;
+  }
 }
\ No newline at end of file
@@ -0,0 +1,125 @@
+package responses;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import log.LogManager;
+import log.PartitionLog;
+import log.TimestampAndOffset;
+import log.TopicPartition;
+import metadata.MetadataImage;
+import metadata.TopicImage;
+import requests.ListOffsetsRequest;
+import requests.Request;
+import shared.CompactArray;
+import shared.ListOffsetsPartition;
+import shared.ListOffsetsPartitionResponse;
+import shared.ListOffsetsTopic;
+import shared.ListOffsetsTopicResponse;
+import shared.TagBuffer;
+import shared.serializer.ListOffsetsPartitionResponseSerializer;
+import shared.serializer.ListOffsetsTopicResponseSerializer;
+import util.StreamUtils;
+// ListOffsets versions 6 to 9. Timestamps resolve through each segment's
+// time index; there are no transactions or remote tiers, so the last stable
+// offset is the log end offset and the local log is the whole log.
+public class ListOffsetsResponse extends ResponseBody {
+  private static final short UNKNOWN_TOPIC_OR_PARTITION = 3;
+  private static final short KAFKA_STORAGE_ERROR = 56;
+  private int throttleTimeMs = 0;
+  private CompactArray<ListOffsetsTopicResponse> topics;
+  private TagBuffer tagBuffer = new TagBuffer();
+  private ListOffsetsResponse(ListOffsetsRequest req, MetadataImage image,
+                              LogManager logManager) {
+    List<ListOffsetsTopicResponse> topicResponses = new ArrayList<>();
+    for (ListOffsetsTopic topic : req.getTopics().getElements()) {
+      String name = topic.getName().toString();
+      TopicImage topicImage = image.getTopic(name).orElse(null);
+      List<ListOffsetsPartitionResponse> partitions = new ArrayList<>();
+      for (ListOffsetsPartition partition :
+           topic.getPartitions().getElements()) {
+        int index = partition.getPartitionIndex();
+        PartitionLog log =
+            logManager.getOrLoadLog(new TopicPartition(name, index))
+                .orElse(null);
+        if (log != null) {
+          partitions.add(lookup(log, index, partition.getTimestamp()));
+        } else if (topicImage != null &&
+                   topicImage.partitions().indexOf(index) >= 0) {
+          // Known but nothing written yet.
+          partitions.add(emptyLog(index, partition.getTimestamp()));
+        } else {
+          partitions.add(ListOffsetsPartitionResponse.error(
+              index, UNKNOWN_TOPIC_OR_PARTITION));
+        }
+      }
+      topicResponses.add(new ListOffsetsTopicResponse(
+          topic.getName(),
+          CompactArray.withElements(
+              partitions, new ListOffsetsPartitionResponseSerializer()),
+          new TagBuffer()));
+    }
+    this.topics = CompactArray.withElements(
+        topicResponses, new ListOffsetsTopicResponseSerializer());
+  }
+  public static ListOffsetsResponse fromRequest(Request<?> request,
+                                                MetadataImage image,
+                                                LogManager logManager) {
+    return new ListOffsetsResponse((ListOffsetsRequest)request.body(), image,
+                                   logManager);
+  }
+  private static ListOffsetsPartitionResponse
+  lookup(PartitionLog log, int index, long timestamp) {
+    try {
+      TimestampAndOffset found;
+      if (timestamp == ListOffsetsRequest.LATEST_TIMESTAMP) {
+        return offset(index, log.getLogEndOffset());
+      } else if (timestamp == ListOffsetsRequest.EARLIEST_TIMESTAMP ||
+                 timestamp == ListOffsetsRequest.EARLIEST_LOCAL_TIMESTAMP) {
+        return offset(index, log.getLogStartOffset());
+      } else if (timestamp == ListOffsetsRequest.MAX_TIMESTAMP) {
+        found = log.findMaxTimestamp();
+      } else if (timestamp >= 0) {
+        found = log.findOffsetByTimestamp(timestamp);
+      } else {
+        // LATEST_TIERED_TIMESTAMP: nothing is tiered.
+        found = null;
+      }
+      return found == null
+          ? offset(index, -1)
+          : new ListOffsetsPartitionResponse(index, (short)0, found.timestamp(),
+                                             found.offset(),
+                                             found.leaderEpoch(),
+                                             new TagBuffer());
+    } catch (IOException e) {
+      System.err.println("Failed to list offsets for " +
+                         log.getTopicPartition() + ": " + e);
+      return ListOffsetsPartitionResponse.error(index, KAFKA_STORAGE_ERROR);
+    }
+  }
+  // Latest and earliest are both offset 0; no record matches a time.
+  private static ListOffsetsPartitionResponse emptyLog(int index,
+                                                       long timestamp) {
+    boolean bound =
+        timestamp == ListOffsetsRequest.LATEST_TIMESTAMP ||
+        timestamp == ListOffsetsRequest.EARLIEST_TIMESTAMP ||
+        timestamp == ListOffsetsRequest.EARLIEST_LOCAL_TIMESTAMP;
+    return offset(index, bound ? 0 : -1);
+  }
+  private static ListOffsetsPartitionResponse offset(int index, long offset) {
+    return new ListOffsetsPartitionResponse(index, (short)0, -1, offset, -1,
+                                            new TagBuffer());
+  }
+  @Override
+  public ListOffsetsResponse fromBytebuffer(ByteBuffer data) {
+    return null;
+  }
+  @Override
+  public byte[] toBytes() {
+    return StreamUtils.toBytes(dos -> {
+      dos.writeInt(throttleTimeMs);
+      dos.write(topics.toBytes());
+      dos.write(tagBuffer.toBytes());
+    });
+  }
+}
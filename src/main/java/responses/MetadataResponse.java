@@ -0,0 +1,182 @@
+package responses;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import metadata.MetadataImage;
+import metadata.PartitionTable;
+import metadata.TopicImage;
+import requests.MetadataRequest;
+import requests.Request;
+import shared.CompactArray;
+import shared.CompactString;
+import shared.MetadataRequestTopic;
+import shared.TagBuffer;
+import shared.VarInt;
+import shared.serializer.ByteArraySerializer;
+import util.StreamUtils;
+// Metadata versions 9 to 12, answered from the metadata image. Topic
+// entries are written straight from the partition tables and, for topics
+// that exist, come from the ResponseCache, so an all-topics request is
+// mostly a concatenation of already encoded bytes.
+public class MetadataResponse extends ResponseBody {
+  private static final short UNKNOWN_TOPIC_OR_PARTITION = 3;
+  private static final short UNKNOWN_TOPIC_ID = 100;
+  // Sent when authorized operations were not requested or are unknown.
+  private static final int AUTHORIZED_OPERATIONS_OMITTED = Integer.MIN_VALUE;
+  private static final CompactString EMPTY_NAME = new CompactString("");
+  private final short version;
+  private final byte[] brokers;
+  private final int controllerId;
+  // Each element is an already encoded topic entry.
+  private final CompactArray<byte[]> topics;
+  private MetadataResponse(MetadataRequest req, MetadataImage image,
+                           ResponseCache cache) {
+    this.version = req.getVersion();
+    this.brokers = cache.metadataBrokers();
+    this.controllerId = cache.nodeId();
+    ResponseCache.Fragment fragment =
+        version >= 10 ? ResponseCache.Fragment.METADATA_TOPIC_V10
+                      : ResponseCache.Fragment.METADATA_TOPIC_V9;
+    List<byte[]> entries;
+    if (req.isAllTopics()) {
+      entries = new ArrayList<>(image.getTopicCount());
+      for (TopicImage topic : image.getTopics()) {
+        entries.add(topicEntry(image, cache, fragment, topic));
+      }
+    } else {
+      List<MetadataRequestTopic> requested = req.getTopics().getElements();
+      entries = new ArrayList<>(requested.size());
+      for (MetadataRequestTopic requestTopic : requested) {
+        entries.add(requestedEntry(image, cache, fragment, requestTopic));
+      }
+    }
+    this.topics = CompactArray.withElements(entries, new ByteArraySerializer());
+  }
+  public static MetadataResponse fromRequest(Request<?> request,
+                                             MetadataImage image,
+                                             ResponseCache cache) {
+    return new MetadataResponse((MetadataRequest)request.body(), image, cache);
+  }
+  private byte[] requestedEntry(MetadataImage image, ResponseCache cache,
+                                ResponseCache.Fragment fragment,
+                                MetadataRequestTopic requestTopic) {
+    CompactString name = requestTopic.getName();
+    if (name == null) {
+      UUID id = requestTopic.getTopicId();
+      TopicImage topic = image.getTopic(id.getMostSignificantBits(),
+                                        id.getLeastSignificantBits());
+      return topic != null
+          ? topicEntry(image, cache, fragment, topic)
+          : errorEntry(UNKNOWN_TOPIC_ID, null, id);
+    }
+    return image.getTopic(name.toString())
+        .map(topic -> topicEntry(image, cache, fragment, topic))
+        .orElseGet(() -> errorEntry(UNKNOWN_TOPIC_OR_PARTITION, name,
+                                    new UUID(0, 0)));
+  }
+  private byte[] topicEntry(MetadataImage image, ResponseCache cache,
+                            ResponseCache.Fragment fragment,
+                            TopicImage topic) {
+    return cache.topic(image, fragment, topic.name(),
+                       name -> encodeTopic(topic, version));
+  }
+  // An entry for a topic that could not be found. The name is only nullable
+  // from version 12 on; earlier versions get an empty one for a topic that
+  // was asked for by id.
+  private byte[] errorEntry(short errorCode, CompactString name, UUID id) {
+    return StreamUtils.toBytes(dos -> {
+      dos.writeShort(errorCode);
+      if (name == null && version < 12) {
+        dos.write(EMPTY_NAME.toBytes());
+      } else {
+        writeNullableString(dos, name);
+      }
+      if (version >= 10) {
+        dos.writeLong(id.getMostSignificantBits());
+        dos.writeLong(id.getLeastSignificantBits());
+      }
+      dos.writeBoolean(false);
+      dos.write(new VarInt(1).toBytes());
+      dos.writeInt(AUTHORIZED_OPERATIONS_OMITTED);
+      dos.write(new TagBuffer().toBytes());
+    });
+  }
+  static byte[] encodeTopic(TopicImage topic, short version) {
+    PartitionTable table = topic.partitions();
+    return StreamUtils.toBytes(dos -> {
+      dos.writeShort(0);
+      dos.write(new CompactString(topic.name()).toBytes());
+      if (version >= 10) {
+        dos.writeLong(topic.id().getMostSignificantBits());
+        dos.writeLong(topic.id().getLeastSignificantBits());
+      }
+      dos.writeBoolean(isInternal(topic.name()));
+      dos.write(new VarInt(table.size() + 1).toBytes());
+      for (int i = 0; i < table.size(); i++) {
+        dos.writeShort(0);
+        dos.writeInt(table.partitionId(i));
+        dos.writeInt(table.leader(i));
+        dos.writeInt(table.leaderEpoch(i));
+        dos.write(new VarInt(table.replicaCount(i) + 1).toBytes());
+        for (int r = 0; r < table.replicaCount(i); r++) {
+          dos.writeInt(table.replica(i, r));
+        }
+        dos.write(new VarInt(table.isrCount(i) + 1).toBytes());
+        for (int r = 0; r < table.isrCount(i); r++) {
+          dos.writeInt(table.isr(i, r));
+        }
+        // No offline replicas.
+        dos.write(new VarInt(1).toBytes());
+        dos.write(new TagBuffer().toBytes());
+      }
+      dos.writeInt(AUTHORIZED_OPERATIONS_OMITTED);
+      dos.write(new TagBuffer().toBytes());
+    });
+  }
+  static byte[] encodeBrokers(int nodeId, String host, int port) {
+    return StreamUtils.toBytes(dos -> {
+      dos.write(new VarInt(2).toBytes());
+      dos.writeInt(nodeId);
+      dos.write(new CompactString(host).toBytes());
+      dos.writeInt(port);
+      // No rack.
+      dos.write(new VarInt(0).toBytes());
+      dos.write(new TagBuffer().toBytes());
+    });
+  }
+  private static boolean isInternal(String topic) {
+    return topic.equals("__consumer_offsets") ||
+        topic.equals("__transaction_state");
+  }
+  private static void writeNullableString(DataOutputStream dos,
+                                          CompactString value)
+      throws IOException {
+    if (value == null) {
+      dos.write(new VarInt(0).toBytes());
+    } else {
+      dos.write(value.toBytes());
+    }
+  }
+  @Override
+  public MetadataResponse fromBytebuffer(ByteBuffer data) {
+    return null;
+  }
+  @Override
+  public byte[] toBytes() {
+    return StreamUtils.toBytes(dos -> {
+      dos.writeInt(0);
+      dos.write(brokers);
+      // No cluster id.
+      dos.write(new VarInt(0).toBytes());
+      dos.writeInt(controllerId);
+      dos.write(topics.toBytes());
+      if (version <= 10) {
+        dos.writeInt(AUTHORIZED_OPERATIONS_OMITTED);
+      }
+      dos.write(new TagBuffer().toBytes());
+    });
+  }
+}
@@ -0,0 +1,111 @@
+package responses;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import log.LogManager;
+import log.PartitionLog;
+import log.TopicPartition;
+import metrics.BrokerMetrics;
+import requests.ProduceRequest;
+import requests.Request;
+import shared.CompactArray;
+import shared.ProducePartition;
+import shared.ProducePartitionResponse;
+import shared.ProduceTopic;
+import shared.ProduceTopicResponse;
+import shared.TagBuffer;
+import shared.serializer.ProducePartitionResponseSerializer;
+import shared.serializer.ProduceTopicResponseSerializer;
+import util.StreamUtils;
+// Produce versions 9 to 11. Each partition's batches are appended to its
+// log before the response is built. There are no followers to wait for, so
+// acks=-1 is the same as acks=1, and there is no response at all to
+// acks=0. Producer ids and transactions are not checked.
+public class ProduceResponse extends ResponseBody {
+  private static final short CORRUPT_MESSAGE = 2;
+  private static final short UNKNOWN_TOPIC_OR_PARTITION = 3;
+  private static final short INVALID_REQUIRED_ACKS = 21;
+  private static final short KAFKA_STORAGE_ERROR = 56;
+  private final boolean expectsResponse;
+  private int throttleTimeMs = 0;
+  private CompactArray<ProduceTopicResponse> topics;
+  private TagBuffer tagBuffer = new TagBuffer();
+  private ProduceResponse(ProduceRequest req, LogManager logManager) {
+    short acks = req.getAcks();
+    this.expectsResponse = acks != 0;
+    boolean validAcks = acks == -1 || acks == 0 || acks == 1;
+    List<ProduceTopicResponse> topicResponses = new ArrayList<>();
+    for (ProduceTopic topic : req.getTopics().getElements()) {
+      String name = topic.getName().toString();
+      List<ProducePartitionResponse> partitions = new ArrayList<>();
+      for (ProducePartition partition : topic.getPartitions().getElements()) {
+        int index = partition.getIndex();
+        if (!validAcks) {
+          partitions.add(
+              ProducePartitionResponse.error(index, INVALID_REQUIRED_ACKS));
+          continue;
+        }
+        // The metadata log is the controller's to write.
+        PartitionLog log =
+            name.equals(LogManager.METADATA_TOPIC)
+                ? null
+                : logManager.getOrLoadLog(new TopicPartition(name, index))
+                      .orElse(null);
+        partitions.add(
+            log == null
+                ? ProducePartitionResponse.error(index,
+                                                 UNKNOWN_TOPIC_OR_PARTITION)
+                : append(logManager, log, index,
+                         partition.getRecords().getBatches()));
+      }
+      topicResponses.add(new ProduceTopicResponse(
+          topic.getName(),
+          CompactArray.withElements(partitions,
+                                    new ProducePartitionResponseSerializer()),
+          new TagBuffer()));
+    }
+    this.topics = CompactArray.withElements(
+        topicResponses, new ProduceTopicResponseSerializer());
+  }
+  public static ProduceResponse fromRequest(Request<?> request,
+                                            LogManager logManager) {
+    return new ProduceResponse((ProduceRequest)request.body(), logManager);
+  }
+  private static ProducePartitionResponse append(LogManager logManager,
+                                                 PartitionLog log, int index,
+                                                 ByteBuffer batches) {
+    try {
+      int bytes = batches.remaining();
+      long baseOffset = logManager.append(log, batches);
+      BrokerMetrics.get()
+          .partition(log.getTopicPartition().toString())
+          .recordBytesIn(bytes);
+      return new ProducePartitionResponse(index, (short)0, baseOffset, -1,
+                                          log.getLogStartOffset(), null,
+                                          new TagBuffer());
+    } catch (IllegalArgumentException e) {
+      return new ProducePartitionResponse(index, CORRUPT_MESSAGE, -1, -1, -1,
+                                          e.getMessage(), new TagBuffer());
+    } catch (IOException e) {
+      System.err.println("Failed to append to " + log.getTopicPartition() +
+                         ": " + e);
+      return ProducePartitionResponse.error(index, KAFKA_STORAGE_ERROR);
+    }
+  }
+  public CompactArray<ProduceTopicResponse> getTopics() { return topics; }
+  @Override
+  public boolean expectsResponse() { return expectsResponse; }
+  @Override
+  public ProduceResponse fromBytebuffer(ByteBuffer data) {
+    return null;
+  }
+  @Override
+  public byte[] toBytes() {
+    return StreamUtils.toBytes(dos -> {
+      dos.write(topics.toBytes());
+      dos.writeInt(throttleTimeMs);
+      dos.write(tagBuffer.toBytes());
+    });
+  }
+}
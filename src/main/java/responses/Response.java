@@ -1,11 +1,12 @@
 package responses;
 import java.nio.ByteBuffer;
-import java.nio.file.Path;
 import java.util.List;
-import java.util.Map;
-import java.util.UUID;
-import log.RecordBatch;
+import java.util.concurrent.CompletableFuture;
+import jfr.RequestHandledEvent;
+import log.LogManager;
+import metadata.MetadataImage;
 import requests.Request;
+import requests.RequestHeader;
 import shared.TagBuffer;
 import util.StreamUtils;
 public class Response {
@@ -14,13 +15,70 @@ public class Response {
   public Response(ResponseHeader responseHeader) {
     this.responseHeader = responseHeader;
   }
-  public Response(Request<?> request, List<RecordBatch> batches,
-                  Map<Path, byte[]> messages,
-                  Map<UUID, List<String>> topicToMessagePath) {
+  private Response(ResponseHeader responseHeader, ResponseBody body) {
+    this.responseHeader = responseHeader;
+    this.body = body;
+  }
+  // Completes when the response is ready: Fetch once its log reads are
+  // done, which happens on the log dirs' reader threads, and everything
+  // else right away. A request that cannot be handled fails the future,
+  // whether that shows up right away or after the reads.
+  public static CompletableFuture<Response>
+  fromRequest(Request<?> request, MetadataImage image, LogManager logManager,
+              ResponseCache cache) {
+    try {
+      return handle(request, image, logManager, cache);
+    } catch (RuntimeException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+  private static CompletableFuture<Response>
+  handle(Request<?> request, MetadataImage image, LogManager logManager,
+         ResponseCache cache) {
+    RequestHeader header = request.header();
+    if (header.getRequestAPIKey() != 1) {
+      return CompletableFuture.completedFuture(
+          new Response(request, image, logManager, cache));
+    }
+    RequestHandledEvent event = new RequestHandledEvent();
+    event.begin();
+    return FetchResponse.fromRequest(request, image, logManager)
+        .thenApply(body -> {
+          if (event.shouldCommit()) {
+            event.apiKey = header.getRequestAPIKey();
+            event.apiVersion = header.getRequestAPIVersion();
+            event.correlationId = header.getCorrelationId();
+            event.clientId = header.getClientId();
+            event.commit();
+          }
+          return new Response(
+              new ResponseHeader(header.getCorrelationId(), new TagBuffer()),
+              body);
+        });
+  }
+  // Everything but Fetch, which handle builds once its reads complete.
+  private Response(Request<?> request, MetadataImage image,
+                   LogManager logManager, ResponseCache cache) {
+    RequestHandledEvent event = new RequestHandledEvent();
+    event.begin();
     switch (request.header().getRequestAPIKey()) {
-            case 1 -> {
+            case 0 -> {
                 this.responseHeader = new ResponseHeader(request.header().getCorrelationId(), new TagBuffer());
-                this.body = FetchResponse.fromRequest(request, messages, topicToMessagePath);
+                this.body = request.body() == null
+                    ? UnimplementedResponse.fromRequest(request)
+                    : ProduceResponse.fromRequest(request, logManager);
+            }
+            case 2 -> {
+                this.responseHeader = new ResponseHeader(request.header().getCorrelationId(), new TagBuffer());
+                this.body = request.body() == null
+                    ? UnimplementedResponse.fromRequest(request)
+                    : ListOffsetsResponse.fromRequest(request, image, logManager);
+            }
+            case 3 -> {
+                this.responseHeader = new ResponseHeader(request.header().getCorrelationId(), new TagBuffer());
+                this.body = request.body() == null
+                    ? UnimplementedResponse.fromRequest(request)
+                    : MetadataResponse.fromRequest(request, image, cache);
             }
             case 18 -> {
                 this.responseHeader = new ResponseHeader(request.header().getCorrelationId(), null);
@@ -28,7 +86,7 @@ public class Response {
             }
             case 75 -> {
                 this.responseHeader = new ResponseHeader(request.header().getCorrelationId(), new TagBuffer());
-                this.body = DescribeTopicPartitionsResponse.fromRequest(request, batches);
+                this.body = DescribeTopicPartitionsResponse.fromRequest(request, image, cache);
             }
             default -> {
                 this.responseHeader = new ResponseHeader(request.header().getCorrelationId(), new TagBuffer());
@@ -36,6 +94,13 @@ public class Response {
             }
         }
         ;
+        if (event.shouldCommit()) {
+            event.apiKey = request.header().getRequestAPIKey();
+            event.apiVersion = request.header().getRequestAPIVersion();
+            event.correlationId = request.header().getCorrelationId();
+            event.clientId = request.header().getClientId();
+            event.commit();
+        }
     }
     public ResponseHeader getHeader() {
         return responseHeader;
@@ -55,6 +120,24 @@ public class Response {
             dos.write(bodyBytes);
         });
     }
+    // The size-prefixed response as buffers for a gathering write.
+    public ByteBuffer[] toBuffers() {
+        byte[] headerBytes = responseHeader.toBytes();
+        List<ByteBuffer> bodyBuffers = body.toBuffers();
+        int size = headerBytes.length;
+        for (ByteBuffer buffer : bodyBuffers) {
+            size += buffer.remaining();
+        }
+        ByteBuffer[] buffers = new ByteBuffer[bodyBuffers.size() + 1];
+        buffers[0] = ByteBuffer.allocate(4 + headerBytes.length)
+            .putInt(size)
+            .put(headerBytes)
+            .flip();
+        for (int i = 0; i < bodyBuffers.size(); i++) {
+            buffers[i + 1] = bodyBuffers.get(i).duplicate();
+        }
+        return buffers;
+    }
     public static Response fromByteBuffer(ByteBuffer data) {
         int messageSize = data.getInt();
         int start = data.position();
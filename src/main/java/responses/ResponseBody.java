@@ -1,6 +1,15 @@
 package responses;
 import java.nio.ByteBuffer;
+import java.util.List;
 public abstract class ResponseBody {
   public abstract ResponseBody fromBytebuffer(ByteBuffer data);
   public abstract byte[] toBytes();
+  // The encoding as buffers for a gathering write. Bodies that carry large
+  // payloads override this to hand them over without copying.
+  public List<ByteBuffer> toBuffers() {
+    return List.of(ByteBuffer.wrap(toBytes()));
+  }
+  // False when the client does not read a response, as for Produce with
+  // acks=0; nothing is sent then.
+  public boolean expectsResponse() { return true; }
 }
\ No newline at end of file
@@ -0,0 +1,53 @@
+package responses;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import metadata.MetadataImage;
+// Encoded response fragments that depend only on the metadata image and on
+// this broker's own endpoint, so a burst of clients describing the same
+// topics pays for serialization once. Topic entries belong to a single
+// image; the first lookup against a newer image drops them all.
+public class ResponseCache {
+  enum Fragment {
+    DESCRIBE_TOPIC,
+    // Metadata topic entries gained the topic id in version 10.
+    METADATA_TOPIC_V9,
+    METADATA_TOPIC_V10
+  }
+  private record Generation(MetadataImage image,
+                            ConcurrentHashMap<String, byte[]>[] topics) {
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    Generation(MetadataImage image) {
+      this(image, new ConcurrentHashMap[Fragment.values().length]);
+      for (int i = 0; i < topics.length; i++) {
+        topics[i] = new ConcurrentHashMap<>();
+      }
+    }
+  }
+  private final byte[] metadataBrokers;
+  private final int nodeId;
+  private volatile Generation generation =
+      new Generation(MetadataImage.EMPTY);
+  public ResponseCache(int nodeId, String host, int port) {
+    this.nodeId = nodeId;
+    this.metadataBrokers = MetadataResponse.encodeBrokers(nodeId, host, port);
+  }
+  int nodeId() { return nodeId; }
+  // The Metadata brokers array, which only ever lists this broker.
+  byte[] metadataBrokers() { return metadataBrokers; }
+  // The entry for a topic with all its partitions.
+  byte[] topic(MetadataImage image, Fragment fragment, String name,
+               Function<String, byte[]> encoder) {
+    Generation current = generation;
+    if (current.image() != image) {
+      // A request still holding an older image must not evict the entries
+      // of the newer one; it just encodes without caching.
+      if (image.getEpoch() <= current.image().getEpoch()) {
+        return encoder.apply(name);
+      }
+      current = new Generation(image);
+      generation = current;
+    }
+    return current.topics()[fragment.ordinal()].computeIfAbsent(name,
+                                                                  encoder);
+  }
+}
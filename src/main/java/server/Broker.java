@@ -0,0 +1,324 @@
+package server;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import jfr.RequestReceivedEvent;
+import jfr.ResponseSentEvent;
+import log.LogManager;
+import log.PartitionLog;
+import log.TopicPartition;
+import metadata.MetadataImage;
+import metadata.MetadataLoader;
+import metadata.MetadataLogFollower;
+import metadata.PartitionTable;
+import metadata.TopicImage;
+import metrics.BrokerMetrics;
+import metrics.MetricsHttpServer;
+import requests.Request;
+import requests.RequestHeader;
+import responses.Response;
+import responses.ResponseCache;
+public class Broker implements AutoCloseable {
+  private final BrokerConfig config;
+  // Requests a connection may have waiting on their responses before the
+  // next one is read.
+  private static final int MAX_IN_FLIGHT_REQUESTS = 16;
+  // How long a closing connection waits for its pending responses.
+  private static final long PENDING_RESPONSES_TIMEOUT_MS = 10_000;
+  private final ExecutorService executorService;
+  private final ExecutorService responseWriters =
+      Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "broker-response-writer");
+        thread.setDaemon(true);
+        return thread;
+      });
+  private final BrokerMetrics metrics = BrokerMetrics.get();
+  private final Set<Socket> clientSockets = ConcurrentHashMap.newKeySet();
+  private LogManager logManager = new LogManager();
+  private MetadataLoader metadataLoader;
+  private MetadataLogFollower metadataFollower;
+  private final AtomicReference<MetadataImage> metadataImage =
+      new AtomicReference<>(MetadataImage.EMPTY);
+  private ResponseCache responseCache;
+  private ServerSocket serverSocket;
+  private MetricsHttpServer metricsServer;
+  private Thread acceptor;
+  public Broker(BrokerConfig config) {
+    this.config = config;
+    this.executorService = Executors.newFixedThreadPool(config.getIoThreads());
+  }
+  // Loads the log directories, binds the listener and starts accepting on a
+  // background thread.
+  public void start() throws IOException {
+    List<Path> logDirs = config.getLogDirs();
+    if (!logDirs.isEmpty()) {
+      // Recovery is mostly I/O bound: give every data dir its own threads
+      // even when there are more disks than cores.
+      ForkJoinPool recoveryPool = new ForkJoinPool(
+          Math.max(Runtime.getRuntime().availableProcessors(),
+                   logDirs.size() * config.getRecoveryThreadsPerDataDir()));
+      try {
+        logManager =
+            LogManager.load(logDirs, config.getLogConfig(),
+                            config.getTailCache(), config.getBlockCache(),
+                            recoveryPool);
+        metrics.setBlockCache(logManager.getBlockCache());
+        metrics.setLogDirs(logManager.getLogDirs());
+        logManager.startRetention(config.getLogRetentionCheckIntervalMs());
+        logManager.startCleaner(config.getCleanerConfig());
+        logManager.startReaders(config.getReadThreadsPerDataDir());
+        logManager.startFlushers(config.getLogFlushIntervalMs());
+        logManager.startReadAhead(config.getReadAheadBytes(),
+                                  config.getReadAheadMaxInFlight());
+        Optional<PartitionLog> metadataLog = logManager.getMetadataLog();
+        if (metadataLog.isPresent()) {
+          metadataLoader = new MetadataLoader(
+              metadataLog.get(), config.getMetadataSnapshotBytes());
+          metadataImage.set(metadataLoader.load(recoveryPool));
+          metadataLoader.maybeSnapshot(metadataImage.get());
+          createAssignedLogs(metadataImage.get());
+          metadataFollower = new MetadataLogFollower(
+              metadataLog.get(), metadataLoader, metadataImage,
+              this::createAssignedLogs);
+          metadataFollower.start(config.getMetadataPollIntervalMs());
+        }
+      } finally {
+        recoveryPool.shutdown();
+      }
+    }
+    Optional<Integer> metricsPort = config.getMetricsPort();
+    if (metricsPort.isPresent()) {
+      metricsServer = new MetricsHttpServer(metricsPort.get(), metrics);
+      metricsServer.start();
+      System.err.println("Serving metrics on port " + metricsServer.getPort() +
+                         "...");
+    }
+    // Opened through a channel so accepted sockets have one for gathering
+    // writes.
+    serverSocket = ServerSocketChannel.open().socket();
+    // Since the tester restarts your program quite often, setting
+    // SO_REUSEADDR ensures that we don't run into 'Address already in use'
+    // errors
+    serverSocket.setReuseAddress(true);
+    serverSocket.bind(new InetSocketAddress(config.getPort()));
+    responseCache = new ResponseCache(
+        config.getNodeId(), config.getAdvertisedHost(),
+        config.getAdvertisedPort().orElse(getPort()));
+    System.err.println("Starting server on port " + getPort() + "...");
+    acceptor = new Thread(this::acceptConnections, "broker-acceptor");
+    acceptor.start();
+  }
+  public int getPort() { return serverSocket.getLocalPort(); }
+  public void awaitShutdown() throws InterruptedException { acceptor.join(); }
+  @Override
+  public void close() throws IOException {
+    serverSocket.close();
+    for (Socket clientSocket : clientSockets) {
+      clientSocket.close();
+    }
+    if (metricsServer != null) {
+      metricsServer.stop();
+    }
+    if (metadataFollower != null) {
+      metadataFollower.close();
+    }
+    if (metadataLoader != null) {
+      metadataLoader.close();
+    }
+    logManager.close();
+    responseWriters.shutdown();
+  }
+  private void acceptConnections() {
+    try {
+      while (true) {
+        // Wait for connection from client.
+        Socket clientSocket = serverSocket.accept();
+        clientSockets.add(clientSocket);
+        executorService.submit(() -> handleClient(clientSocket));
+      }
+    } catch (SocketException | ClosedChannelException e) {
+      // Listener closed.
+    } catch (IOException e) {
+      System.err.println("IOException: " + Arrays.toString(e.getStackTrace()));
+    } finally {
+      executorService.shutdown();
+    }
+  }
+  private void handleClient(Socket clientSocket) {
+    metrics.connectionOpened();
+    CompletableFuture<Void> written = CompletableFuture.completedFuture(null);
+    Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT_REQUESTS);
+    try (DataInputStream dis =
+             new DataInputStream(clientSocket.getInputStream())) {
+      SocketChannel channel = clientSocket.getChannel();
+      // Blocks for the next request; the peer closing the connection
+      // surfaces as EOFException and ends the loop.
+      while (true) {
+        int len = dis.readInt();
+        RequestReceivedEvent received = new RequestReceivedEvent();
+        received.begin();
+        byte[] requestBytes = new byte[len];
+        dis.readFully(requestBytes);
+        ByteBuffer requestBuffer = ByteBuffer.wrap(requestBytes);
+        Request<?> request = Request.fromByteBuffer(requestBuffer);
+        RequestHeader header = request.header();
+        if (received.shouldCommit()) {
+          received.apiKey = header.getRequestAPIKey();
+          received.apiVersion = header.getRequestAPIVersion();
+          received.correlationId = header.getCorrelationId();
+          received.clientId = header.getClientId();
+          received.bytes = len;
+          received.commit();
+        }
+        metrics.recordRequest(header.getRequestAPIKey());
+        inFlight.acquire();
+        CompletableFuture<Response> response =
+            Response.fromRequest(request, metadataImage.get(), logManager,
+                                 responseCache)
+                .whenComplete((ready, failure) -> {
+                  if (failure != null) {
+                    logFailure(header, failure);
+                  }
+                });
+        // Responses go out in request order. One that is ready when its
+        // turn comes is written here; one still waiting on its log reads is
+        // written by a response writer once it and the ones before it are
+        // done, and this thread goes on to read the next request.
+        if (written.isDone() && response.isDone() &&
+            !response.isCompletedExceptionally()) {
+          written.join();
+          send(channel, header, response.join());
+          inFlight.release();
+        } else {
+          written = written.thenCombine(response, (previous, ready) -> ready)
+                        .thenAcceptAsync(ready -> {
+                          try {
+                            send(channel, header, ready);
+                          } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                          }
+                        }, responseWriters)
+                        .whenComplete((done, failure) -> {
+                          inFlight.release();
+                          if (failure != null) {
+                            // Unblocks the read so the connection closes.
+                            closeQuietly(clientSocket);
+                          }
+                        });
+        }
+      }
+    } catch (EOFException | SocketException | CompletionException e) {
+      // Client disconnected, or the broker closed the connection.
+    } catch (IOException e) {
+      System.err.println(Arrays.toString(e.getStackTrace()));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      // Lets responses already being written finish first, but not for
+      // longer than a read stuck on a hung disk is worth waiting for.
+      written.handle((done, failure) -> null)
+          .completeOnTimeout(null, PENDING_RESPONSES_TIMEOUT_MS,
+                             TimeUnit.MILLISECONDS)
+          .join();
+      metrics.connectionClosed();
+      clientSockets.remove(clientSocket);
+      try {
+        if (clientSocket != null) {
+          clientSocket.close();
+        }
+      } catch (IOException e) {
+        System.err.println("IOException: " +
+                           Arrays.toString(e.getStackTrace()));
+      }
+    }
+  }
+  private static void send(SocketChannel channel, RequestHeader header,
+                           Response response) throws IOException {
+    if (!response.getBody().expectsResponse()) {
+      return;
+    }
+    ResponseSentEvent sent = new ResponseSentEvent();
+    sent.begin();
+    ByteBuffer[] responseBuffers = response.toBuffers();
+    long responseBytes = 0;
+    for (ByteBuffer buffer : responseBuffers) {
+      responseBytes += buffer.remaining();
+    }
+    for (long left = responseBytes; left > 0;) {
+      left -= channel.write(responseBuffers);
+    }
+    if (sent.shouldCommit()) {
+      sent.apiKey = header.getRequestAPIKey();
+      sent.apiVersion = header.getRequestAPIVersion();
+      sent.correlationId = header.getCorrelationId();
+      sent.clientId = header.getClientId();
+      sent.bytes = (int)responseBytes;
+      sent.commit();
+    }
+  }
+  // The connection is closed after a request that could not be handled,
+  // once the responses before it are out.
+  private static void logFailure(RequestHeader header, Throwable failure) {
+    Throwable cause = failure instanceof CompletionException &&
+                              failure.getCause() != null
+                          ? failure.getCause()
+                          : failure;
+    System.err.println("Failed to handle request " +
+                       header.getCorrelationId() + " (API key " +
+                       header.getRequestAPIKey() + "): " + cause);
+  }
+  private static void closeQuietly(Socket clientSocket) {
+    try {
+      clientSocket.close();
+    } catch (IOException e) {
+      System.err.println("IOException: " + Arrays.toString(e.getStackTrace()));
+    }
+  }
+  // Gives the partitions the image places on this broker a log, spread
+  // over the log dirs, if they have none yet.
+  private void createAssignedLogs(MetadataImage image) {
+    List<TopicPartition> missing = new ArrayList<>();
+    for (TopicImage topic : image.getTopics()) {
+      PartitionTable partitions = topic.partitions();
+      for (int i = 0; i < partitions.size(); i++) {
+        TopicPartition topicPartition =
+            new TopicPartition(topic.name(), partitions.partitionId(i));
+        if (isReplica(partitions, i) &&
+            logManager.getLog(topicPartition).isEmpty()) {
+          missing.add(topicPartition);
+        }
+      }
+    }
+    if (!missing.isEmpty()) {
+      logManager.createLogs(missing);
+    }
+  }
+  private boolean isReplica(PartitionTable partitions, int index) {
+    for (int i = 0; i < partitions.replicaCount(index); i++) {
+      if (partitions.replica(index, i) == config.getNodeId()) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,167 @@
+package server;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import log.BlockCache;
+import log.CleanerConfig;
+import log.LogConfig;
+import log.TailCache;
+public class BrokerConfig {
+  public static final int DEFAULT_PORT = 9092;
+  public static final int DEFAULT_IO_THREADS = 8;
+  public static final int DEFAULT_NODE_ID = 1;
+  public static final String DEFAULT_ADVERTISED_HOST = "localhost";
+  public static final int DEFAULT_RECOVERY_THREADS_PER_DATA_DIR = 1;
+  public static final int DEFAULT_READ_THREADS_PER_DATA_DIR = 4;
+  public static final long DEFAULT_METADATA_SNAPSHOT_BYTES = 20L * 1024 * 1024;
+  public static final int DEFAULT_METADATA_POLL_INTERVAL_MS = 500;
+  public static final long DEFAULT_LOG_RETENTION_CHECK_INTERVAL_MS = 300_000;
+  public static final long DEFAULT_LOG_TAIL_CACHE_BYTES = 64L * 1024 * 1024;
+  public static final int DEFAULT_LOG_TAIL_CACHE_PARTITION_BYTES = 1024 * 1024;
+  public static final long DEFAULT_LOG_BLOCK_CACHE_BYTES = 128L * 1024 * 1024;
+  public static final int DEFAULT_LOG_BLOCK_CACHE_BLOCK_BYTES = 64 * 1024;
+  public static final int DEFAULT_LOG_READ_AHEAD_BYTES = 1024 * 1024;
+  public static final int DEFAULT_LOG_READ_AHEAD_MAX_IN_FLIGHT = 4;
+  private final List<String> properties;
+  public BrokerConfig(List<String> properties) {
+    this.properties = properties;
+  }
+  public static BrokerConfig fromFile(Path propertiesPath) throws IOException {
+    return new BrokerConfig(Files.readAllLines(propertiesPath));
+  }
+  public static BrokerConfig empty() { return new BrokerConfig(List.of()); }
+  public Optional<String> property(String key) {
+    return properties.stream()
+        .filter(line -> line.startsWith(key + "="))
+        .map(line -> line.substring(key.length() + 1).trim())
+        .findFirst();
+  }
+  public int intProperty(String key, int defaultValue) {
+    return property(key).map(Integer::parseInt).orElse(defaultValue);
+  }
+  public long longProperty(String key, long defaultValue) {
+    return property(key).map(Long::parseLong).orElse(defaultValue);
+  }
+  public double doubleProperty(String key, double defaultValue) {
+    return property(key).map(Double::parseDouble).orElse(defaultValue);
+  }
+  // 0 binds an ephemeral port.
+  public int getPort() { return intProperty("port", DEFAULT_PORT); }
+  public int getNodeId() { return intProperty("node.id", DEFAULT_NODE_ID); }
+  // The endpoint clients are told to connect to in Metadata responses; the
+  // port defaults to the one the listener is bound to.
+  public String getAdvertisedHost() {
+    return property("advertised.host.name").orElse(DEFAULT_ADVERTISED_HOST);
+  }
+  public Optional<Integer> getAdvertisedPort() {
+    return property("advertised.port").map(Integer::parseInt);
+  }
+  public int getIoThreads() {
+    return intProperty("num.io.threads", DEFAULT_IO_THREADS);
+  }
+  public int getRecoveryThreadsPerDataDir() {
+    return intProperty("num.recovery.threads.per.data.dir",
+                       DEFAULT_RECOVERY_THREADS_PER_DATA_DIR);
+  }
+  // Threads serving fetch reads from each data dir.
+  public int getReadThreadsPerDataDir() {
+    return intProperty("num.read.threads.per.data.dir",
+                       DEFAULT_READ_THREADS_PER_DATA_DIR);
+  }
+  // Metadata log bytes replayed since the last snapshot before a new one is
+  // written.
+  public long getMetadataSnapshotBytes() {
+    return property("metadata.log.max.record.bytes.between.snapshots")
+        .map(Long::parseLong)
+        .orElse(DEFAULT_METADATA_SNAPSHOT_BYTES);
+  }
+  // How often the metadata log is checked for appended batches.
+  public int getMetadataPollIntervalMs() {
+    return intProperty("metadata.log.poll.interval.ms",
+                       DEFAULT_METADATA_POLL_INTERVAL_MS);
+  }
+  // log.cleanup.policy is a comma-separated list of delete and compact.
+  public LogConfig getLogConfig() {
+    LogConfig defaults = LogConfig.DEFAULT;
+    List<String> policy = property("log.cleanup.policy")
+                              .map(value -> Arrays.stream(value.split(","))
+                                                .map(String::trim)
+                                                .toList())
+                              .orElse(List.of("delete"));
+    return new LogConfig(
+        intProperty("log.segment.bytes", defaults.segmentBytes()),
+        longProperty("log.roll.ms", defaults.segmentMs()),
+        longProperty("log.retention.bytes", defaults.retentionBytes()),
+        longProperty("log.retention.ms", defaults.retentionMs()),
+        longProperty("file.delete.delay.ms", defaults.fileDeleteDelayMs()),
+        policy.contains("delete"), policy.contains("compact"),
+        longProperty("log.cleaner.delete.retention.ms",
+                     defaults.deleteRetentionMs()));
+  }
+  public CleanerConfig getCleanerConfig() {
+    CleanerConfig defaults = CleanerConfig.DEFAULT;
+    return new CleanerConfig(
+        intProperty("log.cleaner.dedupe.buffer.size",
+                    defaults.dedupeBufferBytes()),
+        doubleProperty("log.cleaner.io.max.bytes.per.second",
+                       defaults.ioMaxBytesPerSecond()),
+        longProperty("log.cleaner.backoff.ms", defaults.backoffMs()),
+        doubleProperty("log.cleaner.min.cleanable.ratio",
+                       defaults.minCleanableRatio()));
+  }
+  // Memory for the newest batches of recently fetched partitions, in rings
+  // of log.tail.cache.partition.bytes each; 0 turns the cache off.
+  public TailCache getTailCache() {
+    return new TailCache(
+        longProperty("log.tail.cache.bytes", DEFAULT_LOG_TAIL_CACHE_BYTES),
+        intProperty("log.tail.cache.partition.bytes",
+                    DEFAULT_LOG_TAIL_CACHE_PARTITION_BYTES));
+  }
+  // Off-heap memory for segment data read from disk, in blocks of
+  // log.block.cache.block.bytes; 0 turns the cache off.
+  public BlockCache getBlockCache() {
+    return new BlockCache(
+        longProperty("log.block.cache.bytes", DEFAULT_LOG_BLOCK_CACHE_BYTES),
+        intProperty("log.block.cache.block.bytes",
+                    DEFAULT_LOG_BLOCK_CACHE_BLOCK_BYTES));
+  }
+  // Segment bytes prefetched ahead of a sequential consumer; 0 turns
+  // read-ahead off.
+  public int getReadAheadBytes() {
+    return intProperty("log.read.ahead.bytes", DEFAULT_LOG_READ_AHEAD_BYTES);
+  }
+  public int getReadAheadMaxInFlight() {
+    return intProperty("log.read.ahead.max.in.flight",
+                       DEFAULT_LOG_READ_AHEAD_MAX_IN_FLIGHT);
+  }
+  // How often each log dir's flusher forces appended data to disk; by
+  // default that is left to the OS.
+  public long getLogFlushIntervalMs() {
+    return longProperty("log.flush.interval.ms", Long.MAX_VALUE);
+  }
+  public long getLogRetentionCheckIntervalMs() {
+    return longProperty("log.retention.check.interval.ms",
+                        DEFAULT_LOG_RETENTION_CHECK_INTERVAL_MS);
+  }
+  public Optional<Integer> getMetricsPort() {
+    return property("metrics.port").map(Integer::parseInt);
+  }
+  public List<Path> getLogDirs() {
+    String logDirs = properties.stream()
+                         .filter(line -> line.startsWith("log.dir"))
+                         .findFirst()
+                         .orElse("");
+    if (logDirs.isEmpty()) {
+      return List.of();
+    }
+    return Arrays.stream(logDirs.split("=")[1].trim().split(","))
+        .map(String::trim)
+        .filter(s -> !s.isEmpty())
+        .map(Path::of)
+        .distinct()
+        .toList();
+  }
+}
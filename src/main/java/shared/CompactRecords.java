@@ -0,0 +1,38 @@
+package shared;
+import java.nio.ByteBuffer;
+import util.StreamUtils;
+// A COMPACT_RECORDS field: the unsigned varint of the byte length plus one,
+// then the record batches as they sit in the log. Zero encodes null, which
+// reads back as empty.
+public class CompactRecords {
+  private final ByteBuffer batches;
+  public CompactRecords(ByteBuffer batches) { this.batches = batches; }
+  public static CompactRecords empty() {
+    return new CompactRecords(ByteBuffer.allocate(0));
+  }
+  public ByteBuffer getBatches() { return batches.duplicate(); }
+  public int sizeInBytes() { return batches.remaining(); }
+  public byte[] toBytes() {
+    return StreamUtils.toBytes(dos -> {
+      ByteBuffer data = batches.duplicate();
+      dos.write(new VarInt(data.remaining() + 1).toBytes());
+      if (data.hasArray()) {
+        dos.write(data.array(), data.arrayOffset() + data.position(),
+                  data.remaining());
+      } else {
+        byte[] bytes = new byte[data.remaining()];
+        data.get(bytes);
+        dos.write(bytes);
+      }
+    });
+  }
+  public static CompactRecords fromByteBuffer(ByteBuffer data) {
+    int length = VarInt.fromByteBuffer(data).getUnsignedValue() - 1;
+    if (length <= 0) {
+      return empty();
+    }
+    ByteBuffer batches = data.slice(data.position(), length);
+    data.position(data.position() + length);
+    return new CompactRecords(batches);
+  }
+}
@@ -1,14 +1,41 @@
 package shared;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.util.Objects;
-import util.StreamUtils;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+// A COMPACT_STRING kept in its wire form: the unsigned varint length prefix
+// followed by the UTF-8 bytes. Hashing and equality work on the bytes, the
+// String is only decoded on demand, and toBytes() returns the stored
+// encoding. Decoded strings go through a small broker-wide intern table, so
+// topic names and client ids that repeat across requests reuse one instance
+// and its decoded String.
 public class CompactString {
-  private final String value;
-  public CompactString(String str) { this.value = str; }
+  private static final int INTERN_TABLE_SIZE = 4096;
+  private static final int MAX_INTERNED_LENGTH = 255;
+  private static final AtomicReferenceArray<CompactString> INTERNED =
+      new AtomicReferenceArray<>(INTERN_TABLE_SIZE);
+  private final byte[] encoded;
+  private final int offset;
+  private final int hash;
+  private String value;
+  public CompactString(String str) {
+    this(encode(str.getBytes(StandardCharsets.UTF_8)));
+    this.value = str;
+  }
+  private CompactString(byte[] encoded) {
+    this.encoded = encoded;
+    this.offset = encoded.length - utf8Length(encoded);
+    this.hash = hash(encoded, offset, encoded.length - offset);
+  }
   @Override
   public String toString() {
-    return this.value;
+    String s = value;
+    if (s == null) {
+      s = new String(encoded, offset, encoded.length - offset,
+                     StandardCharsets.UTF_8);
+      value = s;
+    }
+    return s;
   }
   @Override
   public boolean equals(Object obj) {
@@ -19,24 +46,103 @@ public class CompactString {
       return false;
     }
     CompactString that = (CompactString)obj;
-    return Objects.equals(this.value, that.value);
+    return hash == that.hash &&
+        Arrays.equals(encoded, offset, encoded.length, that.encoded,
+                      that.offset, that.encoded.length);
   }
   @Override
   public int hashCode() {
-    return Objects.hash(this.value);
-  }
-  public byte[] toBytes() {
-    return StreamUtils.toBytes(dos -> {
-      byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
-      dos.write(new VarInt(utf8.length + 1).toBytes());
-      dos.write(utf8);
-    });
+    return hash;
   }
+  // The returned array is shared and must not be modified.
+  public byte[] toBytes() { return encoded; }
   public static CompactString fromByteBuffer(ByteBuffer data) {
     VarInt len = VarInt.fromByteBuffer(data);
     int strLen = len.getUnsignedValue() - 1;
-    byte[] temp = new byte[strLen];
-    data.get(temp);
-    return new CompactString(new String(temp, StandardCharsets.UTF_8));
+    return read(data, strLen);
+  }
+  // Reads length UTF-8 bytes at the buffer's position, returning the
+  // interned instance when one matches.
+  public static CompactString read(ByteBuffer data, int length) {
+    int pos = data.position();
+    int hash = hash(data, pos, length);
+    int slot = hash & (INTERN_TABLE_SIZE - 1);
+    if (length <= MAX_INTERNED_LENGTH) {
+      CompactString interned = INTERNED.get(slot);
+      if (interned != null && interned.hash == hash &&
+          interned.matches(data, pos, length)) {
+        data.position(pos + length);
+        return interned;
+      }
+    }
+    byte[] encoded = new byte[varintSize(length + 1) + length];
+    int offset = writeVarint(encoded, length + 1);
+    data.get(encoded, offset, length);
+    CompactString result = new CompactString(encoded);
+    if (length <= MAX_INTERNED_LENGTH) {
+      // Direct-mapped, so a colliding string simply replaces the old one.
+      INTERNED.lazySet(slot, result);
+    }
+    return result;
+  }
+  private boolean matches(ByteBuffer data, int pos, int length) {
+    if (encoded.length - offset != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (encoded[offset + i] != data.get(pos + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+  private static byte[] encode(byte[] utf8) {
+    byte[] encoded = new byte[varintSize(utf8.length + 1) + utf8.length];
+    int offset = writeVarint(encoded, utf8.length + 1);
+    System.arraycopy(utf8, 0, encoded, offset, utf8.length);
+    return encoded;
+  }
+  private static int hash(byte[] bytes, int from, int length) {
+    int h = 1;
+    for (int i = from; i < from + length; i++) {
+      h = 31 * h + bytes[i];
+    }
+    return h;
+  }
+  private static int hash(ByteBuffer data, int from, int length) {
+    int h = 1;
+    for (int i = from; i < from + length; i++) {
+      h = 31 * h + data.get(i);
+    }
+    return h;
+  }
+  private static int varintSize(int value) {
+    int size = 1;
+    while ((value & ~0x7F) != 0) {
+      value >>>= 7;
+      size++;
+    }
+    return size;
+  }
+  // Returns the number of bytes written.
+  private static int writeVarint(byte[] dest, int value) {
+    int i = 0;
+    while ((value & ~0x7F) != 0) {
+      dest[i++] = (byte)((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    dest[i++] = (byte)value;
+    return i;
+  }
+  private static int utf8Length(byte[] encoded) {
+    int value = 0;
+    int shift = 0;
+    for (int i = 0;; i++) {
+      value |= (encoded[i] & 0x7F) << shift;
+      if ((encoded[i] & 0x80) == 0) {
+        return value - 1;
+      }
+      shift += 7;
+    }
   }
 }
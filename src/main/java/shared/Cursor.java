@@ -18,9 +18,9 @@ public class Cursor {
     return topicName == null && partitionIndex == null;
   }
   public Optional<CompactString> getTopicName() {
-    return Optional.of(topicName);
+    return Optional.ofNullable(topicName);
   }
   public Optional<Integer> getPartitionIndex() {
-    return Optional.of(partitionIndex);
+    return Optional.ofNullable(partitionIndex);
   }
 }
\ No newline at end of file
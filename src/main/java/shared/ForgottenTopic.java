@@ -5,30 +5,39 @@ import java.util.function.Supplier;
 import shared.serializer.IntegerSerializer;
 import util.StreamUtils;
 public class ForgottenTopic {
-  private UUID topicID;
+  private long topicIdMsb;
+  private long topicIdLsb;
   private CompactArray<Integer> partitions;
   private TagBuffer tg = new TagBuffer();
   public ForgottenTopic() {}
   public ForgottenTopic(UUID topicID, CompactArray<Integer> partitions,
                         TagBuffer tg) {
-    this.topicID = topicID;
+    this(topicID.getMostSignificantBits(), topicID.getLeastSignificantBits(),
+         partitions, tg);
+  }
+  public ForgottenTopic(long topicIdMsb, long topicIdLsb,
+                        CompactArray<Integer> partitions, TagBuffer tg) {
+    this.topicIdMsb = topicIdMsb;
+    this.topicIdLsb = topicIdLsb;
     this.partitions = partitions;
     this.tg = tg;
   }
-  public UUID getTopicID() { return topicID; }
+  public UUID getTopicID() { return new UUID(topicIdMsb, topicIdLsb); }
+  public long getTopicIdMostSignificantBits() { return topicIdMsb; }
+  public long getTopicIdLeastSignificantBits() { return topicIdLsb; }
   public CompactArray<Integer> getPartitions() { return partitions; }
   public TagBuffer getTg() { return tg; }
   public static ForgottenTopic fromByteBuffer(ByteBuffer data) {
     Supplier<Integer> defaultIntValue = () -> - 1;
-    UUID topicID = new UUID(data.getLong(), data.getLong());
     return new ForgottenTopic(
-        topicID, CompactArray.fromByteBuffer(data, new IntegerSerializer()),
+        data.getLong(), data.getLong(),
+        CompactArray.fromByteBuffer(data, new IntegerSerializer()),
         TagBuffer.fromByteBuffer(data));
   }
   public byte[] toBytes() {
     return StreamUtils.toBytes(dos -> {
-      dos.writeLong(topicID.getMostSignificantBits());
-      dos.writeLong(topicID.getLeastSignificantBits());
+      dos.writeLong(topicIdMsb);
+      dos.writeLong(topicIdLsb);
       dos.write(partitions.toBytes());
       dos.write(tg.toBytes());
     });
@@ -0,0 +1,20 @@
+package shared;
+public class ListOffsetsPartition {
+  private int partitionIndex;
+  private int currentLeaderEpoch;
+  // A time in ms, or one of the negative ListOffsetsRequest specs.
+  private long timestamp;
+  private TagBuffer tagBuffer;
+  public ListOffsetsPartition() {}
+  public ListOffsetsPartition(int partitionIndex, int currentLeaderEpoch,
+                              long timestamp, TagBuffer tagBuffer) {
+    this.partitionIndex = partitionIndex;
+    this.currentLeaderEpoch = currentLeaderEpoch;
+    this.timestamp = timestamp;
+    this.tagBuffer = tagBuffer;
+  }
+  public int getPartitionIndex() { return partitionIndex; }
+  public int getCurrentLeaderEpoch() { return currentLeaderEpoch; }
+  public long getTimestamp() { return timestamp; }
+  public TagBuffer getTagBuffer() { return tagBuffer; }
+}
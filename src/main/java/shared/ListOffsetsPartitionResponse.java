@@ -0,0 +1,31 @@
+package shared;
+public class ListOffsetsPartitionResponse {
+  private int partitionIndex;
+  private short errorCode;
+  private long timestamp;
+  private long offset;
+  private int leaderEpoch;
+  private TagBuffer tagBuffer = new TagBuffer();
+  public ListOffsetsPartitionResponse() {}
+  public ListOffsetsPartitionResponse(int partitionIndex, short errorCode,
+                                      long timestamp, long offset,
+                                      int leaderEpoch, TagBuffer tagBuffer) {
+    this.partitionIndex = partitionIndex;
+    this.errorCode = errorCode;
+    this.timestamp = timestamp;
+    this.offset = offset;
+    this.leaderEpoch = leaderEpoch;
+    this.tagBuffer = tagBuffer;
+  }
+  public static ListOffsetsPartitionResponse error(int partitionIndex,
+                                                   short errorCode) {
+    return new ListOffsetsPartitionResponse(partitionIndex, errorCode, -1, -1,
+                                            -1, new TagBuffer());
+  }
+  public int getPartitionIndex() { return partitionIndex; }
+  public short getErrorCode() { return errorCode; }
+  public long getTimestamp() { return timestamp; }
+  public long getOffset() { return offset; }
+  public int getLeaderEpoch() { return leaderEpoch; }
+  public TagBuffer getTagBuffer() { return tagBuffer; }
+}
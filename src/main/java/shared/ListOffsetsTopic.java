@@ -0,0 +1,19 @@
+package shared;
+public class ListOffsetsTopic {
+  private CompactString name;
+  private CompactArray<ListOffsetsPartition> partitions;
+  private TagBuffer tagBuffer;
+  public ListOffsetsTopic() {}
+  public ListOffsetsTopic(CompactString name,
+                          CompactArray<ListOffsetsPartition> partitions,
+                          TagBuffer tagBuffer) {
+    this.name = name;
+    this.partitions = partitions;
+    this.tagBuffer = tagBuffer;
+  }
+  public CompactString getName() { return name; }
+  public CompactArray<ListOffsetsPartition> getPartitions() {
+    return partitions;
+  }
+  public TagBuffer getTagBuffer() { return tagBuffer; }
+}
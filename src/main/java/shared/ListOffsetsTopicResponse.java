@@ -0,0 +1,20 @@
+package shared;
+public class ListOffsetsTopicResponse {
+  private CompactString name;
+  private CompactArray<ListOffsetsPartitionResponse> partitions;
+  private TagBuffer tagBuffer = new TagBuffer();
+  public ListOffsetsTopicResponse() {}
+  public ListOffsetsTopicResponse(
+      CompactString name,
+      CompactArray<ListOffsetsPartitionResponse> partitions,
+      TagBuffer tagBuffer) {
+    this.name = name;
+    this.partitions = partitions;
+    this.tagBuffer = tagBuffer;
+  }
+  public CompactString getName() { return name; }
+  public CompactArray<ListOffsetsPartitionResponse> getPartitions() {
+    return partitions;
+  }
+  public TagBuffer getTagBuffer() { return tagBuffer; }
+}
@@ -0,0 +1,18 @@
+package shared;
+import java.util.UUID;
+public class MetadataRequestTopic {
+  private UUID topicId;
+  // Null when the topic is requested by id only.
+  private CompactString name;
+  private TagBuffer tagBuffer;
+  public MetadataRequestTopic() {}
+  public MetadataRequestTopic(UUID topicId, CompactString name,
+                              TagBuffer tagBuffer) {
+    this.topicId = topicId;
+    this.name = name;
+    this.tagBuffer = tagBuffer;
+  }
+  public UUID getTopicId() { return topicId; }
+  public CompactString getName() { return name; }
+  public TagBuffer getTagBuffer() { return tagBuffer; }
+}
@@ -1,6 +1,5 @@
 package shared;
 import shared.serializer.AbortedTransactionSerializer;
-import shared.serializer.ByteArraySerializer;
 public class PartitionResponse {
   private int partitionIndex;
   private short errorCode;
@@ -9,7 +8,7 @@ public class PartitionResponse {
   private long logStartOffset;
   private CompactArray<AbortedTransaction> abortedTransactions;
   private int preferredReadReplica;
-  private CompactArray<byte[]> records;
+  private CompactRecords records;
   private TagBuffer tg;
   public PartitionResponse() {}
   public PartitionResponse(int partitionIndex, short errorCode,
@@ -17,7 +16,7 @@ public class PartitionResponse {
                            long logStartOffset,
                            CompactArray<AbortedTransaction> abortedTransactions,
                            int preferredReadReplica,
-                           CompactArray<byte[]> records, TagBuffer tg) {
+                           CompactRecords records, TagBuffer tg) {
     this.partitionIndex = partitionIndex;
     this.errorCode = errorCode;
     this.highWatermark = highWatermark;
@@ -28,18 +27,12 @@ public class PartitionResponse {
     this.records = records;
     this.tg = tg;
   }
-  private static PartitionResponse
-  EmptyPartitionResponseWithErrorCode(short errorCode) {
+  public static PartitionResponse error(int partitionIndex,
+                                        short errorCode) {
     return new PartitionResponse(
-        0, errorCode, 0, 0, 0,
-        CompactArray.empty(new AbortedTransactionSerializer()), 0,
-        CompactArray.empty(new ByteArraySerializer()), new TagBuffer());
-  }
-  public static PartitionResponse UnknownTopicPartitionResponse() {
-    return EmptyPartitionResponseWithErrorCode((short)100);
-  }
-  public static PartitionResponse EmptyTopicPartitionResponse() {
-    return EmptyPartitionResponseWithErrorCode((short)0);
+        partitionIndex, errorCode, -1, -1, -1,
+        CompactArray.empty(new AbortedTransactionSerializer()), -1,
+        CompactRecords.empty(), new TagBuffer());
   }
   public int getPartitionIndex() { return partitionIndex; }
   public void setPartitionIndex(int partitionIndex) {
@@ -70,10 +63,8 @@ public class PartitionResponse {
   public void setPreferredReadReplica(int preferredReadReplica) {
     this.preferredReadReplica = preferredReadReplica;
   }
-  public CompactArray<byte[]> getRecords() { return records; }
-  public void setRecords(CompactArray<byte[]> records) {
-    this.records = records;
-  }
+  public CompactRecords getRecords() { return records; }
+  public void setRecords(CompactRecords records) { this.records = records; }
   public TagBuffer getTg() { return tg; }
   public void setTg(TagBuffer tg) { this.tg = tg; }
 }
\ No newline at end of file
@@ -0,0 +1,16 @@
+package shared;
+public class ProducePartition {
+  private int index;
+  private CompactRecords records;
+  private TagBuffer tagBuffer;
+  public ProducePartition() {}
+  public ProducePartition(int index, CompactRecords records,
+                          TagBuffer tagBuffer) {
+    this.index = index;
+    this.records = records;
+    this.tagBuffer = tagBuffer;
+  }
+  public int getIndex() { return index; }
+  public CompactRecords getRecords() { return records; }
+  public TagBuffer getTagBuffer() { return tagBuffer; }
+}
@@ -0,0 +1,35 @@
+package shared;
+// Per-record errors are never reported: a batch that fails validation fails
+// the whole partition.
+public class ProducePartitionResponse {
+  private int index;
+  private short errorCode;
+  private long baseOffset;
+  private long logAppendTimeMs;
+  private long logStartOffset;
+  private String errorMessage;
+  private TagBuffer tagBuffer = new TagBuffer();
+  public ProducePartitionResponse() {}
+  public ProducePartitionResponse(int index, short errorCode, long baseOffset,
+                                  long logAppendTimeMs, long logStartOffset,
+                                  String errorMessage, TagBuffer tagBuffer) {
+    this.index = index;
+    this.errorCode = errorCode;
+    this.baseOffset = baseOffset;
+    this.logAppendTimeMs = logAppendTimeMs;
+    this.logStartOffset = logStartOffset;
+    this.errorMessage = errorMessage;
+    this.tagBuffer = tagBuffer;
+  }
+  public static ProducePartitionResponse error(int index, short errorCode) {
+    return new ProducePartitionResponse(index, errorCode, -1, -1, -1, null,
+                                        new TagBuffer());
+  }
+  public int getIndex() { return index; }
+  public short getErrorCode() { return errorCode; }
+  public long getBaseOffset() { return baseOffset; }
+  public long getLogAppendTimeMs() { return logAppendTimeMs; }
+  public long getLogStartOffset() { return logStartOffset; }
+  public String getErrorMessage() { return errorMessage; }
+  public TagBuffer getTagBuffer() { return tagBuffer; }
+}
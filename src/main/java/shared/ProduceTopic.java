@@ -0,0 +1,17 @@
+package shared;
+public class ProduceTopic {
+  private CompactString name;
+  private CompactArray<ProducePartition> partitions;
+  private TagBuffer tagBuffer;
+  public ProduceTopic() {}
+  public ProduceTopic(CompactString name,
+                      CompactArray<ProducePartition> partitions,
+                      TagBuffer tagBuffer) {
+    this.name = name;
+    this.partitions = partitions;
+    this.tagBuffer = tagBuffer;
+  }
+  public CompactString getName() { return name; }
+  public CompactArray<ProducePartition> getPartitions() { return partitions; }
+  public TagBuffer getTagBuffer() { return tagBuffer; }
+}
@@ -0,0 +1,19 @@
+package shared;
+public class ProduceTopicResponse {
+  private CompactString name;
+  private CompactArray<ProducePartitionResponse> partitions;
+  private TagBuffer tagBuffer = new TagBuffer();
+  public ProduceTopicResponse() {}
+  public ProduceTopicResponse(
+      CompactString name, CompactArray<ProducePartitionResponse> partitions,
+      TagBuffer tagBuffer) {
+    this.name = name;
+    this.partitions = partitions;
+    this.tagBuffer = tagBuffer;
+  }
+  public CompactString getName() { return name; }
+  public CompactArray<ProducePartitionResponse> getPartitions() {
+    return partitions;
+  }
+  public TagBuffer getTagBuffer() { return tagBuffer; }
+}
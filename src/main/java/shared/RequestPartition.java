@@ -6,16 +6,19 @@ public class RequestPartition {
   private int lastFetchedEpoch;
   private long logStartOffset;
   private int partitionMaxBytes;
+  private TagBuffer tg = new TagBuffer();
   public RequestPartition() {}
   public RequestPartition(int partition, int currentLeaderEpoch,
                           long fetchOffset, int lastFetchedEpoch,
-                          long logStartOffset, int partitionMaxBytes) {
+                          long logStartOffset, int partitionMaxBytes,
+                          TagBuffer tg) {
     this.partition = partition;
     this.currentLeaderEpoch = currentLeaderEpoch;
     this.fetchOffset = fetchOffset;
     this.lastFetchedEpoch = lastFetchedEpoch;
     this.logStartOffset = logStartOffset;
     this.partitionMaxBytes = partitionMaxBytes;
+    this.tg = tg;
   }
   public int getPartition() { return partition; }
   public int getCurrentLeaderEpoch() { return currentLeaderEpoch; }
@@ -23,4 +26,5 @@ public class RequestPartition {
   public int getLastFetchedEpoch() { return lastFetchedEpoch; }
   public long getLogStartOffset() { return logStartOffset; }
   public int getPartitionMaxBytes() { return partitionMaxBytes; }
+  public TagBuffer getTg() { return tg; }
 }
\ No newline at end of file
@@ -4,31 +4,40 @@ import java.util.UUID;
 import shared.serializer.RequestPartitionSerializer;
 import util.StreamUtils;
 public class RequestTopicElement {
-  private UUID topicID;
+  private long topicIdMsb;
+  private long topicIdLsb;
   private CompactArray<RequestPartition> partitions;
   private TagBuffer tg;
   public RequestTopicElement() {}
   public RequestTopicElement(UUID topicID,
                              CompactArray<RequestPartition> partitions,
                              TagBuffer tg) {
-    this.topicID = topicID;
+    this(topicID.getMostSignificantBits(), topicID.getLeastSignificantBits(),
+         partitions, tg);
+  }
+  public RequestTopicElement(long topicIdMsb, long topicIdLsb,
+                             CompactArray<RequestPartition> partitions,
+                             TagBuffer tg) {
+    this.topicIdMsb = topicIdMsb;
+    this.topicIdLsb = topicIdLsb;
     this.partitions = partitions;
     this.tg = tg;
   }
-  public UUID getTopicID() { return topicID; }
+  public UUID getTopicID() { return new UUID(topicIdMsb, topicIdLsb); }
+  public long getTopicIdMostSignificantBits() { return topicIdMsb; }
+  public long getTopicIdLeastSignificantBits() { return topicIdLsb; }
   public CompactArray<RequestPartition> getPartitions() { return partitions; }
   public TagBuffer getTg() { return tg; }
   public static RequestTopicElement fromByteBuffer(ByteBuffer data) {
-    UUID topicID = new UUID(data.getLong(), data.getLong());
     return new RequestTopicElement(
-        topicID,
+        data.getLong(), data.getLong(),
         CompactArray.fromByteBuffer(data, new RequestPartitionSerializer()),
         TagBuffer.fromByteBuffer(data));
   }
   public byte[] toBytes() {
     return StreamUtils.toBytes(dos -> {
-      dos.writeLong(topicID.getMostSignificantBits());
-      dos.writeLong(topicID.getLeastSignificantBits());
+      dos.writeLong(topicIdMsb);
+      dos.writeLong(topicIdLsb);
       dos.write(partitions.toBytes());
       dos.write(tg.toBytes());
     });
@@ -2,34 +2,36 @@ package shared.serializer;
 
 import shared.CompactString;
 import shared.Cursor;
+import shared.TagBuffer;
 import util.StreamUtils;
 
 import java.nio.ByteBuffer;
 
 public class CursorSerializer implements ElementSerializer<Cursor> {
+    // Cursor is a nullable struct: a -1 byte for null, otherwise a 1 byte
+    // followed by the struct and its tagged fields.
     @Override
     public byte[] toBytes(Cursor element) {
         return StreamUtils.toBytes(dos -> {
             if (element.isNull()) {
                 dos.write(-1);
             } else {
-                if (element.getTopicName().isPresent() && element.getPartitionIndex().isPresent()) {
-                    dos.write(element.getTopicName().get().toBytes());
-                    dos.writeInt(element.getPartitionIndex().get());
-                }
+                dos.write(1);
+                dos.write(element.getTopicName().get().toBytes());
+                dos.writeInt(element.getPartitionIndex().get());
+                dos.write(new TagBuffer().toBytes());
             }
         });
     }
 
     @Override
     public Cursor fromByteBuffer(ByteBuffer data) {
-        int pos = data.position();
         if (data.get() == -1) {
             return Cursor.nullCursor();
-        } else {
-            data.position(pos);
-            CompactString str = CompactString.fromByteBuffer(data);
-            return new Cursor(str, data.getInt());
         }
+        CompactString str = CompactString.fromByteBuffer(data);
+        Cursor cursor = new Cursor(str, data.getInt());
+        TagBuffer.fromByteBuffer(data);
+        return cursor;
     }
-}
\ No newline at end of file
+}
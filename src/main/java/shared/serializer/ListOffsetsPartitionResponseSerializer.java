@@ -0,0 +1,29 @@
+package shared.serializer;
+
+import shared.ListOffsetsPartitionResponse;
+import shared.TagBuffer;
+import util.StreamUtils;
+
+import java.nio.ByteBuffer;
+
+public class ListOffsetsPartitionResponseSerializer implements ElementSerializer<ListOffsetsPartitionResponse> {
+    @Override
+    public byte[] toBytes(ListOffsetsPartitionResponse element) {
+        return StreamUtils.toBytes(dos -> {
+            dos.writeInt(element.getPartitionIndex());
+            dos.writeShort(element.getErrorCode());
+            dos.writeLong(element.getTimestamp());
+            dos.writeLong(element.getOffset());
+            dos.writeInt(element.getLeaderEpoch());
+            dos.write(element.getTagBuffer().toBytes());
+        });
+    }
+
+    @Override
+    public ListOffsetsPartitionResponse fromByteBuffer(ByteBuffer data) {
+        return new ListOffsetsPartitionResponse(
+                data.getInt(), data.getShort(), data.getLong(), data.getLong(), data.getInt(),
+                TagBuffer.fromByteBuffer(data)
+        );
+    }
+}
@@ -0,0 +1,24 @@
+package shared.serializer;
+
+import shared.ListOffsetsPartition;
+import shared.TagBuffer;
+import util.StreamUtils;
+
+import java.nio.ByteBuffer;
+
+public class ListOffsetsPartitionSerializer implements ElementSerializer<ListOffsetsPartition> {
+    @Override
+    public byte[] toBytes(ListOffsetsPartition element) {
+        return StreamUtils.toBytes(dos -> {
+            dos.writeInt(element.getPartitionIndex());
+            dos.writeInt(element.getCurrentLeaderEpoch());
+            dos.writeLong(element.getTimestamp());
+            dos.write(element.getTagBuffer().toBytes());
+        });
+    }
+
+    @Override
+    public ListOffsetsPartition fromByteBuffer(ByteBuffer data) {
+        return new ListOffsetsPartition(data.getInt(), data.getInt(), data.getLong(), TagBuffer.fromByteBuffer(data));
+    }
+}
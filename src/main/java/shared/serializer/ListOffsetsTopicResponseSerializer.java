@@ -0,0 +1,29 @@
+package shared.serializer;
+
+import shared.CompactArray;
+import shared.CompactString;
+import shared.ListOffsetsTopicResponse;
+import shared.TagBuffer;
+import util.StreamUtils;
+
+import java.nio.ByteBuffer;
+
+public class ListOffsetsTopicResponseSerializer implements ElementSerializer<ListOffsetsTopicResponse> {
+    @Override
+    public byte[] toBytes(ListOffsetsTopicResponse element) {
+        return StreamUtils.toBytes(dos -> {
+            dos.write(element.getName().toBytes());
+            dos.write(element.getPartitions().toBytes());
+            dos.write(element.getTagBuffer().toBytes());
+        });
+    }
+
+    @Override
+    public ListOffsetsTopicResponse fromByteBuffer(ByteBuffer data) {
+        return new ListOffsetsTopicResponse(
+                CompactString.fromByteBuffer(data),
+                CompactArray.fromByteBuffer(data, new ListOffsetsPartitionResponseSerializer()),
+                TagBuffer.fromByteBuffer(data)
+        );
+    }
+}
@@ -0,0 +1,29 @@
+package shared.serializer;
+
+import shared.CompactArray;
+import shared.CompactString;
+import shared.ListOffsetsTopic;
+import shared.TagBuffer;
+import util.StreamUtils;
+
+import java.nio.ByteBuffer;
+
+public class ListOffsetsTopicSerializer implements ElementSerializer<ListOffsetsTopic> {
+    @Override
+    public byte[] toBytes(ListOffsetsTopic element) {
+        return StreamUtils.toBytes(dos -> {
+            dos.write(element.getName().toBytes());
+            dos.write(element.getPartitions().toBytes());
+            dos.write(element.getTagBuffer().toBytes());
+        });
+    }
+
+    @Override
+    public ListOffsetsTopic fromByteBuffer(ByteBuffer data) {
+        return new ListOffsetsTopic(
+                CompactString.fromByteBuffer(data),
+                CompactArray.fromByteBuffer(data, new ListOffsetsPartitionSerializer()),
+                TagBuffer.fromByteBuffer(data)
+        );
+    }
+}
@@ -0,0 +1,50 @@
+package shared.serializer;
+
+import shared.CompactString;
+import shared.MetadataRequestTopic;
+import shared.TagBuffer;
+import shared.VarInt;
+import util.StreamUtils;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+public class MetadataRequestTopicSerializer implements ElementSerializer<MetadataRequestTopic> {
+    private static final UUID ZERO_UUID = new UUID(0, 0);
+    // The topic id is only on the wire from version 10.
+    private final short version;
+
+    public MetadataRequestTopicSerializer(short version) {
+        this.version = version;
+    }
+
+    @Override
+    public byte[] toBytes(MetadataRequestTopic element) {
+        return StreamUtils.toBytes(dos -> {
+            if (version >= 10) {
+                UUID id = element.getTopicId() == null ? ZERO_UUID : element.getTopicId();
+                dos.writeLong(id.getMostSignificantBits());
+                dos.writeLong(id.getLeastSignificantBits());
+            }
+            if (element.getName() == null) {
+                dos.write(new VarInt(0).toBytes());
+            } else {
+                dos.write(element.getName().toBytes());
+            }
+            dos.write(element.getTagBuffer().toBytes());
+        });
+    }
+
+    @Override
+    public MetadataRequestTopic fromByteBuffer(ByteBuffer data) {
+        UUID id = version >= 10 ? new UUID(data.getLong(), data.getLong()) : ZERO_UUID;
+        // A zero length prefix is a null name.
+        int pos = data.position();
+        CompactString name = null;
+        if (VarInt.fromByteBuffer(data).getUnsignedValue() != 0) {
+            data.position(pos);
+            name = CompactString.fromByteBuffer(data);
+        }
+        return new MetadataRequestTopic(id, name, TagBuffer.fromByteBuffer(data));
+    }
+}
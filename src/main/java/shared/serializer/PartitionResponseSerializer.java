@@ -1,6 +1,7 @@
 package shared.serializer;
 
 import shared.CompactArray;
+import shared.CompactRecords;
 import shared.PartitionResponse;
 import shared.TagBuffer;
 import util.StreamUtils;
@@ -33,7 +34,7 @@ public class PartitionResponseSerializer implements ElementSerializer<PartitionR
                 data.getLong(),
                 CompactArray.fromByteBuffer(data, new AbortedTransactionSerializer()),
                 data.getInt(),
-                CompactArray.fromByteBuffer(data, new ByteArraySerializer()),
+                CompactRecords.fromByteBuffer(data),
                 TagBuffer.fromByteBuffer(data)
         );
     }
@@ -0,0 +1,55 @@
+package shared.serializer;
+
+import shared.CompactString;
+import shared.ProducePartitionResponse;
+import shared.TagBuffer;
+import shared.VarInt;
+import util.StreamUtils;
+
+import java.nio.ByteBuffer;
+
+public class ProducePartitionResponseSerializer implements ElementSerializer<ProducePartitionResponse> {
+    @Override
+    public byte[] toBytes(ProducePartitionResponse element) {
+        return StreamUtils.toBytes(dos -> {
+            dos.writeInt(element.getIndex());
+            dos.writeShort(element.getErrorCode());
+            dos.writeLong(element.getBaseOffset());
+            dos.writeLong(element.getLogAppendTimeMs());
+            dos.writeLong(element.getLogStartOffset());
+            // No record errors.
+            dos.write(new VarInt(1).toBytes());
+            dos.write(nullableStringBytes(element.getErrorMessage()));
+            dos.write(element.getTagBuffer().toBytes());
+        });
+    }
+
+    @Override
+    public ProducePartitionResponse fromByteBuffer(ByteBuffer data) {
+        int index = data.getInt();
+        short errorCode = data.getShort();
+        long baseOffset = data.getLong();
+        long logAppendTimeMs = data.getLong();
+        long logStartOffset = data.getLong();
+        int recordErrors = VarInt.fromByteBuffer(data).getUnsignedValue() - 1;
+        for (int i = 0; i < recordErrors; i++) {
+            data.getInt();
+            readNullableString(data);
+            TagBuffer.fromByteBuffer(data);
+        }
+        String errorMessage = readNullableString(data);
+        return new ProducePartitionResponse(
+                index, errorCode, baseOffset, logAppendTimeMs, logStartOffset, errorMessage,
+                TagBuffer.fromByteBuffer(data)
+        );
+    }
+
+    private static byte[] nullableStringBytes(String value) {
+        return value == null ? new VarInt(0).toBytes() : new CompactString(value).toBytes();
+    }
+
+    private static String readNullableString(ByteBuffer data) {
+        int length = VarInt.fromByteBuffer(data).getUnsignedValue();
+        return length == 0 ? null : CompactString.read(data, length - 1).toString();
+    }
+}
@@ -0,0 +1,26 @@
+package shared.serializer;
+
+import shared.CompactRecords;
+import shared.ProducePartition;
+import shared.TagBuffer;
+import util.StreamUtils;
+
+import java.nio.ByteBuffer;
+
+public class ProducePartitionSerializer implements ElementSerializer<ProducePartition> {
+    @Override
+    public byte[] toBytes(ProducePartition element) {
+        return StreamUtils.toBytes(dos -> {
+            dos.writeInt(element.getIndex());
+            dos.write(element.getRecords().toBytes());
+            dos.write(element.getTagBuffer().toBytes());
+        });
+    }
+
+    @Override
+    public ProducePartition fromByteBuffer(ByteBuffer data) {
+        return new ProducePartition(
+                data.getInt(), CompactRecords.fromByteBuffer(data), TagBuffer.fromByteBuffer(data)
+        );
+    }
+}
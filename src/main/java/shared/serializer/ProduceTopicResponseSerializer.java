@@ -0,0 +1,29 @@
+package shared.serializer;
+
+import shared.CompactArray;
+import shared.CompactString;
+import shared.ProduceTopicResponse;
+import shared.TagBuffer;
+import util.StreamUtils;
+
+import java.nio.ByteBuffer;
+
+public class ProduceTopicResponseSerializer implements ElementSerializer<ProduceTopicResponse> {
+    @Override
+    public byte[] toBytes(ProduceTopicResponse element) {
+        return StreamUtils.toBytes(dos -> {
+            dos.write(element.getName().toBytes());
+            dos.write(element.getPartitions().toBytes());
+            dos.write(element.getTagBuffer().toBytes());
+        });
+    }
+
+    @Override
+    public ProduceTopicResponse fromByteBuffer(ByteBuffer data) {
+        return new ProduceTopicResponse(
+                CompactString.fromByteBuffer(data),
+                CompactArray.fromByteBuffer(data, new ProducePartitionResponseSerializer()),
+                TagBuffer.fromByteBuffer(data)
+        );
+    }
+}
@@ -0,0 +1,29 @@
+package shared.serializer;
+
+import shared.CompactArray;
+import shared.CompactString;
+import shared.ProduceTopic;
+import shared.TagBuffer;
+import util.StreamUtils;
+
+import java.nio.ByteBuffer;
+
+public class ProduceTopicSerializer implements ElementSerializer<ProduceTopic> {
+    @Override
+    public byte[] toBytes(ProduceTopic element) {
+        return StreamUtils.toBytes(dos -> {
+            dos.write(element.getName().toBytes());
+            dos.write(element.getPartitions().toBytes());
+            dos.write(element.getTagBuffer().toBytes());
+        });
+    }
+
+    @Override
+    public ProduceTopic fromByteBuffer(ByteBuffer data) {
+        return new ProduceTopic(
+                CompactString.fromByteBuffer(data),
+                CompactArray.fromByteBuffer(data, new ProducePartitionSerializer()),
+                TagBuffer.fromByteBuffer(data)
+        );
+    }
+}
@@ -1,6 +1,7 @@
 package shared.serializer;
 
 import shared.RequestPartition;
+import shared.TagBuffer;
 import util.StreamUtils;
 
 import java.nio.ByteBuffer;
@@ -15,11 +16,13 @@ public class RequestPartitionSerializer implements ElementSerializer<RequestPart
             dos.writeInt(element.getLastFetchedEpoch());
             dos.writeLong(element.getLogStartOffset());
             dos.writeInt(element.getPartitionMaxBytes());
+            dos.write(element.getTg().toBytes());
         });
     }
 
     @Override
     public RequestPartition fromByteBuffer(ByteBuffer data) {
-        return new RequestPartition(data.getInt(), data.getInt(), data.getLong(), data.getInt(), data.getLong(), data.getInt());
+        return new RequestPartition(data.getInt(), data.getInt(), data.getLong(), data.getInt(), data.getLong(), data.getInt(),
+                TagBuffer.fromByteBuffer(data));
     }
 }
\ No newline at end of file
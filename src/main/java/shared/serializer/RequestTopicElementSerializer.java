@@ -6,14 +6,13 @@ import shared.TagBuffer;
 import util.StreamUtils;
 
 import java.nio.ByteBuffer;
-import java.util.UUID;
 
 public class RequestTopicElementSerializer implements ElementSerializer<RequestTopicElement> {
     @Override
     public byte[] toBytes(RequestTopicElement element) {
         return StreamUtils.toBytes(dos -> {
-            dos.writeLong(element.getTopicID().getMostSignificantBits());
-            dos.writeLong(element.getTopicID().getLeastSignificantBits());
+            dos.writeLong(element.getTopicIdMostSignificantBits());
+            dos.writeLong(element.getTopicIdLeastSignificantBits());
             dos.write(element.getPartitions().toBytes());
             dos.write(element.getTg().toBytes());
         });
@@ -21,9 +20,8 @@ public class RequestTopicElementSerializer implements ElementSerializer<RequestT
 
     @Override
     public RequestTopicElement fromByteBuffer(ByteBuffer data) {
-        UUID topicID = new UUID(data.getLong(), data.getLong());
         return new RequestTopicElement(
-                topicID,
+                data.getLong(), data.getLong(),
                 CompactArray.fromByteBuffer(data, new RequestPartitionSerializer()),
                 TagBuffer.fromByteBuffer(data));
     }
@@ -0,0 +1,179 @@
+package util;
+import java.util.AbstractCollection;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+// Immutable sorted map backed by a path-copying AVL tree: put and remove
+// return a new map in O(log n) and share every untouched node with the
+// original, so old versions stay valid for concurrent readers. Null values
+// are not allowed.
+public final class PersistentTreeMap<K extends Comparable<K>, V> {
+  private static final PersistentTreeMap<?, ?> EMPTY =
+      new PersistentTreeMap<>(null, 0);
+  private final Node<K, V> root;
+  private final int size;
+  private PersistentTreeMap(Node<K, V> root, int size) {
+    this.root = root;
+    this.size = size;
+  }
+  @SuppressWarnings("unchecked")
+  public static <K extends Comparable<K>, V> PersistentTreeMap<K, V> empty() {
+    return (PersistentTreeMap<K, V>)EMPTY;
+  }
+  public int size() { return size; }
+  public boolean isEmpty() { return size == 0; }
+  public V get(K key) {
+    Node<K, V> node = root;
+    while (node != null) {
+      int cmp = key.compareTo(node.key);
+      if (cmp == 0) {
+        return node.value;
+      }
+      node = cmp < 0 ? node.left : node.right;
+    }
+    return null;
+  }
+  public PersistentTreeMap<K, V> put(K key, V value) {
+    if (value == null) {
+      throw new NullPointerException("value");
+    }
+    boolean replaced = get(key) != null;
+    return new PersistentTreeMap<>(put(root, key, value),
+                                   replaced ? size : size + 1);
+  }
+  public PersistentTreeMap<K, V> remove(K key) {
+    if (get(key) == null) {
+      return this;
+    }
+    return new PersistentTreeMap<>(remove(root, key), size - 1);
+  }
+  // Values in key order.
+  public Collection<V> values() {
+    return new AbstractCollection<>() {
+      @Override
+      public Iterator<V> iterator() {
+        return valuesFrom(null);
+      }
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+  // Values in key order, starting at the first key >= from (all when null).
+  public Iterator<V> valuesFrom(K from) {
+    Deque<Node<K, V>> stack = new ArrayDeque<>();
+    Node<K, V> node = root;
+    while (node != null) {
+      if (from == null || from.compareTo(node.key) <= 0) {
+        stack.push(node);
+        node = node.left;
+      } else {
+        node = node.right;
+      }
+    }
+    return new Iterator<>() {
+      @Override
+      public boolean hasNext() {
+        return !stack.isEmpty();
+      }
+      @Override
+      public V next() {
+        if (stack.isEmpty()) {
+          throw new NoSuchElementException();
+        }
+        Node<K, V> next = stack.pop();
+        for (Node<K, V> n = next.right; n != null; n = n.left) {
+          stack.push(n);
+        }
+        return next.value;
+      }
+    };
+  }
+  private static <K extends Comparable<K>, V> Node<K, V>
+  put(Node<K, V> node, K key, V value) {
+    if (node == null) {
+      return new Node<>(key, value, null, null);
+    }
+    int cmp = key.compareTo(node.key);
+    if (cmp == 0) {
+      return new Node<>(key, value, node.left, node.right);
+    }
+    if (cmp < 0) {
+      return balance(node.key, node.value, put(node.left, key, value),
+                     node.right);
+    }
+    return balance(node.key, node.value, node.left,
+                   put(node.right, key, value));
+  }
+  private static <K extends Comparable<K>, V> Node<K, V>
+  remove(Node<K, V> node, K key) {
+    int cmp = key.compareTo(node.key);
+    if (cmp < 0) {
+      return balance(node.key, node.value, remove(node.left, key),
+                     node.right);
+    }
+    if (cmp > 0) {
+      return balance(node.key, node.value, node.left,
+                     remove(node.right, key));
+    }
+    if (node.left == null) {
+      return node.right;
+    }
+    if (node.right == null) {
+      return node.left;
+    }
+    Node<K, V> min = node.right;
+    while (min.left != null) {
+      min = min.left;
+    }
+    return balance(min.key, min.value, node.left,
+                   remove(node.right, min.key));
+  }
+  private static <K extends Comparable<K>, V> Node<K, V>
+  balance(K key, V value, Node<K, V> left, Node<K, V> right) {
+    int diff = height(left) - height(right);
+    if (diff > 1) {
+      if (height(left.left) < height(left.right)) {
+        left = rotateLeft(left.key, left.value, left.left, left.right);
+      }
+      return rotateRight(key, value, left, right);
+    }
+    if (diff < -1) {
+      if (height(right.right) < height(right.left)) {
+        right = rotateRight(right.key, right.value, right.left, right.right);
+      }
+      return rotateLeft(key, value, left, right);
+    }
+    return new Node<>(key, value, left, right);
+  }
+  private static <K extends Comparable<K>, V> Node<K, V>
+  rotateRight(K key, V value, Node<K, V> left, Node<K, V> right) {
+    return new Node<>(left.key, left.value, left.left,
+                      new Node<>(key, value, left.right, right));
+  }
+  private static <K extends Comparable<K>, V> Node<K, V>
+  rotateLeft(K key, V value, Node<K, V> left, Node<K, V> right) {
+    return new Node<>(right.key, right.value,
+                      new Node<>(key, value, left, right.left), right.right);
+  }
+  private static int height(Node<?, ?> node) {
+    return node == null ? 0 : node.height;
+  }
+  private static final class Node<K, V> {
+    private final K key;
+    private final V value;
+    private final Node<K, V> left;
+    private final Node<K, V> right;
+    private final int height;
+    Node(K key, V value, Node<K, V> left, Node<K, V> right) {
+      this.key = key;
+      this.value = value;
+      this.left = left;
+      this.right = right;
+      this.height = Math.max(height(left), height(right)) + 1;
+    }
+  }
+}
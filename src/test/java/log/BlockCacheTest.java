@@ -0,0 +1,243 @@
+package log;
+import static log.TestBatches.batch;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+class BlockCacheTest {
+  private static final int BLOCK_BYTES = 64;
+  private static final TopicPartition TOPIC_PARTITION =
+      new TopicPartition("topic", 0);
+  @TempDir
+  Path dir;
+  private byte[] contents;
+  private Path file;
+  private FileChannel channel;
+  private final List<LogSegment> segments = new ArrayList<>();
+  @BeforeEach
+  void writeSegment() throws IOException {
+    Random random = new Random(7);
+    byte[][] batches = new byte[16][];
+    for (int i = 0; i < batches.length; i++) {
+      byte[] value = new byte[100];
+      random.nextBytes(value);
+      batches[i] = batch(i, 0, value);
+    }
+    contents = TestBatches.concat(batches).array();
+    file = dir.resolve(String.format("%020d", 0) + LogSegment.LOG_SUFFIX);
+    Files.write(file, contents);
+    channel = FileChannel.open(file);
+  }
+  @AfterEach
+  void close() throws IOException {
+    channel.close();
+    for (LogSegment segment : segments) {
+      segment.close();
+    }
+  }
+  @Test
+  void disabledCacheHoldsNothing() {
+    assertFalse(BlockCache.DISABLED.isEnabled());
+    assertFalse(new BlockCache(BLOCK_BYTES - 1, BLOCK_BYTES).isEnabled());
+    assertEquals(0, BlockCache.DISABLED.getCapacityBytes());
+  }
+  @Test
+  void secondReadOfABlockIsAHit() throws IOException {
+    BlockCache cache = new BlockCache(4 * BLOCK_BYTES, BLOCK_BYTES);
+    LogSegment segment = open(cache);
+    assertRead(cache, segment, 70, 10);
+    assertRead(cache, segment, 64, 64);
+    assertEquals(1, cache.getMisses());
+    assertEquals(1, cache.getHits());
+    assertEquals(BLOCK_BYTES, cache.getUsedBytes());
+  }
+  @Test
+  void readStopsAtTheEndOfTheBlock() throws IOException {
+    BlockCache cache = new BlockCache(4 * BLOCK_BYTES, BLOCK_BYTES);
+    LogSegment segment = open(cache);
+    ByteBuffer buffer = ByteBuffer.allocate(100);
+    assertEquals(BLOCK_BYTES - 10,
+                 cache.read(segment, channel, BLOCK_BYTES + 10, buffer,
+                            false));
+    assertEquals(BLOCK_BYTES - 10, buffer.position());
+  }
+  @Test
+  void usedBytesStayWithinCapacity() throws IOException {
+    BlockCache cache = new BlockCache(4 * BLOCK_BYTES, BLOCK_BYTES);
+    LogSegment segment = open(cache);
+    for (int block = 0; block < 10; block++) {
+      assertRead(cache, segment, block * BLOCK_BYTES, BLOCK_BYTES);
+    }
+    assertEquals(4 * BLOCK_BYTES, cache.getUsedBytes());
+    assertEquals(4 * BLOCK_BYTES, cache.getCapacityBytes());
+    assertEquals(6, cache.getEvictions());
+  }
+  @Test
+  void scanDoesNotEvictBlocksReadAgain() throws IOException {
+    BlockCache cache = new BlockCache(5 * BLOCK_BYTES, BLOCK_BYTES);
+    LogSegment segment = open(cache);
+    // Blocks 0 and 1 are read twice, so they are protected.
+    for (int pass = 0; pass < 2; pass++) {
+      assertRead(cache, segment, 0, BLOCK_BYTES);
+      assertRead(cache, segment, BLOCK_BYTES, BLOCK_BYTES);
+    }
+    // A catching-up consumer reads every other block once.
+    for (int block = 2; block < 20; block++) {
+      assertRead(cache, segment, block * BLOCK_BYTES, BLOCK_BYTES);
+    }
+    long hits = cache.getHits();
+    assertRead(cache, segment, 0, BLOCK_BYTES);
+    assertRead(cache, segment, BLOCK_BYTES, BLOCK_BYTES);
+    assertEquals(hits + 2, cache.getHits());
+  }
+  @Test
+  void protectedBlocksAreDemotedWhenTheSegmentIsFull() throws IOException {
+    // Room for 5 blocks, 4 of them protected.
+    BlockCache cache = new BlockCache(5 * BLOCK_BYTES, BLOCK_BYTES);
+    LogSegment segment = open(cache);
+    for (int block = 0; block < 5; block++) {
+      assertRead(cache, segment, block * BLOCK_BYTES, BLOCK_BYTES);
+      assertRead(cache, segment, block * BLOCK_BYTES, BLOCK_BYTES);
+    }
+    // Block 0 was demoted to probation when block 4 was promoted, so it
+    // is the first to go.
+    assertRead(cache, segment, 5 * BLOCK_BYTES, BLOCK_BYTES);
+    long misses = cache.getMisses();
+    for (int block = 1; block < 5; block++) {
+      assertRead(cache, segment, block * BLOCK_BYTES, BLOCK_BYTES);
+    }
+    assertEquals(misses, cache.getMisses());
+    assertRead(cache, segment, 0, BLOCK_BYTES);
+    assertEquals(misses + 1, cache.getMisses());
+  }
+  @Test
+  void probesNeitherLoadNorPromoteBlocks() throws IOException {
+    BlockCache cache = new BlockCache(5 * BLOCK_BYTES, BLOCK_BYTES);
+    LogSegment segment = open(cache);
+    assertRead(cache, segment, 0, RecordBatch.HEADER_SIZE, true);
+    assertEquals(0, cache.getMisses());
+    assertEquals(0, cache.getUsedBytes());
+    // A fetch finds its batch through a header probe, then reads it.
+    assertRead(cache, segment, 0, RecordBatch.HEADER_SIZE, true);
+    assertRead(cache, segment, 0, BLOCK_BYTES);
+    assertRead(cache, segment, 0, RecordBatch.HEADER_SIZE, true);
+    assertEquals(1, cache.getHits());
+    assertEvictedByScan(cache, segment);
+  }
+  @Test
+  void fetchesCarryingOnMidBlockDoNotPromoteIt() throws IOException {
+    BlockCache cache = new BlockCache(5 * BLOCK_BYTES, BLOCK_BYTES);
+    LogSegment segment = open(cache);
+    assertRead(cache, segment, 10, 30);
+    assertRead(cache, segment, 40, 24);
+    assertRead(cache, segment, 0, 10);
+    assertEquals(2, cache.getHits());
+    assertEvictedByScan(cache, segment);
+  }
+  @Test
+  void invalidateDropsOnlyTheSegmentsBlocks() throws IOException {
+    BlockCache cache = new BlockCache(8 * BLOCK_BYTES, BLOCK_BYTES);
+    LogSegment closed = open(cache);
+    LogSegment kept = open(cache);
+    for (int block = 0; block < 3; block++) {
+      assertRead(cache, closed, block * BLOCK_BYTES, BLOCK_BYTES);
+      assertRead(cache, kept, block * BLOCK_BYTES, BLOCK_BYTES);
+    }
+    cache.invalidate(closed);
+    assertEquals(3 * BLOCK_BYTES, cache.getUsedBytes());
+    long misses = cache.getMisses();
+    assertRead(cache, kept, 0, BLOCK_BYTES);
+    assertEquals(misses, cache.getMisses());
+    assertRead(cache, closed, 0, BLOCK_BYTES);
+    assertEquals(misses + 1, cache.getMisses());
+  }
+  @Test
+  void segmentReadsGoThroughTheCache() throws IOException {
+    BlockCache cache = new BlockCache(4 * BLOCK_BYTES, BLOCK_BYTES);
+    LogSegment segment = open(cache);
+    for (int pass = 0; pass < 2; pass++) {
+      ByteBuffer read = segment.read(10, 3 * BLOCK_BYTES);
+      assertEquals(ByteBuffer.wrap(contents, 10, 3 * BLOCK_BYTES), read);
+    }
+    assertTrue(cache.getHits() > 0);
+    // The partial block at the end of the segment is never cached.
+    int tail = contents.length / BLOCK_BYTES * BLOCK_BYTES;
+    long misses = cache.getMisses();
+    assertEquals(ByteBuffer.wrap(contents, tail, contents.length - tail),
+                 segment.read(tail, contents.length - tail));
+    assertEquals(misses, cache.getMisses());
+  }
+  @Test
+  void concurrentReadersOfASmallCacheGetTheRightBytes() throws Exception {
+    // Far more readers than blocks, so some find every block out being
+    // loaded and read around the cache.
+    BlockCache cache = new BlockCache(2 * BLOCK_BYTES, BLOCK_BYTES);
+    LogSegment segment = open(cache);
+    int blocks = contents.length / BLOCK_BYTES;
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<?>> readers = new ArrayList<>();
+      for (int t = 0; t < 8; t++) {
+        long seed = t;
+        readers.add(executor.submit(() -> {
+          Random random = new Random(seed);
+          for (int i = 0; i < 2000; i++) {
+            int position = random.nextInt(blocks * BLOCK_BYTES);
+            int length = 1 + random.nextInt(BLOCK_BYTES);
+            assertRead(cache, segment, position, length);
+          }
+          return null;
+        }));
+      }
+      for (Future<?> reader : readers) {
+        reader.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertTrue(cache.getUsedBytes() <= cache.getCapacityBytes());
+  }
+  private LogSegment open(BlockCache cache) throws IOException {
+    LogSegment segment = LogSegment.open(TOPIC_PARTITION, file, cache);
+    segments.add(segment);
+    return segment;
+  }
+  // Block 0 is still on probation: a scan of five more blocks pushes it out.
+  private void assertEvictedByScan(BlockCache cache, LogSegment segment)
+      throws IOException {
+    for (int block = 1; block <= 5; block++) {
+      assertRead(cache, segment, block * BLOCK_BYTES, BLOCK_BYTES);
+    }
+    long misses = cache.getMisses();
+    assertRead(cache, segment, 0, BLOCK_BYTES);
+    assertEquals(misses + 1, cache.getMisses());
+  }
+  private void assertRead(BlockCache cache, LogSegment segment, int position,
+                          int length) throws IOException {
+    assertRead(cache, segment, position, length, false);
+  }
+  // Reads from position up to length bytes, stopping at the block end, and
+  // checks them against the file.
+  private void assertRead(BlockCache cache, LogSegment segment, int position,
+                          int length, boolean probe) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    int read = cache.read(segment, channel, position, buffer, probe);
+    assertEquals(Math.min(length, BLOCK_BYTES - position % BLOCK_BYTES),
+                 read);
+    assertEquals(ByteBuffer.wrap(contents, position, read), buffer.flip());
+  }
+}
@@ -0,0 +1,178 @@
+package log;
+import static log.TestBatches.batch;
+import static log.TestBatches.utf8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import shared.VarInt;
+class LogCleanerTest {
+  private static final LogConfig CONFIG =
+      new LogConfig(Integer.MAX_VALUE, Long.MAX_VALUE, -1, -1, 0, false,
+                    true, 0);
+  private static final CleanerConfig CLEANER_CONFIG =
+      new CleanerConfig(1024 * 1024, -1, 1000, 0.5);
+  @TempDir
+  Path root;
+  private Path dir;
+  private final List<PartitionLog> logs = new ArrayList<>();
+  private final List<LogCleaner> cleaners = new ArrayList<>();
+  @BeforeEach
+  void createDir() throws IOException {
+    dir = Files.createDirectory(root.resolve("topic-0"));
+  }
+  @AfterEach
+  void close() throws IOException {
+    for (LogCleaner cleaner : cleaners) {
+      cleaner.close();
+    }
+    for (PartitionLog log : logs) {
+      log.close();
+    }
+  }
+  @Test
+  void keepsTheLatestRecordPerKey() throws Exception {
+    writeSegment(0, keyed(0, "a", "v", "b", "v"),
+                 keyed(2, "a", "v", null, "v"));
+    writeSegment(4, keyed(4, "b", "v"));
+    cleaner(CLEANER_CONFIG).clean(load());
+    // Only the inactive segment is cleaned, so b at 1 is not superseded yet.
+    assertEquals(List.of("1:b", "2:a", "3:null"), records(0));
+    assertEquals(List.of("4:b"), records(4));
+    assertEquals("4", Files.readString(
+                          dir.resolve(LogCleaner.CHECKPOINT_FILE)).trim());
+  }
+  @Test
+  void batchesKeepTheirOffsetRange() throws Exception {
+    writeSegment(0, keyed(0, "a", "v", "b", "v", "a", "v"));
+    writeSegment(3, keyed(3, "c", "v"));
+    cleaner(CLEANER_CONFIG).clean(load());
+    ByteBuffer cleaned = ByteBuffer.wrap(Files.readAllBytes(segmentFile(0)));
+    assertEquals(0, cleaned.getLong(0));
+    assertEquals(3, RecordBatch.nextOffset(cleaned));
+    assertEquals(2, cleaned.getInt(RecordBatch.RECORDS_COUNT_OFFSET));
+  }
+  @Test
+  void segmentWithNothingLeftIsRemoved() throws Exception {
+    writeSegment(0, keyed(0, "a", "v"));
+    writeSegment(1, keyed(1, "a", "v"));
+    writeSegment(2, keyed(2, "b", "v"));
+    PartitionLog log = load();
+    cleaner(CLEANER_CONFIG).clean(log);
+    assertEquals(1, log.getLogStartOffset());
+    assertEquals(2, log.getSegments().size());
+    assertEquals(List.of("1:a"), records(1));
+  }
+  @Test
+  void tombstonesSurviveTheirFirstPass() throws Exception {
+    writeSegment(0, keyed(0, "a", null));
+    writeSegment(1, keyed(1, "b", "v"));
+    writeSegment(2, keyed(2, "c", "v"));
+    cleaner(CLEANER_CONFIG).clean(load());
+    assertEquals(List.of("0:a"), records(0));
+  }
+  @Test
+  void tombstonesInCleanSegmentsGoAfterDeleteRetention() throws Exception {
+    writeSegment(0, keyed(0, "a", null));
+    writeSegment(1, keyed(1, "b", "v"));
+    writeSegment(2, keyed(2, "c", "v"));
+    // A previous pass already cleaned the first segment.
+    Files.writeString(dir.resolve(LogCleaner.CHECKPOINT_FILE), "1");
+    PartitionLog log = load();
+    cleaner(CLEANER_CONFIG).clean(log);
+    assertEquals(1, log.getLogStartOffset());
+    assertEquals(List.of("1:b"), records(1));
+  }
+  @Test
+  void fullOffsetMapStopsAtTheLastSegmentThatFit() throws Exception {
+    writeSegment(0, keyed(0, "a", "v", "a", "v"));
+    writeSegment(2, keyed(2, "b", "v", "b", "v"));
+    writeSegment(4, keyed(4, "c", "v"));
+    // Three slots take two keys, so the map fills up while reading the
+    // second segment.
+    cleaner(new CleanerConfig(72, -1, 1000, 0.5)).clean(load());
+    assertEquals(List.of("1:a"), records(0));
+    assertEquals(List.of("2:b", "3:b"), records(2));
+    assertEquals("2", Files.readString(
+                          dir.resolve(LogCleaner.CHECKPOINT_FILE)).trim());
+  }
+  // One batch of alternating keys and values; a null key or value stays
+  // null.
+  private static byte[] keyed(long baseOffset, String... keysAndValues) {
+    int count = keysAndValues.length / 2;
+    byte[][] keys = new byte[count][];
+    byte[][] values = new byte[count][];
+    for (int i = 0; i < count; i++) {
+      keys[i] = bytes(keysAndValues[2 * i]);
+      values[i] = bytes(keysAndValues[2 * i + 1]);
+    }
+    return batch(baseOffset, new long[count], keys, values);
+  }
+  private static byte[] bytes(String value) {
+    return value == null ? null : utf8(value);
+  }
+  private void writeSegment(long baseOffset, byte[]... batches)
+      throws IOException {
+    Files.write(segmentFile(baseOffset), TestBatches.concat(batches).array());
+  }
+  private Path segmentFile(long baseOffset) {
+    return dir.resolve(String.format("%020d", baseOffset) +
+                       LogSegment.LOG_SUFFIX);
+  }
+  private PartitionLog load() throws IOException {
+    PartitionLog log = PartitionLog.load(dir, CONFIG);
+    logs.add(log);
+    return log;
+  }
+  private LogCleaner cleaner(CleanerConfig config) {
+    LogCleaner cleaner = new LogCleaner(new LogManager(), CONFIG, config);
+    cleaners.add(cleaner);
+    return cleaner;
+  }
+  // The segment file's records as offset:key, checking each batch's CRC.
+  private List<String> records(long baseOffset) throws IOException {
+    ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(
+        segmentFile(baseOffset)));
+    List<String> records = new ArrayList<>();
+    while (data.hasRemaining()) {
+      int start = data.position();
+      int end = start + RecordBatch.LOG_OVERHEAD +
+                data.getInt(start + RecordBatch.LENGTH_OFFSET);
+      CRC32C crc = new CRC32C();
+      crc.update(data.duplicate().limit(end)
+                     .position(start + RecordBatch.ATTRIBUTES_OFFSET));
+      assertEquals((int)crc.getValue(),
+                   data.getInt(start + RecordBatch.CRC_OFFSET));
+      long base = data.getLong(start);
+      int count = data.getInt(start + RecordBatch.RECORDS_COUNT_OFFSET);
+      data.position(start + RecordBatch.HEADER_SIZE);
+      for (int i = 0; i < count; i++) {
+        int length = VarInt.fromByteBuffer(data).getValue();
+        int recordEnd = data.position() + length;
+        data.get();
+        RecordBatch.readVarlong(data);
+        long offset = base + VarInt.fromByteBuffer(data).getValue();
+        int keyLength = VarInt.fromByteBuffer(data).getValue();
+        String key = null;
+        if (keyLength >= 0) {
+          byte[] bytes = new byte[keyLength];
+          data.get(bytes);
+          key = new String(bytes, StandardCharsets.UTF_8);
+        }
+        records.add(offset + ":" + key);
+        data.position(recordEnd);
+      }
+      assertEquals(end, data.position());
+    }
+    return records;
+  }
+}
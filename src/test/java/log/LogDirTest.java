@@ -0,0 +1,83 @@
+package log;
+import static log.TestBatches.batch;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+class LogDirTest {
+  private static final TopicPartition T0 = new TopicPartition("t", 0);
+  @TempDir
+  Path root;
+  private LogManager logManager;
+  private PartitionLog log;
+  @BeforeEach
+  void createLog() {
+    logManager = new LogManager(List.of(root), LogConfig.DEFAULT);
+    logManager.createLogs(List.of(T0));
+    log = logManager.getLog(T0).orElseThrow();
+  }
+  @AfterEach
+  void close() throws IOException {
+    logManager.close();
+  }
+  @Test
+  void appendsCountAgainstTheirLogDir() throws IOException {
+    byte[] batch = batch(0, System.currentTimeMillis(), new byte[10]);
+    logManager.append(log, ByteBuffer.wrap(batch));
+    logManager.append(log, ByteBuffer.wrap(batch));
+    LogDir dir = logManager.dirOf(log);
+    assertEquals(2L * batch.length, dir.getBytesWritten());
+    assertEquals(0, dir.getFlushes());
+  }
+  @Test
+  void flusherForcesAppendedData() throws Exception {
+    logManager.startFlushers(10);
+    logManager.append(log, ByteBuffer.wrap(
+                               batch(0, System.currentTimeMillis(),
+                                     new byte[10])));
+    LogDir dir = logManager.dirOf(log);
+    long deadline = System.currentTimeMillis() + 10_000;
+    while (dir.getFlushes() == 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(5);
+    }
+    assertEquals(1, dir.getFlushes());
+    assertEquals(0, log.flush());
+  }
+  @Test
+  void flushRecordsAFlushEvent() throws IOException {
+    byte[] batch = batch(0, System.currentTimeMillis(), new byte[10]);
+    Path dump = root.resolve("flush.jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable("kafka.Flush");
+      recording.start();
+      log.append(ByteBuffer.wrap(batch));
+      log.append(ByteBuffer.wrap(batch));
+      assertEquals(2L * batch.length, log.flush());
+      // Nothing new to force.
+      assertEquals(0, log.flush());
+      recording.stop();
+      recording.dump(dump);
+    }
+    // The dump also holds JDK events that are always on.
+    List<RecordedEvent> events =
+        RecordingFile.readAllEvents(dump).stream()
+            .filter(event -> event.getEventType().getName().equals(
+                                 "kafka.Flush"))
+            .toList();
+    assertEquals(1, events.size());
+    RecordedEvent event = events.get(0);
+    assertEquals("t", event.getString("topic"));
+    assertEquals(0, event.getInt("partition"));
+    assertEquals(String.format("%020d", 0) + LogSegment.LOG_SUFFIX,
+                 event.getString("segment"));
+    assertEquals(2L * batch.length, event.getLong("bytes"));
+  }
+}
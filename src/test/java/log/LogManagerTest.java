@@ -0,0 +1,109 @@
+package log;
+import static log.TestBatches.batch;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+class LogManagerTest {
+  @TempDir
+  Path root;
+  private Path first;
+  private Path second;
+  private ForkJoinPool pool;
+  @BeforeEach
+  void createDirs() throws IOException {
+    first = Files.createDirectory(root.resolve("first"));
+    second = Files.createDirectory(root.resolve("second"));
+    pool = new ForkJoinPool(4);
+  }
+  @AfterEach
+  void shutdownPool() {
+    pool.shutdown();
+  }
+  @Test
+  void loadsEveryPartitionOfEveryDir() throws IOException {
+    for (int p = 0; p < 8; p++) {
+      // Two segments each, p batches in the second.
+      Path dir = p % 2 == 0 ? first : second;
+      writeSegment(dir, "t-" + p, 0, batch(0, 0, new byte[10]),
+                   batch(1, 0, new byte[10]));
+      byte[][] batches = new byte[p][];
+      for (int i = 0; i < p; i++) {
+        batches[i] = batch(2 + i, 0, new byte[10]);
+      }
+      writeSegment(dir, "t-" + p, 2, batches);
+    }
+    try (LogManager manager =
+             LogManager.load(List.of(first, second), pool)) {
+      assertEquals(8, manager.getLogs().size());
+      for (int p = 0; p < 8; p++) {
+        PartitionLog log =
+            manager.getLog(new TopicPartition("t", p)).orElseThrow();
+        assertEquals(2 + p, log.getLogEndOffset());
+        assertEquals(p % 2 == 0 ? first : second,
+                     manager.dirOf(log).getPath());
+      }
+      for (LogDir dir : manager.getLogDirs()) {
+        assertEquals(4, dir.getPartitionCount());
+      }
+    }
+  }
+  @Test
+  void tornTailIsLeftOutOfTheLoadedLog() throws IOException {
+    byte[] complete = batch(0, 0, new byte[10]);
+    byte[] torn = batch(1, 0, new byte[100]);
+    writeSegment(first, "t-0", 0, complete,
+                 Arrays.copyOf(torn, torn.length - 10));
+    writeSegment(second, "t-1", 0, complete, torn);
+    try (LogManager manager =
+             LogManager.load(List.of(first, second), pool)) {
+      assertEquals(1, manager.getLog(new TopicPartition("t", 0))
+                          .orElseThrow()
+                          .getLogEndOffset());
+      assertEquals(2, manager.getLog(new TopicPartition("t", 1))
+                          .orElseThrow()
+                          .getLogEndOffset());
+    }
+  }
+  @Test
+  void partitionInBothDirsIsLoadedOnce() throws IOException {
+    writeSegment(first, "t-0", 0, batch(0, 0, new byte[10]));
+    writeSegment(second, "t-0", 0, batch(0, 0, new byte[10]));
+    try (LogManager manager =
+             LogManager.load(List.of(first, second), pool)) {
+      assertEquals(1, manager.getLogs().size());
+      PartitionLog log =
+          manager.getLog(new TopicPartition("t", 0)).orElseThrow();
+      assertEquals(1, manager.dirOf(log).getPartitionCount());
+      assertEquals(1, manager.getLogDirs().stream()
+                          .mapToInt(LogDir::getPartitionCount)
+                          .sum());
+    }
+  }
+  @Test
+  void partitionThatFailsToLoadDoesNotStopTheOthers() throws IOException {
+    writeSegment(first, "t-0", 0, batch(0, 0, new byte[10]));
+    writeSegment(first, "t-x", 0, batch(0, 0, new byte[10]));
+    try (LogManager manager = LogManager.load(List.of(first), pool)) {
+      assertEquals(1, manager.getLogs().size());
+      assertTrue(manager.getLog(new TopicPartition("t", 0)).isPresent());
+    }
+  }
+  private static void writeSegment(Path logDir, String partition,
+                                   long baseOffset, byte[]... batches)
+      throws IOException {
+    Path dir = logDir.resolve(partition);
+    Files.createDirectories(dir);
+    Files.write(dir.resolve(String.format("%020d", baseOffset) +
+                            LogSegment.LOG_SUFFIX),
+                TestBatches.concat(batches).array());
+  }
+}
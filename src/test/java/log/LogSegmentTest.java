@@ -0,0 +1,141 @@
+package log;
+import static log.TestBatches.batch;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+class LogSegmentTest {
+  private static final TopicPartition TOPIC_PARTITION =
+      new TopicPartition("t", 0);
+  @TempDir
+  Path dir;
+  @Test
+  void openIndexesBatchesLargerThanTheReadChunk() throws IOException {
+    // Small batches around ones bigger than the 64 KiB recovery chunk, so
+    // headers land at every kind of offset in it.
+    byte[][] batches = new byte[12][];
+    long[] positions = new long[batches.length];
+    long position = 0;
+    for (int i = 0; i < batches.length; i++) {
+      batches[i] = batch(100 + i, 1000 + i,
+                         new byte[i % 3 == 1 ? 100_000 + i : 50]);
+      positions[i] = position;
+      position += batches[i].length;
+    }
+    Path file = write(100, TestBatches.concat(batches).array());
+    try (LogSegment segment = LogSegment.open(TOPIC_PARTITION, file)) {
+      assertEquals(position, segment.getSize());
+      assertEquals(100 + batches.length, segment.getNextOffset());
+      for (int i = 0; i < batches.length; i++) {
+        assertEquals(positions[i], segment.findBatch(100 + i));
+      }
+      assertEquals(1000 + batches.length - 1, segment.getMaxTimestamp());
+      assertEquals(1000, segment.getFirstBatchTimestamp());
+    }
+  }
+  @Test
+  void openLeavesOutATornTail() throws IOException {
+    byte[] first = batch(0, 0, new byte[10]);
+    byte[] second = batch(1, 0, new byte[100_000]);
+    Path file = write(0, TestBatches.concat(
+                             first, Arrays.copyOf(second, second.length - 1))
+                             .array());
+    try (LogSegment segment = LogSegment.open(TOPIC_PARTITION, file)) {
+      assertEquals(first.length, segment.getSize());
+      assertEquals(1, segment.getNextOffset());
+      assertEquals(-1, segment.findBatch(1));
+    }
+  }
+  @Test
+  void emptySegmentStartsAtItsBaseOffset() throws IOException {
+    try (LogSegment segment =
+             LogSegment.open(TOPIC_PARTITION, write(42, new byte[0]))) {
+      assertEquals(0, segment.getSize());
+      assertEquals(42, segment.getNextOffset());
+    }
+  }
+  @Test
+  void refreshReturnsOnlyCompleteAppendedBatches() throws IOException {
+    byte[] first = batch(0, 0, new byte[10]);
+    byte[] second = batch(1, 0, new byte[20]);
+    byte[] third = batch(2, 0, new byte[30]);
+    Path file = write(0, first);
+    try (LogSegment segment = LogSegment.open(TOPIC_PARTITION, file)) {
+      assertEquals(0, segment.refresh().remaining());
+      Files.write(file, TestBatches.concat(second, Arrays.copyOf(third, 40))
+                            .array(),
+                  StandardOpenOption.APPEND);
+      assertEquals(ByteBuffer.wrap(second), segment.refresh());
+      assertEquals(first.length + second.length, segment.getSize());
+      assertEquals(2, segment.getNextOffset());
+      Files.write(file, Arrays.copyOfRange(third, 40, third.length),
+                  StandardOpenOption.APPEND);
+      assertEquals(ByteBuffer.wrap(third), segment.refresh());
+      assertEquals(3, segment.getNextOffset());
+      assertEquals(first.length + second.length, segment.findBatch(2));
+    }
+  }
+  @Test
+  void segmentOperationsRecordJfrEvents() throws IOException {
+    byte[] batch = batch(5, 1000, new byte[10], new byte[10]);
+    Path dump = dir.resolve("segment.jfr");
+    try (Recording recording = new Recording();
+         LogSegment segment =
+             LogSegment.create(TOPIC_PARTITION, dir, 5, BlockCache.DISABLED)) {
+      for (String event : List.of("kafka.SegmentAppend", "kafka.SegmentRead",
+                                  "kafka.IndexLookup")) {
+        recording.enable(event);
+      }
+      recording.start();
+      segment.append(ByteBuffer.wrap(batch));
+      segment.read(0, batch.length);
+      assertEquals(0, segment.findBatch(6));
+      assertEquals(5, segment.findOffsetByTimestamp(1000).offset());
+      recording.stop();
+      recording.dump(dump);
+    }
+    Map<String, List<RecordedEvent>> events = new HashMap<>();
+    for (RecordedEvent event : RecordingFile.readAllEvents(dump)) {
+      String name = event.getEventType().getName();
+      if (name.startsWith("kafka.")) {
+        assertEquals("t", event.getString("topic"));
+        assertEquals(0, event.getInt("partition"));
+        events.computeIfAbsent(name, key -> new ArrayList<>()).add(event);
+      }
+    }
+    RecordedEvent append = events.get("kafka.SegmentAppend").get(0);
+    assertEquals(String.format("%020d", 5) + LogSegment.LOG_SUFFIX,
+                 append.getString("segment"));
+    assertEquals(5, append.getLong("baseOffset"));
+    assertEquals(batch.length, append.getLong("bytes"));
+    RecordedEvent read = events.get("kafka.SegmentRead").get(0);
+    assertEquals(0, read.getLong("position"));
+    assertEquals(batch.length, read.getLong("bytes"));
+    List<RecordedEvent> lookups = events.get("kafka.IndexLookup");
+    assertEquals(2, lookups.size());
+    assertEquals("offset", lookups.get(0).getString("index"));
+    assertEquals(6, lookups.get(0).getLong("target"));
+    assertEquals(5, lookups.get(0).getLong("resultOffset"));
+    assertEquals("time", lookups.get(1).getString("index"));
+    assertEquals(1000, lookups.get(1).getLong("target"));
+    assertEquals(5, lookups.get(1).getLong("resultOffset"));
+    assertEquals(0, lookups.get(1).getLong("resultPosition"));
+  }
+  private Path write(long baseOffset, byte[] contents) throws IOException {
+    return Files.write(dir.resolve(String.format("%020d", baseOffset) +
+                                   LogSegment.LOG_SUFFIX),
+                       contents);
+  }
+}
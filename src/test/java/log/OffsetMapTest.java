@@ -0,0 +1,74 @@
+package log;
+import static log.TestBatches.utf8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.nio.ByteBuffer;
+import org.junit.jupiter.api.Test;
+class OffsetMapTest {
+  // Each slot is a 16-byte digest and an 8-byte offset.
+  private static final int SLOT_BYTES = 24;
+  @Test
+  void getReturnsTheLatestOffsetPut() {
+    OffsetMap map = new OffsetMap(16 * SLOT_BYTES);
+    assertEquals(-1, map.get(key("a")));
+    map.put(key("a"), 0);
+    map.put(key("b"), 1);
+    map.put(key("a"), 7);
+    assertEquals(7, map.get(key("a")));
+    assertEquals(1, map.get(key("b")));
+    assertEquals(-1, map.get(key("c")));
+  }
+  @Test
+  void putDoesNotMoveTheKeysPosition() {
+    ByteBuffer key = ByteBuffer.wrap(utf8("xkeyx")).position(1).limit(4);
+    OffsetMap map = new OffsetMap(16 * SLOT_BYTES);
+    map.put(key, 3);
+    assertEquals(1, key.position());
+    assertEquals(3, map.get(key("key")));
+  }
+  @Test
+  void fullAtNinetyPercentOfTheSlots() {
+    OffsetMap map = new OffsetMap(10 * SLOT_BYTES);
+    for (int i = 0; i < 9; i++) {
+      assertFalse(map.isFull());
+      map.put(key("k" + i), i);
+    }
+    assertTrue(map.isFull());
+    // Replacing an offset does not take another slot.
+    map.clear();
+    for (int i = 0; i < 20; i++) {
+      map.put(key("k"), i);
+    }
+    assertFalse(map.isFull());
+  }
+  @Test
+  void probingFindsEveryKeyOfANearlyFullMap() {
+    OffsetMap map = new OffsetMap(1000 * SLOT_BYTES);
+    int count = 0;
+    while (!map.isFull()) {
+      map.put(key("k" + count), count);
+      count++;
+    }
+    assertEquals(900, count);
+    for (int i = 0; i < count; i++) {
+      assertEquals(i, map.get(key("k" + i)));
+    }
+    assertEquals(-1, map.get(key("k" + count)));
+  }
+  @Test
+  void clearEmptiesTheMap() {
+    OffsetMap map = new OffsetMap(4 * SLOT_BYTES);
+    map.put(key("a"), 0);
+    map.put(key("b"), 1);
+    map.put(key("c"), 2);
+    assertTrue(map.isFull());
+    map.clear();
+    assertFalse(map.isFull());
+    assertEquals(-1, map.get(key("a")));
+    assertEquals(-1, map.get(key("c")));
+  }
+  private static ByteBuffer key(String key) {
+    return ByteBuffer.wrap(utf8(key));
+  }
+}
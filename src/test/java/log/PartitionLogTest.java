@@ -0,0 +1,223 @@
+package log;
+import static log.TestBatches.batch;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+class PartitionLogTest {
+  @TempDir
+  Path root;
+  private Path dir;
+  @BeforeEach
+  void createDir() throws IOException {
+    dir = Files.createDirectory(root.resolve("topic-0"));
+  }
+  @Test
+  void emptyLogHasNoTimestamps() throws IOException {
+    try (PartitionLog log = PartitionLog.load(dir, LogConfig.DEFAULT)) {
+      assertEquals(0, log.getLogStartOffset());
+      assertEquals(0, log.getLogEndOffset());
+      assertNull(log.findOffsetByTimestamp(0));
+      assertNull(log.findMaxTimestamp());
+    }
+  }
+  @Test
+  void findsTheFirstRecordAtOrAfterATimestamp() throws IOException {
+    // Timestamps within a batch need not be in order; the first record in
+    // offset order that is late enough wins.
+    writeSegment(0, batch(0, new long[] {100, 300, 200}, new byte[3][],
+                          values(3)),
+                 batch(3, new long[] {400, 410}, new byte[2][], values(2)));
+    writeSegment(5, batch(5, new long[] {500, 520, 510}, new byte[3][],
+                          values(3)));
+    try (PartitionLog log = PartitionLog.load(dir, LogConfig.DEFAULT)) {
+      assertEquals(0, log.getLogStartOffset());
+      assertEquals(8, log.getLogEndOffset());
+      assertFound(100, 0, log.findOffsetByTimestamp(0));
+      assertFound(100, 0, log.findOffsetByTimestamp(100));
+      assertFound(300, 1, log.findOffsetByTimestamp(150));
+      assertFound(300, 1, log.findOffsetByTimestamp(250));
+      assertFound(400, 3, log.findOffsetByTimestamp(301));
+      assertFound(500, 5, log.findOffsetByTimestamp(411));
+      assertFound(520, 6, log.findOffsetByTimestamp(505));
+      assertFound(520, 6, log.findOffsetByTimestamp(520));
+      assertNull(log.findOffsetByTimestamp(521));
+    }
+  }
+  @Test
+  void skipsOlderBatchesInTheSegmentFound() throws IOException {
+    // The second segment starts with a batch older than the first one.
+    writeSegment(0, batch(0, 900, new byte[1]));
+    writeSegment(1, batch(1, 800, new byte[1]),
+                 batch(2, 1000, new byte[1]));
+    try (PartitionLog log = PartitionLog.load(dir, LogConfig.DEFAULT)) {
+      assertFound(900, 0, log.findOffsetByTimestamp(850));
+      assertFound(1000, 2, log.findOffsetByTimestamp(950));
+    }
+  }
+  @Test
+  void maxTimestampIsTheFirstRecordCarryingIt() throws IOException {
+    writeSegment(0, batch(0, new long[] {10, 70, 70}, new byte[3][],
+                          values(3)));
+    writeSegment(3, batch(3, new long[] {20, 30}, new byte[2][], values(2)));
+    try (PartitionLog log = PartitionLog.load(dir, LogConfig.DEFAULT)) {
+      assertFound(70, 1, log.findMaxTimestamp());
+    }
+  }
+  @Test
+  void findsTheBatchHoldingAnOffset() throws IOException {
+    byte[][] batches = new byte[20][];
+    for (int i = 0; i < batches.length; i++) {
+      batches[i] = batch(2L * i, new long[] {i, i}, new byte[2][],
+                         new byte[][] {new byte[500], new byte[500]});
+    }
+    writeSegment(0, batches);
+    try (PartitionLog log = PartitionLog.load(dir, LogConfig.DEFAULT)) {
+      LogSegment segment = log.getSegments().get(0);
+      long position = 0;
+      for (int i = 0; i < batches.length; i++) {
+        assertEquals(position, segment.findBatch(2L * i));
+        assertEquals(position, segment.findBatch(2L * i + 1));
+        position += batches[i].length;
+      }
+      assertEquals(-1, segment.findBatch(2L * batches.length));
+    }
+  }
+  @Test
+  void appendAssignsOffsetsFromTheLogEnd() throws IOException {
+    long now = System.currentTimeMillis();
+    writeSegment(0, batch(0, now, new byte[1], new byte[1]));
+    try (PartitionLog log = PartitionLog.load(dir, LogConfig.DEFAULT)) {
+      // Producers send base offset 0; the log assigns the real ones.
+      ByteBuffer batches =
+          TestBatches.concat(batch(0, now, new byte[1]),
+                             batch(0, now, new byte[1], new byte[1]));
+      assertEquals(2, log.append(batches));
+      assertEquals(5, log.getLogEndOffset());
+      assertEquals(2, batches.getLong(0));
+      assertEquals(1, log.getSegments().size());
+    }
+    try (PartitionLog log = PartitionLog.load(dir, LogConfig.DEFAULT)) {
+      assertEquals(5, log.getLogEndOffset());
+    }
+  }
+  @Test
+  void appendRollsWhenTheActiveSegmentIsFull() throws IOException {
+    int batchBytes = batch(0, 0, new byte[100]).length;
+    LogConfig config = config(3 * batchBytes, Long.MAX_VALUE, -1, -1);
+    try (PartitionLog log = PartitionLog.load(dir, config)) {
+      for (int i = 0; i < 8; i++) {
+        assertEquals(i, log.append(ByteBuffer.wrap(batch(0, 0,
+                                                         new byte[100]))));
+      }
+      assertEquals(List.of(0L, 3L, 6L), baseOffsets(log));
+      assertEquals(3L * batchBytes, log.getSegments().get(0).getSize());
+    }
+    try (PartitionLog log = PartitionLog.load(dir, config)) {
+      assertEquals(List.of(0L, 3L, 6L), baseOffsets(log));
+      assertEquals(8, log.getLogEndOffset());
+    }
+  }
+  @Test
+  void appendRollsWhenTheFirstBatchIsTooOld() throws IOException {
+    long now = System.currentTimeMillis();
+    LogConfig config = config(Integer.MAX_VALUE, 60_000, -1, -1);
+    try (PartitionLog log = PartitionLog.load(dir, config)) {
+      log.append(ByteBuffer.wrap(batch(0, now - 120_000, new byte[1])));
+      log.append(ByteBuffer.wrap(batch(0, now, new byte[1])));
+      log.append(ByteBuffer.wrap(batch(0, now, new byte[1])));
+      assertEquals(List.of(0L, 1L), baseOffsets(log));
+    }
+  }
+  @Test
+  void appendRejectsMalformedBatches() throws IOException {
+    byte[] good = batch(0, 0, new byte[1]);
+    byte[] badMagic = good.clone();
+    badMagic[RecordBatch.MAGIC_OFFSET] = 1;
+    try (PartitionLog log = PartitionLog.load(dir, LogConfig.DEFAULT)) {
+      assertThrows(IllegalArgumentException.class,
+                   () -> log.append(ByteBuffer.allocate(0)));
+      assertThrows(IllegalArgumentException.class,
+                   () -> log.append(ByteBuffer.wrap(good, 0,
+                                                    good.length - 1)));
+      assertThrows(IllegalArgumentException.class,
+                   () -> log.append(ByteBuffer.wrap(badMagic)));
+      assertEquals(0, log.getLogEndOffset());
+      assertEquals(0, log.getSegments().size());
+    }
+  }
+  @Test
+  void retentionMsDropsSegmentsPastTheirLargestTimestamp() throws IOException {
+    writeSegment(0, batch(0, 1000, new byte[1]));
+    writeSegment(1, batch(1, 2000, new byte[1]));
+    writeSegment(2, batch(2, 1500, new byte[1]));
+    writeSegment(3, batch(3, 0, new byte[1]));
+    try (PartitionLog log =
+             PartitionLog.load(dir, config(Integer.MAX_VALUE, Long.MAX_VALUE,
+                                           -1, 500))) {
+      // The third segment has expired too, but the second one holds it
+      // back.
+      List<LogSegment> removed = log.removeExpiredSegments(2100);
+      assertEquals(List.of(0L), removed.stream()
+                                    .map(LogSegment::getBaseOffset)
+                                    .toList());
+      assertEquals(1, log.getLogStartOffset());
+      // The active segment is kept however old it is.
+      assertEquals(2, log.removeExpiredSegments(10_000).size());
+      assertEquals(List.of(3L), baseOffsets(log));
+    }
+  }
+  @Test
+  void retentionBytesDropsTheOldestSegments() throws IOException {
+    int batchBytes = batch(0, 0, new byte[1]).length;
+    for (int i = 0; i < 5; i++) {
+      writeSegment(i, batch(i, 0, new byte[1]));
+    }
+    try (PartitionLog log =
+             PartitionLog.load(dir, config(Integer.MAX_VALUE, Long.MAX_VALUE,
+                                           2L * batchBytes, -1))) {
+      List<LogSegment> removed = log.removeExpiredSegments(0);
+      assertEquals(3, removed.size());
+      assertEquals(List.of(3L, 4L), baseOffsets(log));
+      for (LogSegment segment : removed) {
+        segment.markDeleted();
+        segment.delete();
+      }
+    }
+    try (PartitionLog log = PartitionLog.load(dir, LogConfig.DEFAULT)) {
+      assertEquals(3, log.getLogStartOffset());
+    }
+  }
+  private static LogConfig config(int segmentBytes, long segmentMs,
+                                  long retentionBytes, long retentionMs) {
+    return new LogConfig(segmentBytes, segmentMs, retentionBytes, retentionMs,
+                         0, true, false, 0);
+  }
+  private static List<Long> baseOffsets(PartitionLog log) {
+    return log.getSegments().stream().map(LogSegment::getBaseOffset).toList();
+  }
+  private void writeSegment(long baseOffset, byte[]... batches)
+      throws IOException {
+    Files.write(dir.resolve(String.format("%020d", baseOffset) +
+                            LogSegment.LOG_SUFFIX),
+                TestBatches.concat(batches).array());
+  }
+  private static byte[][] values(int count) {
+    byte[][] values = new byte[count][];
+    for (int i = 0; i < count; i++) {
+      values[i] = new byte[] {(byte)i};
+    }
+    return values;
+  }
+  private static void assertFound(long timestamp, long offset,
+                                  TimestampAndOffset found) {
+    assertEquals(new TimestampAndOffset(timestamp, offset, 0), found);
+  }
+}
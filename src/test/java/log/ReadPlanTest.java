@@ -0,0 +1,96 @@
+package log;
+import static log.TestBatches.batch;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+class ReadPlanTest {
+  private static final int BATCHES = 10;
+  @TempDir
+  Path root;
+  private LogDir logDir;
+  private PartitionLog log;
+  private int batchBytes;
+  @BeforeEach
+  void createLog() throws IOException {
+    byte[][] batches = new byte[BATCHES][];
+    for (int i = 0; i < BATCHES; i++) {
+      // Two records per batch, so offsets 2i and 2i + 1 share batch i.
+      batches[i] = batch(2L * i, 0, new byte[100], new byte[100]);
+    }
+    batchBytes = batches[0].length;
+    Path dir = Files.createDirectory(root.resolve("topic-0"));
+    Files.write(dir.resolve(String.format("%020d", 0) + LogSegment.LOG_SUFFIX),
+                TestBatches.concat(batches).array());
+    logDir = new LogDir(root, 0);
+    log = PartitionLog.load(dir, LogConfig.DEFAULT);
+  }
+  @AfterEach
+  void closeLog() throws IOException {
+    log.close();
+  }
+  @Test
+  void readsWholeBatchesWithinMaxBytes() throws IOException {
+    ReadPlan plan = new ReadPlan();
+    ReadPlan.Read read = plan.add(log, 3, 3 * batchBytes - 1, false);
+    assertTrue(read.hasData());
+    assertEquals(3 * batchBytes - 1, read.plannedBytes());
+    assertFalse(read.isFilled());
+    plan.execute(ignored -> logDir).join();
+    assertTrue(read.isFilled());
+    assertBatches(2, 2, read.batches());
+  }
+  @Test
+  void plannedBytesStopAtTheSegmentEnd() throws IOException {
+    ReadPlan plan = new ReadPlan();
+    ReadPlan.Read read = plan.add(log, 14, Integer.MAX_VALUE, false);
+    assertEquals(3 * batchBytes, read.plannedBytes());
+    plan.execute(ignored -> logDir).join();
+    assertBatches(14, 3, read.batches());
+  }
+  @Test
+  void minOneBatchReturnsABatchLargerThanMaxBytes() throws IOException {
+    ReadPlan plan = new ReadPlan();
+    ReadPlan.Read oversized = plan.add(log, 0, 10, true);
+    ReadPlan.Read cut = plan.add(log, 10, 10, false);
+    plan.execute(ignored -> logDir).join();
+    assertBatches(0, 1, oversized.batches());
+    assertFalse(cut.batches().hasRemaining());
+  }
+  @Test
+  void nothingToReadAtTheLogEnd() throws IOException {
+    ReadPlan plan = new ReadPlan();
+    ReadPlan.Read read = plan.add(log, 2 * BATCHES, Integer.MAX_VALUE, true);
+    assertFalse(read.hasData());
+    assertEquals(0, read.plannedBytes());
+    plan.execute(ignored -> logDir).join();
+    assertFalse(read.batches().hasRemaining());
+  }
+  @Test
+  void touchingReadsAreServedFromOneRead() throws IOException {
+    ReadPlan plan = new ReadPlan();
+    ReadPlan.Read later = plan.add(log, 8, 4 * batchBytes, false);
+    ReadPlan.Read earlier = plan.add(log, 2, 3 * batchBytes, false);
+    ReadPlan.Read apart = plan.add(log, 18, batchBytes, false);
+    plan.execute(ignored -> logDir).join();
+    assertBatches(8, 4, later.batches());
+    assertBatches(2, 3, earlier.batches());
+    assertBatches(18, 1, apart.batches());
+    // Batches 1 to 7 and batch 9 are read once each.
+    assertEquals(8 * batchBytes, logDir.getBytesRead());
+  }
+  // count whole batches, starting with the one holding fromOffset.
+  private void assertBatches(long fromOffset, int count, ByteBuffer batches) {
+    long baseOffset = fromOffset - fromOffset % 2;
+    assertEquals(count * batchBytes, batches.remaining());
+    assertEquals(baseOffset, batches.getLong(batches.position()));
+    assertEquals(baseOffset + 2L * count, RecordBatch.nextOffset(batches));
+  }
+}
@@ -0,0 +1,145 @@
+package log;
+import static log.TestBatches.batch;
+import static log.TestBatches.concat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+class SegmentIndexTest {
+  private static final int BATCHES = 40;
+  // Roughly 1 KiB batches, so an entry is only taken every few of them.
+  private static final int VALUE_BYTES = 1000;
+  // Batch i holds offsets 3i to 3i + 2 and max timestamp TIMESTAMPS[i],
+  // which goes back in time now and then.
+  private static final long[] TIMESTAMPS = new long[BATCHES];
+  static {
+    for (int i = 0; i < BATCHES; i++) {
+      TIMESTAMPS[i] = 1000 + 10 * i - (i % 7 == 3 ? 500 : 0);
+    }
+  }
+  private final List<Integer> positions = new ArrayList<>();
+  private final ByteBuffer data = segment();
+  @Test
+  void emptyIndexStartsAtTheBeginning() {
+    SegmentIndex index = new SegmentIndex();
+    assertEquals(0, index.lookupOffset(5));
+    assertEquals(-1, index.lookupTimestamp(0));
+    assertEquals(-1, index.getMaxTimestamp().position());
+  }
+  @Test
+  void indexIsSparse() {
+    SegmentIndex index = index(data);
+    int distinct = 0;
+    int previous = -1;
+    for (int i = 0; i < BATCHES; i++) {
+      int position = index.lookupOffset(3L * i);
+      if (position != previous) {
+        distinct++;
+        previous = position;
+      }
+    }
+    assertTrue(distinct > 1 && distinct < BATCHES / 2, "entries " + distinct);
+  }
+  @Test
+  void offsetLookupStartsAtOrBeforeTheBatchHoldingTarget() {
+    SegmentIndex index = index(data);
+    for (long target = 0; target < 3L * BATCHES; target++) {
+      int holding = positions.get((int)(target / 3));
+      int start = index.lookupOffset(target);
+      assertTrue(positions.contains(start), "not a batch start: " + start);
+      assertTrue(start <= holding, "past target " + target);
+      assertTrue(data.getLong(start) <= target);
+      assertTrue(holding - start < SegmentIndex.INTERVAL_BYTES + batchBytes(),
+                 "scan too long for " + target);
+    }
+  }
+  @Test
+  void offsetBeforeTheSegmentStartsAtZero() {
+    ByteBuffer later = concat(batch(100, 0, new byte[10]),
+                              batch(101, 0, new byte[10]));
+    assertEquals(0, index(later).lookupOffset(50));
+  }
+  @Test
+  void timestampLookupSkipsOnlyOlderBatches() {
+    SegmentIndex index = index(data);
+    for (long target = 0; target <= 1000 + 10 * BATCHES; target += 5) {
+      int start = index.lookupTimestamp(target);
+      int first = firstBatchAtOrAfter(target);
+      if (first < 0) {
+        assertEquals(-1, start, "target " + target);
+        continue;
+      }
+      assertTrue(positions.contains(start), "not a batch start: " + start);
+      assertTrue(start <= positions.get(first), "skipped " + target);
+      assertTrue(positions.get(first) - start <
+                     SegmentIndex.INTERVAL_BYTES + batchBytes(),
+                 "scan too long for " + target);
+    }
+  }
+  @Test
+  void tracksTheBatchWithTheLargestTimestamp() {
+    SegmentIndex.MaxTimestamp max = index(data).getMaxTimestamp();
+    int largest = 0;
+    for (int i = 1; i < BATCHES; i++) {
+      if (TIMESTAMPS[i] > TIMESTAMPS[largest]) {
+        largest = i;
+      }
+    }
+    assertEquals(TIMESTAMPS[largest], max.timestamp());
+    assertEquals(positions.get(largest), max.position());
+  }
+  @Test
+  void appendingInPiecesMatchesOneAppend() {
+    SegmentIndex whole = index(data);
+    SegmentIndex pieces = new SegmentIndex();
+    int split = positions.get(BATCHES / 2 + 1);
+    pieces.append(data.duplicate().limit(split), 0);
+    pieces.append(data.duplicate().position(split), split);
+    for (long target = 0; target < 3L * BATCHES; target++) {
+      assertEquals(whole.lookupOffset(target), pieces.lookupOffset(target));
+    }
+    for (long target = 0; target <= 1000 + 10 * BATCHES; target += 5) {
+      assertEquals(whole.lookupTimestamp(target),
+                   pieces.lookupTimestamp(target));
+    }
+    assertEquals(whole.getMaxTimestamp(), pieces.getMaxTimestamp());
+  }
+  @Test
+  void tornTailBatchIsNotIndexed() {
+    int last = positions.get(BATCHES - 1);
+    SegmentIndex index = index(data.duplicate().limit(last + 20));
+    assertTrue(index.lookupOffset(Long.MAX_VALUE) < last);
+    assertTrue(index.getMaxTimestamp().position() < last);
+  }
+  private static SegmentIndex index(ByteBuffer data) {
+    SegmentIndex index = new SegmentIndex();
+    index.append(data.duplicate(), 0);
+    return index;
+  }
+  private ByteBuffer segment() {
+    byte[][] batches = new byte[BATCHES][];
+    int position = 0;
+    for (int i = 0; i < BATCHES; i++) {
+      long timestamp = TIMESTAMPS[i];
+      batches[i] = batch(
+          3L * i, new long[] {timestamp - 2, timestamp, timestamp - 1},
+          new byte[3][], new byte[][] {new byte[VALUE_BYTES / 3],
+                                       new byte[VALUE_BYTES / 3],
+                                       new byte[VALUE_BYTES / 3]});
+      positions.add(position);
+      position += batches[i].length;
+    }
+    return concat(batches);
+  }
+  private int batchBytes() { return positions.get(1) - positions.get(0); }
+  private static int firstBatchAtOrAfter(long target) {
+    for (int i = 0; i < BATCHES; i++) {
+      if (TIMESTAMPS[i] >= target) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
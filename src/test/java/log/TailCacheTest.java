@@ -0,0 +1,55 @@
+package log;
+import static log.TestBatches.batch;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import java.nio.ByteBuffer;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+class TailCacheTest {
+  private static final int PARTITION_BYTES = 1024;
+  private static final TopicPartition P0 = new TopicPartition("t", 0);
+  private static final TopicPartition P1 = new TopicPartition("t", 1);
+  private static final TopicPartition P2 = new TopicPartition("t", 2);
+  @Test
+  void disabledCacheHoldsNothing() {
+    // Too small for even one partition's ring.
+    TailCache tooSmall = new TailCache(PARTITION_BYTES - 1, PARTITION_BYTES);
+    for (TailCache cache : List.of(TailCache.DISABLED, tooSmall)) {
+      cache.append(P0, ByteBuffer.wrap(batch(0, 0, new byte[10])));
+      assertNull(cache.read(P0, 0, Integer.MAX_VALUE, false));
+      assertEquals(0, cache.getAllocatedBytes());
+    }
+  }
+  @Test
+  void leastRecentlyUsedPartitionIsDropped() throws InterruptedException {
+    TailCache cache = new TailCache(2 * PARTITION_BYTES, PARTITION_BYTES);
+    byte[] batch = batch(0, 0, new byte[10]);
+    cache.append(P0, ByteBuffer.wrap(batch));
+    cache.append(P1, ByteBuffer.wrap(batch));
+    // Apart in time, so P0's read makes P1 the least recently used.
+    Thread.sleep(1);
+    assertEquals(ByteBuffer.wrap(batch),
+                 cache.read(P0, 0, Integer.MAX_VALUE, false));
+    cache.append(P2, ByteBuffer.wrap(batch));
+    assertEquals(2 * PARTITION_BYTES, cache.getAllocatedBytes());
+    assertNull(cache.read(P1, 0, Integer.MAX_VALUE, false));
+    assertNotNull(cache.read(P0, 0, Integer.MAX_VALUE, false));
+    assertNotNull(cache.read(P2, 0, Integer.MAX_VALUE, false));
+  }
+  @Test
+  void invalidateForgetsThePartitionsWindow() {
+    TailCache cache = new TailCache(2 * PARTITION_BYTES, PARTITION_BYTES);
+    cache.append(P0, ByteBuffer.wrap(batch(0, 0, new byte[10])));
+    cache.append(P1, ByteBuffer.wrap(batch(0, 0, new byte[10])));
+    cache.invalidate(P0);
+    assertNull(cache.read(P0, 0, Integer.MAX_VALUE, false));
+    assertNotNull(cache.read(P1, 0, Integer.MAX_VALUE, false));
+    // The ring is kept and takes a new window.
+    byte[] next = batch(7, 0, new byte[10]);
+    cache.append(P0, ByteBuffer.wrap(next));
+    assertEquals(ByteBuffer.wrap(next),
+                 cache.read(P0, 7, Integer.MAX_VALUE, false));
+    assertEquals(2 * PARTITION_BYTES, cache.getAllocatedBytes());
+  }
+}
@@ -0,0 +1,76 @@
+package log;
+import static log.TestBatches.batch;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import java.nio.ByteBuffer;
+import org.junit.jupiter.api.Test;
+class TailRingTest {
+  // Single-record batches of the same size at offsets 0 to 5.
+  private static final byte[][] BATCHES = new byte[6][];
+  static {
+    for (int i = 0; i < BATCHES.length; i++) {
+      BATCHES[i] = batch(i, 0, new byte[10]);
+    }
+  }
+  private static final int SIZE = BATCHES[0].length;
+  @Test
+  void readStartsAtTheBatchHoldingTheOffset() {
+    byte[] pair = batch(0, 0, new byte[10], new byte[10]);
+    TailRing ring = new TailRing(1024);
+    ring.append(TestBatches.concat(pair, BATCHES[2], BATCHES[3]));
+    assertEquals(TestBatches.concat(pair, BATCHES[2], BATCHES[3]),
+                 ring.read(1, Integer.MAX_VALUE, false));
+    assertEquals(TestBatches.concat(BATCHES[2], BATCHES[3]),
+                 ring.read(2, Integer.MAX_VALUE, false));
+    assertNull(ring.read(4, Integer.MAX_VALUE, false));
+  }
+  @Test
+  void maxBytesStopsAtABatchUnlessMinOneBatch() {
+    TailRing ring = new TailRing(1024);
+    ring.append(TestBatches.concat(BATCHES[0], BATCHES[1]));
+    assertEquals(ByteBuffer.wrap(BATCHES[0]),
+                 ring.read(0, 2 * SIZE - 1, false));
+    assertEquals(0, ring.read(0, SIZE - 1, false).remaining());
+    assertEquals(ByteBuffer.wrap(BATCHES[0]), ring.read(0, 1, true));
+  }
+  @Test
+  void wrappingAroundDropsTheOldestBatches() {
+    // Room for two and a half batches: the third goes back to the start.
+    TailRing ring = new TailRing(SIZE * 5 / 2);
+    for (int i = 0; i < 3; i++) {
+      ring.append(ByteBuffer.wrap(BATCHES[i]));
+    }
+    assertNull(ring.read(0, Integer.MAX_VALUE, false));
+    assertEquals(TestBatches.concat(BATCHES[1], BATCHES[2]),
+                 ring.read(1, Integer.MAX_VALUE, false));
+    ring.append(ByteBuffer.wrap(BATCHES[3]));
+    assertNull(ring.read(1, Integer.MAX_VALUE, false));
+    assertEquals(TestBatches.concat(BATCHES[2], BATCHES[3]),
+                 ring.read(2, Integer.MAX_VALUE, false));
+  }
+  @Test
+  void batchesThatDoNotContinueTheWindowReplaceIt() {
+    TailRing ring = new TailRing(1024);
+    ring.append(TestBatches.concat(BATCHES[0], BATCHES[1]));
+    // Already covered, so nothing changes.
+    ring.append(ByteBuffer.wrap(BATCHES[1]));
+    assertEquals(TestBatches.concat(BATCHES[0], BATCHES[1]),
+                 ring.read(0, Integer.MAX_VALUE, false));
+    ring.append(ByteBuffer.wrap(BATCHES[4]));
+    assertNull(ring.read(1, Integer.MAX_VALUE, false));
+    assertEquals(ByteBuffer.wrap(BATCHES[4]),
+                 ring.read(4, Integer.MAX_VALUE, false));
+  }
+  @Test
+  void batchLargerThanTheRingEmptiesIt() {
+    TailRing ring = new TailRing(2 * SIZE);
+    ring.append(ByteBuffer.wrap(BATCHES[0]));
+    ring.append(ByteBuffer.wrap(batch(1, 0, new byte[3 * SIZE])));
+    assertNull(ring.read(0, Integer.MAX_VALUE, false));
+    assertNull(ring.read(1, Integer.MAX_VALUE, false));
+    // The window starts over from the next batch.
+    ring.append(ByteBuffer.wrap(BATCHES[2]));
+    assertEquals(ByteBuffer.wrap(BATCHES[2]),
+                 ring.read(2, Integer.MAX_VALUE, false));
+  }
+}
@@ -0,0 +1,163 @@
+package log;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.zip.CRC32C;
+import shared.VarInt;
+import util.StreamUtils;
+// Uncompressed v2 record batches and KRaft metadata records, encoded by
+// hand so the tests do not depend on the decoders they check.
+public final class TestBatches {
+  private static final byte MAGIC = 2;
+  private TestBatches() {}
+  // A batch of unkeyed records, all stamped with timestamp.
+  public static byte[] batch(long baseOffset, long timestamp,
+                             byte[]... values) {
+    long[] timestamps = new long[values.length];
+    Arrays.fill(timestamps, timestamp);
+    return batch(baseOffset, timestamps, new byte[values.length][], values);
+  }
+  // One record per timestamp; a null key or value is written as null.
+  public static byte[] batch(long baseOffset, long[] timestamps,
+                             byte[][] keys, byte[][] values) {
+    long baseTimestamp = timestamps[0];
+    long maxTimestamp = Arrays.stream(timestamps).max().getAsLong();
+    byte[] records = StreamUtils.toBytes(dos -> {
+      for (int i = 0; i < values.length; i++) {
+        dos.write(record(i, timestamps[i] - baseTimestamp, keys[i],
+                         values[i]));
+      }
+    });
+    byte[] afterCrc = StreamUtils.toBytes(dos -> {
+      dos.writeShort(0);
+      dos.writeInt(values.length - 1);
+      dos.writeLong(baseTimestamp);
+      dos.writeLong(maxTimestamp);
+      dos.writeLong(-1);
+      dos.writeShort(-1);
+      dos.writeInt(-1);
+      dos.writeInt(values.length);
+      dos.write(records);
+    });
+    CRC32C crc = new CRC32C();
+    crc.update(afterCrc);
+    return StreamUtils.toBytes(dos -> {
+      dos.writeLong(baseOffset);
+      dos.writeInt(4 + 1 + 4 + afterCrc.length);
+      dos.writeInt(0);
+      dos.write(MAGIC);
+      dos.writeInt((int)crc.getValue());
+      dos.write(afterCrc);
+    });
+  }
+  public static ByteBuffer concat(byte[]... batches) {
+    return ByteBuffer.wrap(StreamUtils.toBytes(dos -> {
+      for (byte[] batch : batches) {
+        dos.write(batch);
+      }
+    }));
+  }
+  public static byte[] utf8(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+  public static byte[] featureLevelRecord(String name, short level) {
+    return StreamUtils.toBytes(dos -> {
+      dos.write(header(12, 0));
+      dos.write(compactString(name));
+      dos.writeShort(level);
+      dos.write(unsigned(0));
+    });
+  }
+  public static byte[] topicRecord(String name, UUID topicId) {
+    return StreamUtils.toBytes(dos -> {
+      dos.write(header(2, 0));
+      dos.write(compactString(name));
+      dos.writeLong(topicId.getMostSignificantBits());
+      dos.writeLong(topicId.getLeastSignificantBits());
+      dos.write(unsigned(0));
+    });
+  }
+  public static byte[] partitionRecord(UUID topicId, int partitionId,
+                                       int[] replicas, int leader,
+                                       int leaderEpoch) {
+    return StreamUtils.toBytes(dos -> {
+      dos.write(header(3, 1));
+      dos.writeInt(partitionId);
+      dos.writeLong(topicId.getMostSignificantBits());
+      dos.writeLong(topicId.getLeastSignificantBits());
+      dos.write(intArray(replicas));
+      dos.write(intArray(replicas));
+      dos.write(intArray(new int[0]));
+      dos.write(intArray(new int[0]));
+      dos.writeInt(leader);
+      dos.writeInt(leaderEpoch);
+      dos.writeInt(0);
+      dos.write(unsigned(1));
+      dos.write(unsigned(0));
+    });
+  }
+  public static byte[] compactString(String value) {
+    byte[] utf8 = utf8(value);
+    return StreamUtils.toBytes(dos -> {
+      dos.write(unsigned(utf8.length + 1));
+      dos.write(utf8);
+    });
+  }
+  public static byte[] unsigned(int value) {
+    return new VarInt(value).toBytes();
+  }
+  private static byte[] record(int offsetDelta, long timestampDelta,
+                               byte[] key, byte[] value) {
+    byte[] body = StreamUtils.toBytes(dos -> {
+      dos.write(0);
+      dos.write(signedLong(timestampDelta));
+      dos.write(signed(offsetDelta));
+      writeNullable(dos, key);
+      writeNullable(dos, value);
+      dos.write(unsigned(0));
+    });
+    return StreamUtils.toBytes(dos -> {
+      dos.write(signed(body.length));
+      dos.write(body);
+    });
+  }
+  private static void writeNullable(DataOutputStream dos, byte[] bytes)
+      throws IOException {
+    if (bytes == null) {
+      dos.write(signed(-1));
+    } else {
+      dos.write(signed(bytes.length));
+      dos.write(bytes);
+    }
+  }
+  private static byte[] header(int type, int version) {
+    return new byte[] {1, (byte)type, (byte)version};
+  }
+  private static byte[] intArray(int[] values) {
+    return StreamUtils.toBytes(dos -> {
+      dos.write(unsigned(values.length + 1));
+      for (int value : values) {
+        dos.writeInt(value);
+      }
+    });
+  }
+  private static byte[] signed(int value) {
+    VarInt varInt = new VarInt(0);
+    varInt.setValue(value);
+    return varInt.toBytes();
+  }
+  private static byte[] signedLong(long value) {
+    long zigzag = (value << 1) ^ (value >> 63);
+    return StreamUtils.toBytes(dos -> {
+      long rest = zigzag;
+      while ((rest & ~0x7FL) != 0) {
+        dos.write((byte)((rest & 0x7F) | 0x80));
+        rest >>>= 7;
+      }
+      dos.write((byte)rest);
+    });
+  }
+}
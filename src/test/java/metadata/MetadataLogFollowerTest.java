@@ -0,0 +1,102 @@
+package metadata;
+import static log.TestBatches.batch;
+import static log.TestBatches.topicRecord;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import log.LogConfig;
+import log.LogSegment;
+import log.PartitionLog;
+import log.TestBatches;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+class MetadataLogFollowerTest {
+  private static final byte[] A = batch(0, 0, topicRecord("a", new UUID(1, 1)));
+  private static final byte[] B = batch(1, 0, topicRecord("b", new UUID(2, 2)));
+  private static final byte[] C = batch(2, 0, topicRecord("c", new UUID(3, 3)));
+  private static final byte[] D = batch(3, 0, topicRecord("d", new UUID(4, 4)));
+  // Where a batch's record count sits.
+  private static final int RECORDS_COUNT_OFFSET = 57;
+  @TempDir
+  Path root;
+  private final AtomicReference<MetadataImage> image =
+      new AtomicReference<>();
+  private final BlockingQueue<MetadataImage> published =
+      new LinkedBlockingQueue<>();
+  private PartitionLog log;
+  private MetadataLoader loader;
+  private MetadataLogFollower follower;
+  @AfterEach
+  void close() throws IOException {
+    follower.close();
+    loader.close();
+    log.close();
+  }
+  @Test
+  void publishesAppendedAndRolledBatches() throws Exception {
+    start(A);
+    assertEquals(List.of("a"), names(image.get()));
+    append(0, B);
+    MetadataImage next = nextPublished();
+    assertEquals(1, next.getLastOffset());
+    assertEquals(List.of("a", "b"), names(next));
+    assertSame(next, image.get());
+    // Written by another broker's roll: a new segment file.
+    append(2, C, D);
+    next = nextPublished();
+    assertEquals(3, next.getLastOffset());
+    assertEquals(List.of("a", "b", "c", "d"), names(next));
+  }
+  @Test
+  void batchesBeforeOneThatFailsArePublished() throws Exception {
+    start(A);
+    byte[] corrupt = C.clone();
+    ByteBuffer.wrap(corrupt).putInt(RECORDS_COUNT_OFFSET, 0);
+    append(0, B, corrupt);
+    MetadataImage next = nextPublished();
+    assertEquals(1, next.getLastOffset());
+    assertEquals(List.of("a", "b"), names(next));
+    // The follower stopped at the corrupt batch rather than retrying it.
+    append(0, D);
+    assertNull(published.poll(200, TimeUnit.MILLISECONDS));
+    assertSame(next, image.get());
+  }
+  private void start(byte[]... batches) throws IOException {
+    Path dir = Files.createDirectory(root.resolve("__cluster_metadata-0"));
+    append(0, batches);
+    log = PartitionLog.load(dir, LogConfig.DEFAULT);
+    loader = new MetadataLoader(log, Long.MAX_VALUE);
+    image.set(loader.load(ForkJoinPool.commonPool()));
+    follower = new MetadataLogFollower(log, loader, image, published::add);
+    follower.start(10);
+  }
+  private void append(long baseOffset, byte[]... batches) throws IOException {
+    Files.write(root.resolve("__cluster_metadata-0")
+                    .resolve(String.format("%020d", baseOffset) +
+                             LogSegment.LOG_SUFFIX),
+                TestBatches.concat(batches).array(),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+  }
+  private MetadataImage nextPublished() throws InterruptedException {
+    MetadataImage next = published.poll(10, TimeUnit.SECONDS);
+    assertNotNull(next);
+    return next;
+  }
+  private static List<String> names(MetadataImage image) {
+    return image.getTopics().stream().map(TopicImage::name).toList();
+  }
+}
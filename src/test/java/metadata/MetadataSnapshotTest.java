@@ -0,0 +1,161 @@
+package metadata;
+import static log.TestBatches.batch;
+import static log.TestBatches.featureLevelRecord;
+import static log.TestBatches.partitionRecord;
+import static log.TestBatches.topicRecord;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import log.LogConfig;
+import log.LogSegment;
+import log.PartitionLog;
+import log.RecordBatch;
+import log.TestBatches;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+class MetadataSnapshotTest {
+  // A metadata log of one topic record per batch, at offsets 0 to 2.
+  private static final byte[] A = batch(0, 0, topicRecord("a", new UUID(1, 1)));
+  private static final byte[] B = batch(1, 0, topicRecord("b", new UUID(2, 2)));
+  private static final byte[] C = batch(2, 0, topicRecord("c", new UUID(3, 3)));
+  @TempDir
+  Path root;
+  private Path dir;
+  @BeforeEach
+  void createDir() throws IOException {
+    dir = Files.createDirectory(root.resolve("__cluster_metadata-0"));
+  }
+  @Test
+  void roundTripsTheImage() throws IOException {
+    UUID id = new UUID(5, 6);
+    MetadataImage image = image(
+        batch(0, 0, featureLevelRecord("metadata.version", (short)20),
+              topicRecord("t", id),
+              partitionRecord(id, 1, new int[] {3, 4}, 4, 7),
+              partitionRecord(id, 0, new int[] {3}, 3, 2)));
+    Path file = new MetadataSnapshot(image, 1234).write(dir);
+    assertEquals(String.format("%020d", 4) + MetadataSnapshot.SUFFIX,
+                 file.getFileName().toString());
+    MetadataSnapshot read = MetadataSnapshot.readLatest(dir).orElseThrow();
+    assertEquals(1234, read.getLastBatchCrc());
+    MetadataImage copy = read.getImage();
+    assertEquals(3, copy.getLastOffset());
+    assertEquals(Map.of("metadata.version", (short)20), copy.getFeatures());
+    TopicImage topic = copy.getTopic(id).orElseThrow();
+    assertEquals("t", topic.name());
+    assertEquals(topic, copy.getTopic("t").orElseThrow());
+    PartitionTable partitions = topic.partitions();
+    assertEquals(2, partitions.size());
+    assertEquals(1, partitions.partitionId(1));
+    assertEquals(4, partitions.leader(1));
+    assertEquals(7, partitions.leaderEpoch(1));
+    assertEquals(2, partitions.replicaCount(1));
+    assertEquals(3, partitions.replica(1, 0));
+    assertEquals(4, partitions.replica(1, 1));
+    assertEquals(2, partitions.isrCount(1));
+  }
+  @Test
+  void writeReplacesOlderSnapshots() throws IOException {
+    new MetadataSnapshot(image(batch(0, 0, topicRecord("a", new UUID(1, 1)))),
+                         1).write(dir);
+    Path newer = new MetadataSnapshot(
+        image(batch(0, 0, topicRecord("a", new UUID(1, 1)),
+                    topicRecord("b", new UUID(2, 2)))),
+        2).write(dir);
+    try (Stream<Path> listing = Files.list(dir)) {
+      assertEquals(List.of(newer), listing.toList());
+    }
+  }
+  @Test
+  void writeKeepsTheControllersCheckpoints() throws IOException {
+    Path controller = Files.write(
+        dir.resolve("00000000000000000100-0000000001.checkpoint"),
+        new byte[] {1, 2, 3});
+    Path snapshot = new MetadataSnapshot(
+        image(batch(0, 0, topicRecord("a", new UUID(1, 1)))), 1).write(dir);
+    new MetadataSnapshot(
+        image(batch(0, 0, topicRecord("a", new UUID(1, 1)),
+                    topicRecord("b", new UUID(2, 2)))),
+        2).write(dir);
+    assertTrue(Files.notExists(snapshot));
+    assertArrayEquals(new byte[] {1, 2, 3}, Files.readAllBytes(controller));
+    assertEquals(2, MetadataSnapshot.readLatest(dir).orElseThrow()
+                        .getLastBatchCrc());
+  }
+  @Test
+  void corruptSnapshotsAreSkipped() throws IOException {
+    Path older = new MetadataSnapshot(
+        image(batch(0, 0, topicRecord("a", new UUID(1, 1)))), 1).write(dir);
+    byte[] olderBytes = Files.readAllBytes(older);
+    Path newer = new MetadataSnapshot(
+        image(batch(0, 0, topicRecord("a", new UUID(1, 1)),
+                    topicRecord("b", new UUID(2, 2)))),
+        2).write(dir);
+    Files.write(older, olderBytes);
+    byte[] newerBytes = Files.readAllBytes(newer);
+    newerBytes[newerBytes.length / 2] ^= 1;
+    Files.write(newer, newerBytes);
+    assertEquals(1, MetadataSnapshot.readLatest(dir).orElseThrow()
+                        .getLastBatchCrc());
+    Files.write(older, new byte[] {1, 2});
+    assertTrue(MetadataSnapshot.readLatest(dir).isEmpty());
+  }
+  @Test
+  void loaderResumesFromASnapshotThatMatchesTheLog() throws IOException {
+    writeLog(A, B, C);
+    new MetadataSnapshot(snapshotImage(), crc(B)).write(dir);
+    MetadataImage image = load();
+    assertEquals(2, image.getLastOffset());
+    assertEquals(List.of("a", "c", "s"), names(image));
+  }
+  @Test
+  void loaderReplaysTheLogWhenTheSnapshotDoesNotMatch() throws IOException {
+    writeLog(A, B, C);
+    new MetadataSnapshot(snapshotImage(), crc(B) + 1).write(dir);
+    assertEquals(List.of("a", "b", "c"), names(load()));
+  }
+  @Test
+  void loaderIgnoresASnapshotAheadOfTheLog() throws IOException {
+    writeLog(A);
+    new MetadataSnapshot(snapshotImage(), crc(B)).write(dir);
+    MetadataImage image = load();
+    assertEquals(0, image.getLastOffset());
+    assertEquals(List.of("a"), names(image));
+  }
+  // Stands in for batches A and B; topic "s" shows that it was used.
+  private static MetadataImage snapshotImage() {
+    return image(batch(0, 0, topicRecord("a", new UUID(1, 1)),
+                       topicRecord("s", new UUID(9, 9))));
+  }
+  private void writeLog(byte[]... batches) throws IOException {
+    Files.write(dir.resolve(String.format("%020d", 0) + LogSegment.LOG_SUFFIX),
+                TestBatches.concat(batches).array());
+  }
+  private MetadataImage load() throws IOException {
+    try (PartitionLog log = PartitionLog.load(dir, LogConfig.DEFAULT);
+         MetadataLoader loader = new MetadataLoader(log, Long.MAX_VALUE)) {
+      return loader.load(ForkJoinPool.commonPool());
+    }
+  }
+  private static List<String> names(MetadataImage image) {
+    return image.getTopics().stream().map(TopicImage::name).toList();
+  }
+  private static int crc(byte[] batch) {
+    return RecordBatch.fromByteBuffer(ByteBuffer.wrap(batch)).getCrc();
+  }
+  private static MetadataImage image(byte[] batch) {
+    MetadataDelta delta = new MetadataDelta(MetadataImage.EMPTY);
+    delta.replay(RecordBatch.fromByteBuffer(ByteBuffer.wrap(batch)));
+    return delta.apply();
+  }
+}
@@ -0,0 +1,76 @@
+package metadata;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+class PartitionTableTest {
+  // Partition ids 0, 2 and 5, with replica and ISR lists of varying length,
+  // including empty ones, so the shared pool offsets are exercised.
+  private static final List<PartitionImage> PARTITIONS = List.of(
+      new PartitionImage(0, 1, 3, 4, new int[] {1, 2, 3}, new int[] {1, 2}),
+      new PartitionImage(2, -1, 0, 7, new int[] {4}, new int[0]),
+      new PartitionImage(5, 6, 9, 10, new int[0], new int[] {6, 7, 8, 9}));
+  @Test
+  void emptyTableHasNoRows() {
+    assertSame(PartitionTable.EMPTY, PartitionTable.of(List.of()));
+    assertTrue(PartitionTable.EMPTY.isEmpty());
+    assertEquals(0, PartitionTable.EMPTY.size());
+    assertEquals(-1, PartitionTable.EMPTY.indexOf(0));
+    assertEquals(0, PartitionTable.EMPTY.ceilingIndex(0));
+  }
+  @Test
+  void rowsRoundTripThroughGet() {
+    PartitionTable table = PartitionTable.of(PARTITIONS);
+    assertEquals(PARTITIONS.size(), table.size());
+    for (int index = 0; index < PARTITIONS.size(); index++) {
+      PartitionImage expected = PARTITIONS.get(index);
+      PartitionImage row = table.get(index);
+      assertEquals(expected.partitionId(), row.partitionId());
+      assertEquals(expected.leader(), row.leader());
+      assertEquals(expected.leaderEpoch(), row.leaderEpoch());
+      assertEquals(expected.partitionEpoch(), row.partitionEpoch());
+      assertArrayEquals(expected.replicas(), row.replicas());
+      assertArrayEquals(expected.isr(), row.isr());
+    }
+  }
+  @Test
+  void accessorsReadTheRowInPlace() {
+    PartitionTable table = PartitionTable.of(PARTITIONS);
+    for (int index = 0; index < PARTITIONS.size(); index++) {
+      PartitionImage expected = PARTITIONS.get(index);
+      assertEquals(expected.partitionId(), table.partitionId(index));
+      assertEquals(expected.leader(), table.leader(index));
+      assertEquals(expected.leaderEpoch(), table.leaderEpoch(index));
+      assertEquals(expected.partitionEpoch(), table.partitionEpoch(index));
+      assertEquals(expected.replicas().length, table.replicaCount(index));
+      for (int i = 0; i < expected.replicas().length; i++) {
+        assertEquals(expected.replicas()[i], table.replica(index, i));
+      }
+      assertEquals(expected.isr().length, table.isrCount(index));
+      for (int i = 0; i < expected.isr().length; i++) {
+        assertEquals(expected.isr()[i], table.isr(index, i));
+      }
+    }
+  }
+  @Test
+  void indexOfFindsOnlyPresentPartitions() {
+    PartitionTable table = PartitionTable.of(PARTITIONS);
+    assertEquals(0, table.indexOf(0));
+    assertEquals(1, table.indexOf(2));
+    assertEquals(2, table.indexOf(5));
+    for (int missing : new int[] {-1, 1, 3, 4, 6}) {
+      assertEquals(-1, table.indexOf(missing));
+    }
+  }
+  @Test
+  void ceilingIndexPointsAtTheNextPresentPartition() {
+    PartitionTable table = PartitionTable.of(PARTITIONS);
+    int[] expected = {0, 0, 1, 1, 2, 2, 2, 3};
+    for (int partitionId = -1; partitionId <= 6; partitionId++) {
+      assertEquals(expected[partitionId + 1],
+                   table.ceilingIndex(partitionId));
+    }
+  }
+}
@@ -0,0 +1,120 @@
+package metadata;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+class TopicIdMapTest {
+  @Test
+  void emptyMapHasNoEntries() {
+    TopicIdMap<String> map = TopicIdMap.empty();
+    assertEquals(0, map.size());
+    assertNull(map.get(UUID.randomUUID()));
+    assertNull(map.get(0, 0));
+  }
+  @Test
+  void putGetAndReplace() {
+    UUID id = UUID.randomUUID();
+    TopicIdMap<String> map =
+        TopicIdMap.<String>empty().updater().put(id, "a").build();
+    assertEquals("a", map.get(id));
+    assertEquals("a", map.get(id.getMostSignificantBits(),
+                              id.getLeastSignificantBits()));
+    TopicIdMap<String> replaced = map.updater().put(id, "b").build();
+    assertEquals(1, replaced.size());
+    assertEquals("b", replaced.get(id));
+  }
+  @Test
+  void zeroIdIsAValidKey() {
+    TopicIdMap<String> map =
+        TopicIdMap.<String>empty().updater().put(0, 0, "zero").build();
+    assertEquals("zero", map.get(new UUID(0, 0)));
+    assertEquals(0, map.updater().remove(0, 0).build().size());
+  }
+  @Test
+  void nullValuesAreRejected() {
+    assertThrows(NullPointerException.class,
+                 () -> TopicIdMap.empty().updater().put(1, 2, null));
+  }
+  @Test
+  void updaterLeavesTheSourceMapUnchanged() {
+    UUID kept = UUID.randomUUID();
+    UUID added = UUID.randomUUID();
+    TopicIdMap<String> base =
+        TopicIdMap.<String>empty().updater().put(kept, "kept").build();
+    TopicIdMap<String> next = base.updater()
+                                  .put(added, "added")
+                                  .put(kept, "changed")
+                                  .build();
+    assertEquals(1, base.size());
+    assertEquals("kept", base.get(kept));
+    assertNull(base.get(added));
+    assertEquals(2, next.size());
+    assertEquals("changed", next.get(kept));
+    TopicIdMap<String> removed =
+        next.updater().remove(added.getMostSignificantBits(),
+                              added.getLeastSignificantBits()).build();
+    assertEquals("added", next.get(added));
+    assertNull(removed.get(added));
+  }
+  @Test
+  void updaterCanKeepGoingAfterBuild() {
+    TopicIdMap.Updater<String> updater =
+        TopicIdMap.<String>empty().updater().put(1, 1, "a");
+    TopicIdMap<String> first = updater.build();
+    TopicIdMap<String> second = updater.put(1, 1, "b").remove(2, 2).build();
+    assertEquals("a", first.get(1, 1));
+    assertEquals("b", second.get(1, 1));
+    assertEquals(1, second.size());
+  }
+  @Test
+  void growsAndSplitsAcrossManyEntries() {
+    Random random = new Random(42);
+    Map<UUID, Integer> expected = new HashMap<>();
+    TopicIdMap<Integer> map = TopicIdMap.empty();
+    // Several batches, so later updaters copy segments of a split map.
+    for (int batch = 0; batch < 10; batch++) {
+      TopicIdMap.Updater<Integer> updater = map.updater();
+      for (int i = 0; i < 2000; i++) {
+        UUID id = new UUID(random.nextLong(), random.nextLong());
+        updater.put(id, expected.size());
+        expected.put(id, expected.size());
+      }
+      map = updater.build();
+    }
+    assertEquals(expected.size(), map.size());
+    for (Map.Entry<UUID, Integer> entry : expected.entrySet()) {
+      assertEquals(entry.getValue(), map.get(entry.getKey()));
+    }
+    assertNull(map.get(new UUID(random.nextLong(), random.nextLong())));
+  }
+  @Test
+  void removalKeepsRemainingEntriesReachable() {
+    // Removing every third entry of a well-filled segment moves the entries
+    // probing past each hole back into it.
+    Map<UUID, Integer> expected = new HashMap<>();
+    TopicIdMap.Updater<Integer> updater =
+        TopicIdMap.<Integer>empty().updater();
+    for (int i = 0; i < 500; i++) {
+      UUID id = new UUID(i, 7);
+      updater.put(id, i);
+      expected.put(id, i);
+    }
+    TopicIdMap<Integer> full = updater.build();
+    TopicIdMap.Updater<Integer> remover = full.updater();
+    for (int i = 0; i < 500; i += 3) {
+      remover.remove(i, 7);
+      expected.remove(new UUID(i, 7));
+    }
+    TopicIdMap<Integer> map = remover.build();
+    assertEquals(expected.size(), map.size());
+    for (int i = 0; i < 500; i++) {
+      assertEquals(expected.get(new UUID(i, 7)), map.get(i, 7));
+    }
+    assertEquals(500, full.size());
+    assertEquals(3, full.get(3, 7));
+  }
+}
@@ -0,0 +1,75 @@
+package metrics;
+import static log.TestBatches.batch;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.List;
+import log.LogConfig;
+import log.LogManager;
+import log.PartitionLog;
+import log.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+class MetricsHttpServerTest {
+  @TempDir
+  Path root;
+  private LogManager logManager;
+  private MetricsHttpServer server;
+  @BeforeEach
+  void start() throws IOException {
+    logManager = new LogManager(List.of(root), LogConfig.DEFAULT);
+    logManager.createLogs(List.of(new TopicPartition("m", 0)));
+    BrokerMetrics metrics = BrokerMetrics.get();
+    metrics.setLogDirs(logManager.getLogDirs());
+    server = new MetricsHttpServer(0, metrics);
+    server.start();
+  }
+  @AfterEach
+  void stop() throws IOException {
+    server.stop();
+    BrokerMetrics.get().setLogDirs(List.of());
+    logManager.close();
+  }
+  @Test
+  void logGaugesFollowTheLiveLogs() throws Exception {
+    assertTrue(scrape().contains(
+        "kafka_log_log_end_offset{topic=\"m\",partition=\"0\"} 0\n"));
+    PartitionLog log = logManager.getLog(new TopicPartition("m", 0))
+                           .orElseThrow();
+    byte[] batch = batch(0, System.currentTimeMillis(), new byte[10],
+                         new byte[10]);
+    logManager.append(log, ByteBuffer.wrap(batch));
+    // A partition created after the server started.
+    logManager.createLogs(List.of(new TopicPartition("m", 1)));
+    String body = scrape();
+    assertTrue(body.contains(
+        "kafka_log_log_end_offset{topic=\"m\",partition=\"0\"} 2\n"));
+    assertTrue(body.contains(
+        "kafka_log_size_bytes{topic=\"m\",partition=\"0\"} " + batch.length +
+        "\n"));
+    assertTrue(body.contains(
+        "kafka_log_segments{topic=\"m\",partition=\"0\"} 1\n"));
+    assertTrue(body.contains(
+        "kafka_log_log_end_offset{topic=\"m\",partition=\"1\"} 0\n"));
+    assertTrue(body.contains(
+        "kafka_log_dir_write_bytes_total{dir=\"" + root + "\"} " +
+        batch.length + "\n"));
+  }
+  private String scrape() throws Exception {
+    HttpResponse<String> response = HttpClient.newHttpClient().send(
+        HttpRequest.newBuilder(
+                URI.create("http://localhost:" + server.getPort() + "/metrics"))
+            .build(),
+        HttpResponse.BodyHandlers.ofString());
+    assertEquals(200, response.statusCode());
+    return response.body();
+  }
+}
@@ -0,0 +1,156 @@
+package responses;
+import static log.TestBatches.batch;
+import static log.TestBatches.partitionRecord;
+import static log.TestBatches.topicRecord;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import log.RecordBatch;
+import metadata.MetadataDelta;
+import metadata.MetadataImage;
+import org.junit.jupiter.api.Test;
+import requests.DescribeTopicPartitionsRequest;
+import requests.Request;
+import shared.CompactArray;
+import shared.CompactString;
+import shared.Cursor;
+import shared.Partition;
+import shared.RequestTopic;
+import shared.ResponseTopic;
+import shared.TagBuffer;
+import shared.serializer.CursorSerializer;
+import shared.serializer.RequestTopicSerializer;
+import shared.serializer.ResponseTopicSerializer;
+import util.StreamUtils;
+class DescribeTopicPartitionsResponseTest {
+  private static final short UNKNOWN_TOPIC_OR_PARTITION = 3;
+  private static final int BIG_PARTITIONS = 2500;
+  // The partitions in a response as "topic:partition", and where the next
+  // page starts, or null for the last page.
+  private record Page(List<String> partitions, String cursor) {}
+  private record Response(List<ResponseTopic> topics, Cursor cursor) {}
+  private final ResponseCache cache = new ResponseCache(1, "localhost", 9092);
+  private final MetadataImage image = image();
+  @Test
+  void limitCutsInsideATopicAndTheCursorResumesThere() {
+    List<String> topics = List.of("b", "a");
+    Page first = describe(topics, 2, null);
+    assertEquals(List.of("a:0", "a:1"), first.partitions());
+    assertEquals("a:2", first.cursor());
+    Page second = describe(topics, 2, first.cursor());
+    assertEquals(List.of("a:2", "b:0"), second.partitions());
+    assertEquals("b:1", second.cursor());
+    Page third = describe(topics, 2, second.cursor());
+    assertEquals(List.of("b:1"), third.partitions());
+    assertNull(third.cursor());
+  }
+  @Test
+  void limitEndingOnATopicBoundaryPointsAtTheNextTopic() {
+    Page page = describe(List.of("a", "b"), 3, null);
+    assertEquals(List.of("a:0", "a:1", "a:2"), page.partitions());
+    assertEquals("b:0", page.cursor());
+  }
+  @Test
+  void unknownTopicsGetAnErrorInNameOrder() {
+    List<ResponseTopic> topics =
+        send(List.of("zz", "b", "nope"), 100, null).topics();
+    assertEquals(List.of("b", "nope", "zz"),
+                 topics.stream().map(t -> t.getTopicName().toString())
+                     .toList());
+    assertEquals(0, topics.get(0).getErrorCode());
+    assertEquals(UNKNOWN_TOPIC_OR_PARTITION, topics.get(1).getErrorCode());
+    assertEquals(UNKNOWN_TOPIC_OR_PARTITION, topics.get(2).getErrorCode());
+  }
+  @Test
+  void emptyRequestListsEveryTopicFromTheCursor() {
+    Page page = describe(List.of(), 5, "b:1");
+    assertEquals(List.of("b:1", "big:0", "big:1", "big:2", "big:3"),
+                 page.partitions());
+    assertEquals("big:4", page.cursor());
+  }
+  @Test
+  void limitIsCappedAtMaxPartitionLimit() {
+    for (int limit : new int[] {0, -1, BIG_PARTITIONS}) {
+      Page page = describe(List.of("big"), limit, null);
+      assertEquals(DescribeTopicPartitionsResponse.MAX_PARTITION_LIMIT,
+                   page.partitions().size());
+      assertEquals("big:" + DescribeTopicPartitionsResponse.MAX_PARTITION_LIMIT,
+                   page.cursor());
+    }
+  }
+  private Page describe(List<String> topics, int limit, String cursor) {
+    Response response = send(topics, limit, cursor);
+    List<String> partitions = new ArrayList<>();
+    for (ResponseTopic topic : response.topics()) {
+      for (Partition partition :
+           topic.getPartitionCompactArray().getElements()) {
+        partitions.add(topic.getTopicName() + ":" +
+                       partition.getPartitionIndex());
+      }
+    }
+    Cursor next = response.cursor();
+    return new Page(partitions, next.isNull()
+                                    ? null
+                                    : next.getTopicName().get() + ":" +
+                                          next.getPartitionIndex().get());
+  }
+  private Response send(List<String> topics, int limit, String cursor) {
+    List<RequestTopic> requested = new ArrayList<>();
+    for (String topic : topics) {
+      requested.add(new RequestTopic(new CompactString(topic),
+                                     new TagBuffer()));
+    }
+    byte[] body = StreamUtils.toBytes(dos -> {
+      dos.write(CompactArray.withElements(requested,
+                                          new RequestTopicSerializer())
+                    .toBytes());
+      dos.writeInt(limit);
+      dos.write(new CursorSerializer().toBytes(cursor(cursor)));
+      dos.write(new TagBuffer().toBytes());
+    });
+    DescribeTopicPartitionsRequest request =
+        new DescribeTopicPartitionsRequest().fromByteBuffer(
+            ByteBuffer.wrap(body));
+    ByteBuffer data = ByteBuffer.wrap(
+        DescribeTopicPartitionsResponse
+            .fromRequest(new Request<>(null, request), image, cache)
+            .toBytes());
+    assertEquals(0, data.getInt());
+    List<ResponseTopic> responseTopics =
+        CompactArray.fromByteBuffer(data, new ResponseTopicSerializer())
+            .getElements();
+    Cursor next = Cursor.from(data, new CursorSerializer());
+    TagBuffer.fromByteBuffer(data);
+    assertFalse(data.hasRemaining());
+    return new Response(responseTopics, next);
+  }
+  private static Cursor cursor(String cursor) {
+    if (cursor == null) {
+      return Cursor.nullCursor();
+    }
+    String[] parts = cursor.split(":");
+    return new Cursor(new CompactString(parts[0]), Integer.parseInt(parts[1]));
+  }
+  // Topics a with 3 partitions, b with 2 and big with BIG_PARTITIONS.
+  private static MetadataImage image() {
+    List<byte[]> records = new ArrayList<>();
+    addTopic(records, "a", new UUID(1, 1), 3);
+    addTopic(records, "b", new UUID(2, 2), 2);
+    addTopic(records, "big", new UUID(3, 3), BIG_PARTITIONS);
+    MetadataDelta delta = new MetadataDelta(MetadataImage.EMPTY);
+    delta.replay(RecordBatch.fromByteBuffer(ByteBuffer.wrap(
+        batch(0, 0, records.toArray(new byte[0][])))));
+    return delta.apply();
+  }
+  private static void addTopic(List<byte[]> records, String name, UUID id,
+                               int partitions) {
+    records.add(topicRecord(name, id));
+    IntStream.range(0, partitions).forEach(
+        p -> records.add(partitionRecord(id, p, new int[] {1}, 1, 0)));
+  }
+}
@@ -0,0 +1,194 @@
+package responses;
+import static log.TestBatches.batch;
+import static log.TestBatches.partitionRecord;
+import static log.TestBatches.topicRecord;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import log.LogConfig;
+import log.LogManager;
+import log.LogSegment;
+import log.RecordBatch;
+import log.TestBatches;
+import metadata.MetadataDelta;
+import metadata.MetadataImage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import requests.FetchRequest;
+import requests.Request;
+import requests.RequestHeader;
+import shared.CompactArray;
+import shared.CompactString;
+import shared.PartitionResponse;
+import shared.RequestPartition;
+import shared.RequestTopicElement;
+import shared.TagBuffer;
+import shared.TopicResponse;
+import shared.serializer.ForgottenTopicSerializer;
+import shared.serializer.RequestPartitionSerializer;
+import shared.serializer.RequestTopicElementSerializer;
+import shared.serializer.TopicResponseSerializer;
+import util.StreamUtils;
+class FetchResponseTest {
+  private static final UUID TOPIC_ID = new UUID(4, 4);
+  private static final int PARTITIONS = 3;
+  private static final int BATCHES = 10;
+  private static final short OFFSET_OUT_OF_RANGE = 1;
+  @TempDir
+  Path logDir;
+  private LogManager logManager;
+  private MetadataImage image;
+  // Every batch in the test logs has the same size.
+  private int batchBytes;
+  @BeforeEach
+  void createLogs() throws IOException {
+    List<byte[]> records = new ArrayList<>();
+    records.add(topicRecord("t", TOPIC_ID));
+    for (int p = 0; p < PARTITIONS; p++) {
+      records.add(partitionRecord(TOPIC_ID, p, new int[] {1}, 1, 0));
+      byte[][] batches = new byte[BATCHES][];
+      for (int i = 0; i < BATCHES; i++) {
+        batches[i] = batch(i, 0, new byte[200]);
+      }
+      batchBytes = batches[0].length;
+      Path dir = Files.createDirectory(logDir.resolve("t-" + p));
+      Files.write(dir.resolve(String.format("%020d", 0) +
+                              LogSegment.LOG_SUFFIX),
+                  TestBatches.concat(batches).array());
+    }
+    MetadataDelta delta = new MetadataDelta(MetadataImage.EMPTY);
+    delta.replay(RecordBatch.fromByteBuffer(ByteBuffer.wrap(
+        batch(0, 0, records.toArray(new byte[0][])))));
+    image = delta.apply();
+    logManager = new LogManager(List.of(logDir), LogConfig.DEFAULT);
+  }
+  @AfterEach
+  void closeLogs() throws IOException {
+    logManager.close();
+  }
+  @Test
+  void partitionMaxBytesCutsAtABatchBoundary() {
+    List<PartitionResponse> partitions =
+        fetch(Integer.MAX_VALUE, 3 * batchBytes + batchBytes / 2, 0, 0, 0);
+    for (PartitionResponse partition : partitions) {
+      assertEquals(0, partition.getErrorCode());
+      assertBatches(0, 3, partition);
+    }
+  }
+  @Test
+  void maxBytesIsSharedInRequestOrder() {
+    List<PartitionResponse> partitions =
+        fetch(5 * batchBytes + batchBytes / 2, 3 * batchBytes, 0, 0, 0);
+    assertBatches(0, 3, partitions.get(0));
+    assertBatches(0, 2, partitions.get(1));
+    assertBatches(0, 0, partitions.get(2));
+  }
+  @Test
+  void firstPartitionWithDataGetsOneOversizedBatch() {
+    List<PartitionResponse> partitions =
+        fetch(Integer.MAX_VALUE, batchBytes / 2, BATCHES, 4, 4);
+    // The first partition is at its log end, so the next one may exceed its
+    // limit by a batch; the last may not.
+    assertBatches(BATCHES, 0, partitions.get(0));
+    assertBatches(4, 1, partitions.get(1));
+    assertBatches(4, 0, partitions.get(2));
+  }
+  @Test
+  void oversizedBatchIsAlsoAllowedPastMaxBytes() {
+    List<PartitionResponse> partitions =
+        fetch(10, Integer.MAX_VALUE, 7, 7, 7);
+    assertBatches(7, 1, partitions.get(0));
+    assertBatches(7, 0, partitions.get(1));
+    assertBatches(7, 0, partitions.get(2));
+  }
+  @Test
+  void readsStopAtTheLogEnd() {
+    List<PartitionResponse> partitions =
+        fetch(Integer.MAX_VALUE, Integer.MAX_VALUE, 8, 0, BATCHES + 1);
+    assertBatches(8, 2, partitions.get(0));
+    assertBatches(0, BATCHES, partitions.get(1));
+    assertEquals(OFFSET_OUT_OF_RANGE, partitions.get(2).getErrorCode());
+    assertEquals(BATCHES, partitions.get(0).getHighWatermark());
+  }
+  @Test
+  void gatheringBuffersMatchTheEncoding() {
+    FetchResponse response =
+        response(7 * batchBytes, 3 * batchBytes, 0, 2, 5);
+    byte[] gathered = StreamUtils.toBytes(dos -> {
+      for (ByteBuffer buffer : response.toBuffers()) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        dos.write(bytes);
+      }
+    });
+    assertArrayEquals(response.toBytes(), gathered);
+  }
+  private static void assertBatches(long fetchOffset, int count,
+                                    PartitionResponse partition) {
+    ByteBuffer batches = partition.getRecords().getBatches();
+    assertEquals(count == 0 ? 0 : fetchOffset + count,
+                 RecordBatch.nextOffset(batches));
+    assertEquals(batches.remaining(), RecordBatch.validBytes(batches));
+    if (count > 0) {
+      assertEquals(fetchOffset, batches.getLong(batches.position()));
+    }
+  }
+  // Fetches partition p of the topic from fetchOffsets[p], and decodes the
+  // response from its wire encoding.
+  private List<PartitionResponse> fetch(int maxBytes, int partitionMaxBytes,
+                                        long... fetchOffsets) {
+    ByteBuffer data =
+        ByteBuffer.wrap(response(maxBytes, partitionMaxBytes, fetchOffsets)
+                            .toBytes());
+    data.getInt();
+    data.getShort();
+    data.getInt();
+    List<TopicResponse> topics =
+        CompactArray.fromByteBuffer(data, new TopicResponseSerializer())
+            .getElements();
+    assertEquals(1, topics.size());
+    assertEquals(TOPIC_ID, topics.get(0).getTopicID());
+    return topics.get(0).getPartitions().getElements();
+  }
+  private FetchResponse response(int maxBytes, int partitionMaxBytes,
+                                 long... fetchOffsets) {
+    List<RequestPartition> partitions = new ArrayList<>();
+    for (int p = 0; p < fetchOffsets.length; p++) {
+      partitions.add(new RequestPartition(p, 0, fetchOffsets[p], -1, 0,
+                                          partitionMaxBytes, new TagBuffer()));
+    }
+    RequestTopicElement topic = new RequestTopicElement(
+        TOPIC_ID,
+        CompactArray.withElements(partitions, new RequestPartitionSerializer()),
+        new TagBuffer());
+    byte[] body = StreamUtils.toBytes(dos -> {
+      dos.writeInt(0);
+      dos.writeInt(0);
+      dos.writeInt(maxBytes);
+      dos.write(0);
+      dos.writeInt(0);
+      dos.writeInt(-1);
+      dos.write(CompactArray.withElements(
+                    List.of(topic), new RequestTopicElementSerializer())
+                    .toBytes());
+      dos.write(CompactArray.empty(new ForgottenTopicSerializer()).toBytes());
+      dos.write(new CompactString("").toBytes());
+      dos.write(new TagBuffer().toBytes());
+    });
+    FetchRequest request = new FetchRequest().fromByteBuffer(
+        ByteBuffer.wrap(body));
+    RequestHeader header =
+        new RequestHeader((short)1, (short)16, 1, "test", new TagBuffer());
+    return FetchResponse.fromRequest(new Request<>(header, request), image,
+                                     logManager)
+        .join();
+  }
+}
@@ -0,0 +1,165 @@
+package responses;
+import static log.TestBatches.batch;
+import static log.TestBatches.partitionRecord;
+import static log.TestBatches.topicRecord;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import log.LogConfig;
+import log.LogManager;
+import log.LogSegment;
+import log.RecordBatch;
+import log.TestBatches;
+import metadata.MetadataDelta;
+import metadata.MetadataImage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import requests.ListOffsetsRequest;
+import requests.Request;
+import requests.RequestHeader;
+import shared.CompactArray;
+import shared.CompactString;
+import shared.ListOffsetsPartition;
+import shared.ListOffsetsPartitionResponse;
+import shared.ListOffsetsTopic;
+import shared.ListOffsetsTopicResponse;
+import shared.TagBuffer;
+import shared.serializer.ListOffsetsPartitionSerializer;
+import shared.serializer.ListOffsetsTopicResponseSerializer;
+import shared.serializer.ListOffsetsTopicSerializer;
+import util.StreamUtils;
+class ListOffsetsResponseTest {
+  private static final UUID TOPIC_ID = new UUID(6, 6);
+  private static final short UNKNOWN_TOPIC_OR_PARTITION = 3;
+  @TempDir
+  Path logDir;
+  private LogManager logManager;
+  private MetadataImage image;
+  @BeforeEach
+  void createLogs() throws IOException {
+    // Partition 0 holds offsets 0 to 4; partition 1 is assigned but has no
+    // log yet.
+    MetadataDelta delta = new MetadataDelta(MetadataImage.EMPTY);
+    delta.replay(RecordBatch.fromByteBuffer(ByteBuffer.wrap(batch(
+        0, 0, topicRecord("t", TOPIC_ID),
+        partitionRecord(TOPIC_ID, 0, new int[] {1}, 1, 0),
+        partitionRecord(TOPIC_ID, 1, new int[] {1}, 1, 0)))));
+    image = delta.apply();
+    Path dir = Files.createDirectory(logDir.resolve("t-0"));
+    Files.write(dir.resolve(String.format("%020d", 0) + LogSegment.LOG_SUFFIX),
+                TestBatches.concat(records(0, 100, 300),
+                                   records(2, 500, 250),
+                                   records(4, 400))
+                    .array());
+    logManager = new LogManager(List.of(logDir), LogConfig.DEFAULT);
+  }
+  @AfterEach
+  void closeLogs() throws IOException {
+    logManager.close();
+  }
+  @Test
+  void latestAndEarliestAreTheLogBounds() {
+    assertOffset(-1, 5, listOffsets(0, ListOffsetsRequest.LATEST_TIMESTAMP));
+    assertOffset(-1, 0,
+                 listOffsets(0, ListOffsetsRequest.EARLIEST_TIMESTAMP));
+    assertOffset(-1, 0,
+                 listOffsets(0, ListOffsetsRequest.EARLIEST_LOCAL_TIMESTAMP));
+  }
+  @Test
+  void maxTimestampIsTheFirstRecordCarryingIt() {
+    assertOffset(500, 2, listOffsets(0, ListOffsetsRequest.MAX_TIMESTAMP));
+  }
+  @Test
+  void timestampFindsTheFirstRecordAtOrAfterIt() {
+    assertOffset(100, 0, listOffsets(0, 0));
+    assertOffset(300, 1, listOffsets(0, 250));
+    assertOffset(500, 2, listOffsets(0, 450));
+    assertOffset(-1, -1, listOffsets(0, 501));
+    assertOffset(-1, -1,
+                 listOffsets(0, ListOffsetsRequest.LATEST_TIERED_TIMESTAMP));
+  }
+  @Test
+  void assignedPartitionWithoutALogIsEmpty() {
+    assertOffset(-1, 0, listOffsets(1, ListOffsetsRequest.LATEST_TIMESTAMP));
+    assertOffset(-1, 0, listOffsets(1, ListOffsetsRequest.EARLIEST_TIMESTAMP));
+    assertOffset(-1, -1, listOffsets(1, ListOffsetsRequest.MAX_TIMESTAMP));
+    assertOffset(-1, -1, listOffsets(1, 100));
+  }
+  @Test
+  void unknownPartitionsAndTopicsGetAnError() {
+    assertEquals(UNKNOWN_TOPIC_OR_PARTITION,
+                 listOffsets("t", 2, ListOffsetsRequest.LATEST_TIMESTAMP)
+                     .getErrorCode());
+    assertEquals(UNKNOWN_TOPIC_OR_PARTITION,
+                 listOffsets("other", 0, ListOffsetsRequest.LATEST_TIMESTAMP)
+                     .getErrorCode());
+  }
+  // A batch of one record per timestamp, starting at baseOffset.
+  private static byte[] records(long baseOffset, long... timestamps) {
+    return batch(baseOffset, timestamps, new byte[timestamps.length][],
+                 new byte[timestamps.length][]);
+  }
+  private static void assertOffset(long timestamp, long offset,
+                                   ListOffsetsPartitionResponse partition) {
+    assertEquals(0, partition.getErrorCode());
+    assertEquals(timestamp, partition.getTimestamp());
+    assertEquals(offset, partition.getOffset());
+    // A record found by time carries its batch's leader epoch, 0 here.
+    assertEquals(timestamp >= 0 ? 0 : -1, partition.getLeaderEpoch());
+  }
+  private ListOffsetsPartitionResponse listOffsets(int partition,
+                                                   long timestamp) {
+    return listOffsets("t", partition, timestamp);
+  }
+  // Goes through the wire encoding both ways.
+  private ListOffsetsPartitionResponse listOffsets(String topic, int partition,
+                                                   long timestamp) {
+    ListOffsetsTopic listed = new ListOffsetsTopic(
+        new CompactString(topic),
+        CompactArray.withElements(
+            new ArrayList<>(List.of(new ListOffsetsPartition(
+                partition, -1, timestamp, new TagBuffer()))),
+            new ListOffsetsPartitionSerializer()),
+        new TagBuffer());
+    RequestHeader header =
+        new RequestHeader((short)2, (short)9, 3, "test", new TagBuffer());
+    ByteBuffer data = ByteBuffer.wrap(StreamUtils.toBytes(dos -> {
+      dos.write(header.toBytes());
+      dos.writeInt(-1);
+      dos.write(0);
+      dos.write(CompactArray.withElements(List.of(listed),
+                                          new ListOffsetsTopicSerializer())
+                    .toBytes());
+      dos.write(new TagBuffer().toBytes());
+    }));
+    Request<?> request = Request.fromByteBuffer(data);
+    ByteBuffer response = ByteBuffer.wrap(
+        Response.fromRequest(request, image, logManager, null).join()
+            .toBytes());
+    response.getInt();
+    assertEquals(3, response.getInt());
+    TagBuffer.fromByteBuffer(response);
+    assertEquals(0, response.getInt());
+    List<ListOffsetsTopicResponse> topics =
+        CompactArray.fromByteBuffer(response,
+                                    new ListOffsetsTopicResponseSerializer())
+            .getElements();
+    TagBuffer.fromByteBuffer(response);
+    assertFalse(response.hasRemaining());
+    assertEquals(1, topics.size());
+    assertEquals(topic, topics.get(0).getName().toString());
+    List<ListOffsetsPartitionResponse> partitions =
+        topics.get(0).getPartitions().getElements();
+    assertEquals(1, partitions.size());
+    assertEquals(partition, partitions.get(0).getPartitionIndex());
+    return partitions.get(0);
+  }
+}
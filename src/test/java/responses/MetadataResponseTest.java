@@ -0,0 +1,224 @@
+package responses;
+import static log.TestBatches.batch;
+import static log.TestBatches.partitionRecord;
+import static log.TestBatches.topicRecord;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import log.RecordBatch;
+import metadata.MetadataDelta;
+import metadata.MetadataImage;
+import org.junit.jupiter.api.Test;
+import requests.MetadataRequest;
+import requests.Request;
+import shared.CompactArray;
+import shared.CompactString;
+import shared.MetadataRequestTopic;
+import shared.TagBuffer;
+import shared.VarInt;
+import shared.serializer.MetadataRequestTopicSerializer;
+import util.StreamUtils;
+class MetadataResponseTest {
+  private static final UUID FOO_ID = new UUID(1, 1);
+  private static final UUID BAR_ID = new UUID(2, 2);
+  private static final UUID MISSING_ID = new UUID(9, 9);
+  private static final int AUTHORIZED_OPERATIONS_OMITTED = Integer.MIN_VALUE;
+  private record Partition(short error, int id, int leader, int leaderEpoch,
+                           int[] replicas, int[] isr) {}
+  private record Topic(short error, String name, UUID id, boolean internal,
+                       List<Partition> partitions) {}
+  private record Response(int nodeId, String host, int port, int controllerId,
+                          List<Topic> topics) {}
+  private final ResponseCache cache = new ResponseCache(1, "localhost", 9092);
+  private final MetadataImage image = image(
+      topicRecord("foo", FOO_ID),
+      partitionRecord(FOO_ID, 1, new int[] {1, 2}, 2, 5),
+      partitionRecord(FOO_ID, 0, new int[] {1}, 1, 3),
+      topicRecord("bar", BAR_ID),
+      partitionRecord(BAR_ID, 0, new int[] {1}, 1, 0));
+  @Test
+  void allTopicsListsEveryTopicInNameOrder() {
+    for (short version = 9; version <= 12; version++) {
+      Response response = send(version, null);
+      assertEquals(1, response.nodeId());
+      assertEquals("localhost", response.host());
+      assertEquals(9092, response.port());
+      assertEquals(1, response.controllerId());
+      assertEquals(List.of("bar", "foo"),
+                   response.topics().stream().map(Topic::name).toList());
+      Topic foo = response.topics().get(1);
+      assertEquals(0, foo.error());
+      assertEquals(version >= 10 ? FOO_ID : null, foo.id());
+      assertFalse(foo.internal());
+      assertEquals(2, foo.partitions().size());
+      Partition first = foo.partitions().get(0);
+      assertEquals(0, first.id());
+      assertEquals(1, first.leader());
+      assertEquals(3, first.leaderEpoch());
+      Partition second = foo.partitions().get(1);
+      assertEquals(1, second.id());
+      assertEquals(2, second.leader());
+      assertEquals(5, second.leaderEpoch());
+      assertArrayEquals(new int[] {1, 2}, second.replicas());
+      assertArrayEquals(new int[] {1, 2}, second.isr());
+    }
+  }
+  @Test
+  void emptyTopicListAsksForNoTopics() {
+    assertTrue(send((short)11, List.of()).topics().isEmpty());
+  }
+  @Test
+  void unknownNameGetsUnknownTopicOrPartition() {
+    Response response = send((short)9, List.of(byName("foo"),
+                                               byName("nope")));
+    assertEquals(2, response.topics().size());
+    assertEquals("foo", response.topics().get(0).name());
+    Topic missing = response.topics().get(1);
+    assertEquals(3, missing.error());
+    assertEquals("nope", missing.name());
+    assertTrue(missing.partitions().isEmpty());
+  }
+  @Test
+  void topicsCanBeAskedForById() {
+    Response response = send((short)10, List.of(byId(BAR_ID)));
+    Topic bar = response.topics().get(0);
+    assertEquals("bar", bar.name());
+    assertEquals(BAR_ID, bar.id());
+  }
+  @Test
+  void unknownIdHasAnEmptyNameBeforeVersion12() {
+    for (short version = 10; version <= 11; version++) {
+      Topic missing = send(version, List.of(byId(MISSING_ID))).topics().get(0);
+      assertEquals(100, missing.error());
+      assertEquals("", missing.name());
+      assertEquals(MISSING_ID, missing.id());
+    }
+    Topic missing =
+        send((short)12, List.of(byId(MISSING_ID))).topics().get(0);
+    assertEquals(100, missing.error());
+    assertNull(missing.name());
+  }
+  @Test
+  void newerImageDoesNotReuseCachedEntries() {
+    assertEquals(1, send((short)12, null).topics().get(0).partitions().size());
+    MetadataDelta delta = new MetadataDelta(image);
+    replay(delta, partitionRecord(BAR_ID, 1, new int[] {1}, 1, 0));
+    Response next = parse(send(delta.apply(), (short)12, null), (short)12);
+    assertEquals(2, next.topics().get(0).partitions().size());
+  }
+  @Test
+  void internalTopicsAreFlagged() {
+    UUID id = new UUID(3, 3);
+    MetadataImage withOffsets = image(
+        topicRecord("__consumer_offsets", id),
+        partitionRecord(id, 0, new int[] {1}, 1, 0));
+    Response response = parse(send(withOffsets, (short)12, null), (short)12);
+    assertTrue(response.topics().get(0).internal());
+  }
+  private static MetadataRequestTopic byName(String name) {
+    return new MetadataRequestTopic(new UUID(0, 0), new CompactString(name),
+                                    new TagBuffer());
+  }
+  private static MetadataRequestTopic byId(UUID id) {
+    return new MetadataRequestTopic(id, null, new TagBuffer());
+  }
+  private Response send(short version, List<MetadataRequestTopic> topics) {
+    return parse(send(image, version, topics), version);
+  }
+  private byte[] send(MetadataImage image, short version,
+                      List<MetadataRequestTopic> topics) {
+    byte[] body = StreamUtils.toBytes(dos -> {
+      if (topics == null) {
+        dos.write(new VarInt(0).toBytes());
+      } else {
+        dos.write(CompactArray.withElements(
+            topics, new MetadataRequestTopicSerializer(version)).toBytes());
+      }
+      dos.writeBoolean(false);
+      if (version <= 10) {
+        dos.writeBoolean(false);
+      }
+      dos.writeBoolean(false);
+      dos.write(new TagBuffer().toBytes());
+    });
+    MetadataRequest request =
+        new MetadataRequest(version).fromByteBuffer(ByteBuffer.wrap(body));
+    return MetadataResponse.fromRequest(new Request<>(null, request), image,
+                                        cache).toBytes();
+  }
+  private static Response parse(byte[] bytes, short version) {
+    ByteBuffer data = ByteBuffer.wrap(bytes);
+    assertEquals(0, data.getInt());
+    assertEquals(2, unsigned(data));
+    int nodeId = data.getInt();
+    String host = string(data);
+    int port = data.getInt();
+    assertNull(string(data));
+    assertEquals(0, unsigned(data));
+    assertNull(string(data));
+    int controllerId = data.getInt();
+    int topicCount = unsigned(data) - 1;
+    List<Topic> topics = new ArrayList<>();
+    for (int t = 0; t < topicCount; t++) {
+      short error = data.getShort();
+      String name = string(data);
+      UUID id = version >= 10 ? new UUID(data.getLong(), data.getLong())
+                              : null;
+      boolean internal = data.get() != 0;
+      int partitionCount = unsigned(data) - 1;
+      List<Partition> partitions = new ArrayList<>();
+      for (int p = 0; p < partitionCount; p++) {
+        Partition partition = new Partition(
+            data.getShort(), data.getInt(), data.getInt(), data.getInt(),
+            ints(data), ints(data));
+        assertEquals(0, ints(data).length);
+        assertEquals(0, unsigned(data));
+        partitions.add(partition);
+      }
+      assertEquals(AUTHORIZED_OPERATIONS_OMITTED, data.getInt());
+      assertEquals(0, unsigned(data));
+      topics.add(new Topic(error, name, id, internal, partitions));
+    }
+    if (version <= 10) {
+      assertEquals(AUTHORIZED_OPERATIONS_OMITTED, data.getInt());
+    }
+    assertEquals(0, unsigned(data));
+    assertFalse(data.hasRemaining());
+    return new Response(nodeId, host, port, controllerId, topics);
+  }
+  private static int unsigned(ByteBuffer data) {
+    return VarInt.fromByteBuffer(data).getUnsignedValue();
+  }
+  private static String string(ByteBuffer data) {
+    int length = unsigned(data) - 1;
+    if (length < 0) {
+      return null;
+    }
+    byte[] utf8 = new byte[length];
+    data.get(utf8);
+    return new String(utf8, StandardCharsets.UTF_8);
+  }
+  private static int[] ints(ByteBuffer data) {
+    int[] values = new int[unsigned(data) - 1];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = data.getInt();
+    }
+    return values;
+  }
+  private static MetadataImage image(byte[]... records) {
+    MetadataDelta delta = new MetadataDelta(MetadataImage.EMPTY);
+    replay(delta, records);
+    return delta.apply();
+  }
+  private static void replay(MetadataDelta delta, byte[]... records) {
+    delta.replay(RecordBatch.fromByteBuffer(
+        ByteBuffer.wrap(batch(delta.getLastOffset() + 1, 0, records))));
+  }
+}
@@ -0,0 +1,175 @@
+package responses;
+import static log.TestBatches.batch;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import log.LogConfig;
+import log.LogManager;
+import log.PartitionLog;
+import log.RecordBatch;
+import log.TestBatches;
+import log.TopicPartition;
+import metadata.MetadataImage;
+import metrics.BrokerMetrics;
+import metrics.PartitionMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import requests.ProduceRequest;
+import requests.Request;
+import requests.RequestHeader;
+import shared.CompactArray;
+import shared.CompactRecords;
+import shared.CompactString;
+import shared.ProducePartition;
+import shared.ProducePartitionResponse;
+import shared.ProduceTopic;
+import shared.ProduceTopicResponse;
+import shared.TagBuffer;
+import shared.serializer.ProducePartitionSerializer;
+import shared.serializer.ProduceTopicResponseSerializer;
+import shared.serializer.ProduceTopicSerializer;
+import util.StreamUtils;
+class ProduceResponseTest {
+  private static final short CORRUPT_MESSAGE = 2;
+  private static final short UNKNOWN_TOPIC_OR_PARTITION = 3;
+  private static final short INVALID_REQUIRED_ACKS = 21;
+  private static final TopicPartition T0 = new TopicPartition("t", 0);
+  @TempDir
+  Path logDir;
+  private LogManager logManager;
+  @BeforeEach
+  void createLogs() {
+    logManager = new LogManager(List.of(logDir), LogConfig.DEFAULT);
+    logManager.createLogs(List.of(T0, new TopicPartition("t", 1)));
+  }
+  @AfterEach
+  void closeLogs() throws IOException {
+    logManager.close();
+  }
+  @Test
+  void appendsAndReturnsTheBaseOffset() {
+    PartitionMetrics metrics = BrokerMetrics.get().partition(T0.toString());
+    long bytesIn = metrics.getBytesIn();
+    byte[] batch = batch(0, 0, new byte[1], new byte[1]);
+    ProducePartitionResponse first = produce(1, "t", 0, batch).get(0);
+    assertEquals(batch.length, metrics.getBytesIn() - bytesIn);
+    assertEquals(0, first.getErrorCode());
+    assertEquals(0, first.getBaseOffset());
+    assertEquals(-1, first.getLogAppendTimeMs());
+    assertEquals(0, first.getLogStartOffset());
+    assertNull(first.getErrorMessage());
+    ProducePartitionResponse second =
+        produce(-1, "t", 0, batch(0, 0, new byte[1]),
+                batch(0, 0, new byte[1])).get(0);
+    assertEquals(0, second.getErrorCode());
+    assertEquals(2, second.getBaseOffset());
+    PartitionLog log = logManager.getLog(T0).orElseThrow();
+    assertEquals(4, log.getLogEndOffset());
+    assertEquals(0, logManager.getLog(new TopicPartition("t", 1))
+                        .orElseThrow()
+                        .getLogEndOffset());
+  }
+  @Test
+  void unknownPartitionsAndTheMetadataLogAreRejected() {
+    logManager.createLogs(
+        List.of(new TopicPartition(LogManager.METADATA_TOPIC, 0)));
+    assertEquals(UNKNOWN_TOPIC_OR_PARTITION,
+                 produce(1, "t", 2, batch(0, 0, new byte[1])).get(0)
+                     .getErrorCode());
+    assertEquals(UNKNOWN_TOPIC_OR_PARTITION,
+                 produce(1, "other", 0, batch(0, 0, new byte[1])).get(0)
+                     .getErrorCode());
+    assertEquals(UNKNOWN_TOPIC_OR_PARTITION,
+                 produce(1, LogManager.METADATA_TOPIC, 0,
+                         batch(0, 0, new byte[1]))
+                     .get(0)
+                     .getErrorCode());
+  }
+  @Test
+  void corruptBatchesFailOnlyTheirPartition() {
+    byte[] good = batch(0, 0, new byte[1]);
+    byte[] badMagic = good.clone();
+    badMagic[RecordBatch.MAGIC_OFFSET] = 1;
+    List<ProducePartitionResponse> partitions = decode(response(
+        1, "t",
+        List.of(partition(0, badMagic), partition(1, good),
+                partition(0, new byte[0]))));
+    assertEquals(CORRUPT_MESSAGE, partitions.get(0).getErrorCode());
+    assertEquals("Unsupported record batch magic",
+                 partitions.get(0).getErrorMessage());
+    assertEquals(0, partitions.get(1).getErrorCode());
+    assertEquals(CORRUPT_MESSAGE, partitions.get(2).getErrorCode());
+    assertEquals(0, logManager.getLog(T0).orElseThrow().getLogEndOffset());
+  }
+  @Test
+  void acksOutsideMinusOneToOneAreRejected() {
+    assertEquals(INVALID_REQUIRED_ACKS,
+                 produce(2, "t", 0, batch(0, 0, new byte[1])).get(0)
+                     .getErrorCode());
+    assertEquals(0, logManager.getLog(T0).orElseThrow().getLogEndOffset());
+  }
+  @Test
+  void acksZeroAppendsWithoutAResponse() {
+    Response response = response(
+        0, "t", List.of(partition(0, batch(0, 0, new byte[1]))));
+    assertFalse(response.getBody().expectsResponse());
+    assertEquals(1, logManager.getLog(T0).orElseThrow().getLogEndOffset());
+  }
+  private static ProducePartition partition(int index, byte[]... batches) {
+    return new ProducePartition(
+        index, new CompactRecords(TestBatches.concat(batches)),
+        new TagBuffer());
+  }
+  private List<ProducePartitionResponse> produce(int acks, String topic,
+                                                 int index,
+                                                 byte[]... batches) {
+    return decode(response(acks, topic, List.of(partition(index, batches))));
+  }
+  // Goes through the request's wire encoding, so the parsing is covered
+  // too.
+  private Response response(int acks, String topic,
+                            List<ProducePartition> partitions) {
+    ProduceTopic produceTopic = new ProduceTopic(
+        new CompactString(topic),
+        CompactArray.withElements(new ArrayList<>(partitions),
+                                  new ProducePartitionSerializer()),
+        new TagBuffer());
+    ProduceRequest body = new ProduceRequest(
+        null, (short)acks, 30_000,
+        CompactArray.withElements(List.of(produceTopic),
+                                  new ProduceTopicSerializer()),
+        new TagBuffer());
+    RequestHeader header =
+        new RequestHeader((short)0, (short)11, 7, "test", new TagBuffer());
+    ByteBuffer data = ByteBuffer.wrap(StreamUtils.toBytes(dos -> {
+      dos.write(header.toBytes());
+      dos.write(body.toBytes());
+    }));
+    Request<?> request = Request.fromByteBuffer(data);
+    assertFalse(data.hasRemaining());
+    return Response.fromRequest(request, MetadataImage.EMPTY, logManager,
+                                null)
+        .join();
+  }
+  private static List<ProducePartitionResponse> decode(Response response) {
+    ByteBuffer data = ByteBuffer.wrap(response.toBytes());
+    data.getInt();
+    assertEquals(7, data.getInt());
+    TagBuffer.fromByteBuffer(data);
+    List<ProduceTopicResponse> topics =
+        CompactArray.fromByteBuffer(data, new ProduceTopicResponseSerializer())
+            .getElements();
+    assertEquals(0, data.getInt());
+    TagBuffer.fromByteBuffer(data);
+    assertFalse(data.hasRemaining());
+    assertEquals(1, topics.size());
+    return topics.get(0).getPartitions().getElements();
+  }
+}
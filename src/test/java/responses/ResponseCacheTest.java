@@ -0,0 +1,91 @@
+package responses;
+import static log.TestBatches.batch;
+import static log.TestBatches.topicRecord;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import log.RecordBatch;
+import metadata.MetadataDelta;
+import metadata.MetadataImage;
+import org.junit.jupiter.api.Test;
+import shared.CompactString;
+import shared.TagBuffer;
+import util.StreamUtils;
+class ResponseCacheTest {
+  private final ResponseCache cache = new ResponseCache(7, "host", 1234);
+  private final AtomicInteger encodes = new AtomicInteger();
+  // Each encoding of a topic is a distinct array, so identity shows whether
+  // an entry came from the cache.
+  private final Function<String, byte[]> encoder = name -> {
+    encodes.incrementAndGet();
+    return name.getBytes();
+  };
+  private final MetadataImage older = next(MetadataImage.EMPTY, 0, "a");
+  private final MetadataImage newer = next(older, 1, "b");
+  @Test
+  void sameImageEncodesEachTopicOnce() {
+    byte[] a = topic(older, ResponseCache.Fragment.DESCRIBE_TOPIC, "a");
+    assertSame(a, topic(older, ResponseCache.Fragment.DESCRIBE_TOPIC, "a"));
+    assertEquals(1, encodes.get());
+    topic(older, ResponseCache.Fragment.DESCRIBE_TOPIC, "b");
+    assertEquals(2, encodes.get());
+  }
+  @Test
+  void fragmentsAreCachedSeparately() {
+    byte[] describe =
+        topic(older, ResponseCache.Fragment.DESCRIBE_TOPIC, "a");
+    byte[] v9 = topic(older, ResponseCache.Fragment.METADATA_TOPIC_V9, "a");
+    byte[] v10 = topic(older, ResponseCache.Fragment.METADATA_TOPIC_V10, "a");
+    assertNotSame(describe, v9);
+    assertNotSame(v9, v10);
+    assertSame(v9, topic(older, ResponseCache.Fragment.METADATA_TOPIC_V9, "a"));
+    assertEquals(3, encodes.get());
+  }
+  @Test
+  void newerImageDropsTheEntries() {
+    byte[] a = topic(older, ResponseCache.Fragment.DESCRIBE_TOPIC, "a");
+    byte[] fresh = topic(newer, ResponseCache.Fragment.DESCRIBE_TOPIC, "a");
+    assertNotSame(a, fresh);
+    assertSame(fresh, topic(newer, ResponseCache.Fragment.DESCRIBE_TOPIC, "a"));
+    assertEquals(2, encodes.get());
+  }
+  @Test
+  void olderImageEncodesWithoutEvictingTheNewerEntries() {
+    byte[] a = topic(newer, ResponseCache.Fragment.DESCRIBE_TOPIC, "a");
+    byte[] stale = topic(older, ResponseCache.Fragment.DESCRIBE_TOPIC, "a");
+    assertNotSame(a, stale);
+    assertNotSame(stale,
+                  topic(older, ResponseCache.Fragment.DESCRIBE_TOPIC, "a"));
+    assertSame(a, topic(newer, ResponseCache.Fragment.DESCRIBE_TOPIC, "a"));
+    assertEquals(3, encodes.get());
+  }
+  @Test
+  void brokersListOnlyThisBroker() {
+    assertEquals(7, cache.nodeId());
+    assertArrayEquals(StreamUtils.toBytes(dos -> {
+                        dos.write(2);
+                        dos.writeInt(7);
+                        dos.write(new CompactString("host").toBytes());
+                        dos.writeInt(1234);
+                        dos.write(0);
+                        dos.write(new TagBuffer().toBytes());
+                      }),
+                      cache.metadataBrokers());
+  }
+  private byte[] topic(MetadataImage image, ResponseCache.Fragment fragment,
+                       String name) {
+    return cache.topic(image, fragment, name, encoder);
+  }
+  private static MetadataImage next(MetadataImage base, long offset,
+                                    String topic) {
+    MetadataDelta delta = new MetadataDelta(base);
+    delta.replay(RecordBatch.fromByteBuffer(ByteBuffer.wrap(
+        batch(offset, 0, topicRecord(topic, new UUID(offset + 1, 1))))));
+    return delta.apply();
+  }
+}
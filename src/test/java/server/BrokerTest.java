@@ -0,0 +1,187 @@
+package server;
+import static log.TestBatches.batch;
+import static log.TestBatches.partitionRecord;
+import static log.TestBatches.topicRecord;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import log.LogManager;
+import log.LogSegment;
+import log.TestBatches;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import requests.RequestHeader;
+import shared.CompactArray;
+import shared.CompactString;
+import shared.RequestPartition;
+import shared.RequestTopicElement;
+import shared.TagBuffer;
+import shared.serializer.ForgottenTopicSerializer;
+import shared.serializer.RequestPartitionSerializer;
+import shared.serializer.RequestTopicElementSerializer;
+import util.StreamUtils;
+class BrokerTest {
+  private static final UUID TOPIC_ID = new UUID(4, 4);
+  @TempDir
+  Path root;
+  private Broker broker;
+  @BeforeEach
+  void start() throws IOException {
+    writeSegment(LogManager.METADATA_TOPIC + "-0",
+                 batch(0, 0, topicRecord("t", TOPIC_ID),
+                       partitionRecord(TOPIC_ID, 0, new int[] {1}, 1, 0)));
+    byte[][] batches = new byte[10][];
+    for (int i = 0; i < batches.length; i++) {
+      batches[i] = batch(i, 0, new byte[200]);
+    }
+    writeSegment("t-0", batches);
+    broker = new Broker(
+        new BrokerConfig(List.of("port=0", "log.dirs=" + root)));
+    broker.start();
+  }
+  @AfterEach
+  void stop() throws IOException {
+    broker.close();
+  }
+  @Test
+  void pipelinedResponsesComeBackInRequestOrder() throws IOException {
+    // Fetches finish on the log dirs' reader threads, API versions right
+    // away, so later requests are often ready before earlier ones.
+    int requests = 32;
+    byte[] pipeline = StreamUtils.toBytes(dos -> {
+      for (int correlationId = 0; correlationId < requests; correlationId++) {
+        dos.write(correlationId % 2 == 0 ? fetch(correlationId)
+                                         : apiVersions(correlationId));
+      }
+    });
+    try (Socket socket = new Socket("localhost", broker.getPort())) {
+      OutputStream out = socket.getOutputStream();
+      out.write(pipeline);
+      out.flush();
+      DataInputStream in = new DataInputStream(socket.getInputStream());
+      List<Integer> correlationIds = new ArrayList<>();
+      List<Integer> expected = new ArrayList<>();
+      for (int i = 0; i < requests; i++) {
+        byte[] response = new byte[in.readInt()];
+        in.readFully(response);
+        correlationIds.add(ByteBuffer.wrap(response).getInt());
+        if (i % 2 == 0) {
+          // The fetch read the partition's batches.
+          assertTrue(response.length > 10 * 200);
+        }
+        expected.add(i);
+      }
+      assertEquals(expected, correlationIds);
+    }
+  }
+  @Test
+  void requestLifecycleRecordsJfrEvents() throws IOException {
+    Path dump = root.resolve("requests.jfr");
+    byte[] request = apiVersions(77);
+    int responseBytes;
+    try (Recording recording = new Recording();
+         Socket socket = new Socket("localhost", broker.getPort())) {
+      for (String event : List.of("kafka.RequestReceived",
+                                  "kafka.RequestHandled",
+                                  "kafka.ResponseSent")) {
+        recording.enable(event);
+      }
+      recording.start();
+      DataInputStream in = new DataInputStream(socket.getInputStream());
+      socket.getOutputStream().write(request);
+      int size = in.readInt();
+      in.skipNBytes(size);
+      responseBytes = 4 + size;
+      // The connection's thread records a response as sent before reading
+      // the next request, so the reply to this one means 77 is done.
+      socket.getOutputStream().write(apiVersions(78));
+      in.skipNBytes(in.readInt());
+      recording.stop();
+      recording.dump(dump);
+    }
+    Map<String, RecordedEvent> events = new HashMap<>();
+    for (RecordedEvent event : RecordingFile.readAllEvents(dump)) {
+      if (event.getEventType().getName().startsWith("kafka.") &&
+          event.getInt("correlationId") == 77) {
+        assertNull(events.put(event.getEventType().getName(), event));
+      }
+    }
+    assertEquals(3, events.size());
+    for (RecordedEvent event : events.values()) {
+      assertEquals(18, event.getShort("apiKey"));
+      assertEquals(4, event.getShort("apiVersion"));
+      assertEquals("test", event.getString("clientId"));
+    }
+    assertEquals(request.length - 4,
+                 events.get("kafka.RequestReceived").getInt("bytes"));
+    assertEquals(responseBytes,
+                 events.get("kafka.ResponseSent").getInt("bytes"));
+  }
+  private void writeSegment(String dir, byte[]... batches) throws IOException {
+    Path path = Files.createDirectory(root.resolve(dir));
+    Files.write(path.resolve(String.format("%020d", 0) + LogSegment.LOG_SUFFIX),
+                TestBatches.concat(batches).array());
+  }
+  private static byte[] apiVersions(int correlationId) {
+    return frame(new RequestHeader((short)18, (short)4, correlationId, "test",
+                                   new TagBuffer()),
+                 StreamUtils.toBytes(dos -> {
+                   dos.write(new CompactString("test").toBytes());
+                   dos.write(new CompactString("1.0").toBytes());
+                   dos.write(new TagBuffer().toBytes());
+                 }));
+  }
+  // Reads partition 0 from the start.
+  private static byte[] fetch(int correlationId) {
+    RequestTopicElement topic = new RequestTopicElement(
+        TOPIC_ID,
+        CompactArray.withElements(
+            List.of(new RequestPartition(0, 0, 0, -1, 0, 1024 * 1024,
+                                         new TagBuffer())),
+            new RequestPartitionSerializer()),
+        new TagBuffer());
+    return frame(new RequestHeader((short)1, (short)16, correlationId, "test",
+                                   new TagBuffer()),
+                 StreamUtils.toBytes(dos -> {
+                   dos.writeInt(0);
+                   dos.writeInt(0);
+                   dos.writeInt(1024 * 1024);
+                   dos.write(0);
+                   dos.writeInt(0);
+                   dos.writeInt(-1);
+                   dos.write(CompactArray.withElements(
+                                 List.of(topic),
+                                 new RequestTopicElementSerializer())
+                                 .toBytes());
+                   dos.write(CompactArray.empty(new ForgottenTopicSerializer())
+                                 .toBytes());
+                   dos.write(new CompactString("").toBytes());
+                   dos.write(new TagBuffer().toBytes());
+                 }));
+  }
+  private static byte[] frame(RequestHeader header, byte[] body) {
+    byte[] headerBytes = header.toBytes();
+    return StreamUtils.toBytes(dos -> {
+      dos.writeInt(headerBytes.length + body.length);
+      dos.write(headerBytes);
+      dos.write(body);
+    });
+  }
+}
@@ -0,0 +1,48 @@
+package shared;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.nio.ByteBuffer;
+import org.junit.jupiter.api.Test;
+class CompactRecordsTest {
+  @Test
+  void lengthPrefixIsSizePlusOne() {
+    byte[] batches = new byte[300];
+    batches[0] = 7;
+    byte[] bytes = new CompactRecords(ByteBuffer.wrap(batches)).toBytes();
+    assertEquals(2 + 300, bytes.length);
+    assertEquals(301, VarInt.fromByteBuffer(ByteBuffer.wrap(bytes))
+                          .getUnsignedValue());
+    assertEquals(7, bytes[2]);
+  }
+  @Test
+  void emptyRecordsAreOneByte() {
+    assertArrayEquals(new byte[] {1}, CompactRecords.empty().toBytes());
+  }
+  @Test
+  void writesOnlyTheRemainingBytes() {
+    ByteBuffer heap = ByteBuffer.wrap(new byte[] {1, 2, 3, 4, 5}, 1, 3);
+    ByteBuffer direct = ByteBuffer.allocateDirect(5).put(new byte[] {1, 2, 3,
+                                                                     4, 5});
+    direct.position(1).limit(4);
+    byte[] expected = {4, 2, 3, 4};
+    assertArrayEquals(expected, new CompactRecords(heap.slice()).toBytes());
+    assertArrayEquals(expected, new CompactRecords(direct).toBytes());
+    assertEquals(1, direct.position());
+  }
+  @Test
+  void decodesAndAdvancesPastTheRecords() {
+    ByteBuffer data = ByteBuffer.wrap(new byte[] {4, 9, 8, 7, 42});
+    CompactRecords records = CompactRecords.fromByteBuffer(data);
+    assertEquals(3, records.sizeInBytes());
+    assertEquals(ByteBuffer.wrap(new byte[] {9, 8, 7}), records.getBatches());
+    assertEquals(42, data.get());
+  }
+  @Test
+  void nullAndEmptyDecodeAsEmpty() {
+    for (byte prefix : new byte[] {0, 1}) {
+      ByteBuffer data = ByteBuffer.wrap(new byte[] {prefix, 42});
+      assertEquals(0, CompactRecords.fromByteBuffer(data).sizeInBytes());
+      assertEquals(42, data.get());
+    }
+  }
+}
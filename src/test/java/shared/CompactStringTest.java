@@ -0,0 +1,69 @@
+package shared;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+class CompactStringTest {
+  @Test
+  void encodesLengthPlusOneThenUtf8() {
+    byte[] bytes = new CompactString("topic").toBytes();
+    assertEquals(6, bytes[0]);
+    assertEquals("topic", new String(bytes, 1, 5, StandardCharsets.UTF_8));
+    assertArrayEquals(new byte[] {1}, new CompactString("").toBytes());
+  }
+  @Test
+  void longStringsUseAMultiByteLength() {
+    String name = "t".repeat(300);
+    byte[] bytes = new CompactString(name).toBytes();
+    assertEquals(2 + 300, bytes.length);
+    assertEquals((byte)(301 & 0x7F | 0x80), bytes[0]);
+    assertEquals((byte)(301 >>> 7), bytes[1]);
+    assertEquals(name, decode(bytes).toString());
+  }
+  @Test
+  void roundTripsMultiByteCharacters() {
+    String name = "tópico-日本";
+    CompactString decoded = decode(new CompactString(name).toBytes());
+    assertEquals(name, decoded.toString());
+    assertEquals(new CompactString(name), decoded);
+    assertEquals(new CompactString(name).hashCode(), decoded.hashCode());
+  }
+  @Test
+  void decodingAdvancesPastTheString() {
+    byte[] name = new CompactString("abc").toBytes();
+    ByteBuffer data = ByteBuffer.allocate(name.length + 4);
+    data.put(name).putInt(42).flip();
+    assertEquals("abc", CompactString.fromByteBuffer(data).toString());
+    assertEquals(42, data.getInt());
+  }
+  @Test
+  void equalityIsByContent() {
+    assertEquals(new CompactString("a"), new CompactString("a"));
+    assertNotEquals(new CompactString("a"), new CompactString("b"));
+    assertNotEquals(new CompactString("ab"), new CompactString("a"));
+  }
+  @Test
+  void repeatedDecodesShareAnInternedInstance() {
+    byte[] bytes = new CompactString("interned-topic").toBytes();
+    CompactString first = decode(bytes);
+    assertSame(first, decode(bytes));
+  }
+  @Test
+  void longStringsAreNotInterned() {
+    byte[] bytes = new CompactString("x".repeat(256)).toBytes();
+    CompactString first = decode(bytes);
+    CompactString second = decode(bytes);
+    assertNotSame(first, second);
+    assertEquals(first, second);
+  }
+  private static CompactString decode(byte[] bytes) {
+    ByteBuffer data = ByteBuffer.wrap(bytes);
+    CompactString result = CompactString.fromByteBuffer(data);
+    assertEquals(0, data.remaining());
+    return result;
+  }
+}
@@ -0,0 +1,125 @@
+package util;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+class PersistentTreeMapTest {
+  // Counts its comparisons, so a lookup shows how deep its key sits.
+  private record Key(int value) implements Comparable<Key> {
+    static int comparisons;
+    @Override
+    public int compareTo(Key other) {
+      comparisons++;
+      return Integer.compare(value, other.value);
+    }
+  }
+  @Test
+  void emptyMap() {
+    PersistentTreeMap<Integer, String> map = PersistentTreeMap.empty();
+    assertTrue(map.isEmpty());
+    assertNull(map.get(1));
+    assertSame(map, map.remove(1));
+    assertFalse(map.values().iterator().hasNext());
+    assertThrows(NoSuchElementException.class,
+                 () -> map.values().iterator().next());
+  }
+  @Test
+  void putReplacesAndCountsOnce() {
+    PersistentTreeMap<Integer, String> map =
+        PersistentTreeMap.<Integer, String>empty().put(1, "a").put(1, "b");
+    assertEquals(1, map.size());
+    assertEquals("b", map.get(1));
+    assertThrows(NullPointerException.class, () -> map.put(2, null));
+  }
+  @Test
+  void earlierVersionsAreUnchanged() {
+    PersistentTreeMap<Integer, Integer> empty = PersistentTreeMap.empty();
+    PersistentTreeMap<Integer, Integer> one = empty.put(1, 1);
+    PersistentTreeMap<Integer, Integer> two = one.put(2, 2);
+    PersistentTreeMap<Integer, Integer> removed = two.remove(1);
+    assertEquals(0, empty.size());
+    assertEquals(List.of(1), values(one));
+    assertEquals(List.of(1, 2), values(two));
+    assertEquals(List.of(2), values(removed));
+  }
+  @Test
+  void sortedInsertsStayBalanced() {
+    PersistentTreeMap<Key, Integer> map = PersistentTreeMap.empty();
+    for (int i = 0; i < 10_000; i++) {
+      map = map.put(new Key(i), i);
+      if (i % 500 == 0) {
+        assertBalanced(map, 0, i + 1);
+      }
+    }
+    for (int i = 0; i < 9_000; i++) {
+      map = map.remove(new Key(i));
+    }
+    assertBalanced(map, 9_000, 10_000);
+    assertEquals(1_000, map.size());
+  }
+  @Test
+  void matchesATreeMapUnderRandomUpdates() {
+    Random random = new Random(11);
+    TreeMap<Integer, Integer> expected = new TreeMap<>();
+    PersistentTreeMap<Key, Integer> map = PersistentTreeMap.empty();
+    for (int i = 0; i < 20_000; i++) {
+      int key = random.nextInt(2_000);
+      if (random.nextInt(3) == 0) {
+        expected.remove(key);
+        map = map.remove(new Key(key));
+      } else {
+        expected.put(key, i);
+        map = map.put(new Key(key), i);
+      }
+      assertEquals(expected.size(), map.size());
+    }
+    assertBalanced(map, 0, 2_000);
+    assertEquals(new ArrayList<>(expected.values()), values(map));
+    for (int key = 0; key < 2_000; key++) {
+      assertEquals(expected.get(key), map.get(new Key(key)));
+    }
+  }
+  @Test
+  void valuesFromStartsAtTheFirstKeyNotBefore() {
+    PersistentTreeMap<String, String> map = PersistentTreeMap.empty();
+    for (String key : List.of("b", "d", "f", "h")) {
+      map = map.put(key, key);
+    }
+    assertEquals(List.of("d", "f", "h"), list(map.valuesFrom("c")));
+    assertEquals(List.of("d", "f", "h"), list(map.valuesFrom("d")));
+    assertEquals(List.of("b", "d", "f", "h"), list(map.valuesFrom("a")));
+    assertEquals(List.of(), list(map.valuesFrom("i")));
+    assertEquals(List.of("b", "d", "f", "h"), list(map.valuesFrom(null)));
+  }
+  // Looks up every key in [from, to), whether in the map or not, and checks
+  // that no lookup went deeper than AVL balancing allows: 1.45 log2(size +
+  // 2) levels.
+  private static void assertBalanced(PersistentTreeMap<Key, ?> map, int from,
+                                     int to) {
+    double bound = 1.45 * Math.log(map.size() + 2) / Math.log(2);
+    int deepest = 0;
+    for (int i = from; i < to; i++) {
+      Key.comparisons = 0;
+      map.get(new Key(i));
+      deepest = Math.max(deepest, Key.comparisons);
+    }
+    assertTrue(deepest <= bound, "depth " + deepest + " for " + map.size());
+  }
+  private static <V> List<V> values(PersistentTreeMap<?, V> map) {
+    return new ArrayList<>(map.values());
+  }
+  private static <V> List<V> list(Iterator<V> iterator) {
+    List<V> list = new ArrayList<>();
+    iterator.forEachRemaining(list::add);
+    return list;
+  }
+}